@@ -39,6 +39,9 @@ import com.aevi.sdk.flow.model.Request;
 import com.aevi.sdk.flow.model.Response;
 import com.aevi.sdk.flow.model.ResponseQuery;
 import com.aevi.sdk.flow.model.config.AppFlowSettings;
+import com.aevi.sdk.flow.tracing.Span;
+import com.aevi.sdk.flow.tracing.Tracer;
+import com.aevi.sdk.flow.util.StreamingJsonDecoder;
 
 import java.util.List;
 
@@ -74,6 +77,8 @@ public abstract class BaseApiClient {
     private final InternalData internalData;
     protected final Context context;
     private String commsChannel;
+    private SystemEventStream systemEventStream;
+    private DeviceRegistry deviceRegistry;
 
     protected BaseApiClient(String apiVersion, Context context) {
         internalData = new InternalData(apiVersion);
@@ -97,6 +102,29 @@ public abstract class BaseApiClient {
         return internalData;
     }
 
+    /**
+     * Create the internal data that propagates the trace context of a span to the receiver of a message.
+     *
+     * @param span The span for the request
+     * @return A copy of the client internal data including the trace context
+     */
+    protected InternalData getInternalData(Span span) {
+        InternalData requestInternalData = new InternalData(internalData);
+        span.getContext().writeTo(requestInternalData);
+        return requestInternalData;
+    }
+
+    /**
+     * Start a new trace for a request initiated by this client.
+     *
+     * @param name      The span name
+     * @param requestId The id of the request
+     * @return The root span of the trace
+     */
+    protected Span startRequestSpan(String name, String requestId) {
+        return Tracer.startRootSpan(name).setAttribute("requestId", requestId);
+    }
+
     @NonNull
     public Completable initiateRequest(final Request request) {
         return doSendRequest(request, REQUEST_MESSAGE);
@@ -114,13 +142,15 @@ public abstract class BaseApiClient {
             return Completable.error(NO_FPS_EXCEPTION);
         }
         final ChannelClient requestMessenger = getMessengerClient(FLOW_PROCESSING_SERVICE_COMPONENT);
-        AppMessage appMessage = new AppMessage(appMessageType, request.toJson(), getInternalData());
+        final Span span = startRequestSpan(appMessageType + ":" + request.getRequestType(), request.getId());
+        AppMessage appMessage = new AppMessage(appMessageType, request.toJson(), getInternalData(span));
         appMessage.setResponseMechanism(RESPONSE_SERVICE);
         return requestMessenger
                 .sendMessage(appMessage.toJson())
                 .singleOrError()
                 .ignoreElement()
                 .doFinally(requestMessenger::closeConnection)
+                .doFinally(span::end)
                 .onErrorResumeNext(throwable -> Completable.error(createFlowException(throwable)));
     }
 
@@ -136,7 +166,7 @@ public abstract class BaseApiClient {
         AppMessage appMessage = new AppMessage(AppMessageTypes.RESPONSES_REQUEST, responseQuery.toJson(), getInternalData());
         return paymentInfoMessenger
                 .sendMessage(appMessage.toJson())
-                .map(Response::fromJson)
+                .compose(new StreamingJsonDecoder<>(Response.class, responseQuery.getExcludedFields()).decodeAll())
                 .doFinally(paymentInfoMessenger::closeConnection)
                 .onErrorResumeNext((Function<Throwable, ObservableSource<? extends Response>>) throwable -> Observable
                         .error(createFlowException(throwable)));
@@ -147,7 +177,8 @@ public abstract class BaseApiClient {
             return Single.error(NO_FPS_EXCEPTION);
         }
         final ChannelClient requestMessenger = getMessengerClient(FLOW_PROCESSING_SERVICE_COMPONENT);
-        AppMessage appMessage = new AppMessage(REQUEST_MESSAGE, request.toJson(), getInternalData());
+        final Span span = startRequestSpan(REQUEST_MESSAGE + ":" + request.getRequestType(), request.getId());
+        AppMessage appMessage = new AppMessage(REQUEST_MESSAGE, request.toJson(), getInternalData(span));
         appMessage.setResponseMechanism(MESSENGER_CONNECTION);
         return requestMessenger
                 .sendMessage(appMessage.toJson())
@@ -158,6 +189,7 @@ public abstract class BaseApiClient {
                     return response;
                 })
                 .doFinally(requestMessenger::closeConnection)
+                .doFinally(span::end)
                 .onErrorResumeNext(throwable -> Single.error(createFlowException(throwable)));
     }
 
@@ -192,6 +224,34 @@ public abstract class BaseApiClient {
                 });
     }
 
+    /**
+     * Get the shared stream of system events for this client.
+     *
+     * Unlike {@link #subscribeToSystemEvents()}, all subscribers to the shared stream share a single connection to the processing service.
+     *
+     * @return The shared system event stream
+     */
+    @NonNull
+    public synchronized SystemEventStream getSystemEventStream() {
+        if (systemEventStream == null) {
+            systemEventStream = new SystemEventStream(Observable.defer(this::subscribeToSystemEvents), SystemEventStream.DEFAULT_REPLAY_SIZE);
+        }
+        return systemEventStream;
+    }
+
+    /**
+     * Get the device registry for this client, which keeps a local copy of the connected devices up to date via the system event stream.
+     *
+     * @return The device registry
+     */
+    @NonNull
+    public synchronized DeviceRegistry getDeviceRegistry() {
+        if (deviceRegistry == null) {
+            deviceRegistry = new DeviceRegistry(Single.defer(this::getDevices), getSystemEventStream());
+        }
+        return deviceRegistry;
+    }
+
     protected ChannelClient getMessengerClient(ComponentName componentName) {
         switch (commsChannel) {
             case CHANNEL_WEBSOCKET:
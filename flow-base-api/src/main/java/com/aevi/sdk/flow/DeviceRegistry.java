@@ -0,0 +1,202 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.aevi.sdk.flow.model.Device;
+import com.aevi.sdk.flow.util.FlowLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+
+import static com.aevi.sdk.flow.constants.SystemEventTypes.*;
+
+/**
+ * Keeps a local copy of the devices connected to the processing service, which is kept up to date via system events.
+ *
+ * The device list is loaded from the processing service when first needed, after which reads do not require any communication with the processing
+ * service. Whilst any reads or subscriptions have been made, the registry listens to the system events the processing service sends when devices or
+ * accessories are connected or disconnected, and loads the list again once a burst of such events has settled for {@link #RELOAD_DEBOUNCE_MS}. Other
+ * system events are ignored. Call {@link #stop()} to stop listening, and {@link #refresh()} to force the list to be loaded again.
+ */
+public class DeviceRegistry {
+
+    private static final String TAG = DeviceRegistry.class.getSimpleName();
+
+    /**
+     * The time to wait after a device or accessory change event for further events, before loading the devices again.
+     */
+    public static final long RELOAD_DEBOUNCE_MS = 250;
+
+    private final Single<List<Device>> deviceLoader;
+    private final SystemEventStream systemEventStream;
+    private final Scheduler debounceScheduler;
+    private final BehaviorSubject<List<Device>> devicesSubject = BehaviorSubject.create();
+
+    private Map<String, Device> devicesById = Collections.emptyMap();
+    private Single<List<Device>> loading;
+    private Disposable eventDisposable;
+
+    /**
+     * Create a device registry.
+     *
+     * This is an internal constructor not intended to be used directly by external applications - use the relevant API client to obtain an instance.
+     *
+     * @param deviceLoader      Loads the current list of devices from the processing service
+     * @param systemEventStream The system events to listen to for device changes
+     */
+    public DeviceRegistry(@NonNull Single<List<Device>> deviceLoader, @NonNull SystemEventStream systemEventStream) {
+        this(deviceLoader, systemEventStream, Schedulers.computation());
+    }
+
+    DeviceRegistry(Single<List<Device>> deviceLoader, SystemEventStream systemEventStream, Scheduler debounceScheduler) {
+        this.deviceLoader = deviceLoader;
+        this.systemEventStream = systemEventStream;
+        this.debounceScheduler = debounceScheduler;
+    }
+
+    /**
+     * Get the connected devices.
+     *
+     * If the devices have been loaded previously, the single emits the local copy immediately.
+     *
+     * @return Single emitting the list of connected devices
+     */
+    @NonNull
+    public Single<List<Device>> getDevices() {
+        List<Device> devices = devicesSubject.getValue();
+        if (devices != null) {
+            return Single.just(devices);
+        }
+        return load();
+    }
+
+    /**
+     * Get a connected device by id, from the local copy.
+     *
+     * @param deviceId The device id
+     * @return The device, or null if not connected or the devices have not been loaded yet
+     */
+    @Nullable
+    public synchronized Device getDevice(@NonNull String deviceId) {
+        return devicesById.get(deviceId);
+    }
+
+    /**
+     * Observe the connected devices.
+     *
+     * The current list is emitted on subscription (loading it first if required), and a new list is emitted whenever it has been loaded again.
+     *
+     * @return Stream of the connected devices
+     */
+    @NonNull
+    public Observable<List<Device>> observeDevices() {
+        if (devicesSubject.getValue() == null) {
+            load().subscribe(devices -> {
+            }, throwable -> FlowLog.e(TAG, "Failed to load devices", throwable));
+        }
+        return devicesSubject;
+    }
+
+    /**
+     * Load the devices from the processing service again, replacing the local copy.
+     *
+     * @return Single emitting the list of connected devices
+     */
+    @NonNull
+    public Single<List<Device>> refresh() {
+        synchronized (this) {
+            loading = null;
+        }
+        return load();
+    }
+
+    /**
+     * Stop listening for device changes. The local copy is retained, but will no longer be updated unless refreshed.
+     */
+    public synchronized void stop() {
+        if (eventDisposable != null) {
+            eventDisposable.dispose();
+            eventDisposable = null;
+        }
+    }
+
+    private synchronized Single<List<Device>> load() {
+        listenForDeviceChanges();
+        if (loading == null) {
+            loading = deviceLoader
+                    .doOnSuccess(this::setDevices)
+                    .doOnError(throwable -> clearLoading())
+                    .cache();
+        }
+        return loading;
+    }
+
+    private synchronized void clearLoading() {
+        loading = null;
+    }
+
+    private void listenForDeviceChanges() {
+        if (eventDisposable == null) {
+            // events replayed on subscription happened before the load, so must not trigger another one
+            AtomicBoolean subscribed = new AtomicBoolean();
+            eventDisposable = systemEventStream.observe(DEVICE_CONNECTED, DEVICE_DISCONNECTED, ACCESSORY_CONNECTED, ACCESSORY_DISCONNECTED)
+                    .filter(flowEvent -> subscribed.get())
+                    .debounce(RELOAD_DEBOUNCE_MS, TimeUnit.MILLISECONDS, debounceScheduler)
+                    .subscribe(flowEvent -> reload(), throwable -> {
+                        FlowLog.e(TAG, "Failed to listen for device changes", throwable);
+                        stop();
+                    });
+            subscribed.set(true);
+        }
+    }
+
+    private void reload() {
+        refresh().subscribe(devices -> {
+        }, throwable -> FlowLog.e(TAG, "Failed to reload devices", throwable));
+    }
+
+    private void setDevices(List<Device> loaded) {
+        List<Device> devices;
+        synchronized (this) {
+            Map<String, Device> updated = new LinkedHashMap<>();
+            for (Device device : loaded) {
+                updated.put(device.getId(), device);
+            }
+            devices = publish(updated);
+        }
+        devicesSubject.onNext(devices);
+    }
+
+    private List<Device> publish(Map<String, Device> updated) {
+        devicesById = updated;
+        return Collections.unmodifiableList(new ArrayList<>(updated.values()));
+    }
+}
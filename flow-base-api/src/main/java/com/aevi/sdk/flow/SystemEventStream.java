@@ -0,0 +1,97 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow;
+
+import androidx.annotation.NonNull;
+
+import com.aevi.sdk.flow.model.FlowEvent;
+import com.aevi.sdk.flow.util.FlowLog;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+
+/**
+ * A shared stream of system events, that multiple subscribers can observe via a single connection to the processing service.
+ *
+ * The connection is opened when the first subscriber subscribes, and closed when the last subscriber unsubscribes. Each event is only decoded once,
+ * regardless of the number of subscribers. Subscribers that subscribe whilst the connection is open will first receive the most recent events, up to
+ * the replay size of the stream.
+ */
+public class SystemEventStream {
+
+    public static final int DEFAULT_REPLAY_SIZE = 8;
+
+    private static final String TAG = SystemEventStream.class.getSimpleName();
+
+    private final Observable<FlowEvent> sharedEvents;
+
+    /**
+     * Create a shared stream from a source of system events.
+     *
+     * This is an internal constructor not intended to be used directly by external applications - use the relevant API client to obtain an instance.
+     *
+     * @param systemEvents The source of system events, which is subscribed to at most once at any time
+     * @param replaySize   The number of recent events to replay to new subscribers
+     */
+    public SystemEventStream(@NonNull Observable<FlowEvent> systemEvents, int replaySize) {
+        this.sharedEvents = systemEvents.replay(replaySize).refCount();
+    }
+
+    /**
+     * Observe system events, optionally filtered by type.
+     *
+     * Note that events are delivered on the thread they are received on, and a slow subscriber delays delivery to other subscribers. Use
+     * {@link #observe(Scheduler, int, String...)} for subscribers that may not keep up.
+     *
+     * @param eventTypes The event types to observe, or none to observe all events
+     * @return A stream of system events
+     */
+    @NonNull
+    public Observable<FlowEvent> observe(@NonNull String... eventTypes) {
+        if (eventTypes.length == 0) {
+            return sharedEvents;
+        }
+        final Set<String> types = new HashSet<>(Arrays.asList(eventTypes));
+        return sharedEvents.filter(flowEvent -> types.contains(flowEvent.getType()));
+    }
+
+    /**
+     * Observe system events on the given scheduler, optionally filtered by type.
+     *
+     * Up to the given number of events are buffered for the subscriber. If the subscriber falls further behind, the oldest buffered events are
+     * dropped, so that a slow subscriber never holds up the connection or other subscribers.
+     *
+     * @param scheduler  The scheduler to deliver events on
+     * @param bufferSize The maximum number of events to buffer for this subscriber
+     * @param eventTypes The event types to observe, or none to observe all events
+     * @return A stream of system events
+     */
+    @NonNull
+    public Flowable<FlowEvent> observe(@NonNull Scheduler scheduler, int bufferSize, @NonNull String... eventTypes) {
+        return observe(eventTypes)
+                .toFlowable(BackpressureStrategy.MISSING)
+                .onBackpressureBuffer(bufferSize, () -> FlowLog.w(TAG, "Subscriber not keeping up - dropping oldest system event"),
+                                      BackpressureOverflowStrategy.DROP_OLDEST)
+                .observeOn(scheduler, false, 1);
+    }
+}
@@ -32,7 +32,9 @@ public interface AppMessageTypes {
     String FAILURE_MESSAGE = "failure";
     String REQUEST_ACK_MESSAGE = "requestAck";
     String FLOW_EVENT = "flowEvent";
+    String FLOW_EVENT_BATCH = "flowEventBatch";
 
     // Sent by FPS
     String FLOW_SERVICE_EVENT = "flowServiceEvent";
+    String FLOW_SERVICE_EVENT_BATCH = "flowServiceEventBatch";
 }
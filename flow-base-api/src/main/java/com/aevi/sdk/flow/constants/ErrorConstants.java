@@ -24,6 +24,11 @@ public interface ErrorConstants {
      */
     String FLOW_SERVICE_ERROR = "flowServiceError";
 
+    /**
+     * Sent if a flow service rejects a request because its message queue is full
+     */
+    String FLOW_SERVICE_BUSY = "flowServiceBusy";
+
     /**
      * Sent if the processing service if not installed
      */
@@ -21,4 +21,11 @@ public interface InternalDataKeys {
 
     String FLOW_STAGE = "flowStage";
     String FLOW_INITIATOR = "flowInitiator";
+    String TRACE_PARENT = "traceParent";
+    String EVENT_BATCHING = "eventBatching";
+    String AUDIT_ENTRY_BATCHING = "auditEntryBatching";
+    String FLOW_RESPONSE_DELTA = "flowResponseDelta";
+    String PAYLOAD_COMPRESSION = "payloadCompression";
+    String PAYLOAD_SIDE_CHANNEL = "payloadSideChannel";
+    String FLOW_DEADLINE = "flowDeadline";
 }
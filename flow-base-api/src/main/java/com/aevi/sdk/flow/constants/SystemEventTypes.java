@@ -0,0 +1,41 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.constants;
+
+/**
+ * Event types that may be sent as system events from the processing service.
+ */
+public interface SystemEventTypes {
+
+    /**
+     * Sent when a device has been connected to the processing service, such as when multi-device support is enabled and another device joins.
+     */
+    String DEVICE_CONNECTED = "deviceConnected";
+
+    /**
+     * Sent when a previously connected device has been disconnected from the processing service.
+     */
+    String DEVICE_DISCONNECTED = "deviceDisconnected";
+
+    /**
+     * Sent when an accessory, such as a card reader or printer, has been connected to a device.
+     */
+    String ACCESSORY_CONNECTED = "accessoryConnected";
+
+    /**
+     * Sent when a previously connected accessory has been disconnected from a device.
+     */
+    String ACCESSORY_DISCONNECTED = "accessoryDisconnected";
+}
@@ -15,11 +15,13 @@
 package com.aevi.sdk.flow.model;
 
 
-import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.aevi.sdk.flow.util.CompactMap;
+import com.aevi.sdk.flow.util.Fingerprints;
+import com.aevi.sdk.flow.util.FlowLog;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.JsonOption;
 import com.aevi.util.json.Jsonable;
@@ -28,7 +30,6 @@ import java.lang.reflect.Array;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A container of generic/bespoke data that can be of any type, identified by a string key.
@@ -38,13 +39,16 @@ import java.util.concurrent.ConcurrentHashMap;
 @SuppressWarnings({"unchecked", "ConstantConditions", "WeakerAccess"})
 public class AdditionalData implements Jsonable {
 
-    private final Map<String, JsonOption> data;
+    private final CompactMap<String, JsonOption> data;
+
+    // Only cached if all values are immutable, and valid as long as the data has not been modified since
+    private transient CachedFingerprint cachedFingerprint;
 
     /**
      * Create a new instance with an empty collection of data.
      */
     public AdditionalData() {
-        data = new ConcurrentHashMap<>();
+        data = new CompactMap<>();
     }
 
     /**
@@ -53,7 +57,7 @@ public class AdditionalData implements Jsonable {
      * @param data The data to use as a base
      */
     public AdditionalData(Map<String, JsonOption> data) {
-        this.data = new ConcurrentHashMap<>(data);
+        this.data = new CompactMap<>(data);
     }
 
     /**
@@ -62,7 +66,7 @@ public class AdditionalData implements Jsonable {
      * @param copyFrom The data to copy from
      */
     public AdditionalData(AdditionalData copyFrom) {
-        this.data = new ConcurrentHashMap<>(copyFrom.data);
+        this.data = new CompactMap<>(copyFrom.data);
     }
 
     /**
@@ -312,7 +316,7 @@ public class AdditionalData implements Jsonable {
 
             // Fallback - log as a warning
             else {
-                Log.w(AdditionalData.class.getSimpleName(), "Failed to convert " + option.getType() + " to " + desiredType.getName());
+                FlowLog.w(AdditionalData.class.getSimpleName(), "Failed to convert %s to %s", option.getType(), desiredType.getName());
             }
         }
 
@@ -400,14 +404,62 @@ public class AdditionalData implements Jsonable {
         }
 
         AdditionalData additionalData1 = (AdditionalData) o;
+        // fingerprints are only compared if both are cached, as computing them costs more than comparing the data
+        CachedFingerprint cached = getValidCachedFingerprint();
+        CachedFingerprint otherCached = additionalData1.getValidCachedFingerprint();
+        if (cached != null && otherCached != null && cached.fingerprint != otherCached.fingerprint) {
+            return false;
+        }
 
         return data != null ? data.equals(additionalData1.data) : additionalData1.data == null;
 
     }
 
+    /**
+     * Get a 64-bit structural fingerprint of this data.
+     *
+     * Equal data always has the same fingerprint, so this can be used to cheaply rule out equality, or as a key for de-duplication and caching.
+     *
+     * The fingerprint is cached until the data is modified, as long as all values are of immutable types (such as strings, numbers or enums).
+     *
+     * @return The fingerprint
+     */
+    public long getFingerprint() {
+        if (data == null) {
+            return Fingerprints.ofMap(null);
+        }
+        int modCount = data.getModCount();
+        CachedFingerprint cached = cachedFingerprint;
+        if (cached != null && cached.modCount == modCount) {
+            return cached.fingerprint;
+        }
+        long fingerprint = Fingerprints.ofMap(data);
+        if (hasOnlyImmutableValues()) {
+            cachedFingerprint = new CachedFingerprint(fingerprint, modCount);
+        }
+        return fingerprint;
+    }
+
+    private CachedFingerprint getValidCachedFingerprint() {
+        CachedFingerprint cached = cachedFingerprint;
+        return cached != null && data != null && cached.modCount == data.getModCount() ? cached : null;
+    }
+
+    private boolean hasOnlyImmutableValues() {
+        for (JsonOption option : data.values()) {
+            Object value = option.getValue();
+            if (!(value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character ||
+                    value instanceof Enum)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public int hashCode() {
-        return data != null ? data.hashCode() : 0;
+        long fingerprint = getFingerprint();
+        return (int) (fingerprint ^ (fingerprint >>> 32));
     }
 
     @Override
@@ -435,4 +487,14 @@ public class AdditionalData implements Jsonable {
     public static AdditionalData fromJson(String json) {
         return JsonConverter.deserialize(json, AdditionalData.class);
     }
+
+    private static final class CachedFingerprint {
+        private final long fingerprint;
+        private final int modCount;
+
+        private CachedFingerprint(long fingerprint, int modCount) {
+            this.fingerprint = fingerprint;
+            this.modCount = modCount;
+        }
+    }
 }
@@ -17,9 +17,14 @@ package com.aevi.sdk.flow.model;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import com.aevi.sdk.flow.util.PayloadCompression;
+import com.aevi.sdk.flow.util.PayloadSideChannel;
+import com.aevi.sdk.flow.util.PayloadSideChannels;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.Jsonable;
 
+import java.util.List;
+
 import static com.aevi.sdk.flow.constants.ResponseMechanisms.MESSENGER_CONNECTION;
 
 /**
@@ -30,9 +35,13 @@ public class AppMessage implements Jsonable {
     public static final String EMPTY_DATA = "{}";
 
     private final String messageType; // See AppMessageTypes
-    private final String messageData; // The message data in JSON
+    private String messageData; // The message data in JSON, or compressed as per messageDataEncoding
+    private String messageDataEncoding; // See PayloadCompression, or null if not compressed
+    private String messageDataHandle; // Handle of the message data in the side channel, or null if sent inline
     private String responseMechanism; // See ResponseMechanisms
     private String internalData; // Data that may be useful for internal use, such as API version, etc
+    private List<AuditEntry> auditEntries; // Audit entries batched with this message
+    private transient volatile String decodedMessageData;
 
     public AppMessage(String messageType, String messageData, InternalData internalData) {
         this.messageType = messageType != null ? messageType : "N/A";
@@ -72,13 +81,111 @@ public class AppMessage implements Jsonable {
     }
 
     /**
-     * Get the message data/
+     * Get the message data.
+     *
+     * If the message data was compressed or sent via a {@link PayloadSideChannel} by the sender, it is decoded on first access.
      *
      * @return The message data
      */
     @NonNull
     public String getMessageData() {
-        return messageData;
+        // the encoding and handle may be changed concurrently, so they are only read whilst holding the lock
+        String decoded = decodedMessageData;
+        if (decoded == null) {
+            decoded = decodeMessageData();
+        }
+        return decoded;
+    }
+
+    private synchronized String decodeMessageData() {
+        if (decodedMessageData != null) {
+            return decodedMessageData;
+        }
+        String data = messageData;
+        if (messageDataHandle != null) {
+            PayloadSideChannel sideChannel = PayloadSideChannels.getSideChannel();
+            if (sideChannel == null) {
+                throw new IllegalStateException("No side channel set to read message data from");
+            }
+            data = sideChannel.read(messageDataHandle);
+        }
+        if (messageDataEncoding != null) {
+            if (!PayloadCompression.DEFLATE.equals(messageDataEncoding)) {
+                throw new IllegalStateException("Unsupported message data encoding: " + messageDataEncoding);
+            }
+            data = PayloadCompression.decompress(data);
+        }
+        decodedMessageData = data;
+        return data;
+    }
+
+    /**
+     * Get the encoding of the message data as sent.
+     *
+     * @return The encoding, such as {@link PayloadCompression#DEFLATE}, or null if the message data is not compressed
+     */
+    @Nullable
+    public String getMessageDataEncoding() {
+        return messageDataEncoding;
+    }
+
+    /**
+     * Compress the message data if it is at least the given length, and compression reduces its size.
+     *
+     * This must only be called if the receiver of the message supports compression, as indicated by
+     * {@link com.aevi.sdk.flow.constants.InternalDataKeys#PAYLOAD_COMPRESSION}.
+     *
+     * @param threshold The minimum length of message data to compress
+     * @return True if the message data was compressed, false otherwise
+     */
+    public synchronized boolean compressMessageData(int threshold) {
+        if (messageDataEncoding != null || messageDataHandle != null || messageData.length() < threshold) {
+            return false;
+        }
+        String compressed = PayloadCompression.compress(messageData);
+        if (compressed.length() >= messageData.length()) {
+            return false;
+        }
+        decodedMessageData = messageData;
+        messageData = compressed;
+        messageDataEncoding = PayloadCompression.DEFLATE;
+        return true;
+    }
+
+    /**
+     * Get the handle of the message data in the side channel.
+     *
+     * @return The handle, or null if the message data is sent inline
+     */
+    @Nullable
+    public String getMessageDataHandle() {
+        return messageDataHandle;
+    }
+
+    /**
+     * Write the message data to the given side channel if it is at least the given length, so that only the handle is sent in this message.
+     *
+     * This must only be called if the receiver of the message supports the side channel, as indicated by
+     * {@link com.aevi.sdk.flow.constants.InternalDataKeys#PAYLOAD_SIDE_CHANNEL}. The data is sent inline if the side channel fails to write it.
+     *
+     * @param sideChannel The side channel to write to
+     * @param threshold   The minimum length of message data to send via the side channel
+     * @return True if the message data was written to the side channel, false if it is sent inline
+     */
+    public synchronized boolean writeMessageDataTo(@NonNull PayloadSideChannel sideChannel, int threshold) {
+        if (messageDataHandle != null || messageData.length() < threshold) {
+            return false;
+        }
+        String handle = sideChannel.write(messageData);
+        if (handle == null) {
+            return false;
+        }
+        if (decodedMessageData == null) {
+            decodedMessageData = messageData;
+        }
+        messageData = EMPTY_DATA;
+        messageDataHandle = handle;
+        return true;
     }
 
     private void setInternalData(InternalData internalData) {
@@ -104,6 +211,27 @@ public class AppMessage implements Jsonable {
         return internalData != null ? InternalData.fromJson(internalData) : null;
     }
 
+    /**
+     * Attach audit entries to this message, so they are delivered along with it rather than as separate messages.
+     *
+     * This must only be used if the receiver has indicated support via {@link com.aevi.sdk.flow.constants.InternalDataKeys#AUDIT_ENTRY_BATCHING}.
+     *
+     * @param auditEntries The audit entries
+     */
+    public void setAuditEntries(@Nullable List<AuditEntry> auditEntries) {
+        this.auditEntries = auditEntries;
+    }
+
+    /**
+     * Get the audit entries attached to this message.
+     *
+     * @return The audit entries, or null if none were attached
+     */
+    @Nullable
+    public List<AuditEntry> getAuditEntries() {
+        return auditEntries;
+    }
+
     @Override
     public String toJson() {
         return JsonConverter.serialize(this);
@@ -0,0 +1,77 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.model;
+
+import androidx.annotation.NonNull;
+
+import com.aevi.util.json.JsonConverter;
+import com.aevi.util.json.Jsonable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents multiple flow events that are delivered in a single message, and acknowledged with a single ack.
+ */
+public class FlowEventBatch implements Jsonable {
+
+    private final List<FlowEvent> events;
+
+    // Default constructor for deserialisation
+    FlowEventBatch() {
+        this.events = new ArrayList<>();
+    }
+
+    public FlowEventBatch(List<FlowEvent> events) {
+        this.events = events;
+    }
+
+    /**
+     * Get the events in this batch, in the order they were raised.
+     *
+     * @return The events
+     */
+    @NonNull
+    public List<FlowEvent> getEvents() {
+        return events != null ? events : Collections.<FlowEvent>emptyList();
+    }
+
+    /**
+     * Get the number of events in this batch.
+     *
+     * @return The number of events
+     */
+    public int size() {
+        return getEvents().size();
+    }
+
+    @Override
+    public String toString() {
+        return "FlowEventBatch{" +
+                "events=" + events +
+                '}';
+    }
+
+    @Override
+    public String toJson() {
+        return JsonConverter.serialize(this);
+    }
+
+    public static FlowEventBatch fromJson(String json) {
+        return JsonConverter.deserialize(json, FlowEventBatch.class);
+    }
+}
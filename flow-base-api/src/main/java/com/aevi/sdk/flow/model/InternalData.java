@@ -17,11 +17,11 @@ package com.aevi.sdk.flow.model;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import com.aevi.sdk.flow.util.CompactMap;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.Jsonable;
 
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Wrapper for any internal data (as in data not passed to external apps) that may need to be passed.
@@ -30,12 +30,24 @@ public class InternalData implements Jsonable {
 
     private final String senderApiVersion;
     private String senderPackageName;
-    private final Map<String, String> additionalData = new ConcurrentHashMap<>();
+    private final CompactMap<String, String> additionalData = new CompactMap<>();
+    private transient volatile int modCount;
 
     public InternalData(String senderApiVersion) {
         this.senderApiVersion = senderApiVersion;
     }
 
+    /**
+     * Create a copy of the provided internal data.
+     *
+     * @param copyFrom The internal data to copy from
+     */
+    public InternalData(InternalData copyFrom) {
+        this.senderApiVersion = copyFrom.senderApiVersion;
+        this.senderPackageName = copyFrom.senderPackageName;
+        this.additionalData.putAll(copyFrom.additionalData);
+    }
+
     @NonNull
     public String getSenderApiVersion() {
         return senderApiVersion;
@@ -47,6 +59,7 @@ public class InternalData implements Jsonable {
 
     public void setSenderPackageName(String senderPackageName) {
         this.senderPackageName = senderPackageName;
+        modCount++;
     }
 
     public void addAdditionalData(String key, String value) {
@@ -64,6 +77,17 @@ public class InternalData implements Jsonable {
         return value != null ? value : fallback;
     }
 
+    /**
+     * Get the number of modifications made to this internal data.
+     *
+     * This can be used to detect whether the internal data has changed since it was last serialised.
+     *
+     * @return The modification count
+     */
+    public int getModCount() {
+        return modCount + additionalData.getModCount();
+    }
+
     @Override
     public String toJson() {
         return JsonConverter.serialize(this);
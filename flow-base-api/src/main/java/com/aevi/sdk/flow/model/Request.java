@@ -18,10 +18,10 @@ package com.aevi.sdk.flow.model;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.aevi.sdk.flow.util.IdGenerators;
 import com.aevi.util.json.JsonConverter;
 
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Generic request that at minimum contains a request type and optionally flow name and bespoke request data.
@@ -72,7 +72,7 @@ public class Request extends BaseModel {
      * @param requestData The data for the request
      */
     public Request(String requestType, AdditionalData requestData) {
-        this(UUID.randomUUID().toString(), requestType, requestData);
+        this(IdGenerators.generateId(), requestType, requestData);
     }
 
     private Request(String id, String requestType, AdditionalData requestData) {
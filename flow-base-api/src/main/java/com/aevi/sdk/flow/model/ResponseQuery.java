@@ -14,10 +14,15 @@
 
 package com.aevi.sdk.flow.model;
 
+import androidx.annotation.NonNull;
+
 import com.aevi.sdk.flow.BaseApiClient;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.Jsonable;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  * An internal object used to serialise the query data for
  * Response requests via {@link BaseApiClient#queryResponses(ResponseQuery)}
@@ -34,6 +39,7 @@ public final class ResponseQuery implements Jsonable {
     private final int maxResults;
 
     private String responseType;
+    private transient Set<String> excludedFields = Collections.emptySet();
 
     /*
      * @param requestId The requestId to limit this query to
@@ -139,4 +145,20 @@ public final class ResponseQuery implements Jsonable {
         return responseType;
     }
 
+    void setExcludedFields(Set<String> excludedFields) {
+        this.excludedFields = excludedFields;
+    }
+
+    /**
+     * Get the response fields that should be skipped when decoding the results of this query.
+     *
+     * This is applied locally when the results are received and is not sent as part of the query.
+     *
+     * @return The excluded fields, which may be empty
+     */
+    @NonNull
+    public Set<String> getExcludedFields() {
+        return excludedFields != null ? excludedFields : Collections.<String>emptySet();
+    }
+
 }
@@ -14,6 +14,11 @@
 
 package com.aevi.sdk.flow.model;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Builder used to create {@link ResponseQuery} objects
  */
@@ -25,6 +30,7 @@ public class ResponseQueryBuilder {
     private String requestId;
     private String flowType;
     private int maxResults = 100;
+    private final Set<String> excludedFields = new HashSet<>();
 
     /**
      * Setup a new query builder
@@ -95,6 +101,19 @@ public class ResponseQueryBuilder {
         return this;
     }
 
+    /**
+     * Optionally skip fields of the responses that are not needed by the caller, to reduce the time and memory spent decoding large result sets.
+     *
+     * Nested fields are separated by a dot, such as {@code "request.basket"}. Skipped fields will have their default value in the returned responses.
+     *
+     * @param fieldNames The names of the fields to skip
+     * @return this builder
+     */
+    public ResponseQueryBuilder withExcludedFields(String... fieldNames) {
+        excludedFields.addAll(Arrays.asList(fieldNames));
+        return this;
+    }
+
     public ResponseQuery build() {
 
         if (endDate > 0 && startDate <= 0) {
@@ -109,6 +128,10 @@ public class ResponseQueryBuilder {
             throw new IllegalArgumentException("Invalid parameters, start date must be earlier (lower) than end date");
         }
 
-        return new ResponseQuery(requestId, flowName, flowType, startDate, endDate, maxResults);
+        ResponseQuery responseQuery = new ResponseQuery(requestId, flowName, flowType, startDate, endDate, maxResults);
+        if (!excludedFields.isEmpty()) {
+            responseQuery.setExcludedFields(Collections.unmodifiableSet(new HashSet<>(excludedFields)));
+        }
+        return responseQuery;
     }
 }
\ No newline at end of file
@@ -16,11 +16,11 @@ package com.aevi.sdk.flow.model.config;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import com.aevi.sdk.flow.util.Formatters;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.Jsonable;
 
 import java.text.SimpleDateFormat;
-import java.util.Locale;
 import java.util.Objects;
 
 import static com.aevi.android.rxmessenger.MessageConstants.CHANNEL_MESSENGER;
@@ -45,6 +45,8 @@ public class AppFlowSettings implements Jsonable {
     private String primaryLanguage = PRIMARY_LANGUAGE_DEFAULT;
     private String commsChannel = COMMS_CHANNEL_DEFAULT;
 
+    private transient String dateTimeFormat;
+
     /**
      * Get the date format to use for formatting dates, as defined by the acquirer/merchant.
      *
@@ -71,6 +73,7 @@ public class AppFlowSettings implements Jsonable {
     public void setDateFormat(String dateFormat) {
         if (dateFormat != null) {
             this.dateFormat = dateFormat;
+            this.dateTimeFormat = null;
         }
     }
 
@@ -100,6 +103,7 @@ public class AppFlowSettings implements Jsonable {
     public void setTimeFormat(String timeFormat) {
         if (timeFormat != null) {
             this.timeFormat = timeFormat;
+            this.dateTimeFormat = null;
         }
     }
 
@@ -195,10 +199,17 @@ public class AppFlowSettings implements Jsonable {
      *
      * The formatter uses a pattern of {@link #getDateFormat()} + " " + {@link #getTimeFormat()}.
      *
+     * A new formatter is returned for each call, as per {@link Formatters#getDateFormat(String)}.
+     *
      * @return Date and time formatter
      */
     public SimpleDateFormat getDateTimeFormat() {
-        return new SimpleDateFormat(String.format("%s %s", dateFormat, timeFormat), Locale.getDefault());
+        String pattern = dateTimeFormat;
+        if (pattern == null) {
+            pattern = dateFormat + " " + timeFormat;
+            dateTimeFormat = pattern;
+        }
+        return Formatters.getDateFormat(pattern);
     }
 
     @Override
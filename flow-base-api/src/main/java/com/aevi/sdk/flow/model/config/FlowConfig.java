@@ -47,6 +47,7 @@ public class FlowConfig implements Jsonable, JsonPostProcessing {
 
     private transient List<FlowStage> allStagesFlattened;
     private transient Map<String, FlowStage> allStagesMap;
+    private transient volatile FlowExecutionPlan executionPlan;
 
     FlowConfig() {
         this("N/A", "N/A", 0, 0, null, null, null, false, false);
@@ -221,6 +222,28 @@ public class FlowConfig implements Jsonable, JsonPostProcessing {
         this.generatedFromCustomType = generatedFromCustomType;
     }
 
+    /**
+     * Get the compiled execution plan of this flow, which allows resolving the stages and apps of the flow without walking the stage hierarchy.
+     *
+     * The plan is compiled on first use and kept until the apps of this flow are changed via {@link #setApps(String, List)}.
+     *
+     * @return The execution plan
+     */
+    @NonNull
+    public FlowExecutionPlan getExecutionPlan() {
+        FlowExecutionPlan plan = executionPlan;
+        if (plan == null) {
+            synchronized (this) {
+                plan = executionPlan;
+                if (plan == null) {
+                    plan = FlowExecutionPlan.compile(this);
+                    executionPlan = plan;
+                }
+            }
+        }
+        return plan;
+    }
+
     public synchronized Set<String> getAllStageNames() {
         return allStagesMap.keySet();
     }
@@ -317,7 +340,7 @@ public class FlowConfig implements Jsonable, JsonPostProcessing {
         return null;
     }
 
-    public void setApps(String stage, List<FlowApp> flowApps) {
+    public synchronized void setApps(String stage, List<FlowApp> flowApps) {
         stage = normaliseStageName(stage);
         FlowStage flowStage = getStage(stage);
         if (flowStage == null) {
@@ -330,6 +353,8 @@ public class FlowConfig implements Jsonable, JsonPostProcessing {
         } else {
             flowStage.setFlowApps(flowApps);
         }
+        // compiled under the same lock, so a plan compiled before the change can not be kept
+        executionPlan = null;
     }
 
     @Override
@@ -0,0 +1,297 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.model.config;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, pre-compiled view of the stages and apps of a {@link FlowConfig}, for resolving what runs in a flow without walking the stage
+ * hierarchy.
+ *
+ * The stages of the flow and all its inner flows are laid out in execution order, where the stages of an inner flow directly follow the stage
+ * that contains it. For each stage the plan holds its apps, split into mandatory and conditional apps (see {@link FlowAppConditions}), as well
+ * as the range of stages belonging to its inner flow, if any.
+ *
+ * Plans are obtained via {@link FlowConfig#getExecutionPlan()}, which compiles the plan once and keeps it with that flow config until its apps
+ * are changed via {@link FlowConfig#setApps(String, List)}. Plans are not shared between flow config instances, as a config can be modified
+ * locally without its version changing.
+ */
+public final class FlowExecutionPlan {
+
+    private final String flowName;
+    private final int version;
+    private final String[] stageNames;
+    private final AppExecutionType[] appExecutionTypes;
+    private final List<FlowApp>[] apps;
+    private final List<FlowApp>[] mandatoryApps;
+    private final List<FlowApp>[] conditionalApps;
+    private final String[] innerFlowNames;
+    private final int[] innerFlowEnds;
+    private final int[] depths;
+    private final Map<String, Integer> stageIndexes;
+    private final List<String> runnableAppIds;
+
+    @SuppressWarnings("unchecked")
+    private FlowExecutionPlan(FlowConfig flowConfig) {
+        flowName = flowConfig.getName();
+        version = flowConfig.getVersion();
+        List<FlowStage> stages = new ArrayList<>();
+        List<Integer> stageDepths = new ArrayList<>();
+        collectStages(flowConfig.getStages(false), 0, stages, stageDepths);
+
+        int count = stages.size();
+        stageNames = new String[count];
+        appExecutionTypes = new AppExecutionType[count];
+        apps = new List[count];
+        mandatoryApps = new List[count];
+        conditionalApps = new List[count];
+        innerFlowNames = new String[count];
+        innerFlowEnds = new int[count];
+        depths = new int[count];
+        stageIndexes = new HashMap<>();
+        Set<String> appIds = new LinkedHashSet<>();
+
+        for (int i = 0; i < count; i++) {
+            FlowStage stage = stages.get(i);
+            stageNames[i] = normaliseStageName(stage.getName());
+            appExecutionTypes[i] = stage.getAppExecutionType();
+            depths[i] = stageDepths.get(i);
+            stageIndexes.put(stageNames[i], i);
+
+            List<FlowApp> stageApps = stage.getFlowApps() != null ? stage.getFlowApps() : Collections.<FlowApp>emptyList();
+            List<FlowApp> mandatory = new ArrayList<>();
+            List<FlowApp> conditional = new ArrayList<>();
+            for (FlowApp flowApp : stageApps) {
+                if (flowApp.isMandatory()) {
+                    mandatory.add(flowApp);
+                }
+                if (flowApp.getConditionalOnValue() != null) {
+                    conditional.add(flowApp);
+                }
+                if (appExecutionTypes[i] != AppExecutionType.NONE) {
+                    appIds.add(flowApp.getId());
+                }
+            }
+            apps[i] = Collections.unmodifiableList(new ArrayList<>(stageApps));
+            mandatoryApps[i] = Collections.unmodifiableList(mandatory);
+            conditionalApps[i] = Collections.unmodifiableList(conditional);
+
+            innerFlowNames[i] = stage.hasInnerFlow() ? stage.getInnerFlow().getName() : null;
+            int end = i + 1;
+            while (end < count && depths[i] < stageDepths.get(end)) {
+                end++;
+            }
+            innerFlowEnds[i] = end;
+        }
+        runnableAppIds = Collections.unmodifiableList(new ArrayList<>(appIds));
+    }
+
+    private static void collectStages(List<FlowStage> toAdd, int depth, List<FlowStage> stages, List<Integer> stageDepths) {
+        if (toAdd != null) {
+            for (FlowStage stage : toAdd) {
+                stages.add(stage);
+                stageDepths.add(depth);
+                if (stage.hasInnerFlow()) {
+                    collectStages(stage.getInnerFlow().getStages(false), depth + 1, stages, stageDepths);
+                }
+            }
+        }
+    }
+
+    private static String normaliseStageName(String stage) {
+        return stage != null ? stage.toUpperCase() : null;
+    }
+
+    /**
+     * Compile a plan for a flow config, without using or updating the plan kept by the flow config.
+     *
+     * @param flowConfig The flow config
+     * @return The execution plan
+     */
+    @NonNull
+    public static FlowExecutionPlan compile(@NonNull FlowConfig flowConfig) {
+        return new FlowExecutionPlan(flowConfig);
+    }
+
+    /**
+     * @return The name of the flow this plan was compiled from
+     */
+    @NonNull
+    public String getFlowName() {
+        return flowName;
+    }
+
+    /**
+     * @return The version of the flow this plan was compiled from
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The number of stages, including the stages of inner flows
+     */
+    public int getStageCount() {
+        return stageNames.length;
+    }
+
+    /**
+     * Get the index of a stage in execution order.
+     *
+     * If a stage name is used more than once across the flow and its inner flows, the last occurrence is returned, as per
+     * {@link FlowConfig#getStage(String)}.
+     *
+     * @param stageName The stage name, which is not case sensitive
+     * @return The stage index, or -1 if the flow does not have the stage
+     */
+    public int getStageIndex(@Nullable String stageName) {
+        Integer index = stageIndexes.get(normaliseStageName(stageName));
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @param stageIndex The stage index
+     * @return The upper case name of the stage
+     */
+    @NonNull
+    public String getStageName(int stageIndex) {
+        return stageNames[stageIndex];
+    }
+
+    /**
+     * @param stageIndex The stage index
+     * @return The app execution type of the stage
+     */
+    public AppExecutionType getAppExecutionType(int stageIndex) {
+        return appExecutionTypes[stageIndex];
+    }
+
+    /**
+     * @param stageIndex The stage index
+     * @return All apps of the stage, in their configured order
+     */
+    @NonNull
+    public List<FlowApp> getApps(int stageIndex) {
+        return apps[stageIndex];
+    }
+
+    /**
+     * @param stageIndex The stage index
+     * @return The apps of the stage that are mandatory
+     */
+    @NonNull
+    public List<FlowApp> getMandatoryApps(int stageIndex) {
+        return mandatoryApps[stageIndex];
+    }
+
+    /**
+     * @param stageIndex The stage index
+     * @return The apps of the stage that are only called if a condition is met, as per {@link FlowApp#getConditionalOnValue()}
+     */
+    @NonNull
+    public List<FlowApp> getConditionalApps(int stageIndex) {
+        return conditionalApps[stageIndex];
+    }
+
+    /**
+     * Get the apps of a stage that are eligible to be called, given the conditions that are currently met.
+     *
+     * @param stageIndex    The stage index
+     * @param metConditions The conditions that are met, as per {@link FlowAppConditions}
+     * @return The eligible apps, in their configured order
+     */
+    @NonNull
+    public List<FlowApp> getEligibleApps(int stageIndex, @NonNull Collection<String> metConditions) {
+        if (conditionalApps[stageIndex].isEmpty()) {
+            return apps[stageIndex];
+        }
+        List<FlowApp> eligible = new ArrayList<>(apps[stageIndex].size());
+        for (FlowApp flowApp : apps[stageIndex]) {
+            String condition = flowApp.getConditionalOnValue();
+            if (condition == null || metConditions.contains(condition)) {
+                eligible.add(flowApp);
+            }
+        }
+        return eligible;
+    }
+
+    /**
+     * @param stageIndex The stage index
+     * @return True if the stage contains an inner flow, whose stages follow it
+     */
+    public boolean hasInnerFlow(int stageIndex) {
+        return innerFlowNames[stageIndex] != null;
+    }
+
+    /**
+     * @param stageIndex The stage index
+     * @return The name of the inner flow of the stage, or null if it has none
+     */
+    @Nullable
+    public String getInnerFlowName(int stageIndex) {
+        return innerFlowNames[stageIndex];
+    }
+
+    /**
+     * Get the end of the inner flow of a stage.
+     *
+     * The stages of the inner flow, including those of any nested inner flows, are those after the given stage up to, but not including, the
+     * returned index.
+     *
+     * @param stageIndex The stage index
+     * @return The index after the last stage of the inner flow, which is {@code stageIndex + 1} if the stage has no inner flow
+     */
+    public int getInnerFlowEnd(int stageIndex) {
+        return innerFlowEnds[stageIndex];
+    }
+
+    /**
+     * @param stageIndex The stage index
+     * @return The inner flow nesting depth of the stage, where stages of the flow itself are at depth 0
+     */
+    public int getDepth(int stageIndex) {
+        return depths[stageIndex];
+    }
+
+    /**
+     * Get the ids of all apps that may run in this flow, across all stages that call apps.
+     *
+     * @return The app ids in order of first use, without duplicates
+     */
+    @NonNull
+    public List<String> getRunnableAppIds() {
+        return runnableAppIds;
+    }
+
+    @Override
+    public String toString() {
+        return "FlowExecutionPlan{" +
+                "flowName='" + flowName + '\'' +
+                ", version=" + version +
+                ", stageNames=" + Arrays.toString(stageNames) +
+                '}';
+    }
+}
@@ -22,9 +22,20 @@ import com.aevi.android.rxmessenger.ChannelServer;
 import com.aevi.android.rxmessenger.service.AbstractChannelService;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.InternalData;
+import com.aevi.sdk.flow.tracing.Span;
+import com.aevi.sdk.flow.tracing.TraceContext;
+import com.aevi.sdk.flow.tracing.Tracer;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.flow.util.PayloadCompression;
+import com.aevi.sdk.flow.util.PayloadSideChannel;
+import com.aevi.sdk.flow.util.PayloadSideChannels;
 
 import static com.aevi.sdk.flow.constants.AppMessageTypes.REQUEST_MESSAGE;
 import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_ERROR;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.EVENT_BATCHING;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.FLOW_STAGE;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.PAYLOAD_COMPRESSION;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.PAYLOAD_SIDE_CHANNEL;
 
 /**
  * Internal base class for all API service implementations.
@@ -37,15 +48,31 @@ public abstract class BaseApiService extends AbstractChannelService {
     private final String TAG = getClass().getSimpleName(); // Use class name of implementing service
 
     protected final InternalData internalData;
+    private MessageDispatcher messageDispatcher = MessageDispatcher.direct();
+    private final ControlFrames controlFrames;
+    private int payloadCompressionThreshold = PayloadCompression.DEFAULT_THRESHOLD;
 
     protected BaseApiService(String apiVersion) {
         internalData = new InternalData(apiVersion);
+        // let the processing service know that we accept flow service events in batches
+        internalData.addAdditionalData(EVENT_BATCHING, "true");
+        // and that we can receive compressed message data
+        internalData.addAdditionalData(PAYLOAD_COMPRESSION, PayloadCompression.DEFLATE);
+        controlFrames = new ControlFrames(internalData);
     }
 
     @Override
     protected void attachBaseContext(Context base) {
         super.attachBaseContext(base);
         internalData.setSenderPackageName(getPackageName());
+        advertiseSideChannel(internalData);
+    }
+
+    static void advertiseSideChannel(InternalData internalData) {
+        PayloadSideChannel sideChannel = PayloadSideChannels.getAdvertisedSideChannel();
+        if (sideChannel != null) {
+            internalData.addAdditionalData(PAYLOAD_SIDE_CHANNEL, sideChannel.getName());
+        }
     }
 
     protected String getInternalData(@Nullable InternalData senderInternalData, String dataKey) {
@@ -66,16 +93,47 @@ public abstract class BaseApiService extends AbstractChannelService {
         setStopSelfOnEndOfStream(stopServiceOnEndOfStream);
     }
 
+    /**
+     * Set the dispatcher that defines on which threads messages from clients are decoded and passed to {@link #processRequest}.
+     *
+     * The default is {@link MessageDispatcher#direct()}, meaning messages are processed on the thread they are delivered on, which may be the main
+     * thread. Use {@link MessageDispatcher#worker(int, int, MessageDispatcher.CallbackThread)} to move this work off the delivering thread.
+     *
+     * This should be called from the constructor or {@code onCreate()} of the service, before any clients connect.
+     *
+     * @param messageDispatcher The message dispatcher
+     */
+    public void setMessageDispatcher(@NonNull MessageDispatcher messageDispatcher) {
+        this.messageDispatcher = messageDispatcher;
+    }
+
+    /**
+     * Set the minimum length of message data sent to clients for it to be compressed.
+     *
+     * Compression is only applied if the client has indicated that it supports it. Defaults to {@link PayloadCompression#DEFAULT_THRESHOLD}.
+     *
+     * @param payloadCompressionThreshold The minimum length of message data to compress, or a negative value to disable compression
+     */
+    public void setPayloadCompressionThreshold(int payloadCompressionThreshold) {
+        this.payloadCompressionThreshold = payloadCompressionThreshold;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        messageDispatcher.shutdown();
+    }
+
     @Override
     protected final void onNewClient(ChannelServer channelServer, String packageName) {
-        Log.d(TAG, "onNewClient: " + packageName);
-        final ClientCommunicator clientCommunicator = new ClientCommunicator(channelServer, internalData);
+        FlowLog.d(TAG, "onNewClient: %s", packageName);
+        final ClientCommunicator clientCommunicator = new ClientCommunicator(channelServer, internalData, messageDispatcher, controlFrames);
         clientCommunicator.subscribeToMessages()
                 .takeUntil(appMessage -> {
                     return appMessage.getMessageType().equals(REQUEST_MESSAGE);
                 })
                 .subscribe(appMessage -> {
-                    Log.d(TAG, "Received message: " + appMessage.getMessageType());
+                    FlowLog.d(TAG, "Received message: %s", appMessage.getMessageType());
                     checkVersions(appMessage, internalData);
                     String messageData = appMessage.getMessageData();
                     switch (appMessage.getMessageType()) {
@@ -83,32 +141,49 @@ public abstract class BaseApiService extends AbstractChannelService {
                             handleRequestMessage(clientCommunicator, messageData, appMessage.getInternalData());
                             break;
                         default:
-                            Log.w(TAG, String.format("Ignoring message type: %s", appMessage.getMessageType()));
+                            FlowLog.w(TAG, "Ignoring message type: %s", appMessage.getMessageType());
                             break;
                     }
-                }, throwable -> Log.e(TAG, "Failed while parsing message from client", throwable));
+                }, throwable -> FlowLog.e(TAG, "Failed while parsing message from client", throwable));
     }
 
     static void checkVersions(AppMessage appMessage, InternalData checkWith) {
         // All we do for now is log this - at some point we might want to have specific checks or whatevs
+        if (!FlowLog.isLoggable(Log.DEBUG)) {
+            return; // avoid parsing the internal data for nothing
+        }
         InternalData senderInternalData = appMessage.getInternalData();
         if (senderInternalData != null) {
-            Log.i(BaseApiService.class.getSimpleName(), String.format("Our API version is: %s. Sender API version is: %s",
-                                                                      checkWith.getSenderApiVersion(),
-                                                                      senderInternalData.getSenderApiVersion()));
+            FlowLog.d(BaseApiService.class.getSimpleName(), "Our API version is: %s. Sender API version is: %s",
+                      checkWith.getSenderApiVersion(), senderInternalData.getSenderApiVersion());
         } else {
-            Log.i(BaseApiService.class.getSimpleName(),
-                  String.format("Our API version is: %s. Sender API version is UNKNOWN!", checkWith.getSenderApiVersion()));
+            FlowLog.d(BaseApiService.class.getSimpleName(), "Our API version is: %s. Sender API version is UNKNOWN!",
+                      checkWith.getSenderApiVersion());
         }
     }
 
     private void handleRequestMessage(ClientCommunicator clientCommunicator, String requestData, InternalData internalData) {
+        Span span = Tracer.startSpan("processRequest", TraceContext.fromInternalData(internalData))
+                .setAttribute("service", getClass().getName())
+                .setAttribute(FLOW_STAGE, internalData != null ? internalData.getAdditionalDataValue(FLOW_STAGE, null) : null);
+        if (payloadCompressionThreshold >= 0 && internalData != null &&
+                PayloadCompression.DEFLATE.equals(internalData.getAdditionalDataValue(PAYLOAD_COMPRESSION, null))) {
+            clientCommunicator.enablePayloadCompression(payloadCompressionThreshold);
+        }
+        PayloadSideChannel sideChannel =
+                PayloadSideChannels.getSideChannelFor(internalData != null ? internalData.getAdditionalDataValue(PAYLOAD_SIDE_CHANNEL, null) : null);
+        if (sideChannel != null) {
+            clientCommunicator.enablePayloadSideChannel(sideChannel);
+        }
         try {
             clientCommunicator.sendAck();
             processRequest(clientCommunicator, requestData, internalData);
         } catch (Throwable t) {
+            span.setAttribute("error", t.getMessage());
             clientCommunicator.sendResponseAsErrorAndEnd(FLOW_SERVICE_ERROR, String.format("Flow service failed with exception: %s", t.getMessage()));
             throw t;
+        } finally {
+            span.end();
         }
     }
 
@@ -15,15 +15,28 @@ package com.aevi.sdk.flow.service;
 
 import android.content.Context;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.aevi.android.rxmessenger.ChannelServer;
 import com.aevi.android.rxmessenger.service.AbstractChannelService;
 import com.aevi.sdk.flow.constants.AppMessageTypes;
 import com.aevi.sdk.flow.model.*;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.flow.util.PayloadCompression;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
 
 import static com.aevi.sdk.flow.BaseApiClient.FLOW_PROCESSING_SERVICE;
-import static com.aevi.sdk.flow.constants.AppMessageTypes.REQUEST_ACK_MESSAGE;
 import static com.aevi.sdk.flow.constants.ErrorConstants.UNEXPECTED_ERROR;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.PAYLOAD_COMPRESSION;
 import static com.aevi.sdk.flow.service.BaseApiService.checkVersions;
 
 /**
@@ -35,46 +48,193 @@ import static com.aevi.sdk.flow.service.BaseApiService.checkVersions;
 public abstract class BaseListenerService<RESPONSE extends BaseModel> extends AbstractChannelService {
 
     private final Class<RESPONSE> responseClass;
+    private final String TAG = getClass().getSimpleName(); // Use class name of implementing service
+
     private final InternalData internalData;
+    private final ControlFrames controlFrames;
+    private MessageDispatcher messageDispatcher = MessageDispatcher.direct();
+    private Scheduler journalScheduler = Schedulers.io();
+    private volatile ResponseJournal responseJournal;
+    private volatile Completable journalReady = Completable.complete();
 
     protected BaseListenerService(Class<RESPONSE> responseClass, String apiVersion) {
         this.responseClass = responseClass;
         internalData = new InternalData(apiVersion);
+        // let the processing service know that we can receive compressed message data
+        internalData.addAdditionalData(PAYLOAD_COMPRESSION, PayloadCompression.DEFLATE);
+        controlFrames = new ControlFrames(internalData);
     }
 
     @Override
     protected void attachBaseContext(Context base) {
         super.attachBaseContext(base);
         internalData.setSenderPackageName(getPackageName());
+        BaseApiService.advertiseSideChannel(internalData);
+    }
+
+    /**
+     * Set the dispatcher that defines on which threads messages are decoded and the notify methods are called.
+     *
+     * The default is {@link MessageDispatcher#direct()}, meaning messages are processed on the thread they are delivered on, which may be the main
+     * thread. Use {@link MessageDispatcher#worker(int, int, MessageDispatcher.CallbackThread)} to move this work off the delivering thread.
+     *
+     * This should be called from the constructor or {@code onCreate()} of the service, before any clients connect.
+     *
+     * @param messageDispatcher The message dispatcher
+     */
+    public void setMessageDispatcher(@NonNull MessageDispatcher messageDispatcher) {
+        this.messageDispatcher = messageDispatcher;
+    }
+
+    /**
+     * Enable journaling of responses, using a journal file in the private files directory of the application.
+     *
+     * When enabled, each response is written to a durable local journal before it is acknowledged, and marked as delivered once
+     * {@link #notifyResponse(Object)} has returned. Any responses that were received but not delivered during a previous run of the service,
+     * for instance due to a crash, are passed to {@link #notifyResponse(Object)} again. Note that this means {@link #notifyResponse(Object)} may
+     * be called more than once for the same response.
+     *
+     * The journal is opened and recovered, and any undelivered responses redelivered, on a background thread, so this call returns immediately.
+     * Responses received in the meantime are processed once this has completed, so that they are journaled and delivered after the redelivered
+     * ones.
+     *
+     * Journaled responses are keyed by the id of the response type of this service - the request id for a {@link Response} and the payment id
+     * for a payment response - and can be looked up via {@link #getJournaledResponse(String)}, without querying the processing service.
+     *
+     * This should be called from {@code onCreate()} of the service, before any clients connect.
+     */
+    protected void enableResponseJournal() {
+        File journalFile = new File(getFilesDir(), "response-journal-" + getClass().getSimpleName());
+        openResponseJournal(() -> new ResponseJournal(journalFile));
+    }
+
+    /**
+     * Set the journal to write responses to, or null to disable journaling.
+     *
+     * See {@link #enableResponseJournal()} for details. Any undelivered responses in the journal are redelivered on a background thread.
+     *
+     * @param responseJournal The response journal
+     */
+    public void setResponseJournal(@Nullable ResponseJournal responseJournal) {
+        if (responseJournal != null) {
+            openResponseJournal(() -> responseJournal);
+        } else {
+            this.responseJournal = null;
+            journalReady = Completable.complete();
+        }
+    }
+
+    void setJournalScheduler(Scheduler journalScheduler) {
+        this.journalScheduler = journalScheduler;
+    }
+
+    private void openResponseJournal(Callable<ResponseJournal> opener) {
+        journalReady = Single.fromCallable(opener)
+                .subscribeOn(journalScheduler)
+                .doOnSuccess(journal -> {
+                    this.responseJournal = journal;
+                    redeliverUndelivered(journal);
+                })
+                .ignoreElement()
+                .doOnError(throwable -> FlowLog.e(TAG, "Failed to open response journal", throwable))
+                .onErrorComplete()
+                .cache();
+        journalReady.subscribe();
+    }
+
+    private void redeliverUndelivered(ResponseJournal journal) {
+        for (ResponseJournal.Entry entry : journal.getUndelivered()) {
+            FlowLog.i(TAG, "Redelivering journaled response: %s", entry.getRequestId());
+            deliverResponse(entry.getRequestId(), unwrap(Response.fromJson(entry.getResponseData())));
+        }
+    }
+
+    /**
+     * Get the journal responses are written to.
+     *
+     * @return The response journal, or null if journaling is not enabled or the journal has not been opened yet
+     */
+    @Nullable
+    public ResponseJournal getResponseJournal() {
+        return responseJournal;
+    }
+
+    /**
+     * Look up a response in the local response journal.
+     *
+     * The id is that of the response type of this service, which is the request id for a {@link Response} and the payment id for a payment
+     * response.
+     *
+     * @param id The id of the response
+     * @return The response, or null if journaling is not enabled or the journal holds no response with the id
+     */
+    @Nullable
+    public RESPONSE getJournaledResponse(@NonNull String id) {
+        ResponseJournal journal = responseJournal;
+        if (journal == null) {
+            return null;
+        }
+        String responseData = journal.getResponse(id);
+        return responseData != null ? unwrap(Response.fromJson(responseData)) : null;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        messageDispatcher.shutdown();
+        // closed once any pending open has completed, so that a journal opened after this point is not leaked
+        journalReady.subscribe(this::closeResponseJournal);
+    }
+
+    private void closeResponseJournal() {
+        ResponseJournal journal = responseJournal;
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                FlowLog.e(TAG, "Failed to close response journal", e);
+            }
+        }
     }
 
     @SuppressWarnings("unchecked")
     @Override
     protected final void onNewClient(final ChannelServer channelServer, final String packageName) {
         sendAck(channelServer);
-        channelServer.subscribeToMessages().take(1).subscribe(message -> {
-            AppMessage appMessage = AppMessage.fromJson(message);
+        Observable<AppMessage> messages = messageDispatcher
+                .decodeOn(channelServer.subscribeToMessages().take(1), message -> {
+                    FlowLog.w(TAG, "Dropping message as the queue is full");
+                    channelServer.sendEndStream();
+                })
+                .map(AppMessage::fromJson);
+        // waits for the journal to be opened and recovered, without blocking the thread the message was delivered on
+        messageDispatcher.callbackOn(messages).concatMap(appMessage -> journalReady.andThen(Observable.just(appMessage))).subscribe(appMessage -> {
             checkVersions(appMessage, internalData);
-            channelServer.sendEndStream();
-            if (FLOW_PROCESSING_SERVICE.equals(appMessage.getInternalData().getSenderPackageName())) {
-                if (AppMessageTypes.RESPONSE_MESSAGE.equals(appMessage.getMessageType())) {
-                    Response response = Response.fromJson(appMessage.getMessageData());
-                    RESPONSE unwrapped;
-                    if (responseClass.equals(Response.class)) {
-                        unwrapped = (RESPONSE) response;
-                    } else {
-                        unwrapped = response.getResponseData().getValue(AppMessageTypes.PAYMENT_MESSAGE, responseClass);
-                    }
-
-                    if (unwrapped != null) {
-                        notifyResponse(unwrapped);
-                    }
+            Response response = null;
+            RESPONSE unwrapped = null;
+            try {
+                if (AppMessageTypes.RESPONSE_MESSAGE.equals(appMessage.getMessageType()) && isFromFlowProcessingService(appMessage)) {
+                    response = Response.fromJson(appMessage.getMessageData());
+                    unwrapped = unwrap(response);
+                    // persisted before the end of stream acknowledges receipt to the sender
+                    journal(getJournalKey(response, unwrapped), appMessage.getMessageData());
+                }
+            } finally {
+                channelServer.sendEndStream();
+            }
+            if (isFromFlowProcessingService(appMessage)) {
+                if (response != null) {
+                    deliverResponse(getJournalKey(response, unwrapped), unwrapped);
                 } else if (AppMessageTypes.FAILURE_MESSAGE.equals(appMessage.getMessageType())) {
                     FlowException flowException = FlowException.fromJson(appMessage.getMessageData());
                     notifyError(flowException);
                 } else if (AppMessageTypes.FLOW_EVENT.equals((appMessage.getMessageType()))) {
                     FlowEvent flowEvent = FlowEvent.fromJson(appMessage.getMessageData());
                     notifyFlowEvent(flowEvent);
+                } else if (AppMessageTypes.FLOW_EVENT_BATCH.equals((appMessage.getMessageType()))) {
+                    for (FlowEvent flowEvent : FlowEventBatch.fromJson(appMessage.getMessageData()).getEvents()) {
+                        notifyFlowEvent(flowEvent);
+                    }
                 }
             }
         }, throwable -> {
@@ -86,9 +246,55 @@ public abstract class BaseListenerService<RESPONSE extends BaseModel> extends Ab
         });
     }
 
+    private static boolean isFromFlowProcessingService(AppMessage appMessage) {
+        return FLOW_PROCESSING_SERVICE.equals(appMessage.getInternalData().getSenderPackageName());
+    }
+
+    private String getJournalKey(Response response, RESPONSE unwrapped) {
+        return unwrapped != null ? unwrapped.getId() : response.getId();
+    }
+
+    private void journal(String key, String responseData) {
+        ResponseJournal journal = responseJournal;
+        if (journal != null) {
+            try {
+                journal.append(key, responseData);
+            } catch (IOException e) {
+                FlowLog.e(TAG, "Failed to journal response", e);
+            }
+        }
+    }
+
+    private void deliverResponse(String key, RESPONSE unwrapped) {
+        if (unwrapped != null) {
+            onResponseReceived(unwrapped);
+            notifyResponse(unwrapped);
+        }
+        ResponseJournal journal = responseJournal;
+        if (journal != null) {
+            journal.markDelivered(key);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private RESPONSE unwrap(Response response) {
+        if (responseClass.equals(Response.class)) {
+            return (RESPONSE) response;
+        }
+        return response.getResponseData().getValue(AppMessageTypes.PAYMENT_MESSAGE, responseClass);
+    }
+
     private void sendAck(ChannelServer channelServer) {
-        AppMessage appMessage = new AppMessage(REQUEST_ACK_MESSAGE, internalData);
-        channelServer.send(appMessage.toJson());
+        channelServer.send(controlFrames.getAck());
+    }
+
+    /**
+     * Called for each response before it is passed to {@link #notifyResponse(Object)}, allowing base classes to record it.
+     *
+     * @param response The final response sent after completion of a flow
+     */
+    protected void onResponseReceived(@NonNull RESPONSE response) {
+        // No-op
     }
 
     /**
@@ -24,7 +24,8 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import androidx.annotation.NonNull;
-import android.util.Log;
+
+import com.aevi.sdk.flow.util.FlowLog;
 
 /**
  * ContentProvider base class that should be extended by API service providers in order to give information about the app capabilities.
@@ -104,7 +105,7 @@ public abstract class BaseServiceInfoProvider extends ContentProvider {
      * @return True if handled, false if not handled
      */
     protected boolean onServiceInfoError(@NonNull String errorType, @NonNull String errorMessage) {
-        Log.e(getClass().getSimpleName(), "onServiceInfoError not implemented. type: " + errorType + ", message: " + errorMessage);
+        FlowLog.e(getClass().getSimpleName(), "onServiceInfoError not implemented. type: " + errorType + ", message: " + errorMessage);
         return false;
     }
 
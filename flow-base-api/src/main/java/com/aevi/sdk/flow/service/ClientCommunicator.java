@@ -1,14 +1,23 @@
 package com.aevi.sdk.flow.service;
 
 import androidx.annotation.NonNull;
-import android.util.Log;
+import androidx.annotation.Nullable;
 import com.aevi.android.rxmessenger.ChannelServer;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.FlowException;
 import com.aevi.sdk.flow.model.InternalData;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.flow.util.PayloadSideChannel;
+import com.aevi.sdk.flow.util.PayloadSideChannels;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import io.reactivex.Observable;
 
+import java.io.IOException;
+import java.io.StringReader;
+
 import static com.aevi.sdk.flow.constants.AppMessageTypes.*;
+import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_BUSY;
 import static com.aevi.sdk.flow.model.AppMessage.EMPTY_DATA;
 
 
@@ -21,34 +30,105 @@ import static com.aevi.sdk.flow.model.AppMessage.EMPTY_DATA;
 public class ClientCommunicator {
 
     private static final String TAG = ClientCommunicator.class.getSimpleName();
+    private static final String MESSAGE_TYPE = "messageType";
 
     private final ChannelServer channelServer;
     private final InternalData responseInternalData;
+    private final MessageDispatcher messageDispatcher;
+    private final ControlFrames controlFrames;
+    private Runnable onCompleteListener;
+    private volatile int compressionThreshold = -1;
+    private volatile PayloadSideChannel payloadSideChannel;
 
     ClientCommunicator(ChannelServer channelServer, InternalData responseInternalData) {
+        this(channelServer, responseInternalData, MessageDispatcher.direct());
+    }
+
+    ClientCommunicator(ChannelServer channelServer, InternalData responseInternalData, MessageDispatcher messageDispatcher) {
+        this(channelServer, responseInternalData, messageDispatcher, new ControlFrames(responseInternalData));
+    }
+
+    ClientCommunicator(ChannelServer channelServer, InternalData responseInternalData, MessageDispatcher messageDispatcher,
+                       ControlFrames controlFrames) {
         this.channelServer = channelServer;
         this.responseInternalData = responseInternalData;
+        this.messageDispatcher = messageDispatcher;
+        this.controlFrames = controlFrames;
     }
 
     public void sendAck() {
-        Log.d(TAG, "Sending ack");
-        AppMessage appMessage = new AppMessage(REQUEST_ACK_MESSAGE, responseInternalData);
-        channelServer.send(appMessage.toJson());
+        FlowLog.d(TAG, "Sending ack");
+        channelServer.send(controlFrames.getAck());
     }
 
     public InternalData getResponseInternalData() {
         return responseInternalData;
     }
 
+    /**
+     * Enable compression of message data sent to the client, for messages with data of at least the given length.
+     *
+     * This must only be enabled if the client has indicated that it supports compression.
+     *
+     * @param threshold The minimum length of message data to compress
+     */
+    public void enablePayloadCompression(int threshold) {
+        this.compressionThreshold = threshold;
+    }
+
+    /**
+     * Enable sending message data of at least {@link PayloadSideChannels#getThreshold()} in length via the given side channel.
+     *
+     * This must only be enabled if the client has indicated that it supports the side channel.
+     *
+     * @param payloadSideChannel The side channel to use
+     */
+    public void enablePayloadSideChannel(@NonNull PayloadSideChannel payloadSideChannel) {
+        this.payloadSideChannel = payloadSideChannel;
+    }
+
     /**
      * Send a message to the client.
      *
      * @param message The message
      */
     public void sendMessage(AppMessage message) {
+        int threshold = compressionThreshold;
+        if (threshold >= 0) {
+            message.compressMessageData(threshold);
+        }
+        PayloadSideChannel sideChannel = payloadSideChannel;
+        if (sideChannel != null) {
+            message.writeMessageDataTo(sideChannel, PayloadSideChannels.getThreshold());
+        }
         if (channelServer != null) {
             channelServer.send(message.toJson());
         }
+        if (RESPONSE_MESSAGE.equals(message.getMessageType()) || FAILURE_MESSAGE.equals(message.getMessageType())) {
+            notifyComplete();
+        }
+    }
+
+    /**
+     * Set a listener to be called once the final response or failure has been sent to the client.
+     *
+     * The listener is called at most once, on the thread that sent the response.
+     *
+     * @param onCompleteListener The listener
+     */
+    public synchronized void setOnCompleteListener(@Nullable Runnable onCompleteListener) {
+        this.onCompleteListener = onCompleteListener;
+    }
+
+    private void notifyComplete() {
+        Runnable listener;
+        synchronized (this) {
+            listener = onCompleteListener;
+            onCompleteListener = null;
+        }
+        if (listener != null) {
+            listener.run();
+        }
     }
 
     /**
@@ -65,8 +145,11 @@ public class ClientCommunicator {
      * Finish your flow service with no response.
      */
     public void finishWithNoResponse() {
-        AppMessage appMessage = new AppMessage(RESPONSE_MESSAGE, EMPTY_DATA, responseInternalData);
-        sendMessage(appMessage);
+        if (isSentAsIs(EMPTY_DATA)) {
+            sendEncoded(controlFrames.getEmptyResponse());
+        } else {
+            sendMessage(new AppMessage(RESPONSE_MESSAGE, EMPTY_DATA, responseInternalData));
+        }
     }
 
     /**
@@ -87,17 +170,70 @@ public class ClientCommunicator {
     public void sendResponseAsErrorAndEnd(@NonNull String errorCode, @NonNull String message) {
         FlowException flowServiceException = new FlowException(errorCode, message);
         String msg = flowServiceException.toJson();
-        Log.d(TAG, "Sending error message: " + msg);
+        FlowLog.d(TAG, "Sending error message: %s", msg);
         AppMessage errorMessage = new AppMessage(FAILURE_MESSAGE, msg, responseInternalData);
         sendMessage(errorMessage);
     }
 
+    // whether message data would be sent without compressing it or writing it to the side channel
+    private boolean isSentAsIs(String messageData) {
+        int threshold = compressionThreshold;
+        if (threshold >= 0 && messageData.length() >= threshold) {
+            return false;
+        }
+        return payloadSideChannel == null || messageData.length() < PayloadSideChannels.getThreshold();
+    }
+
+    // for pre-encoded responses, which must only be used where isSentAsIs() holds for their data
+    private void sendEncoded(String encodedMessage) {
+        if (channelServer != null) {
+            channelServer.send(encodedMessage);
+        }
+        notifyComplete();
+    }
+
     /**
      * Subscribe to messages from the client.
      *
      * @return An observable stream of client messages
      */
     public Observable<AppMessage> subscribeToMessages() {
-        return channelServer.subscribeToMessages().map(AppMessage::fromJson);
+        Observable<AppMessage> messages = messageDispatcher
+                .decodeOn(channelServer.subscribeToMessages(), this::rejectMessage)
+                .map(AppMessage::fromJson);
+        return messageDispatcher.callbackOn(messages);
+    }
+
+    private void rejectMessage(String message) {
+        String messageType = getMessageType(message);
+        if (REQUEST_MESSAGE.equals(messageType)) {
+            FlowLog.w(TAG, "Rejecting request as the queue is full");
+            sendResponseAsErrorAndEnd(FLOW_SERVICE_BUSY, "Flow service message queue is full");
+        } else {
+            // the stage this message belongs to is already running, so it must not be ended here
+            FlowLog.w(TAG, "Dropping message of type %s as the queue is full", messageType);
+        }
+    }
+
+    /**
+     * Read only the type of a message, skipping over the message data and any other properties without decoding them.
+     *
+     * @param message The message JSON
+     * @return The message type, or null if the message has no type or is malformed
+     */
+    @Nullable
+    static String getMessageType(String message) {
+        try (JsonReader reader = new JsonReader(new StringReader(message))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (MESSAGE_TYPE.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                    return reader.nextString();
+                }
+                reader.skipValue();
+            }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
     }
 }
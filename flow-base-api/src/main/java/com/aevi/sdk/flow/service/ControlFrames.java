@@ -0,0 +1,73 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.service;
+
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.model.InternalData;
+
+import static com.aevi.sdk.flow.constants.AppMessageTypes.REQUEST_ACK_MESSAGE;
+import static com.aevi.sdk.flow.constants.AppMessageTypes.RESPONSE_MESSAGE;
+import static com.aevi.sdk.flow.model.AppMessage.EMPTY_DATA;
+
+/**
+ * Cache of pre-encoded control messages (acks and empty responses), which are identical for every client of a service.
+ *
+ * The cache is shared by all clients of a service, and re-encoded only when the internal data sent with the messages changes. Only messages with
+ * fixed data are cached, so that they are never subject to compression or a side channel.
+ */
+final class ControlFrames {
+
+    private final InternalData internalData;
+    private volatile Frames frames;
+
+    ControlFrames(InternalData internalData) {
+        this.internalData = internalData;
+    }
+
+    String getAck() {
+        return getFrames().ack;
+    }
+
+    String getEmptyResponse() {
+        return getFrames().emptyResponse;
+    }
+
+    private Frames getFrames() {
+        Frames current = frames;
+        int modCount = internalData != null ? internalData.getModCount() : 0;
+        if (current == null || current.modCount != modCount) {
+            current = new Frames(modCount, encode(REQUEST_ACK_MESSAGE, null), encode(RESPONSE_MESSAGE, EMPTY_DATA));
+            frames = current;
+        }
+        return current;
+    }
+
+    private String encode(String messageType, String messageData) {
+        return new AppMessage(messageType, messageData, internalData).toJson();
+    }
+
+    private static final class Frames {
+        private final int modCount;
+        private final String ack;
+        private final String emptyResponse;
+
+        private Frames(int modCount, String ack, String emptyResponse) {
+            this.modCount = modCount;
+            this.ack = ack;
+            this.emptyResponse = emptyResponse;
+        }
+    }
+}
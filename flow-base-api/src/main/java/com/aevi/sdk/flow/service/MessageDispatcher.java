@@ -0,0 +1,185 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Defines on which threads incoming messages are decoded and dispatched to the service callbacks.
+ *
+ * By default ({@link #direct()}), messages are decoded and dispatched on the thread they are delivered on by the messaging layer, which is
+ * often the main thread. For services that receive large messages, or that show a user interface from the same process, a worker dispatcher can be
+ * used instead via {@link #worker(int, int, CallbackThread)}, which decodes messages on a dedicated, bounded executor.
+ */
+public class MessageDispatcher {
+
+    /**
+     * The thread that callbacks such as processRequest are called on when using a worker dispatcher.
+     */
+    public enum CallbackThread {
+        /**
+         * Call back on the worker thread that decoded the message.
+         */
+        WORKER,
+        /**
+         * Call back on the main thread, after the message has been decoded on the worker.
+         */
+        MAIN
+    }
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor;
+    private final Scheduler decodeScheduler;
+    private final Scheduler callbackScheduler;
+    private final int maxQueueDepth;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    MessageDispatcher(ThreadPoolExecutor executor, Scheduler callbackScheduler, int maxQueueDepth) {
+        this.executor = executor;
+        this.decodeScheduler = executor != null ? Schedulers.from(executor) : null;
+        this.callbackScheduler = callbackScheduler;
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    /**
+     * Create a dispatcher that decodes and dispatches messages on the thread they are delivered on.
+     *
+     * @return The direct dispatcher
+     */
+    @NonNull
+    public static MessageDispatcher direct() {
+        return new MessageDispatcher(null, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a dispatcher that decodes messages on a dedicated executor.
+     *
+     * If more than the given number of messages are waiting to be decoded, any further requests are rejected and the client is sent a
+     * {@link com.aevi.sdk.flow.constants.ErrorConstants#FLOW_SERVICE_BUSY} error. Any other messages, such as flow service events for a stage
+     * that is already running, are dropped.
+     *
+     * @param threads        The maximum number of threads used for decoding and dispatching
+     * @param maxQueueDepth  The maximum number of messages waiting to be decoded
+     * @param callbackThread The thread to call back on once a message is decoded
+     * @return The worker dispatcher
+     */
+    @NonNull
+    public static MessageDispatcher worker(int threads, int maxQueueDepth, @NonNull CallbackThread callbackThread) {
+        if (threads < 1 || maxQueueDepth < 1) {
+            throw new IllegalArgumentException("threads and maxQueueDepth must be at least 1");
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(), new DispatchThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        Scheduler callbackScheduler = null;
+        if (callbackThread == CallbackThread.MAIN) {
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            callbackScheduler = Schedulers.from(mainHandler::post);
+        }
+        return new MessageDispatcher(executor, callbackScheduler, maxQueueDepth);
+    }
+
+    /**
+     * Check whether messages are decoded and dispatched on the delivering thread.
+     *
+     * @return True if this is a direct dispatcher, false otherwise
+     */
+    public boolean isDirect() {
+        return executor == null;
+    }
+
+    /**
+     * Get the number of messages currently waiting to be decoded.
+     *
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Move decoding of the raw messages onto the dispatcher threads, rejecting messages if the queue is full.
+     *
+     * @param messages The raw messages
+     * @param rejected Called on the delivering thread with any message that was rejected
+     * @return The messages, emitted on the dispatcher threads
+     */
+    Observable<String> decodeOn(Observable<String> messages, Consumer<String> rejected) {
+        if (isDirect()) {
+            return messages;
+        }
+        return messages
+                .filter(message -> {
+                    if (queueDepth.incrementAndGet() > maxQueueDepth) {
+                        queueDepth.decrementAndGet();
+                        rejected.accept(message);
+                        return false;
+                    }
+                    return true;
+                })
+                .observeOn(decodeScheduler)
+                .doOnNext(message -> queueDepth.decrementAndGet());
+    }
+
+    /**
+     * Move the given stream onto the callback thread, if different from the decoding thread.
+     *
+     * @param decoded The decoded messages
+     * @param <T>     The message type
+     * @return The messages, emitted on the callback thread
+     */
+    <T> Observable<T> callbackOn(Observable<T> decoded) {
+        if (callbackScheduler == null) {
+            return decoded;
+        }
+        return decoded.observeOn(callbackScheduler);
+    }
+
+    /**
+     * Stop the dispatcher threads once any queued messages have been processed.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static class DispatchThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "flow-dispatch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
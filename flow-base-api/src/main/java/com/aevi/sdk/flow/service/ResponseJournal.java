@@ -0,0 +1,475 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.service;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.aevi.sdk.flow.util.FlowLog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * An append-only, memory-mapped journal of raw responses received by a listener service.
+ *
+ * Each response is appended before it is acknowledged, and marked as delivered once it has been passed on to the application. As the journal
+ * is memory mapped, records survive a crash of the application as soon as they have been written. They are additionally forced to the storage
+ * device on a background thread, so that they also survive the device losing power. Responses that were journaled but never marked as delivered, for instance because the application crashed whilst processing
+ * them, can be retrieved via {@link #getUndelivered()} and delivered again, giving at-least-once delivery.
+ *
+ * Responses are indexed by request id, so that they can be reconciled locally via {@link #getResponse(String)} without having to query
+ * the processing service.
+ *
+ * Each record consists of a header of record length, CRC32 checksum, delivery state and request id length, followed by the request id and
+ * response data. On opening, records are validated in order and the journal is truncated at the first incomplete or corrupt record, which is
+ * what a crash in the middle of an append will leave behind.
+ *
+ * Once the journal is full, delivered responses beyond the most recent {@link #getRetainedDelivered()} are dropped by compacting the journal.
+ * Compaction writes the remaining records to a new file, which then atomically replaces the journal file, so that a crash during compaction
+ * leaves the original journal intact. If it is still too full after compaction, the journal is grown.
+ *
+ * This class is thread-safe.
+ */
+public class ResponseJournal implements Closeable {
+
+    private static final String TAG = ResponseJournal.class.getSimpleName();
+
+    public static final int DEFAULT_CAPACITY = 256 * 1024;
+    public static final int DEFAULT_RETAINED_DELIVERED = 50;
+
+    // record length (int) + crc (int) + state (byte) + request id length (short)
+    private static final int HEADER_SIZE = 4 + 4 + 1 + 2;
+    private static final int STATE_OFFSET = 8;
+    private static final byte STATE_PENDING = 0;
+    private static final byte STATE_DELIVERED = 1;
+    private static final String COMPACTION_SUFFIX = ".compact";
+
+    private final File file;
+    private final File compactionFile;
+    private final int retainedDelivered;
+    private final Scheduler syncScheduler;
+    private final AtomicBoolean syncPending = new AtomicBoolean();
+    private final Map<String, Integer> index = new HashMap<>();
+    private int capacity;
+    private int writePosition;
+    private int deliveredCount;
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer buffer;
+
+    /**
+     * A response recorded in the journal.
+     */
+    public static final class Entry {
+
+        private final String requestId;
+        private final String responseData;
+        private final boolean delivered;
+
+        Entry(String requestId, String responseData, boolean delivered) {
+            this.requestId = requestId;
+            this.responseData = responseData;
+            this.delivered = delivered;
+        }
+
+        /**
+         * @return The id of the request the response is for
+         */
+        @NonNull
+        public String getRequestId() {
+            return requestId;
+        }
+
+        /**
+         * @return The raw response data, as received
+         */
+        @NonNull
+        public String getResponseData() {
+            return responseData;
+        }
+
+        /**
+         * @return True if the response has been delivered to the application
+         */
+        public boolean isDelivered() {
+            return delivered;
+        }
+    }
+
+    /**
+     * Open (or create) a journal with the default capacity and retention.
+     *
+     * @param file The file backing the journal
+     * @throws IOException If the file could not be opened or mapped
+     */
+    public ResponseJournal(@NonNull File file) throws IOException {
+        this(file, DEFAULT_CAPACITY, DEFAULT_RETAINED_DELIVERED);
+    }
+
+    /**
+     * Open (or create) a journal.
+     *
+     * @param file              The file backing the journal
+     * @param initialCapacity   The initial size of the journal in bytes
+     * @param retainedDelivered The number of delivered responses to keep available for reconciliation when compacting
+     * @throws IOException If the file could not be opened or mapped
+     */
+    public ResponseJournal(@NonNull File file, int initialCapacity, int retainedDelivered) throws IOException {
+        this(file, initialCapacity, retainedDelivered, Schedulers.io());
+    }
+
+    ResponseJournal(File file, int initialCapacity, int retainedDelivered, Scheduler syncScheduler) throws IOException {
+        if (initialCapacity <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Capacity is too small: " + initialCapacity);
+        }
+        if (retainedDelivered < 0) {
+            throw new IllegalArgumentException("Retained delivered count must not be negative");
+        }
+        this.file = file;
+        this.compactionFile = new File(file.getPath() + COMPACTION_SUFFIX);
+        this.retainedDelivered = retainedDelivered;
+        this.syncScheduler = syncScheduler;
+        if (compactionFile.exists() && !compactionFile.delete()) {
+            FlowLog.w(TAG, "Failed to delete incomplete compaction file");
+        }
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        capacity = (int) Math.max(initialCapacity, randomAccessFile.length());
+        buffer = map(randomAccessFile, capacity);
+        recover();
+    }
+
+    private static MappedByteBuffer map(RandomAccessFile randomAccessFile, int capacity) throws IOException {
+        return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void recover() {
+        int position = 0;
+        while (position + HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < HEADER_SIZE || position + length > capacity || !isValid(position, length)) {
+                FlowLog.w(TAG, "Discarding incomplete or corrupt journal records from position %d", position);
+                clear(position, capacity);
+                break;
+            }
+            indexRecord(position);
+            position += length;
+        }
+        writePosition = position;
+    }
+
+    private boolean isValid(int position, int length) {
+        int storedCrc = buffer.getInt(position + 4);
+        short requestIdLength = buffer.getShort(position + STATE_OFFSET + 1);
+        if (requestIdLength < 0 || HEADER_SIZE + requestIdLength > length) {
+            return false;
+        }
+        return storedCrc == checksum(position, length);
+    }
+
+    private int checksum(int position, int length) {
+        CRC32 crc32 = new CRC32();
+        byte[] content = new byte[length - HEADER_SIZE];
+        readBytes(position + HEADER_SIZE, content);
+        crc32.update(content);
+        return (int) crc32.getValue();
+    }
+
+    private void indexRecord(int position) {
+        String requestId = readRequestId(position);
+        Integer previous = index.put(requestId, position);
+        if (previous != null && isDelivered(previous)) {
+            deliveredCount--;
+        }
+        if (isDelivered(position)) {
+            deliveredCount++;
+        }
+    }
+
+    /**
+     * Append a response to the journal.
+     *
+     * If a response for the same id is already present, it is superseded by this one.
+     *
+     * @param requestId    The id the response is journaled under
+     * @param responseData The raw response data
+     * @throws IOException If the journal could not be grown to fit the response
+     */
+    public synchronized void append(@NonNull String requestId, @NonNull String responseData) throws IOException {
+        ensureOpen();
+        byte[] requestIdBytes = requestId.getBytes(StandardCharsets.UTF_8);
+        byte[] dataBytes = responseData.getBytes(StandardCharsets.UTF_8);
+        if (requestIdBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Request id is too long");
+        }
+        int length = HEADER_SIZE + requestIdBytes.length + dataBytes.length;
+        if (writePosition + length > capacity) {
+            compact();
+            if (writePosition + length > capacity) {
+                grow(writePosition + length);
+            }
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(requestIdBytes);
+        crc32.update(dataBytes);
+
+        int position = writePosition;
+        buffer.position(position + 4);
+        buffer.putInt((int) crc32.getValue());
+        buffer.put(STATE_PENDING);
+        buffer.putShort((short) requestIdBytes.length);
+        buffer.put(requestIdBytes);
+        buffer.put(dataBytes);
+        // the length is written last, so that a partially written record is never seen as complete
+        buffer.putInt(position, length);
+
+        writePosition = position + length;
+        indexRecord(position);
+        requestSync();
+    }
+
+    /**
+     * Mark the response for the given request id as delivered to the application.
+     *
+     * @param requestId The id of the request the response is for
+     * @return True if the response was found and marked, false otherwise
+     */
+    public synchronized boolean markDelivered(@NonNull String requestId) {
+        ensureOpen();
+        Integer position = index.get(requestId);
+        if (position == null || isDelivered(position)) {
+            return false;
+        }
+        buffer.put(position + STATE_OFFSET, STATE_DELIVERED);
+        deliveredCount++;
+        requestSync();
+        return true;
+    }
+
+    private void requestSync() {
+        if (syncPending.compareAndSet(false, true)) {
+            syncScheduler.scheduleDirect(this::sync);
+        }
+    }
+
+    private void sync() {
+        syncPending.set(false);
+        synchronized (this) {
+            if (randomAccessFile != null) {
+                buffer.force();
+            }
+        }
+    }
+
+    /**
+     * Get the raw response data for a request, whether it has been delivered or not.
+     *
+     * @param requestId The id of the request
+     * @return The raw response data, or null if there is no response for the request in the journal
+     */
+    @Nullable
+    public synchronized String getResponse(@NonNull String requestId) {
+        ensureOpen();
+        Integer position = index.get(requestId);
+        return position != null ? readEntry(position).getResponseData() : null;
+    }
+
+    /**
+     * Get all responses that have been journaled, but not marked as delivered, in the order they were received.
+     *
+     * @return The undelivered responses
+     */
+    @NonNull
+    public synchronized List<Entry> getUndelivered() {
+        ensureOpen();
+        List<Entry> entries = new ArrayList<>();
+        for (Integer position : sortedPositions()) {
+            if (!isDelivered(position)) {
+                entries.add(readEntry(position));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return The number of responses in the journal, delivered or not
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return The number of delivered responses kept available for reconciliation when compacting
+     */
+    public int getRetainedDelivered() {
+        return retainedDelivered;
+    }
+
+    /**
+     * @return The current size of the journal in bytes
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Compact the journal, removing superseded responses and all but the most recent {@link #getRetainedDelivered()} delivered responses.
+     *
+     * This is called automatically when the journal is full.
+     *
+     * @throws IOException If the compacted journal could not be written, in which case the journal is left unchanged
+     */
+    public synchronized void compact() throws IOException {
+        ensureOpen();
+        int deliveredToDrop = Math.max(0, deliveredCount - retainedDelivered);
+        Map<String, Integer> compacted = new LinkedHashMap<>();
+        int newWritePosition = 0;
+        int newDeliveredCount = 0;
+        try (RandomAccessFile compactedFile = new RandomAccessFile(compactionFile, "rw")) {
+            compactedFile.setLength(0);
+            for (Integer position : sortedPositions()) {
+                boolean delivered = isDelivered(position);
+                if (deliveredToDrop > 0 && delivered) {
+                    deliveredToDrop--;
+                    continue;
+                }
+                int length = buffer.getInt(position);
+                byte[] record = new byte[length];
+                readBytes(position, record);
+                compactedFile.write(record);
+                compacted.put(readRequestId(position), newWritePosition);
+                if (delivered) {
+                    newDeliveredCount++;
+                }
+                newWritePosition += length;
+            }
+            compactedFile.getFD().sync();
+        } catch (IOException e) {
+            compactionFile.delete();
+            throw e;
+        }
+
+        // the rename atomically replaces the journal, so a crash at any point leaves either the old or the new journal in place
+        randomAccessFile.close();
+        randomAccessFile = null;
+        if (!compactionFile.renameTo(file)) {
+            compactionFile.delete();
+            reopen();
+            throw new IOException("Failed to replace journal with compacted journal");
+        }
+        reopen();
+        writePosition = newWritePosition;
+        deliveredCount = newDeliveredCount;
+        index.clear();
+        index.putAll(compacted);
+    }
+
+    private void reopen() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        buffer = map(randomAccessFile, capacity);
+    }
+
+    private void grow(int required) throws IOException {
+        int newCapacity = capacity;
+        while (newCapacity < required) {
+            newCapacity *= 2;
+        }
+        // the new mapping shares the same pages, which are forced along with the rest of the journal by the next sync
+        buffer = map(randomAccessFile, newCapacity);
+        capacity = newCapacity;
+    }
+
+    /**
+     * Close the journal. Any further calls to it will throw an {@link IllegalStateException}.
+     *
+     * @throws IOException If the underlying file could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (randomAccessFile != null) {
+            buffer.force();
+            randomAccessFile.close();
+            randomAccessFile = null;
+        }
+    }
+
+    /**
+     * @return The file backing the journal
+     */
+    @NonNull
+    public File getFile() {
+        return file;
+    }
+
+    private void ensureOpen() {
+        if (randomAccessFile == null) {
+            throw new IllegalStateException("The journal has been closed");
+        }
+    }
+
+    private List<Integer> sortedPositions() {
+        List<Integer> positions = new ArrayList<>(index.values());
+        positions.sort(Integer::compare);
+        return positions;
+    }
+
+    private boolean isDelivered(int position) {
+        return buffer.get(position + STATE_OFFSET) == STATE_DELIVERED;
+    }
+
+    private String readRequestId(int position) {
+        byte[] requestId = new byte[buffer.getShort(position + STATE_OFFSET + 1)];
+        readBytes(position + HEADER_SIZE, requestId);
+        return new String(requestId, StandardCharsets.UTF_8);
+    }
+
+    private Entry readEntry(int position) {
+        int length = buffer.getInt(position);
+        short requestIdLength = buffer.getShort(position + STATE_OFFSET + 1);
+        byte[] data = new byte[length - HEADER_SIZE - requestIdLength];
+        readBytes(position + HEADER_SIZE + requestIdLength, data);
+        return new Entry(readRequestId(position), new String(data, StandardCharsets.UTF_8), isDelivered(position));
+    }
+
+    private void readBytes(int position, byte[] destination) {
+        buffer.position(position);
+        buffer.get(destination);
+    }
+
+    private void clear(int from, int to) {
+        for (int i = from; i < to; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+}
@@ -20,21 +20,27 @@ import androidx.lifecycle.LifecycleOwner;
 import android.content.Context;
 import android.content.Intent;
 import androidx.annotation.Nullable;
-import android.util.Log;
 import com.aevi.android.rxmessenger.activity.NoSuchInstanceException;
 import com.aevi.android.rxmessenger.activity.ObservableActivityHelper;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.FlowEvent;
 import com.aevi.sdk.flow.model.InternalData;
+import com.aevi.sdk.flow.tracing.Span;
+import com.aevi.sdk.flow.tracing.TraceContext;
+import com.aevi.sdk.flow.tracing.Tracer;
+import com.aevi.sdk.flow.util.FlowLog;
 import com.aevi.sdk.flow.util.Preconditions;
 import io.reactivex.Observable;
 import io.reactivex.subjects.PublishSubject;
 
 import java.lang.ref.WeakReference;
 
+import static com.aevi.sdk.flow.constants.AppMessageTypes.FAILURE_MESSAGE;
+import static com.aevi.sdk.flow.constants.AppMessageTypes.RESPONSE_MESSAGE;
 import static com.aevi.sdk.flow.constants.FlowServiceEventTypes.FINISH_IMMEDIATELY;
 import static com.aevi.sdk.flow.stage.ServiceComponentDelegate.EXTRAS_INTERNAL_DATA_KEY;
 import static com.aevi.sdk.flow.stage.ServiceComponentDelegate.EXTRAS_SENDER_INTERNAL_DATA;
+import static com.aevi.sdk.flow.stage.ServiceComponentDelegate.EXTRAS_TRACE_PARENT;
 
 /**
  * Provides activity-based implementation for stage models.
@@ -49,6 +55,7 @@ class ActivityComponentDelegate extends AndroidComponentDelegate {
     private final WeakReference<Activity> activityReference;
     private final PublishSubject<FlowEvent> flowServiceMessageSubject;
     private final InternalData responseInternalData;
+    private final Span activitySpan;
 
     ActivityComponentDelegate(Activity activity) {
         super(getSenderInternalData(activity));
@@ -57,9 +64,17 @@ class ActivityComponentDelegate extends AndroidComponentDelegate {
         this.activityReference = new WeakReference<>(activity);
         this.responseInternalData = InternalData.fromJson(activity.getIntent().getExtras().getString(EXTRAS_INTERNAL_DATA_KEY));
         this.flowServiceMessageSubject = PublishSubject.create();
+        this.activitySpan = Tracer.startSpan("activity", getParentTraceContext(activity))
+                .setAttribute("activity", activity.getClass().getName());
         listenToMessages();
     }
 
+    @Nullable
+    private static TraceContext getParentTraceContext(Activity activity) {
+        TraceContext traceContext = TraceContext.fromTraceParent(activity.getIntent().getStringExtra(EXTRAS_TRACE_PARENT));
+        return traceContext != null ? traceContext : TraceContext.fromInternalData(getSenderInternalData(activity));
+    }
+
     @Nullable
     private static InternalData getSenderInternalData(Activity activity) {
         String json = activity.getIntent().getStringExtra(EXTRAS_SENDER_INTERNAL_DATA);
@@ -85,11 +100,13 @@ class ActivityComponentDelegate extends AndroidComponentDelegate {
                 FlowEvent flowEvent = FlowEvent.fromJson(event);
                 switch (flowEvent.getType()) {
                     case FINISH_IMMEDIATELY:
+                        notifyTerminating();
                         Activity localActivity = getActivity();
                         if (localActivity != null) {
-                            Log.i(TAG, "Force finishing activity");
+                            FlowLog.i(TAG, "Force finishing activity");
                             localActivity.finish();
                         }
+                        activitySpan.end();
                         flowServiceMessageSubject.onComplete();
                         break;
                     default:
@@ -98,7 +115,7 @@ class ActivityComponentDelegate extends AndroidComponentDelegate {
                 }
             });
         } catch (NoSuchInstanceException e) {
-            Log.e(TAG, "Failed to retrieve ObservableActivityHelper - was the activity started correctly?");
+            FlowLog.e(TAG, "Failed to retrieve ObservableActivityHelper - was the activity started correctly?");
         }
     }
 
@@ -110,16 +127,19 @@ class ActivityComponentDelegate extends AndroidComponentDelegate {
     @Override
     void sendMessage(AppMessage appMessage) {
         appMessage.updateInternalData(responseInternalData);
+        if (RESPONSE_MESSAGE.equals(appMessage.getMessageType()) || FAILURE_MESSAGE.equals(appMessage.getMessageType())) {
+            activitySpan.end();
+        }
         Activity activity = getActivity();
         if (activity != null) {
             try {
                 ObservableActivityHelper<AppMessage> helper = getHelperFromActivity(activity);
                 helper.sendMessageToClient(appMessage);
             } catch (NoSuchInstanceException e) {
-                Log.e(TAG, "Failed to retrieve ObservableActivityHelper - was the activity started correctly?");
+                FlowLog.e(TAG, "Failed to retrieve ObservableActivityHelper - was the activity started correctly?");
             }
         } else {
-            Log.e(TAG, "Activity reference no longer available to send message via");
+            FlowLog.e(TAG, "Activity reference no longer available to send message via");
         }
     }
 
@@ -128,6 +148,11 @@ class ActivityComponentDelegate extends AndroidComponentDelegate {
         return flowServiceMessageSubject;
     }
 
+    @Override
+    TraceContext getTraceContext() {
+        return activitySpan.getContext();
+    }
+
     @Override
     ObservableActivityHelper<AppMessage> processInActivity(Context context, Intent activityIntent, String requestJson) {
         throw new UnsupportedOperationException("Starting a new activity from an activity is not supported");
@@ -21,6 +21,7 @@ import com.aevi.android.rxmessenger.activity.ObservableActivityHelper;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.FlowEvent;
 import com.aevi.sdk.flow.model.InternalData;
+import com.aevi.sdk.flow.tracing.TraceContext;
 import io.reactivex.Observable;
 
 /**
@@ -31,11 +32,36 @@ import io.reactivex.Observable;
 abstract class AndroidComponentDelegate {
 
     private final InternalData senderInternalData;
+    private volatile Runnable terminationListener;
 
     AndroidComponentDelegate(InternalData senderInternalData) {
         this.senderInternalData = senderInternalData;
     }
 
+    /**
+     * Set a listener to be called once the stage is ending without the model having sent its own response, such as when the response is sent
+     * by an activity, the activity fails or the processing service asks the stage to finish immediately.
+     *
+     * @param terminationListener The listener
+     */
+    void setTerminationListener(@Nullable Runnable terminationListener) {
+        this.terminationListener = terminationListener;
+    }
+
+    /**
+     * Notify the termination listener, if any. The listener is called at most once.
+     */
+    void notifyTerminating() {
+        Runnable listener;
+        synchronized (this) {
+            listener = terminationListener;
+            terminationListener = null;
+        }
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
     /**
      * Returns the InternalData of the client application that sent this request
      *
@@ -60,6 +86,13 @@ abstract class AndroidComponentDelegate {
      */
     abstract Observable<FlowEvent> getFlowServiceEvents();
 
+    /**
+     * Get the trace context of the stage or activity span managed by this delegate.
+     *
+     * @return The trace context
+     */
+    abstract TraceContext getTraceContext();
+
     /**
      * Process request in an activity.
      *
@@ -0,0 +1,127 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.stage;
+
+import com.aevi.sdk.flow.model.AuditEntry;
+import com.aevi.sdk.flow.util.FlowLog;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IllegalFormatException;
+import java.util.List;
+
+/**
+ * Bounded buffer of audit entries pending the stage response.
+ *
+ * Entries are kept unformatted, and are only formatted once they are drained to be sent. Once the buffer is full, the oldest entries are
+ * discarded. Once drained, the buffer no longer accepts entries, so that the caller can send any later entries individually instead - but only
+ * as many as are left of the capacity, so that the capacity applies to all entries of the stage.
+ */
+class AuditEntryBuffer {
+
+    private static final String TAG = AuditEntryBuffer.class.getSimpleName();
+
+    private final int capacity;
+    private final Deque<PendingAuditEntry> auditEntries = new ArrayDeque<>();
+    private boolean drained;
+    private int sentCount;
+
+    AuditEntryBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Add an entry, if the buffer has not been drained yet.
+     *
+     * @param auditSeverity The severity of the entry
+     * @param message       The message, as per the String.format() rules
+     * @param parameters    The parameters for formatting the message
+     * @return True if the entry was added, false if the buffer has already been drained
+     */
+    synchronized boolean add(AuditEntry.AuditSeverity auditSeverity, String message, Object[] parameters) {
+        if (drained) {
+            return false;
+        }
+        if (auditEntries.size() == capacity) {
+            auditEntries.removeFirst();
+        }
+        auditEntries.addLast(new PendingAuditEntry(auditSeverity, message, parameters));
+        return true;
+    }
+
+    /**
+     * Account for an entry that is sent individually after the buffer has been drained.
+     *
+     * @return True if the entry may be sent, false if the capacity has been used up and the entry must be discarded
+     */
+    synchronized boolean acquireAfterDrain() {
+        if (sentCount >= capacity) {
+            return false;
+        }
+        sentCount++;
+        return true;
+    }
+
+    /**
+     * Remove all pending entries, ordered from oldest to newest, and stop accepting new entries.
+     *
+     * @return The formatted audit entries
+     */
+    List<AuditEntry> drain() {
+        List<PendingAuditEntry> pending;
+        synchronized (this) {
+            drained = true;
+            sentCount += auditEntries.size();
+            pending = new ArrayList<>(auditEntries);
+            auditEntries.clear();
+        }
+        List<AuditEntry> formatted = new ArrayList<>(pending.size());
+        for (PendingAuditEntry pendingAuditEntry : pending) {
+            formatted.add(format(pendingAuditEntry.auditSeverity, pendingAuditEntry.message, pendingAuditEntry.parameters));
+        }
+        return formatted;
+    }
+
+    /**
+     * Format an audit entry, falling back to the unformatted message if it does not match the parameters.
+     *
+     * @param auditSeverity The severity of the entry
+     * @param message       The message, as per the String.format() rules
+     * @param parameters    The parameters for formatting the message
+     * @return The audit entry
+     */
+    static AuditEntry format(AuditEntry.AuditSeverity auditSeverity, String message, Object[] parameters) {
+        try {
+            return new AuditEntry(auditSeverity, String.format(message, parameters));
+        } catch (IllegalFormatException e) {
+            FlowLog.w(TAG, "Invalid audit entry format: %s", message);
+            return new AuditEntry(auditSeverity, message);
+        }
+    }
+
+    private static final class PendingAuditEntry {
+
+        private final AuditEntry.AuditSeverity auditSeverity;
+        private final String message;
+        private final Object[] parameters;
+
+        PendingAuditEntry(AuditEntry.AuditSeverity auditSeverity, String message, Object[] parameters) {
+            this.auditSeverity = auditSeverity;
+            this.message = message;
+            this.parameters = parameters;
+        }
+    }
+}
@@ -26,12 +26,22 @@ import com.aevi.sdk.flow.constants.FlowServiceEventTypes;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.AuditEntry;
 import com.aevi.sdk.flow.model.FlowEvent;
+import com.aevi.sdk.flow.model.FlowEventBatch;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.ClientCommunicator;
+import com.aevi.sdk.flow.tracing.TraceContext;
+import com.aevi.sdk.flow.tracing.Tracer;
+import com.aevi.sdk.flow.util.FlowDeadlines;
+
+import java.util.List;
 
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
 
 import static com.aevi.sdk.flow.constants.AppMessageTypes.*;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.AUDIT_ENTRY_BATCHING;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.EVENT_BATCHING;
 import static com.aevi.sdk.flow.constants.InternalDataKeys.FLOW_INITIATOR;
 import static com.aevi.sdk.flow.model.AppMessage.EMPTY_DATA;
 import static com.aevi.sdk.flow.stage.ServiceComponentDelegate.ACTIVITY_REQUEST_KEY;
@@ -48,10 +58,13 @@ import static com.aevi.sdk.flow.stage.ServiceComponentDelegate.ACTIVITY_REQUEST_
 public abstract class BaseStageModel {
 
     private static final int MAX_AUDIT_ENTRIES = 5;
+    private static final int MAX_BATCHED_AUDIT_ENTRIES = 20;
 
     private final AndroidComponentDelegate androidComponentDelegate;
+    private final AuditEntryBuffer auditEntryBuffer = new AuditEntryBuffer(MAX_BATCHED_AUDIT_ENTRIES);
     private int auditEntryCount;
-    private boolean responseSent;
+    private volatile boolean responseSent;
+    private volatile FlowEventBatcher eventBatcher;
 
     /**
      * Initialise the stage model with an android component delegate directly.
@@ -60,6 +73,7 @@ public abstract class BaseStageModel {
      */
     protected BaseStageModel(AndroidComponentDelegate androidComponentDelegate) {
         this.androidComponentDelegate = androidComponentDelegate;
+        androidComponentDelegate.setTerminationListener(this::flushAuditEntries);
     }
 
     /**
@@ -99,6 +113,47 @@ public abstract class BaseStageModel {
         return senderInternalData != null ? senderInternalData.getAdditionalDataValue(dataKey, "UNKNOWN") : "UNKNOWN";
     }
 
+    /**
+     * Check whether the sender of the request has indicated support for an optional protocol feature.
+     *
+     * @param featureKey The internal data key of the feature, as per {@link com.aevi.sdk.flow.constants.InternalDataKeys}
+     * @return True if the feature is supported, false otherwise
+     */
+    protected boolean isSupportedBySender(String featureKey) {
+        InternalData senderInternalData = androidComponentDelegate.getSenderInternalData();
+        return senderInternalData != null && Boolean.parseBoolean(senderInternalData.getAdditionalDataValue(featureKey, "false"));
+    }
+
+    /**
+     * Get the deadline by which the response for this stage must have been sent, as propagated by the processing service.
+     *
+     * @return The deadline in milliseconds since epoch, or {@link FlowDeadlines#NO_DEADLINE} if none was propagated
+     */
+    public long getDeadlineMillis() {
+        return FlowDeadlines.fromInternalData(androidComponentDelegate.getSenderInternalData());
+    }
+
+    /**
+     * Check whether the processing service has propagated a deadline for this stage.
+     *
+     * @return True if there is a deadline, false otherwise
+     */
+    public boolean hasDeadline() {
+        return getDeadlineMillis() != FlowDeadlines.NO_DEADLINE;
+    }
+
+    /**
+     * Get the time left until the response for this stage must have been sent.
+     *
+     * Flow services can use this to degrade gracefully when time is short, such as by skipping optional steps or using cached data, instead of
+     * being timed out by the processing service.
+     *
+     * @return The remaining time in milliseconds, which is 0 once the deadline has passed, or {@link Long#MAX_VALUE} if there is no deadline
+     */
+    public long getRemainingTimeMillis() {
+        return FlowDeadlines.getRemainingTimeMillis(getDeadlineMillis());
+    }
+
     /**
      * Returns a stream of events relevant for this service from the flow processing service.
      *
@@ -117,6 +172,18 @@ public abstract class BaseStageModel {
         return androidComponentDelegate.getFlowServiceEvents();
     }
 
+    /**
+     * Get the trace context for the processing of this stage.
+     *
+     * This can be used to start child spans via {@link Tracer#startSpan(String, TraceContext)} for any work carried out by the flow service,
+     * so that it shows up as part of the flow timeline.
+     *
+     * @return The trace context
+     */
+    public TraceContext getTraceContext() {
+        return androidComponentDelegate.getTraceContext();
+    }
+
     /**
      * Get the JSON representing the request model.
      *
@@ -166,7 +233,11 @@ public abstract class BaseStageModel {
      * If events occur in your flow service that may be useful for the merchant (or yourself) to know about for information and troubleshooting purposes, this
      * method can be used to notify of these events.
      *
-     * Note that a maximum of 5 audit entries per flow service per stage is allowed.
+     * If the processing service supports it, entries are buffered and sent along with the stage response. In that case, a maximum of 20 audit
+     * entries per flow service per stage is kept - if more are added before the response is sent, the oldest entries are discarded. Entries added
+     * after the response has been sent are sent individually, for as long as the maximum has not been reached. The message of buffered entries is
+     * only formatted when it is sent, so the parameters should not be modified after they have been passed in. Otherwise, each entry is sent
+     * individually, with a maximum of 5 audit entries per flow service per stage.
      *
      * The message will be truncated if it exceeds 80 characters.
      *
@@ -175,13 +246,22 @@ public abstract class BaseStageModel {
      * @param parameters    Optional parameters to use for formatting the message, as per String.format() rules
      */
     public void addAuditEntry(AuditEntry.AuditSeverity auditSeverity, String message, Object... parameters) {
-        if (auditEntryCount < MAX_AUDIT_ENTRIES) {
-            AuditEntry auditEntry = new AuditEntry(auditSeverity, String.format(message, parameters));
-            sendMessage(AUDIT_ENTRY, auditEntry.toJson());
+        if (isSupportedBySender(AUDIT_ENTRY_BATCHING)) {
+            if (!auditEntryBuffer.add(auditSeverity, message, parameters) && auditEntryBuffer.acquireAfterDrain()) {
+                sendMessage(AUDIT_ENTRY, AuditEntryBuffer.format(auditSeverity, message, parameters).toJson());
+            }
+        } else if (auditEntryCount < MAX_AUDIT_ENTRIES) {
+            sendMessage(AUDIT_ENTRY, AuditEntryBuffer.format(auditSeverity, message, parameters).toJson());
             auditEntryCount++;
         }
     }
 
+    private void flushAuditEntries() {
+        for (AuditEntry auditEntry : auditEntryBuffer.drain()) {
+            sendMessage(AUDIT_ENTRY, auditEntry.toJson());
+        }
+    }
+
     /**
      * Send an event back to the processing service for forwarding to any interested clients
      *
@@ -189,7 +269,43 @@ public abstract class BaseStageModel {
      *                  originatingRequestId and target will be automatically set by processing service accordingly
      */
     public void sendEvent(FlowEvent flowEvent) {
-        sendMessage(FLOW_EVENT, flowEvent.toJson());
+        FlowEventBatcher batcher = eventBatcher;
+        if (batcher != null) {
+            batcher.add(flowEvent);
+        } else {
+            sendMessage(FLOW_EVENT, flowEvent.toJson());
+        }
+    }
+
+    /**
+     * Enable batching of events sent via {@link #sendEvent(FlowEvent)}, to reduce the number of messages sent during bursts of events.
+     *
+     * Events are held back until either the flush interval has passed since the first pending event, or the maximum batch size has been reached.
+     * Any pending events are always sent before the stage response. If an event of one of the coalesced types is sent whilst an event of the same
+     * type is still pending, the pending event is discarded - this is useful for progress updates where only the latest state is of interest.
+     *
+     * Batching is only enabled if the processing service has indicated that it supports it. Otherwise, events are sent individually as normal.
+     *
+     * @param flushIntervalMillis The maximum time in milliseconds an event is held back for
+     * @param maxBatchSize        The maximum number of events in a batch
+     * @param coalescedEventTypes The event types where a newer event supersedes a pending one
+     */
+    public void enableEventBatching(long flushIntervalMillis, int maxBatchSize, String... coalescedEventTypes) {
+        enableEventBatching(flushIntervalMillis, maxBatchSize, coalescedEventTypes, Schedulers.computation());
+    }
+
+    void enableEventBatching(long flushIntervalMillis, int maxBatchSize, String[] coalescedEventTypes, Scheduler scheduler) {
+        if (isSupportedBySender(EVENT_BATCHING)) {
+            eventBatcher = new FlowEventBatcher(flushIntervalMillis, maxBatchSize, coalescedEventTypes, scheduler, this::sendEventBatch);
+        }
+    }
+
+    private void sendEventBatch(List<FlowEvent> flowEvents) {
+        if (flowEvents.size() == 1) {
+            sendMessage(FLOW_EVENT, flowEvents.get(0).toJson());
+        } else {
+            sendMessage(FLOW_EVENT_BATCH, new FlowEventBatch(flowEvents).toJson());
+        }
     }
 
     /**
@@ -209,7 +325,17 @@ public abstract class BaseStageModel {
             throw new IllegalStateException("Response may only be sent once");
         }
         responseSent = true;
-        sendMessage(RESPONSE_MESSAGE, response);
+        FlowEventBatcher batcher = eventBatcher;
+        if (batcher != null) {
+            batcher.flush();
+        }
+        androidComponentDelegate.setTerminationListener(null);
+        AppMessage appMessage = new AppMessage(RESPONSE_MESSAGE, response);
+        List<AuditEntry> auditEntries = auditEntryBuffer.drain();
+        if (!auditEntries.isEmpty()) {
+            appMessage.setAuditEntries(auditEntries);
+        }
+        androidComponentDelegate.sendMessage(appMessage);
     }
 
     private void sendMessage(String messageType, String messageData) {
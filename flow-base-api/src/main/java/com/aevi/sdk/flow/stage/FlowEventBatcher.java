@@ -0,0 +1,119 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.stage;
+
+import com.aevi.sdk.flow.model.FlowEvent;
+import com.aevi.sdk.flow.util.FlowLog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+
+/**
+ * Collects flow events into batches that are flushed either when the batch is full, or when the flush interval has passed since the first
+ * event of the batch was added.
+ *
+ * Events of a coalesced type supersede any pending event of the same type, so that only the latest of a burst of progress updates is sent.
+ */
+class FlowEventBatcher {
+
+    private static final String TAG = FlowEventBatcher.class.getSimpleName();
+
+    private final long flushIntervalMillis;
+    private final int maxBatchSize;
+    private final Set<String> coalescedEventTypes;
+    private final Scheduler scheduler;
+    private final Consumer<List<FlowEvent>> batchConsumer;
+
+    private List<FlowEvent> pending = new ArrayList<>();
+    private Disposable scheduledFlush;
+
+    FlowEventBatcher(long flushIntervalMillis, int maxBatchSize, String[] coalescedEventTypes, Scheduler scheduler,
+                     Consumer<List<FlowEvent>> batchConsumer) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.coalescedEventTypes = new HashSet<>(Arrays.asList(coalescedEventTypes));
+        this.scheduler = scheduler;
+        this.batchConsumer = batchConsumer;
+    }
+
+    void add(FlowEvent flowEvent) {
+        boolean flushNow;
+        synchronized (this) {
+            if (coalescedEventTypes.contains(flowEvent.getType())) {
+                removePendingOfType(flowEvent.getType());
+            }
+            pending.add(flowEvent);
+            flushNow = pending.size() >= maxBatchSize || flushIntervalMillis <= 0;
+            if (!flushNow && scheduledFlush == null) {
+                scheduledFlush = scheduler.scheduleDirect(this::onFlushIntervalElapsed, flushIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    private void removePendingOfType(String type) {
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            if (pending.get(i).getType().equals(type)) {
+                pending.remove(i);
+                return;
+            }
+        }
+    }
+
+    private void onFlushIntervalElapsed() {
+        synchronized (this) {
+            scheduledFlush = null; // must not dispose the task we are running in
+        }
+        flush();
+    }
+
+    /**
+     * Send any pending events immediately.
+     */
+    void flush() {
+        List<FlowEvent> batch;
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.dispose();
+                scheduledFlush = null;
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        try {
+            batchConsumer.accept(batch);
+        } catch (Exception e) {
+            // may be running on a scheduler thread, so must not propagate
+            FlowLog.e(TAG, "Failed to send batch of " + batch.size() + " events", e);
+        }
+    }
+}
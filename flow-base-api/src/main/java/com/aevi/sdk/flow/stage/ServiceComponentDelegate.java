@@ -18,19 +18,22 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import androidx.annotation.NonNull;
-import android.util.Log;
 
 import com.aevi.android.rxmessenger.activity.NoSuchInstanceException;
 import com.aevi.android.rxmessenger.activity.ObservableActivityHelper;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.FlowEvent;
+import com.aevi.sdk.flow.model.FlowEventBatch;
 import com.aevi.sdk.flow.model.FlowException;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.ClientCommunicator;
+import com.aevi.sdk.flow.tracing.Span;
+import com.aevi.sdk.flow.tracing.TraceContext;
+import com.aevi.sdk.flow.tracing.Tracer;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.flow.util.IdGenerators;
 import com.aevi.sdk.flow.util.Preconditions;
 
-import java.util.UUID;
-
 import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.subjects.PublishSubject;
@@ -39,6 +42,7 @@ import static android.content.Intent.*;
 import static com.aevi.sdk.flow.constants.AppMessageTypes.*;
 import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_ERROR;
 import static com.aevi.sdk.flow.constants.FlowServiceEventTypes.*;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.FLOW_STAGE;
 
 /**
  * Provides service-based implementation for stage models.
@@ -51,9 +55,11 @@ public class ServiceComponentDelegate extends AndroidComponentDelegate {
     public static final String ACTIVITY_REQUEST_KEY = "request";
     public static final String EXTRAS_INTERNAL_DATA_KEY = "internalData";
     public static final String EXTRAS_SENDER_INTERNAL_DATA = "senderInternalData";
+    public static final String EXTRAS_TRACE_PARENT = "traceParent";
 
     private final ClientCommunicator clientCommunicator;
     private final PublishSubject<FlowEvent> flowServiceMessageSubject;
+    private final Span stageSpan;
     private Disposable messageDisposable;
     private String activityId;
 
@@ -62,6 +68,8 @@ public class ServiceComponentDelegate extends AndroidComponentDelegate {
         Preconditions.checkNotNull(clientCommunicator, "clientCommunicator can not be null");
         this.clientCommunicator = clientCommunicator;
         this.flowServiceMessageSubject = PublishSubject.create();
+        this.stageSpan = Tracer.startSpan("stage", TraceContext.fromInternalData(senderInternalData))
+                .setAttribute(FLOW_STAGE, senderInternalData != null ? senderInternalData.getAdditionalDataValue(FLOW_STAGE, null) : null);
         listenForMessages();
     }
 
@@ -69,25 +77,38 @@ public class ServiceComponentDelegate extends AndroidComponentDelegate {
         messageDisposable = clientCommunicator.subscribeToMessages().subscribe(appMessage -> {
             switch (appMessage.getMessageType()) {
                 case FLOW_SERVICE_EVENT:
-                    handleFlowServiceEvent(FlowEvent.fromJson(appMessage.getMessageData()));
+                    FlowLog.d(TAG, "Sending ack for event");
+                    clientCommunicator.sendAck();
+                    handleFlowServiceEvent(FlowEvent.fromJson(appMessage.getMessageData()), appMessage.getMessageData());
+                    break;
+                case FLOW_SERVICE_EVENT_BATCH:
+                    FlowEventBatch flowEventBatch = FlowEventBatch.fromJson(appMessage.getMessageData());
+                    FlowLog.d(TAG, "Sending ack for batch of %d events", flowEventBatch.size());
+                    clientCommunicator.sendAck();
+                    for (FlowEvent flowEvent : flowEventBatch.getEvents()) {
+                        handleFlowServiceEvent(flowEvent, null);
+                    }
                     break;
                 case REQUEST_MESSAGE:
                     // no-op
                     break;
                 default:
-                    Log.w(TAG, "Unknown/unexpected message type: " + appMessage.getMessageType());
+                    FlowLog.w(TAG, "Unknown/unexpected message type: %s", appMessage.getMessageType());
                     break;
             }
-        }, throwable -> Log.e(TAG, "Exception whilst listening for message", throwable));
+        }, throwable -> FlowLog.e(TAG, "Exception whilst listening for message", throwable));
     }
 
-    private void handleFlowServiceEvent(FlowEvent flowEvent) {
-        Log.d(TAG, "Sending ack for event");
-        clientCommunicator.sendAck();
+    private void handleFlowServiceEvent(FlowEvent flowEvent, String flowEventJson) {
+        if (flowServiceMessageSubject.hasComplete()) {
+            return; // remaining events in a batch after the stream was completed
+        }
+        Span eventSpan = Tracer.startSpan("event:" + flowEvent.getType(), stageSpan.getContext());
         publishFlowServiceMessage(flowEvent);
         switch (flowEvent.getType()) {
             case FINISH_IMMEDIATELY:
-                sendEventToActivity(flowEvent);
+                notifyTerminating();
+                sendEventToActivity(flowEvent, flowEventJson);
                 completeMessageStream();
                 break;
             case RESPONSE_ACCEPTED:
@@ -96,17 +117,19 @@ public class ServiceComponentDelegate extends AndroidComponentDelegate {
                 break;
             default:
                 // forward event to activity if there is one
-                sendEventToActivity(flowEvent);
+                sendEventToActivity(flowEvent, flowEventJson);
                 break;
         }
+        eventSpan.end();
     }
 
     private void publishFlowServiceMessage(FlowEvent flowEvent) {
-        Log.i(TAG, "Received message from FPS for flow service: " + flowEvent.getType());
+        FlowLog.i(TAG, "Received message from FPS for flow service: %s", flowEvent.getType());
         flowServiceMessageSubject.onNext(flowEvent);
     }
 
     private void completeMessageStream() {
+        stageSpan.end();
         flowServiceMessageSubject.onComplete();
         if (messageDisposable != null) {
             messageDisposable.dispose();
@@ -123,16 +146,36 @@ public class ServiceComponentDelegate extends AndroidComponentDelegate {
             activityIntent.putExtra(ACTIVITY_REQUEST_KEY, requestJson);
         }
         activityIntent.putExtra(EXTRAS_SENDER_INTERNAL_DATA, getSenderInternalData().toJson());
-        this.activityId = UUID.randomUUID().toString();
+        activityIntent.putExtra(EXTRAS_TRACE_PARENT, stageSpan.getContext().toTraceParent());
+        this.activityId = IdGenerators.generateId();
         activityIntent.putExtra(ObservableActivityHelper.INTENT_ID, activityId);
         activityIntent.putExtras(extras);
         ObservableActivityHelper<AppMessage> helper = ObservableActivityHelper.createInstance(context, activityIntent);
-        helper.startObservableActivity().subscribe(clientCommunicator::sendMessage,
-                throwable -> handleActivityException(throwable, clientCommunicator));
+        helper.startObservableActivity().subscribe(appMessage -> {
+            if (isResponse(appMessage)) {
+                notifyTerminating();
+            }
+            endStageSpanOnResponse(appMessage);
+            clientCommunicator.sendMessage(appMessage);
+        }, throwable -> handleActivityException(throwable, clientCommunicator));
         return helper;
     }
 
+    private void endStageSpanOnResponse(AppMessage appMessage) {
+        if (isResponse(appMessage)) {
+            stageSpan.end();
+        }
+    }
+
+    private static boolean isResponse(AppMessage appMessage) {
+        String messageType = appMessage.getMessageType();
+        return RESPONSE_MESSAGE.equals(messageType) || FAILURE_MESSAGE.equals(messageType);
+    }
+
     private void handleActivityException(Throwable throwable, ClientCommunicator clientCommunicator) {
+        notifyTerminating();
+        stageSpan.setAttribute("error", throwable.getMessage());
+        stageSpan.end();
         if (throwable instanceof FlowException) {
             FlowException me = (FlowException) throwable;
             clientCommunicator.sendResponseAsErrorAndEnd(me.getErrorCode(), me.getErrorMessage());
@@ -150,17 +193,26 @@ public class ServiceComponentDelegate extends AndroidComponentDelegate {
      * @param event The event
      */
     public void sendEventToActivity(FlowEvent event) {
+        sendEventToActivity(event, null);
+    }
+
+    void sendEventToActivity(FlowEvent event, String eventJson) {
+        if (activityId == null) {
+            return; // no activity started, so no need to serialise the event
+        }
         try {
             ObservableActivityHelper<AppMessage> helper = ObservableActivityHelper.getInstance(activityId);
-            helper.sendEventToActivity(event.toJson());
+            // forward the received json as is if we have it, rather than serialising the event again
+            helper.sendEventToActivity(eventJson != null ? eventJson : event.toJson());
         } catch (NoSuchInstanceException e) {
-            Log.w(TAG, "Failed to find OAH for sending event to activity");
+            FlowLog.w(TAG, "Failed to find OAH for sending event to activity");
         }
     }
 
     @Override
     public void sendMessage(AppMessage appMessage) {
         appMessage.updateInternalData(clientCommunicator.getResponseInternalData());
+        endStageSpanOnResponse(appMessage);
         clientCommunicator.sendMessage(appMessage);
     }
 
@@ -168,4 +220,9 @@ public class ServiceComponentDelegate extends AndroidComponentDelegate {
     public Observable<FlowEvent> getFlowServiceEvents() {
         return flowServiceMessageSubject;
     }
+
+    @Override
+    public TraceContext getTraceContext() {
+        return stageSpan.getContext();
+    }
 }
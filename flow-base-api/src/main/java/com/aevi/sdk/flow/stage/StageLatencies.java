@@ -0,0 +1,112 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.stage;
+
+import androidx.annotation.NonNull;
+
+import com.aevi.sdk.flow.util.LatencyHistogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a {@link LatencyHistogram} of the latency per flow stage, and recommends timeouts based on them.
+ *
+ * This is intended for the sender of stage requests, which is the application that applies the stage timeouts. It should record the time from
+ * sending each stage request until receiving its response via {@link #record(String, long)}, as that includes any time the request spends queued
+ * before a flow service gets to it. Flow services do not record anything here, as they run in a different process and only see part of that time.
+ *
+ * Recommendations are only made once enough latencies have been recorded for a stage, and are never higher than the configured timeout. They are
+ * only meaningful for stages that are processed without user interaction.
+ *
+ * This class is thread-safe.
+ */
+public final class StageLatencies {
+
+    /**
+     * The number of latencies that must be recorded for a stage before a timeout is recommended for it.
+     */
+    public static final int MIN_SAMPLES = 20;
+
+    /**
+     * The percentile of recorded latencies that recommended timeouts are based on.
+     */
+    public static final double RECOMMENDATION_PERCENTILE = 99;
+
+    /**
+     * The factor the latency at the {@link #RECOMMENDATION_PERCENTILE} is multiplied by, to allow for occasional slower processing.
+     */
+    public static final double RECOMMENDATION_HEADROOM = 1.5;
+
+    /**
+     * The lowest timeout that is recommended, in milliseconds.
+     */
+    public static final long MIN_RECOMMENDED_TIMEOUT_MS = 1000;
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Get the histogram of latencies for a stage.
+     *
+     * @param stage The flow stage
+     * @return The histogram, which is created empty if no latencies have been recorded for the stage yet
+     */
+    @NonNull
+    public LatencyHistogram getHistogram(@NonNull String stage) {
+        LatencyHistogram histogram = histograms.get(stage);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(stage, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Record the latency of a stage, from sending the stage request until receiving its response.
+     *
+     * @param stage         The flow stage
+     * @param latencyMillis The latency in milliseconds
+     */
+    public void record(@NonNull String stage, long latencyMillis) {
+        getHistogram(stage).record(latencyMillis);
+    }
+
+    /**
+     * Get the recommended timeout for a stage, based on the latencies recorded for it.
+     *
+     * @param stage                   The flow stage
+     * @param configuredTimeoutMillis The configured timeout for the stage in milliseconds, such as from
+     *                                {@link com.aevi.sdk.flow.model.config.FpsSettings#getFlowResponseTimeoutSeconds()}
+     * @return The recommended timeout in milliseconds, or the configured timeout if not enough latencies have been recorded
+     */
+    public long getRecommendedTimeoutMillis(@NonNull String stage, long configuredTimeoutMillis) {
+        LatencyHistogram histogram = histograms.get(stage);
+        if (histogram == null || histogram.getCount() < MIN_SAMPLES) {
+            return configuredTimeoutMillis;
+        }
+        long recommended = (long) Math.ceil(histogram.getPercentileMillis(RECOMMENDATION_PERCENTILE) * RECOMMENDATION_HEADROOM);
+        return Math.min(configuredTimeoutMillis, Math.max(MIN_RECOMMENDED_TIMEOUT_MS, recommended));
+    }
+
+    /**
+     * Remove the histograms for all stages.
+     */
+    public void reset() {
+        histograms.clear();
+    }
+}
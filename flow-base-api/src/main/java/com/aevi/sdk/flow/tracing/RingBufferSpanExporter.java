@@ -0,0 +1,121 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.tracing;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exporter that keeps the most recently ended spans in a fixed size in-memory ring buffer.
+ *
+ * Once the buffer is full, the oldest spans are overwritten. The buffered spans can be retrieved via {@link #getSpans()} or appended to a local
+ * file as JSON lines via {@link #flushTo(File)}, from where they can be collected for building flow timelines.
+ */
+public class RingBufferSpanExporter implements SpanExporter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Span[] buffer;
+    private int next;
+    private int size;
+
+    /**
+     * Create an exporter with the given capacity.
+     *
+     * @param capacity The maximum number of spans to keep
+     */
+    public RingBufferSpanExporter(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        this.buffer = new Span[capacity];
+    }
+
+    @Override
+    public synchronized void export(@NonNull Span span) {
+        buffer[next] = span;
+        next = (next + 1) % buffer.length;
+        if (size < buffer.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Get the buffered spans, ordered from oldest to newest.
+     *
+     * @return A copy of the buffered spans
+     */
+    @NonNull
+    public synchronized List<Span> getSpans() {
+        List<Span> spans = new ArrayList<>(size);
+        int start = (next - size + buffer.length) % buffer.length;
+        for (int i = 0; i < size; i++) {
+            spans.add(buffer[(start + i) % buffer.length]);
+        }
+        return spans;
+    }
+
+    /**
+     * Clear all buffered spans.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = null;
+        }
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * Append all buffered spans to the given file as JSON lines and clear the buffer.
+     *
+     * This performs file I/O and should not be called on the main thread.
+     *
+     * @param file The file to append to
+     * @throws IOException If writing to the file failed, in which case the buffer is left untouched
+     */
+    public void flushTo(@NonNull File file) throws IOException {
+        List<Span> spans = getSpans();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8)) {
+            for (Span span : spans) {
+                writer.write(span.toJson());
+                writer.write('\n');
+            }
+        }
+        synchronized (this) {
+            removeFlushed(spans);
+        }
+    }
+
+    private void removeFlushed(List<Span> flushed) {
+        // spans may have been exported (and overwritten older ones) while we were writing, so only drop the ones we flushed
+        int oldest = (next - size + buffer.length) % buffer.length;
+        for (Span span : flushed) {
+            if (size > 0 && buffer[oldest] == span) {
+                buffer[oldest] = null;
+                oldest = (oldest + 1) % buffer.length;
+                size--;
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.tracing;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.aevi.util.json.JsonConverter;
+import com.aevi.util.json.Jsonable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents a timed operation within a trace, such as the processing of a stage or an event.
+ *
+ * A span is started via {@link Tracer} and must be ended via {@link #end()}. Only spans that are part of a sampled trace are passed on to the
+ * configured {@link SpanExporter}. Calling {@link #end()} more than once has no effect.
+ */
+public class Span implements Jsonable {
+
+    private final String name;
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final long startTimeMillis;
+    private final Map<String, String> attributes = new HashMap<>();
+    private long durationMicros;
+
+    private final transient TraceContext context;
+    private final transient long startNanos;
+    private transient boolean ended;
+
+    Span(String name, TraceContext context, @Nullable String parentSpanId) {
+        this.name = name;
+        this.context = context;
+        this.traceId = context.getTraceId();
+        this.spanId = context.getSpanId();
+        this.parentSpanId = parentSpanId;
+        this.startTimeMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Get the name of the span.
+     *
+     * @return The span name
+     */
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the context of this span, for propagation to children.
+     *
+     * @return The trace context
+     */
+    @NonNull
+    public TraceContext getContext() {
+        return context;
+    }
+
+    /**
+     * Get the id of the parent span.
+     *
+     * @return The parent span id, or null if this is a root span
+     */
+    @Nullable
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    /**
+     * Get the wall clock time at which the span was started.
+     *
+     * @return The start time in milliseconds since epoch
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * Get the duration of the span.
+     *
+     * @return The duration in microseconds, or 0 if the span has not ended
+     */
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    /**
+     * Add an attribute to the span.
+     *
+     * Attributes are only recorded for sampled spans.
+     *
+     * @param key   The attribute key
+     * @param value The attribute value
+     * @return This span, for chaining
+     */
+    @NonNull
+    public Span setAttribute(String key, String value) {
+        if (context.isSampled() && value != null) {
+            synchronized (attributes) {
+                attributes.put(key, value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Get the attributes of the span.
+     *
+     * @return A copy of the attributes
+     */
+    @NonNull
+    public Map<String, String> getAttributes() {
+        synchronized (attributes) {
+            return new HashMap<>(attributes);
+        }
+    }
+
+    /**
+     * Check whether the span has been ended.
+     *
+     * @return True if ended, false otherwise
+     */
+    public synchronized boolean hasEnded() {
+        return ended;
+    }
+
+    /**
+     * End the span and export it if it is part of a sampled trace.
+     */
+    public void end() {
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            durationMicros = (System.nanoTime() - startNanos) / 1000;
+        }
+        if (context.isSampled()) {
+            Tracer.export(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Span{" +
+                "name='" + name + '\'' +
+                ", traceId='" + traceId + '\'' +
+                ", spanId='" + spanId + '\'' +
+                ", parentSpanId='" + parentSpanId + '\'' +
+                ", durationMicros=" + durationMicros +
+                '}';
+    }
+
+    @Override
+    public String toJson() {
+        return JsonConverter.serialize(this);
+    }
+}
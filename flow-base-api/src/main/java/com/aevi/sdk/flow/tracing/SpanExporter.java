@@ -0,0 +1,32 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.tracing;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Receives spans of sampled traces as they are ended.
+ *
+ * Implementations are called on the thread that ended the span and should therefore return quickly, deferring any expensive work.
+ */
+public interface SpanExporter {
+
+    /**
+     * Export a span that has ended.
+     *
+     * @param span The span
+     */
+    void export(@NonNull Span span);
+}
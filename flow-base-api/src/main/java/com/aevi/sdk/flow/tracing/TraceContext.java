@@ -0,0 +1,172 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.tracing;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.aevi.sdk.flow.model.InternalData;
+
+import java.util.Locale;
+import java.util.Objects;
+
+import static com.aevi.sdk.flow.constants.InternalDataKeys.TRACE_PARENT;
+
+/**
+ * Identifies a span within a trace, and carries the sampling decision that was made at the head of the trace.
+ *
+ * The context is propagated between applications via {@link InternalData}, using the W3C "traceparent" format of
+ * {@code 00-<trace id>-<span id>-<flags>}.
+ */
+public final class TraceContext {
+
+    private static final String VERSION = "00";
+    private static final String FLAG_SAMPLED = "01";
+    private static final String FLAG_NOT_SAMPLED = "00";
+    private static final int TRACE_ID_LENGTH = 32;
+    private static final int SPAN_ID_LENGTH = 16;
+    private static final String ZERO_TRACE_ID = "00000000000000000000000000000000";
+    private static final String ZERO_SPAN_ID = "0000000000000000";
+
+    /**
+     * The context of traces started in this application that are not sampled, which only carries the sampling decision to the receiver.
+     */
+    static final TraceContext NOT_SAMPLED = new TraceContext(ZERO_TRACE_ID, ZERO_SPAN_ID, false);
+
+    private final String traceId;
+    private final String spanId;
+    private final boolean sampled;
+    private String traceParent;
+
+    TraceContext(String traceId, String spanId, boolean sampled) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.sampled = sampled;
+    }
+
+    private TraceContext(String traceId, String spanId, boolean sampled, String traceParent) {
+        this(traceId, spanId, sampled);
+        this.traceParent = traceParent;
+    }
+
+    /**
+     * Get the id of the trace this context belongs to.
+     *
+     * @return The trace id as 32 hex characters
+     */
+    @NonNull
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * Get the id of the span this context represents.
+     *
+     * @return The span id as 16 hex characters
+     */
+    @NonNull
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * Check whether spans in this trace should be recorded and exported.
+     *
+     * @return True if sampled, false otherwise
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Get this context in the W3C traceparent format.
+     *
+     * @return The traceparent string
+     */
+    @NonNull
+    public String toTraceParent() {
+        // only built once, as contexts that are not sampled are passed on as they are
+        if (traceParent == null) {
+            traceParent = VERSION + "-" + traceId + "-" + spanId + "-" + (sampled ? FLAG_SAMPLED : FLAG_NOT_SAMPLED);
+        }
+        return traceParent;
+    }
+
+    /**
+     * Write this context into the internal data so that it is propagated to the receiver of a message.
+     *
+     * @param internalData The internal data to write to
+     */
+    public void writeTo(@NonNull InternalData internalData) {
+        internalData.addAdditionalData(TRACE_PARENT, toTraceParent());
+    }
+
+    /**
+     * Read a context from internal data, if one has been propagated by the sender.
+     *
+     * @param internalData The internal data of the sender
+     * @return The trace context, or null if none was propagated or it is malformed
+     */
+    @Nullable
+    public static TraceContext fromInternalData(@Nullable InternalData internalData) {
+        if (internalData == null) {
+            return null;
+        }
+        return fromTraceParent(internalData.getAdditionalDataValue(TRACE_PARENT, null));
+    }
+
+    /**
+     * Parse a context from the W3C traceparent format.
+     *
+     * @param traceParent The traceparent string
+     * @return The trace context, or null if the input is null or malformed
+     */
+    @Nullable
+    public static TraceContext fromTraceParent(@Nullable String traceParent) {
+        if (traceParent == null) {
+            return null;
+        }
+        String[] parts = traceParent.split("-");
+        if (parts.length != 4 || parts[1].length() != TRACE_ID_LENGTH || parts[2].length() != SPAN_ID_LENGTH) {
+            return null;
+        }
+        return new TraceContext(parts[1].toLowerCase(Locale.ROOT), parts[2].toLowerCase(Locale.ROOT), FLAG_SAMPLED.equals(parts[3]),
+                                traceParent.toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        TraceContext that = (TraceContext) o;
+        return sampled == that.sampled &&
+                Objects.equals(traceId, that.traceId) &&
+                Objects.equals(spanId, that.spanId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(traceId, spanId, sampled);
+    }
+
+    @Override
+    public String toString() {
+        return toTraceParent();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.tracing;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.aevi.sdk.flow.util.FlowLog;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Entry point for creating spans for the flow timeline.
+ *
+ * Sampling is head-based - the decision whether to record a trace is taken once when the root span is started, and is then propagated to all
+ * child spans via {@link TraceContext}, including the spans recorded by other applications in the same flow. Spans of traces that are not
+ * sampled are never exported, and do not get ids of their own - they carry on the context of their parent, or a shared context that only
+ * propagates the decision for root spans.
+ *
+ * By default the sample rate is 0 and no exporter is set, meaning no spans are recorded.
+ */
+public final class Tracer {
+
+    private static final String TAG = Tracer.class.getSimpleName();
+    private static final String ZERO_PADDING = "0000000000000000";
+
+    private static volatile double sampleRate = 0.0;
+    private static volatile SpanExporter spanExporter;
+
+    private Tracer() {
+    }
+
+    /**
+     * Set the rate at which new traces are sampled.
+     *
+     * This only applies to traces started in this application. Traces that are continued from a propagated context use the decision made by the
+     * application that started the trace.
+     *
+     * @param rate The sample rate, ranging from 0.0 (no traces) to 1.0 (all traces)
+     */
+    public static void setSampleRate(double rate) {
+        if (rate < 0.0 || rate > 1.0) {
+            throw new IllegalArgumentException("Sample rate must be between 0.0 and 1.0");
+        }
+        sampleRate = rate;
+    }
+
+    /**
+     * Get the rate at which new traces are sampled.
+     *
+     * @return The sample rate
+     */
+    public static double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Set the exporter that spans of sampled traces are passed to.
+     *
+     * @param exporter The exporter, or null to stop exporting
+     */
+    public static void setExporter(@Nullable SpanExporter exporter) {
+        spanExporter = exporter;
+    }
+
+    /**
+     * Start a new root span, taking a new sampling decision.
+     *
+     * @param name The span name
+     * @return The started span
+     */
+    @NonNull
+    public static Span startRootSpan(@NonNull String name) {
+        return startSpan(name, null);
+    }
+
+    /**
+     * Start a span as a child of the provided parent context.
+     *
+     * If the parent is null, a new trace is started with a new sampling decision.
+     *
+     * @param name   The span name
+     * @param parent The parent context, typically read via {@link TraceContext#fromInternalData}
+     * @return The started span
+     */
+    @NonNull
+    public static Span startSpan(@NonNull String name, @Nullable TraceContext parent) {
+        if (parent != null && !parent.isSampled()) {
+            return new Span(name, parent, parent.getSpanId());
+        }
+        if (parent == null && !isSampled()) {
+            return new Span(name, TraceContext.NOT_SAMPLED, null);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        TraceContext context;
+        if (parent != null) {
+            context = new TraceContext(parent.getTraceId(), newSpanId(random), true);
+        } else {
+            context = new TraceContext(toHex(random.nextLong()) + toHex(random.nextLong()), newSpanId(random), true);
+        }
+        return new Span(name, context, parent != null ? parent.getSpanId() : null);
+    }
+
+    private static boolean isSampled() {
+        double rate = sampleRate;
+        return rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    static void export(Span span) {
+        SpanExporter exporter = spanExporter;
+        if (exporter != null) {
+            try {
+                exporter.export(span);
+            } catch (Exception e) {
+                FlowLog.e(TAG, "Failed to export span", e);
+            }
+        }
+    }
+
+    private static String newSpanId(ThreadLocalRandom random) {
+        return toHex(random.nextLong());
+    }
+
+    private static String toHex(long value) {
+        String hex = Long.toHexString(value);
+        return ZERO_PADDING.substring(hex.length()) + hex;
+    }
+}
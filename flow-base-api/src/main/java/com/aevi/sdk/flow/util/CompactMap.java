@@ -0,0 +1,312 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe map optimised for the small number of entries typically held by the data models.
+ *
+ * Up to {@link #UPGRADE_THRESHOLD} entries, keys and values are stored in a single array that is replaced on every modification (copy-on-write).
+ * Reads are lock-free and iteration operates on a snapshot, so iterators never throw {@link java.util.ConcurrentModificationException}.
+ * Once the map grows beyond the threshold, it switches to a {@link ConcurrentHashMap} for the remainder of its lifetime.
+ *
+ * As for {@link ConcurrentHashMap}, null keys and values are not permitted.
+ *
+ * @param <K> The type of keys
+ * @param <V> The type of values
+ */
+public class CompactMap<K, V> extends AbstractMap<K, V> {
+
+    public static final int UPGRADE_THRESHOLD = 8;
+
+    private static final Object[] EMPTY = new Object[0];
+
+    // keys at even and values at odd indexes
+    private volatile Object[] table = EMPTY;
+    private volatile ConcurrentHashMap<K, V> upgraded;
+    private volatile int modCount;
+    private transient Set<Entry<K, V>> entrySet;
+
+    /**
+     * Create an empty map.
+     */
+    public CompactMap() {
+    }
+
+    /**
+     * Create a map with the entries of the provided map.
+     *
+     * Copying another {@link CompactMap} that has not been upgraded shares its storage until either map is modified.
+     *
+     * @param copyFrom The map to copy from
+     */
+    public CompactMap(@NonNull Map<? extends K, ? extends V> copyFrom) {
+        if (copyFrom instanceof CompactMap && ((CompactMap<?, ?>) copyFrom).upgraded == null) {
+            table = ((CompactMap<?, ?>) copyFrom).table;
+        } else {
+            putAll(copyFrom);
+        }
+    }
+
+    @Override
+    public int size() {
+        ConcurrentHashMap<K, V> map = upgraded;
+        return map != null ? map.size() : table.length / 2;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    @Nullable
+    public V get(Object key) {
+        ConcurrentHashMap<K, V> map = upgraded;
+        if (map != null) {
+            return map.get(key);
+        }
+        Object[] current = table;
+        int index = indexOf(current, key);
+        return index >= 0 ? (V) current[index + 1] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    @Nullable
+    public synchronized V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        modCount++;
+        ConcurrentHashMap<K, V> map = upgraded;
+        if (map != null) {
+            return map.put(key, value);
+        }
+        Object[] current = table;
+        int index = indexOf(current, key);
+        if (index >= 0) {
+            Object[] updated = current.clone();
+            updated[index + 1] = value;
+            table = updated;
+            return (V) current[index + 1];
+        }
+        if (current.length / 2 >= UPGRADE_THRESHOLD) {
+            upgrade(current).put(key, value);
+            return null;
+        }
+        Object[] updated = new Object[current.length + 2];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = key;
+        updated[current.length + 1] = value;
+        table = updated;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    @Nullable
+    public synchronized V remove(Object key) {
+        modCount++;
+        ConcurrentHashMap<K, V> map = upgraded;
+        if (map != null) {
+            return key != null ? map.remove(key) : null;
+        }
+        Object[] current = table;
+        int index = indexOf(current, key);
+        if (index < 0) {
+            return null;
+        }
+        Object[] updated = new Object[current.length - 2];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 2, updated, index, current.length - index - 2);
+        table = updated;
+        return (V) current[index + 1];
+    }
+
+    @Override
+    public synchronized void clear() {
+        modCount++;
+        ConcurrentHashMap<K, V> map = upgraded;
+        if (map != null) {
+            map.clear();
+        } else {
+            table = EMPTY;
+        }
+    }
+
+    /**
+     * Get the number of modifications made to this map.
+     *
+     * This can be used to detect whether the map has changed since a value was derived from it. Every call that may change the map increments the
+     * count, whether via the map itself or its views.
+     *
+     * @return The modification count
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentHashMap<K, V> upgrade(Object[] current) {
+        ConcurrentHashMap<K, V> map = new ConcurrentHashMap<>(current.length);
+        for (int i = 0; i < current.length; i += 2) {
+            map.put((K) current[i], (V) current[i + 1]);
+        }
+        // the table is left as it was, as lock-free readers that have not yet seen the upgrade may still read it
+        upgraded = map;
+        return map;
+    }
+
+    private static int indexOf(Object[] table, Object key) {
+        if (key == null) {
+            return -1;
+        }
+        for (int i = 0; i < table.length; i += 2) {
+            if (key.equals(table[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @NonNull
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> entries = entrySet;
+        if (entries == null) {
+            entries = new EntrySet();
+            entrySet = entries;
+        }
+        return entries;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @NonNull
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            ConcurrentHashMap<K, V> map = upgraded;
+            if (map != null) {
+                return new UpgradedIterator(map.entrySet().iterator());
+            }
+            return new SnapshotIterator(table);
+        }
+
+        @Override
+        public int size() {
+            return CompactMap.this.size();
+        }
+    }
+
+    private final class SnapshotIterator implements Iterator<Entry<K, V>> {
+
+        private final Object[] snapshot;
+        private int next;
+        private K lastKey;
+
+        SnapshotIterator(Object[] snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < snapshot.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastKey = (K) snapshot[next];
+            Entry<K, V> entry = new MapEntry(lastKey, (V) snapshot[next + 1]);
+            next += 2;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            CompactMap.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+
+    // Routes modifications via this map, so that they are counted
+    private final class UpgradedIterator implements Iterator<Entry<K, V>> {
+
+        private final Iterator<Entry<K, V>> iterator;
+        private K lastKey;
+
+        UpgradedIterator(Iterator<Entry<K, V>> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            Entry<K, V> entry = iterator.next();
+            lastKey = entry.getKey();
+            return new MapEntry(lastKey, entry.getValue());
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            CompactMap.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+
+    private final class MapEntry extends SimpleEntry<K, V> {
+
+        MapEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers for computing 64-bit structural fingerprints of models.
+ *
+ * Fingerprints are consistent with equality, meaning objects that are equal always have the same fingerprint. The reverse does not hold, but
+ * with 64 bits collisions are rare enough that differing fingerprints can be used to short-circuit deep comparisons, and equal fingerprints can be
+ * used for de-duplication and as cache keys where an occasional false match is acceptable.
+ *
+ * As fingerprints of arbitrary objects are based on their hash codes, they are only guaranteed to be stable within a process and should not be
+ * persisted.
+ */
+public final class Fingerprints {
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+    private static final long NULL = 0x5851F42D4C957F2DL;
+
+    private Fingerprints() {
+    }
+
+    /**
+     * Mix the bits of a value to spread them over all 64 bits.
+     *
+     * @param value The value
+     * @return The mixed value
+     */
+    public static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Combine a fingerprint with another, where the order of combining matters.
+     *
+     * @param fingerprint The fingerprint so far
+     * @param value       The value to add
+     * @return The combined fingerprint
+     */
+    public static long combine(long fingerprint, long value) {
+        return mix(fingerprint * 31 + value + SEED);
+    }
+
+    /**
+     * Get the fingerprint of a string.
+     *
+     * @param value The string, or null
+     * @return The fingerprint
+     */
+    public static long of(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        long hash = SEED;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Get the fingerprint of an arbitrary object, based on its {@link Object#hashCode()}.
+     *
+     * Strings are fingerprinted using all 64 bits, and enums by name.
+     *
+     * @param value The object, or null
+     * @return The fingerprint
+     */
+    public static long ofObject(Object value) {
+        if (value == null) {
+            return NULL;
+        }
+        if (value instanceof String) {
+            return of((String) value);
+        }
+        if (value instanceof Enum) {
+            return of(((Enum<?>) value).name());
+        }
+        return mix(value.hashCode());
+    }
+
+    /**
+     * Get the fingerprint of a list of objects, where the order matters.
+     *
+     * @param values The list, or null
+     * @return The fingerprint
+     */
+    public static long ofList(List<?> values) {
+        if (values == null) {
+            return NULL;
+        }
+        long fingerprint = values.size();
+        for (Object value : values) {
+            fingerprint = combine(fingerprint, ofObject(value));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Get the fingerprint of a map, where the order of entries does not matter.
+     *
+     * @param map The map, or null
+     * @return The fingerprint
+     */
+    public static long ofMap(Map<?, ?> map) {
+        if (map == null) {
+            return NULL;
+        }
+        return ofEntries(map.entrySet());
+    }
+
+    private static long ofEntries(Collection<? extends Map.Entry<?, ?>> entries) {
+        long fingerprint = 0;
+        for (Map.Entry<?, ?> entry : entries) {
+            fingerprint += combine(ofObject(entry.getKey()), ofObject(entry.getValue()));
+        }
+        return mix(fingerprint + entries.size());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.aevi.sdk.flow.model.InternalData;
+
+import static com.aevi.sdk.flow.constants.InternalDataKeys.FLOW_DEADLINE;
+
+/**
+ * Propagates the absolute time by which the receiver of a message must have responded, so that it can adapt its processing to the time it has left.
+ *
+ * The deadline is carried in {@link InternalData} as milliseconds since epoch. As all applications involved in a flow share the device clock, this
+ * stays valid when passed on between applications, unlike a relative timeout.
+ */
+public final class FlowDeadlines {
+
+    /**
+     * Returned by {@link #fromInternalData(InternalData)} when no deadline has been propagated.
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private FlowDeadlines() {
+    }
+
+    /**
+     * Write a deadline into the internal data so that it is propagated to the receiver of a message.
+     *
+     * @param internalData   The internal data to write to
+     * @param deadlineMillis The deadline in milliseconds since epoch
+     */
+    public static void writeTo(@NonNull InternalData internalData, long deadlineMillis) {
+        internalData.addAdditionalData(FLOW_DEADLINE, Long.toString(deadlineMillis));
+    }
+
+    /**
+     * Write a deadline of the given timeout from now into the internal data.
+     *
+     * @param internalData  The internal data to write to
+     * @param timeoutMillis The time the receiver has to respond, in milliseconds
+     */
+    public static void writeTimeoutTo(@NonNull InternalData internalData, long timeoutMillis) {
+        writeTo(internalData, System.currentTimeMillis() + timeoutMillis);
+    }
+
+    /**
+     * Read the deadline propagated by the sender of a message.
+     *
+     * @param internalData The internal data of the sender
+     * @return The deadline in milliseconds since epoch, or {@link #NO_DEADLINE} if none was propagated or it is malformed
+     */
+    public static long fromInternalData(@Nullable InternalData internalData) {
+        if (internalData == null) {
+            return NO_DEADLINE;
+        }
+        String deadline = internalData.getAdditionalDataValue(FLOW_DEADLINE, null);
+        if (deadline == null) {
+            return NO_DEADLINE;
+        }
+        try {
+            return Long.parseLong(deadline);
+        } catch (NumberFormatException e) {
+            return NO_DEADLINE;
+        }
+    }
+
+    /**
+     * Get the time left until a deadline.
+     *
+     * @param deadlineMillis The deadline in milliseconds since epoch
+     * @return The remaining time in milliseconds, which is 0 once the deadline has passed, or {@link Long#MAX_VALUE} for {@link #NO_DEADLINE}
+     */
+    public static long getRemainingTimeMillis(long deadlineMillis) {
+        if (deadlineMillis == NO_DEADLINE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, deadlineMillis - System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import android.util.Log;
+
+import com.aevi.sdk.flow.BuildConfig;
+
+/**
+ * Internal logging facade with level guards.
+ *
+ * Messages below the configured level are discarded before any formatting takes place, so that disabled log statements cost no more than
+ * a field read. Use the fixed argument overloads where possible, as they also avoid the varargs array allocation.
+ *
+ * The default level is {@link Log#DEBUG} for debug builds of the API and {@link Log#INFO} otherwise.
+ */
+public final class FlowLog {
+
+    private static volatile int logLevel = BuildConfig.DEBUG ? Log.DEBUG : Log.INFO;
+
+    private FlowLog() {
+    }
+
+    /**
+     * Set the minimum level of messages to log, as per the {@link Log} priority constants.
+     *
+     * @param level The minimum log level
+     */
+    public static void setLogLevel(int level) {
+        logLevel = level;
+    }
+
+    /**
+     * Get the minimum level of messages to log.
+     *
+     * @return The minimum log level
+     */
+    public static int getLogLevel() {
+        return logLevel;
+    }
+
+    /**
+     * Check whether messages of the given level will be logged.
+     *
+     * @param level The log level
+     * @return True if messages of this level are logged, false otherwise
+     */
+    public static boolean isLoggable(int level) {
+        return level >= logLevel;
+    }
+
+    public static void d(String tag, String message) {
+        if (isLoggable(Log.DEBUG)) {
+            Log.d(tag, message);
+        }
+    }
+
+    public static void d(String tag, String format, Object arg) {
+        if (isLoggable(Log.DEBUG)) {
+            Log.d(tag, String.format(format, arg));
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(Log.DEBUG)) {
+            Log.d(tag, String.format(format, arg1, arg2));
+        }
+    }
+
+    public static void d(String tag, String format, Object... args) {
+        if (isLoggable(Log.DEBUG)) {
+            Log.d(tag, String.format(format, args));
+        }
+    }
+
+    public static void i(String tag, String message) {
+        if (isLoggable(Log.INFO)) {
+            Log.i(tag, message);
+        }
+    }
+
+    public static void i(String tag, String format, Object arg) {
+        if (isLoggable(Log.INFO)) {
+            Log.i(tag, String.format(format, arg));
+        }
+    }
+
+    public static void i(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(Log.INFO)) {
+            Log.i(tag, String.format(format, arg1, arg2));
+        }
+    }
+
+    public static void w(String tag, String message) {
+        if (isLoggable(Log.WARN)) {
+            Log.w(tag, message);
+        }
+    }
+
+    public static void w(String tag, String format, Object arg) {
+        if (isLoggable(Log.WARN)) {
+            Log.w(tag, String.format(format, arg));
+        }
+    }
+
+    public static void w(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(Log.WARN)) {
+            Log.w(tag, String.format(format, arg1, arg2));
+        }
+    }
+
+    public static void e(String tag, String message) {
+        if (isLoggable(Log.ERROR)) {
+            Log.e(tag, message);
+        }
+    }
+
+    public static void e(String tag, String message, Throwable throwable) {
+        if (isLoggable(Log.ERROR)) {
+            Log.e(tag, message, throwable);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Currency;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cached, thread-safe formatting of dates and amounts.
+ *
+ * {@link SimpleDateFormat} is expensive to create and is not thread-safe, so formatters are cached per pattern and locale and confined to the
+ * thread using them. This makes formatting in tight loops, such as when rendering lists of transactions or receipts, allocation-light. The
+ * cached formatters are only used within this class, and {@link #getDateFormat(String, Locale)} hands out copies of them.
+ */
+public final class Formatters {
+
+    private static final int MAX_CACHED_PATTERNS = 64;
+    private static final int DEFAULT_FRACTION_DIGITS = 2;
+
+    private static final ConcurrentMap<String, ThreadLocal<SimpleDateFormat>> DATE_FORMATS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, CurrencyFormat> CURRENCY_FORMATS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance();
+        }
+    };
+    private static final ThreadLocal<StringBuilder> STRING_BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(32);
+        }
+    };
+
+    private Formatters() {
+    }
+
+    /**
+     * Get a date formatter for the given pattern and the default locale.
+     *
+     * @param pattern The Java SimpleDateFormat pattern
+     * @return A new formatter
+     * @throws IllegalArgumentException if the pattern is invalid
+     * @see #getDateFormat(String, Locale)
+     */
+    @NonNull
+    public static SimpleDateFormat getDateFormat(@NonNull String pattern) {
+        return getDateFormat(pattern, Locale.getDefault());
+    }
+
+    /**
+     * Get a date formatter for the given pattern and locale.
+     *
+     * The formatter is copied from a cached one, which is cheaper than creating it from the pattern. It is owned by the caller, and can be
+     * modified (such as changing the time zone), but as any {@link SimpleDateFormat} it must not be used by several threads at the same time.
+     *
+     * @param pattern The Java SimpleDateFormat pattern
+     * @param locale  The locale to format with
+     * @return A new formatter
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    @NonNull
+    public static SimpleDateFormat getDateFormat(@NonNull String pattern, @NonNull Locale locale) {
+        return (SimpleDateFormat) getCachedDateFormat(pattern, locale).clone();
+    }
+
+    // The returned formatter is confined to the calling thread and shared with other callers on it, so it must not be modified or handed out
+    private static SimpleDateFormat getCachedDateFormat(final String pattern, final Locale locale) {
+        String key = pattern + '|' + locale;
+        ThreadLocal<SimpleDateFormat> threadLocal = DATE_FORMATS.get(key);
+        if (threadLocal == null) {
+            // Validates the pattern before caching it
+            final SimpleDateFormat first = new SimpleDateFormat(pattern, locale);
+            threadLocal = new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    return new SimpleDateFormat(pattern, locale);
+                }
+            };
+            threadLocal.set(first);
+            if (DATE_FORMATS.size() >= MAX_CACHED_PATTERNS) {
+                DATE_FORMATS.clear();
+            }
+            ThreadLocal<SimpleDateFormat> existing = DATE_FORMATS.putIfAbsent(key, threadLocal);
+            if (existing != null) {
+                return existing.get();
+            }
+        }
+        return threadLocal.get();
+    }
+
+    /**
+     * Format a date with the given pattern in the default locale.
+     *
+     * @param pattern The Java SimpleDateFormat pattern
+     * @param date    The date to format
+     * @return The formatted date
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    @NonNull
+    public static String formatDate(@NonNull String pattern, @NonNull Date date) {
+        return getCachedDateFormat(pattern, Locale.getDefault()).format(date);
+    }
+
+    /**
+     * Format a date with the given pattern in the default locale.
+     *
+     * @param pattern    The Java SimpleDateFormat pattern
+     * @param timeMillis The date in milliseconds since epoch
+     * @return The formatted date
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    @NonNull
+    public static String formatDate(@NonNull String pattern, long timeMillis) {
+        Calendar calendar = CALENDAR.get();
+        calendar.setTimeInMillis(timeMillis);
+        return getCachedDateFormat(pattern, Locale.getDefault()).format(calendar.getTime());
+    }
+
+    /**
+     * Format a year and month with the given pattern in the default locale, such as for card expiry dates.
+     *
+     * @param pattern The Java SimpleDateFormat pattern
+     * @param year    The full year, such as 2020
+     * @param month   The month, from 1 to 12
+     * @return The formatted date
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    @NonNull
+    public static String formatYearMonth(@NonNull String pattern, int year, int month) {
+        Calendar calendar = CALENDAR.get();
+        calendar.clear();
+        calendar.set(year, month - 1, 1);
+        return getCachedDateFormat(pattern, Locale.getDefault()).format(calendar.getTime());
+    }
+
+    /**
+     * Format an amount value in its currency sub-unit to a readable format, such as "£10.50" for 1050 in GBP.
+     *
+     * The currency symbol and sub-unit fraction digits are looked up once per currency and cached. If the currency is unknown, the currency code
+     * is used as the symbol and two fraction digits are assumed.
+     *
+     * @param currencyCode The ISO-4217 currency code
+     * @param amountValue  The amount value in the currency sub-unit
+     * @return The formatted amount, or "0.00" if no currency code is provided
+     */
+    @NonNull
+    public static String formatAmount(@Nullable String currencyCode, long amountValue) {
+        if (currencyCode == null) {
+            return "0.00";
+        }
+        CurrencyFormat currencyFormat = getCurrencyFormat(currencyCode);
+        StringBuilder builder = STRING_BUILDER.get();
+        builder.setLength(0);
+        builder.append(currencyFormat.symbol);
+        appendDecimal(builder, amountValue, currencyFormat.fractionDigits);
+        return builder.toString();
+    }
+
+    /**
+     * Get the number of sub-unit fraction digits for a currency, such as 2 for GBP or 0 for JPY.
+     *
+     * @param currencyCode The ISO-4217 currency code
+     * @return The fraction digits, defaulting to 2 for unknown currencies
+     */
+    public static int getFractionDigits(@NonNull String currencyCode) {
+        return getCurrencyFormat(currencyCode).fractionDigits;
+    }
+
+    private static CurrencyFormat getCurrencyFormat(String currencyCode) {
+        CurrencyFormat currencyFormat = CURRENCY_FORMATS.get(currencyCode);
+        if (currencyFormat == null) {
+            String symbol;
+            int fractionDigits;
+            try {
+                Currency currency = Currency.getInstance(currencyCode);
+                symbol = currency.getSymbol();
+                fractionDigits = Math.max(currency.getDefaultFractionDigits(), 0);
+            } catch (Throwable t) {
+                symbol = currencyCode;
+                fractionDigits = DEFAULT_FRACTION_DIGITS;
+            }
+            currencyFormat = new CurrencyFormat(symbol, fractionDigits);
+            CURRENCY_FORMATS.put(currencyCode, currencyFormat);
+        }
+        return currencyFormat;
+    }
+
+    private static void appendDecimal(StringBuilder builder, long value, int fractionDigits) {
+        if (value == Long.MIN_VALUE || fractionDigits > 18) {
+            builder.append(BigDecimal.valueOf(value).movePointLeft(fractionDigits).toPlainString());
+            return;
+        }
+        if (value < 0) {
+            builder.append('-');
+            value = -value;
+        }
+        long divisor = 1;
+        for (int i = 0; i < fractionDigits; i++) {
+            divisor *= 10;
+        }
+        builder.append(value / divisor);
+        if (fractionDigits > 0) {
+            builder.append('.');
+            long fraction = value % divisor;
+            for (long threshold = divisor / 10; threshold > 1 && fraction < threshold; threshold /= 10) {
+                builder.append('0');
+            }
+            builder.append(fraction);
+        }
+    }
+
+    private static final class CurrencyFormat {
+        private final String symbol;
+        private final int fractionDigits;
+
+        private CurrencyFormat(String symbol, int fractionDigits) {
+            this.symbol = symbol;
+            this.fractionDigits = fractionDigits;
+        }
+    }
+}
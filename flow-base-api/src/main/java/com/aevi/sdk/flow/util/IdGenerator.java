@@ -0,0 +1,34 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Generates the unique ids assigned to models, such as requests, payments, baskets and transactions.
+ *
+ * Implementations must be thread-safe. The generator in use can be replaced via {@link IdGenerators#setIdGenerator(IdGenerator)}.
+ */
+public interface IdGenerator {
+
+    /**
+     * Generate a new unique id.
+     *
+     * @return The id
+     */
+    @NonNull
+    String generateId();
+}
@@ -0,0 +1,61 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Provides the {@link IdGenerator} used for all models.
+ *
+ * Defaults to a {@link TimeOrderedIdGenerator}, whose ids embed their creation time and are not generated from secure randomness. See its
+ * documentation for when to replace it.
+ */
+public final class IdGenerators {
+
+    private static volatile IdGenerator idGenerator = new TimeOrderedIdGenerator();
+
+    private IdGenerators() {
+    }
+
+    /**
+     * Get the id generator currently in use.
+     *
+     * @return The id generator
+     */
+    @NonNull
+    public static IdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    /**
+     * Replace the id generator used for all models.
+     *
+     * @param generator The id generator to use, or null to restore the default
+     */
+    public static void setIdGenerator(IdGenerator generator) {
+        idGenerator = generator != null ? generator : new TimeOrderedIdGenerator();
+    }
+
+    /**
+     * Generate a new unique id with the current id generator.
+     *
+     * @return The id
+     */
+    @NonNull
+    public static String generateId() {
+        return idGenerator.generateId();
+    }
+}
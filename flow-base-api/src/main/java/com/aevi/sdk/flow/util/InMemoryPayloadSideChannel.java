@@ -0,0 +1,123 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link PayloadSideChannel} that holds payloads in memory, for use where sender and receiver are in the same process.
+ *
+ * This is primarily intended as a test double, to exercise side channel handling in JVM tests without shared memory. It cannot pass payloads
+ * between processes, so is never advertised to or used with other applications unless {@link #isCrossProcess()} is overridden by a test.
+ *
+ * Payloads are released once they are older than the time to live, which is checked whenever a payload is written.
+ */
+public class InMemoryPayloadSideChannel implements PayloadSideChannel {
+
+    public static final String NAME = "inMemory";
+    public static final long DEFAULT_TIME_TO_LIVE_MS = 60000;
+
+    private final Map<String, Payload> payloads = new ConcurrentHashMap<>();
+    private final AtomicLong nextHandle = new AtomicLong();
+    private final long timeToLiveMs;
+
+    /**
+     * Create a side channel that releases payloads after {@link #DEFAULT_TIME_TO_LIVE_MS}.
+     */
+    public InMemoryPayloadSideChannel() {
+        this(DEFAULT_TIME_TO_LIVE_MS);
+    }
+
+    /**
+     * Create a side channel that releases payloads after the given time.
+     *
+     * @param timeToLiveMs The time in milliseconds after which a payload is released, whether it has been read or not
+     */
+    public InMemoryPayloadSideChannel(long timeToLiveMs) {
+        if (timeToLiveMs <= 0) {
+            throw new IllegalArgumentException("The time to live must be positive");
+        }
+        this.timeToLiveMs = timeToLiveMs;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isCrossProcess() {
+        return false;
+    }
+
+    @NonNull
+    @Override
+    public String write(@NonNull String payload) {
+        long now = currentTimeMillis();
+        releaseExpired(now);
+        String handle = Long.toString(nextHandle.incrementAndGet());
+        payloads.put(handle, new Payload(payload, now + timeToLiveMs));
+        return handle;
+    }
+
+    @NonNull
+    @Override
+    public String read(@NonNull String handle) {
+        Payload payload = payloads.get(handle);
+        if (payload == null || payload.expiresAtMs <= currentTimeMillis()) {
+            throw new IllegalArgumentException("No payload for handle: " + handle);
+        }
+        return payload.data;
+    }
+
+    private void releaseExpired(long now) {
+        Iterator<Payload> iterator = payloads.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAtMs <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Get the number of payloads held, which includes payloads that have expired since the last write.
+     *
+     * @return The number of payloads held
+     */
+    public int getPendingCount() {
+        return payloads.size();
+    }
+
+    private static final class Payload {
+        private final String data;
+        private final long expiresAtMs;
+
+        private Payload(String data, long expiresAtMs) {
+            this.data = data;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import androidx.annotation.NonNull;
+
+import com.aevi.util.json.JsonConverter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Warms up the JSON conversion of model classes, so that the reflective type adapters are created ahead of the first real message.
+ *
+ * The first conversion of a model class requires the converter to scan the class and all the types it references, which can take a noticeable amount
+ * of time on low-end devices. Warming up a class walks its field types (including the element types of collections, maps and arrays) to find the
+ * nested model classes, such as the amounts, basket and card of a payment, and runs an empty object of each through deserialisation and
+ * serialisation off the calling thread. This builds and caches the adapters for every model class reachable from the given ones.
+ *
+ * Note that this only moves the one-off cost of creating the adapters off the request path. The adapters themselves are still the reflective ones
+ * created by {@link JsonConverter}, which does not support registering custom type adapters, so the steady-state conversion cost is unchanged.
+ */
+public final class JsonWarmup {
+
+    private static final String TAG = JsonWarmup.class.getSimpleName();
+    private static final String EMPTY_JSON = "{}";
+    private static final String MODEL_PACKAGE_PREFIX = "com.aevi.";
+
+    private static final Set<Class<?>> WARMED_UP = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private JsonWarmup() {
+    }
+
+    /**
+     * Warm up the given model classes, and the model classes they reference, on a background thread.
+     *
+     * Classes that have already been warmed up are skipped, so this can safely be called multiple times.
+     *
+     * @param modelClasses The model classes
+     * @return A completable that completes once all classes have been warmed up. It never errors.
+     */
+    @NonNull
+    public static Completable warmUp(@NonNull Class<?>... modelClasses) {
+        return Completable.fromAction(() -> warmUpNow(modelClasses)).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Warm up the given model classes, and the model classes they reference, on the calling thread.
+     *
+     * @param modelClasses The model classes
+     */
+    public static void warmUpNow(@NonNull Class<?>... modelClasses) {
+        for (Class<?> modelClass : findModelClasses(modelClasses)) {
+            if (!WARMED_UP.contains(modelClass)) {
+                warmUpClass(modelClass);
+            }
+        }
+    }
+
+    /**
+     * Check whether a model class has been successfully warmed up.
+     *
+     * A class that failed to convert is not recorded as warmed up, and will be tried again on the next call to {@link #warmUp(Class[])}.
+     *
+     * @param modelClass The model class
+     * @return True if warmed up, false otherwise
+     */
+    public static boolean isWarmedUp(@NonNull Class<?> modelClass) {
+        return WARMED_UP.contains(modelClass);
+    }
+
+    private static void warmUpClass(Class<?> modelClass) {
+        long start = System.nanoTime();
+        try {
+            Object empty = JsonConverter.deserialize(EMPTY_JSON, modelClass);
+            if (empty != null) {
+                JsonConverter.serialize(empty);
+            }
+            WARMED_UP.add(modelClass);
+            FlowLog.d(TAG, "Warmed up %s in %d us", modelClass.getSimpleName(), (System.nanoTime() - start) / 1000);
+        } catch (Throwable t) {
+            // Some models validate their state on conversion - the adapters will still have been created up to that point
+            FlowLog.d(TAG, "Partially warmed up %s: %s", modelClass.getSimpleName(), t.getMessage());
+        }
+    }
+
+    /**
+     * Collect the given classes and all the model classes reachable through their fields, with the nested classes first.
+     */
+    static Set<Class<?>> findModelClasses(Class<?>... rootClasses) {
+        Set<Class<?>> visited = new LinkedHashSet<>();
+        Deque<Class<?>> pending = new ArrayDeque<>();
+        Collections.addAll(pending, rootClasses);
+        while (!pending.isEmpty()) {
+            Class<?> modelClass = pending.pop();
+            if (!visited.add(modelClass)) {
+                continue;
+            }
+            for (Class<?> type = modelClass; type != null && type != Object.class; type = type.getSuperclass()) {
+                for (Field field : type.getDeclaredFields()) {
+                    if ((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) == 0) {
+                        addModelTypes(field.getGenericType(), pending);
+                    }
+                }
+            }
+        }
+        Set<Class<?>> ordered = new LinkedHashSet<>();
+        Class<?>[] all = visited.toArray(new Class<?>[0]);
+        for (int i = all.length - 1; i >= 0; i--) {
+            ordered.add(all[i]);
+        }
+        return ordered;
+    }
+
+    private static void addModelTypes(Type type, Deque<Class<?>> pending) {
+        if (type instanceof Class) {
+            Class<?> typeClass = (Class<?>) type;
+            if (typeClass.isArray()) {
+                addModelTypes(typeClass.getComponentType(), pending);
+            } else if (isModelClass(typeClass)) {
+                pending.push(typeClass);
+            }
+        } else if (type instanceof ParameterizedType) {
+            addModelTypes(((ParameterizedType) type).getRawType(), pending);
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                addModelTypes(argument, pending);
+            }
+        } else if (type instanceof GenericArrayType) {
+            addModelTypes(((GenericArrayType) type).getGenericComponentType(), pending);
+        } else if (type instanceof WildcardType) {
+            for (Type bound : ((WildcardType) type).getUpperBounds()) {
+                addModelTypes(bound, pending);
+            }
+        }
+    }
+
+    private static boolean isModelClass(Class<?> type) {
+        return !type.isPrimitive() && !type.isEnum() && !type.isInterface() && !Modifier.isAbstract(type.getModifiers())
+                && type.getName().startsWith(MODEL_PACKAGE_PREFIX);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size histogram of latencies in milliseconds, with exponentially growing buckets.
+ *
+ * Each bucket is 25% wider than the one before, from 1 ms up to 30 minutes (with a separate bucket for 0 ms), so percentiles are accurate to
+ * within 25% across that range whilst the histogram takes a constant amount of memory however many latencies are recorded. Percentiles are
+ * reported as the upper bound of the bucket they fall in, so they never under-estimate the actual latency.
+ *
+ * This class is thread-safe, and recording is lock-free.
+ */
+public final class LatencyHistogram {
+
+    private static final double BUCKET_GROWTH = 1.25;
+    private static final long MAX_TRACKED_MILLIS = 30 * 60 * 1000;
+    private static final long[] BUCKET_BOUNDS = createBucketBounds();
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    private static long[] createBucketBounds() {
+        long[] bounds = new long[64];
+        int size = 0;
+        long bound = 0;
+        while (true) {
+            if (size == bounds.length) {
+                bounds = Arrays.copyOf(bounds, size * 2);
+            }
+            bounds[size++] = bound;
+            if (bound >= MAX_TRACKED_MILLIS) {
+                return Arrays.copyOf(bounds, size);
+            }
+            bound = Math.max(bound + 1, (long) Math.ceil(bound * BUCKET_GROWTH));
+        }
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param latencyMillis The latency in milliseconds. Negative values are recorded as 0.
+     */
+    public void record(long latencyMillis) {
+        long latency = Math.max(0, latencyMillis);
+        int index = Arrays.binarySearch(BUCKET_BOUNDS, latency);
+        counts.incrementAndGet(index >= 0 ? index : -index - 1);
+        count.incrementAndGet();
+        long max = maxMillis.get();
+        while (latency > max && !maxMillis.compareAndSet(max, latency)) {
+            max = maxMillis.get();
+        }
+    }
+
+    /**
+     * @return The number of latencies recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return The highest latency recorded in milliseconds, or 0 if none have been recorded
+     */
+    public long getMaxMillis() {
+        return maxMillis.get();
+    }
+
+    /**
+     * Get the latency at the given percentile.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The latency in milliseconds that the given percentage of recorded latencies are at or below, or 0 if none have been recorded
+     */
+    public long getPercentileMillis(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return i < BUCKET_BOUNDS.length ? Math.min(BUCKET_BOUNDS[i], getMaxMillis()) : getMaxMillis();
+            }
+        }
+        // latencies recorded whilst iterating may leave the total ahead of the buckets read
+        return getMaxMillis();
+    }
+
+    /**
+     * Remove all recorded latencies.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        maxMillis.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" +
+                "count=" + getCount() +
+                ", p50=" + getPercentileMillis(50) +
+                ", p99=" + getPercentileMillis(99) +
+                ", max=" + getMaxMillis() +
+                '}';
+    }
+}
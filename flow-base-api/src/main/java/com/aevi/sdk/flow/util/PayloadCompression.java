@@ -0,0 +1,279 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import android.util.Base64;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of message payloads exchanged between AppFlow applications.
+ *
+ * Payloads are deflated and Base64 encoded, so that they can still be carried as JSON strings. Deflaters, inflaters and their work buffers are
+ * pooled and re-used, as they hold native memory that is expensive to allocate.
+ *
+ * Compression must only be used if the receiver has indicated that it supports it, via
+ * {@link com.aevi.sdk.flow.constants.InternalDataKeys#PAYLOAD_COMPRESSION}.
+ */
+public final class PayloadCompression {
+
+    /**
+     * The deflate encoding.
+     */
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * The default minimum payload length (in characters) for compression to be applied.
+     */
+    public static final int DEFAULT_THRESHOLD = 4096;
+
+    /**
+     * The maximum size (in bytes) a payload may decompress to, as a multiple of the 1MB binder transaction buffer that limits the size of
+     * messages sent inline.
+     */
+    public static final int MAX_DECOMPRESSED_SIZE = 16 * 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_POOLED = 4;
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final Queue<Codec> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+    private static final Stats STATS = new Stats();
+
+    private PayloadCompression() {
+    }
+
+    /**
+     * Compress a payload.
+     *
+     * @param payload The payload
+     * @return The compressed payload, Base64 encoded
+     */
+    @NonNull
+    public static String compress(@NonNull String payload) {
+        long start = System.nanoTime();
+        byte[] input = payload.getBytes(UTF_8);
+        Codec codec = acquire();
+        try {
+            Deflater deflater = codec.deflater;
+            deflater.setInput(input);
+            deflater.finish();
+            codec.output.reset();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(codec.buffer);
+                codec.output.write(codec.buffer, 0, length);
+            }
+            String compressed = Base64.encodeToString(codec.output.toByteArray(), Base64.NO_WRAP);
+            STATS.recordCompression(payload.length(), compressed.length(), System.nanoTime() - start);
+            return compressed;
+        } finally {
+            release(codec);
+        }
+    }
+
+    /**
+     * Decompress a payload previously compressed via {@link #compress(String)}.
+     *
+     * @param compressed The compressed, Base64 encoded payload
+     * @return The original payload
+     * @throws IllegalArgumentException if the payload is not valid compressed data, or decompresses to more than {@link #MAX_DECOMPRESSED_SIZE}
+     */
+    @NonNull
+    public static String decompress(@NonNull String compressed) {
+        return decompress(compressed, MAX_DECOMPRESSED_SIZE);
+    }
+
+    /**
+     * Decompress a payload previously compressed via {@link #compress(String)}, failing if it decompresses to more than the given size.
+     *
+     * @param compressed The compressed, Base64 encoded payload
+     * @param maxSize    The maximum size of the decompressed payload in bytes
+     * @return The original payload
+     * @throws IllegalArgumentException if the payload is not valid compressed data, or decompresses to more than the maximum size
+     */
+    @NonNull
+    public static String decompress(@NonNull String compressed, int maxSize) {
+        long start = System.nanoTime();
+        byte[] input = Base64.decode(compressed, Base64.NO_WRAP);
+        Codec codec = acquire();
+        try {
+            Inflater inflater = codec.inflater;
+            inflater.setInput(input);
+            codec.output.reset();
+            while (!inflater.finished()) {
+                int length = inflater.inflate(codec.buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated compressed payload");
+                }
+                if (codec.output.size() + length > maxSize) {
+                    throw new IllegalArgumentException("Compressed payload exceeds the maximum size of " + maxSize + " bytes");
+                }
+                codec.output.write(codec.buffer, 0, length);
+            }
+            String payload = new String(codec.output.toByteArray(), UTF_8);
+            STATS.recordDecompression(System.nanoTime() - start);
+            return payload;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid compressed payload", e);
+        } finally {
+            release(codec);
+        }
+    }
+
+    /**
+     * Get the compression statistics for this process.
+     *
+     * @return The statistics
+     */
+    @NonNull
+    public static Stats getStats() {
+        return STATS;
+    }
+
+    private static Codec acquire() {
+        Codec codec = POOL.poll();
+        if (codec != null) {
+            POOLED.decrementAndGet();
+            return codec;
+        }
+        return new Codec();
+    }
+
+    private static void release(Codec codec) {
+        codec.reset();
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(codec);
+        } else {
+            POOLED.decrementAndGet();
+            codec.end();
+        }
+    }
+
+    private static final class Codec {
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final Inflater inflater = new Inflater();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private ByteArrayOutputStream output = new ByteArrayOutputStream(BUFFER_SIZE);
+
+        void reset() {
+            deflater.reset();
+            inflater.reset();
+            if (output.size() > BUFFER_SIZE * 16) {
+                // don't hold on to buffers grown by exceptionally large payloads
+                output = new ByteArrayOutputStream(BUFFER_SIZE);
+            }
+        }
+
+        void end() {
+            deflater.end();
+            inflater.end();
+        }
+    }
+
+    /**
+     * Statistics of payload compression in this process, to assess the ratio achieved and time spent.
+     */
+    public static final class Stats {
+
+        private final AtomicLong compressedCount = new AtomicLong();
+        private final AtomicLong originalChars = new AtomicLong();
+        private final AtomicLong compressedChars = new AtomicLong();
+        private final AtomicLong compressNanos = new AtomicLong();
+        private final AtomicLong decompressedCount = new AtomicLong();
+        private final AtomicLong decompressNanos = new AtomicLong();
+
+        Stats() {
+        }
+
+        void recordCompression(int originalLength, int compressedLength, long nanos) {
+            compressedCount.incrementAndGet();
+            originalChars.addAndGet(originalLength);
+            compressedChars.addAndGet(compressedLength);
+            compressNanos.addAndGet(nanos);
+        }
+
+        void recordDecompression(long nanos) {
+            decompressedCount.incrementAndGet();
+            decompressNanos.addAndGet(nanos);
+        }
+
+        /**
+         * @return The number of payloads compressed
+         */
+        public long getCompressedCount() {
+            return compressedCount.get();
+        }
+
+        /**
+         * @return The number of payloads decompressed
+         */
+        public long getDecompressedCount() {
+            return decompressedCount.get();
+        }
+
+        /**
+         * @return The total number of characters saved by compression
+         */
+        public long getCharsSaved() {
+            return originalChars.get() - compressedChars.get();
+        }
+
+        /**
+         * @return The ratio of compressed to original size, or 1 if nothing has been compressed
+         */
+        public double getCompressionRatio() {
+            long original = originalChars.get();
+            return original == 0 ? 1 : (double) compressedChars.get() / original;
+        }
+
+        /**
+         * @return The total time spent compressing, in microseconds
+         */
+        public long getCompressTimeMicros() {
+            return compressNanos.get() / 1000;
+        }
+
+        /**
+         * @return The total time spent decompressing, in microseconds
+         */
+        public long getDecompressTimeMicros() {
+            return decompressNanos.get() / 1000;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "compressedCount=" + getCompressedCount() +
+                    ", decompressedCount=" + getDecompressedCount() +
+                    ", charsSaved=" + getCharsSaved() +
+                    ", compressionRatio=" + getCompressionRatio() +
+                    ", compressTimeMicros=" + getCompressTimeMicros() +
+                    ", decompressTimeMicros=" + getDecompressTimeMicros() +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A side channel for passing oversized message payloads between applications by handle, rather than inline in the message.
+ *
+ * Large payloads sent inline over Binder risk exceeding the transaction buffer limit, and are copied several times. A side channel writes the
+ * payload once to a location that the receiver can read from (such as shared memory or a file exposed via a content provider), and only the
+ * handle is sent in the message.
+ *
+ * A side channel is only used if it works across processes (see {@link #isCrossProcess()}) and both sides have advertised support for one with
+ * the same name, via {@link com.aevi.sdk.flow.constants.InternalDataKeys#PAYLOAD_SIDE_CHANNEL}. Otherwise, payloads are sent inline.
+ *
+ * No implementation that works across processes is provided by this SDK, only the {@link InMemoryPayloadSideChannel} test double, so out of the
+ * box services never advertise or use a side channel. An implementation needs a transport that both applications can read by handle, such as
+ * ashmem regions or files passed as a {@code ParcelFileDescriptor}, and must release payloads that are never read, typically after a time to
+ * live.
+ *
+ * Implementations must be thread-safe. See {@link PayloadSideChannels} for how to configure one.
+ */
+public interface PayloadSideChannel {
+
+    /**
+     * Get the name of this side channel, which is advertised to the other side.
+     *
+     * @return The name
+     */
+    @NonNull
+    String getName();
+
+    /**
+     * Check whether this side channel can pass payloads between processes.
+     *
+     * Side channels that can not, such as the {@link InMemoryPayloadSideChannel}, are never advertised to or used with other applications.
+     *
+     * @return True if payloads written in one process can be read in another, false otherwise
+     */
+    boolean isCrossProcess();
+
+    /**
+     * Write a payload to the side channel.
+     *
+     * @param payload The payload
+     * @return The handle to pass to the receiver, or null if the payload could not be written and must be sent inline
+     */
+    @Nullable
+    String write(@NonNull String payload);
+
+    /**
+     * Read a payload from the side channel.
+     *
+     * Reading does not release the payload, as the same message may be decoded more than once. Payloads are released by the implementation,
+     * such as once their time to live has passed.
+     *
+     * @param handle The handle provided by the sender
+     * @return The payload
+     * @throws IllegalArgumentException if there is no payload for the handle, or it has been released
+     */
+    @NonNull
+    String read(@NonNull String handle);
+}
@@ -0,0 +1,104 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Provides the {@link PayloadSideChannel} used for oversized message payloads in this process.
+ *
+ * No side channel is configured by default, meaning all payloads are sent inline. A side channel should be set before any services or clients
+ * are created, such as in {@code Application.onCreate()}. Only a side channel that works across processes is advertised to and used with other
+ * applications - see {@link PayloadSideChannel#isCrossProcess()}.
+ *
+ * The side channel is only used for messages sent by services to their clients. Messages sent by clients via {@code BaseApiClient} are always
+ * sent inline, as clients do not know which side channel the processing service supports before sending their first message.
+ */
+public final class PayloadSideChannels {
+
+    /**
+     * The default minimum payload length (in characters) for it to be sent via the side channel.
+     */
+    public static final int DEFAULT_THRESHOLD = 256 * 1024;
+
+    private static volatile PayloadSideChannel sideChannel;
+    private static volatile int threshold = DEFAULT_THRESHOLD;
+
+    private PayloadSideChannels() {
+    }
+
+    /**
+     * Get the side channel in use.
+     *
+     * @return The side channel, or null if payloads are always sent inline
+     */
+    @Nullable
+    public static PayloadSideChannel getSideChannel() {
+        return sideChannel;
+    }
+
+    /**
+     * Set the side channel to use for oversized payloads.
+     *
+     * @param payloadSideChannel The side channel, or null to send all payloads inline
+     */
+    public static void setSideChannel(@Nullable PayloadSideChannel payloadSideChannel) {
+        sideChannel = payloadSideChannel;
+    }
+
+    /**
+     * Get the minimum payload length for it to be sent via the side channel.
+     *
+     * @return The threshold
+     */
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Set the minimum payload length for it to be sent via the side channel.
+     *
+     * Defaults to {@link #DEFAULT_THRESHOLD}.
+     *
+     * @param payloadThreshold The minimum length of payloads to send via the side channel
+     */
+    public static void setThreshold(int payloadThreshold) {
+        threshold = payloadThreshold;
+    }
+
+    /**
+     * Get the side channel to use with a peer, based on the side channel name it advertised.
+     *
+     * @param advertisedName The name of the side channel advertised by the peer, or null
+     * @return The side channel, or null if there is no cross-process side channel shared with the peer
+     */
+    @Nullable
+    public static PayloadSideChannel getSideChannelFor(@Nullable String advertisedName) {
+        PayloadSideChannel current = getAdvertisedSideChannel();
+        return current != null && current.getName().equals(advertisedName) ? current : null;
+    }
+
+    /**
+     * Get the side channel to advertise to peers.
+     *
+     * @return The side channel, or null if no side channel that works across processes is set
+     */
+    @Nullable
+    public static PayloadSideChannel getAdvertisedSideChannel() {
+        PayloadSideChannel current = sideChannel;
+        return current != null && current.isCrossProcess() ? current : null;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.flow.util;
+
+import androidx.annotation.NonNull;
+
+import com.aevi.util.json.JsonConverter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Decodes a stream of JSON payloads into model objects, optionally dropping fields the caller does not need before conversion.
+ *
+ * Excluded fields are given as property names, with nested properties separated by a dot, such as {@code "request.basket"}. Properties inside arrays
+ * share the path of the array itself. Excluded fields are matched on their full path and cut out of the payload before conversion without being
+ * parsed into values, so they are never turned into objects, and will have their default value in the decoded model.
+ *
+ * {@link JsonConverter} does not expose a way to convert from a reader, so payloads with excluded fields are scanned once to find them, and only
+ * descend into objects that lead to an excluded field. The payload is only copied if an excluded field is found, in which case the retained parts
+ * are copied as they are, and the payload is otherwise converted as it is.
+ *
+ * Via {@link #decodeAll()} payloads are decoded in parallel on the computation scheduler, with at most {@link #DEFAULT_MAX_CONCURRENCY} payloads
+ * being decoded or waiting to be emitted at any time, and the models are emitted in the order the payloads were received on a single thread of
+ * that scheduler.
+ *
+ * @param <T> The model type
+ */
+public final class StreamingJsonDecoder<T> {
+
+    /**
+     * The default maximum number of payloads decoded at the same time by {@link #decodeAll()}.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 2;
+
+    private static final char PATH_SEPARATOR = '.';
+
+    private final Class<T> type;
+    private final Set<String> excludedFields;
+    private final Set<String> excludedParents;
+
+    /**
+     * Create a decoder for the given type.
+     *
+     * @param type           The model type
+     * @param excludedFields The fields to skip, or an empty collection to decode all fields
+     */
+    public StreamingJsonDecoder(@NonNull Class<T> type, @NonNull Collection<String> excludedFields) {
+        this.type = type;
+        this.excludedFields = excludedFields.isEmpty() ? Collections.emptySet() : new HashSet<>(excludedFields);
+        this.excludedParents = new HashSet<>();
+        for (String field : this.excludedFields) {
+            for (int i = field.indexOf(PATH_SEPARATOR); i > 0; i = field.indexOf(PATH_SEPARATOR, i + 1)) {
+                excludedParents.add(field.substring(0, i));
+            }
+        }
+    }
+
+    /**
+     * Decode a single payload on the calling thread.
+     *
+     * @param json The JSON payload
+     * @return The decoded model
+     * @throws IllegalArgumentException if excluded fields are to be cut out of a payload that is not well formed JSON
+     */
+    @NonNull
+    public T decode(@NonNull String json) {
+        if (excludedFields.isEmpty()) {
+            return JsonConverter.deserialize(json, type);
+        }
+        return JsonConverter.deserialize(strip(json), type);
+    }
+
+    /**
+     * Get a transformer that decodes payloads on the computation scheduler, at most {@link #DEFAULT_MAX_CONCURRENCY} at a time, and emits the
+     * models in order.
+     *
+     * @return The transformer
+     */
+    @NonNull
+    public ObservableTransformer<String, T> decodeAll() {
+        return decodeAll(Schedulers.computation(), DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Get a transformer that decodes payloads on the given scheduler, at most the given number at a time, and emits the models in order on a
+     * single thread of that scheduler.
+     *
+     * Payloads are decoded eagerly as they are received, but no more than maxConcurrency decoded models are held whilst waiting for an earlier
+     * payload to finish decoding or for the downstream to process them.
+     *
+     * @param scheduler      The scheduler to decode and emit on, which should be bounded
+     * @param maxConcurrency The maximum number of payloads to decode at the same time
+     * @return The transformer
+     */
+    @NonNull
+    public ObservableTransformer<String, T> decodeAll(@NonNull Scheduler scheduler, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        return upstream -> upstream
+                .toFlowable(BackpressureStrategy.BUFFER)
+                .concatMapEager(json -> Flowable.fromCallable(() -> decode(json)).subscribeOn(scheduler), maxConcurrency, 1)
+                .observeOn(scheduler, false, maxConcurrency)
+                .toObservable();
+    }
+
+    String strip(String json) {
+        Stripper stripper = new Stripper(json);
+        try {
+            int end = skipWhitespace(json, stripper.scanValue(skipWhitespace(json, 0), ""));
+            if (end != json.length()) {
+                throw new IllegalArgumentException("Unexpected content after JSON payload at " + end);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid JSON payload", e);
+        }
+        return stripper.result();
+    }
+
+    private final class Stripper {
+
+        private final String json;
+        private StringBuilder out;
+        private int copiedUpTo;
+
+        Stripper(String json) {
+            this.json = json;
+        }
+
+        // Scans the value starting at the given index for excluded fields and returns the index after it
+        int scanValue(int index, String path) {
+            switch (json.charAt(index)) {
+                case '{':
+                    return scanObject(index, path);
+                case '[':
+                    return scanArray(index, path);
+                default:
+                    return skipValue(json, index);
+            }
+        }
+
+        private int scanObject(int index, String path) {
+            index = skipWhitespace(json, index + 1);
+            boolean first = true;
+            int retainedEnd = -1;
+            while (json.charAt(index) != '}') {
+                if (!first) {
+                    index = skipWhitespace(json, expect(json, index, ','));
+                }
+                first = false;
+                int nameStart = index;
+                int nameEnd = skipString(json, index);
+                String fieldPath = path.isEmpty() ? json.substring(nameStart + 1, nameEnd - 1)
+                        : path + PATH_SEPARATOR + json.substring(nameStart + 1, nameEnd - 1);
+                int valueStart = skipWhitespace(json, expect(json, skipWhitespace(json, nameEnd), ':'));
+                if (excludedFields.contains(fieldPath)) {
+                    int valueEnd = skipValue(json, valueStart);
+                    index = skipWhitespace(json, valueEnd);
+                    if (retainedEnd >= 0) {
+                        cut(retainedEnd, valueEnd);
+                    } else if (json.charAt(index) == ',') {
+                        index = skipWhitespace(json, index + 1);
+                        first = true;
+                        cut(nameStart, index);
+                    } else {
+                        cut(nameStart, valueEnd);
+                    }
+                } else {
+                    retainedEnd = excludedParents.contains(fieldPath) ? scanValue(valueStart, fieldPath) : skipValue(json, valueStart);
+                    index = skipWhitespace(json, retainedEnd);
+                }
+            }
+            return index + 1;
+        }
+
+        private int scanArray(int index, String path) {
+            index = skipWhitespace(json, index + 1);
+            boolean first = true;
+            while (json.charAt(index) != ']') {
+                if (!first) {
+                    index = skipWhitespace(json, expect(json, index, ','));
+                }
+                first = false;
+                index = skipWhitespace(json, scanValue(index, path));
+            }
+            return index + 1;
+        }
+
+        private void cut(int start, int end) {
+            if (out == null) {
+                out = new StringBuilder(json.length());
+            }
+            out.append(json, copiedUpTo, start);
+            copiedUpTo = end;
+        }
+
+        String result() {
+            if (out == null) {
+                return json;
+            }
+            return out.append(json, copiedUpTo, json.length()).toString();
+        }
+    }
+
+    // Returns the index after the value starting at the given index
+    private static int skipValue(String json, int index) {
+        char c = json.charAt(index);
+        switch (c) {
+            case '{':
+            case '[':
+                char close = c == '{' ? '}' : ']';
+                index = skipWhitespace(json, index + 1);
+                boolean first = true;
+                while (json.charAt(index) != close) {
+                    if (!first) {
+                        index = skipWhitespace(json, expect(json, index, ','));
+                    }
+                    first = false;
+                    if (c == '{') {
+                        index = skipWhitespace(json, expect(json, skipWhitespace(json, skipString(json, index)), ':'));
+                    }
+                    index = skipWhitespace(json, skipValue(json, index));
+                }
+                return index + 1;
+            case '"':
+                return skipString(json, index);
+            default:
+                return skipLiteral(json, index);
+        }
+    }
+
+    private static int expect(String json, int index, char expected) {
+        if (json.charAt(index) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at " + index);
+        }
+        return index + 1;
+    }
+
+    // Returns the index after the closing quote of the string starting at the given index
+    private static int skipString(String json, int index) {
+        index = expect(json, index, '"');
+        while (true) {
+            char c = json.charAt(index++);
+            if (c == '\\') {
+                index++;
+            } else if (c == '"') {
+                return index;
+            }
+        }
+    }
+
+    private static int skipLiteral(String json, int index) {
+        int start = index;
+        while (index < json.length()) {
+            char c = json.charAt(index);
+            if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                break;
+            }
+            index++;
+        }
+        if (index == start) {
+            throw new IllegalArgumentException("Expected a value at " + start);
+        }
+        return index;
+    }
+
+    private static int skipWhitespace(String json, int index) {
+        while (index < json.length() && Character.isWhitespace(json.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.flow.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates time-ordered ids in the UUID version 7 format.
+ *
+ * The ids are valid UUID strings (and can be parsed via {@link java.util.UUID#fromString(String)}), where the first 48 bits are the creation time
+ * in milliseconds, followed by a 12 bit sequence and 62 random bits. This means ids sort lexicographically by creation time, which makes them
+ * cheap to index.
+ *
+ * Ids generated on the same thread are strictly increasing. State is kept per thread and randomness taken from {@link ThreadLocalRandom}, so
+ * generation is lock-free and avoids the shared {@link java.security.SecureRandom} used by {@link java.util.UUID#randomUUID()}.
+ *
+ * Note that the ids are not secret. They reveal when the model was created, and {@link ThreadLocalRandom} is not a secure source of randomness,
+ * so ids can be guessed by someone who has seen other ids. This matters for payment, transaction and request ids that leave the device. If ids
+ * must be unguessable, for instance because they are used to look up data without further authentication, install a generator based on
+ * {@link java.util.UUID#randomUUID()} via {@link IdGenerators#setIdGenerator(IdGenerator)}.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int MAX_SEQUENCE = 0xFFF;
+    private static final int MAX_INITIAL_SEQUENCE = 0x7FF;
+
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
+    @NonNull
+    @Override
+    public String generateId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        State threadState = state.get();
+        long millis = currentTimeMillis();
+        if (millis > threadState.lastMillis) {
+            threadState.lastMillis = millis;
+            threadState.sequence = random.nextInt(MAX_INITIAL_SEQUENCE + 1);
+        } else if (threadState.sequence < MAX_SEQUENCE) {
+            threadState.sequence++;
+        } else {
+            // Sequence exhausted (or the clock went backwards), so borrow from the next millisecond to stay ordered
+            threadState.lastMillis++;
+            threadState.sequence = random.nextInt(MAX_INITIAL_SEQUENCE + 1);
+        }
+
+        long mostSigBits = (threadState.lastMillis << 16) | 0x7000L | threadState.sequence;
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return format(mostSigBits, leastSigBits);
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static String format(long mostSigBits, long leastSigBits) {
+        char[] chars = new char[36];
+        writeHex(chars, 0, mostSigBits >>> 32, 8);
+        chars[8] = '-';
+        writeHex(chars, 9, mostSigBits >>> 16, 4);
+        chars[13] = '-';
+        writeHex(chars, 14, mostSigBits, 4);
+        chars[18] = '-';
+        writeHex(chars, 19, leastSigBits >>> 48, 4);
+        chars[23] = '-';
+        writeHex(chars, 24, leastSigBits, 12);
+        return new String(chars);
+    }
+
+    private static void writeHex(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static final class State {
+        private long lastMillis;
+        private int sequence;
+    }
+}
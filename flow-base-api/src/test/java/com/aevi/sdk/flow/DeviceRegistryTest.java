@@ -0,0 +1,122 @@
+package com.aevi.sdk.flow;
+
+import com.aevi.sdk.flow.model.Device;
+import com.aevi.sdk.flow.model.FlowEvent;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.aevi.sdk.flow.constants.SystemEventTypes.ACCESSORY_CONNECTED;
+import static com.aevi.sdk.flow.constants.SystemEventTypes.DEVICE_CONNECTED;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class DeviceRegistryTest {
+
+    private final Device deviceOne = new Device("1", "one");
+    private final Device deviceTwo = new Device("2", "two");
+
+    private PublishSubject<FlowEvent> systemEvents;
+    private SystemEventStream systemEventStream;
+    private TestScheduler debounceScheduler;
+    private AtomicInteger loads;
+    private List<Device> connectedDevices;
+    private DeviceRegistry deviceRegistry;
+
+    @Before
+    public void setUp() throws Exception {
+        systemEvents = PublishSubject.create();
+        loads = new AtomicInteger();
+        connectedDevices = Arrays.asList(deviceOne);
+        Single<List<Device>> loader = Single.fromCallable(() -> {
+            loads.incrementAndGet();
+            return connectedDevices;
+        });
+        systemEventStream = new SystemEventStream(systemEvents, 1);
+        debounceScheduler = new TestScheduler();
+        deviceRegistry = new DeviceRegistry(loader, systemEventStream, debounceScheduler);
+    }
+
+    @Test
+    public void shouldLoadDevicesOnlyOnce() throws Exception {
+        deviceRegistry.getDevices().test().assertValue(Arrays.asList(deviceOne));
+        deviceRegistry.getDevices().test().assertValue(Arrays.asList(deviceOne));
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldLookupDeviceById() throws Exception {
+        assertThat(deviceRegistry.getDevice("1")).isNull();
+
+        deviceRegistry.getDevices().test();
+
+        assertThat(deviceRegistry.getDevice("1")).isEqualTo(deviceOne);
+        assertThat(deviceRegistry.getDevice("2")).isNull();
+    }
+
+    @Test
+    public void shouldReloadDevicesOnSystemEvent() throws Exception {
+        TestObserver<List<Device>> observer = deviceRegistry.observeDevices().test();
+
+        connectedDevices = Arrays.asList(deviceTwo);
+        systemEvents.onNext(new FlowEvent(DEVICE_CONNECTED));
+        debounceScheduler.advanceTimeBy(DeviceRegistry.RELOAD_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+
+        observer.assertValues(Arrays.asList(deviceOne), Arrays.asList(deviceTwo));
+        assertThat(deviceRegistry.getDevice("2")).isEqualTo(deviceTwo);
+        assertThat(deviceRegistry.getDevice("1")).isNull();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotReloadForReplayedEvents() throws Exception {
+        systemEventStream.observe().test();
+        systemEvents.onNext(new FlowEvent(DEVICE_CONNECTED));
+
+        deviceRegistry.getDevices().test();
+        debounceScheduler.advanceTimeBy(DeviceRegistry.RELOAD_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotReloadForOtherEvents() throws Exception {
+        deviceRegistry.getDevices().test();
+
+        systemEvents.onNext(new FlowEvent("somethingChanged"));
+        debounceScheduler.advanceTimeBy(DeviceRegistry.RELOAD_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReloadOnceForBurstOfEvents() throws Exception {
+        deviceRegistry.getDevices().test();
+
+        systemEvents.onNext(new FlowEvent(DEVICE_CONNECTED));
+        systemEvents.onNext(new FlowEvent(ACCESSORY_CONNECTED));
+        debounceScheduler.advanceTimeBy(DeviceRegistry.RELOAD_DEBOUNCE_MS / 2, TimeUnit.MILLISECONDS);
+        systemEvents.onNext(new FlowEvent(ACCESSORY_CONNECTED));
+        assertThat(loads.get()).isEqualTo(1);
+
+        debounceScheduler.advanceTimeBy(DeviceRegistry.RELOAD_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldStopListeningForChanges() throws Exception {
+        deviceRegistry.getDevices().test();
+        deviceRegistry.stop();
+
+        assertThat(systemEvents.hasObservers()).isFalse();
+    }
+}
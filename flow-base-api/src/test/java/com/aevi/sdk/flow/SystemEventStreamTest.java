@@ -0,0 +1,87 @@
+package com.aevi.sdk.flow;
+
+import com.aevi.sdk.flow.model.FlowEvent;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class SystemEventStreamTest {
+
+    private PublishSubject<FlowEvent> source;
+    private AtomicInteger connections;
+    private SystemEventStream systemEventStream;
+
+    @Before
+    public void setUp() throws Exception {
+        source = PublishSubject.create();
+        connections = new AtomicInteger();
+        Observable<FlowEvent> connection = source.doOnSubscribe(disposable -> connections.incrementAndGet());
+        systemEventStream = new SystemEventStream(connection, 2);
+    }
+
+    @Test
+    public void shouldShareOneConnectionBetweenSubscribers() throws Exception {
+        TestObserver<FlowEvent> first = systemEventStream.observe().test();
+        TestObserver<FlowEvent> second = systemEventStream.observe().test();
+
+        source.onNext(new FlowEvent("one"));
+
+        assertThat(connections.get()).isEqualTo(1);
+        first.assertValues(new FlowEvent("one"));
+        second.assertValues(new FlowEvent("one"));
+    }
+
+    @Test
+    public void shouldDisconnectWhenLastSubscriberLeaves() throws Exception {
+        TestObserver<FlowEvent> first = systemEventStream.observe().test();
+        first.dispose();
+
+        assertThat(source.hasObservers()).isFalse();
+
+        systemEventStream.observe().test();
+        assertThat(connections.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldFilterByEventType() throws Exception {
+        TestObserver<FlowEvent> observer = systemEventStream.observe("wanted").test();
+
+        source.onNext(new FlowEvent("unwanted"));
+        source.onNext(new FlowEvent("wanted"));
+
+        observer.assertValues(new FlowEvent("wanted"));
+    }
+
+    @Test
+    public void shouldReplayRecentEventsToLateSubscribers() throws Exception {
+        systemEventStream.observe().test();
+        source.onNext(new FlowEvent("one"));
+        source.onNext(new FlowEvent("two"));
+        source.onNext(new FlowEvent("three"));
+
+        systemEventStream.observe().test().assertValues(new FlowEvent("two"), new FlowEvent("three"));
+    }
+
+    @Test
+    public void shouldDropOldestEventsForSlowSubscriber() throws Exception {
+        TestScheduler testScheduler = new TestScheduler();
+        TestSubscriber<FlowEvent> subscriber = systemEventStream.observe(testScheduler, 2).test();
+
+        for (int i = 0; i < 5; i++) {
+            source.onNext(new FlowEvent("event" + i));
+        }
+        testScheduler.triggerActions();
+
+        subscriber.assertNoErrors();
+        assertThat(subscriber.values()).contains(new FlowEvent("event4"));
+        assertThat(subscriber.values()).doesNotContain(new FlowEvent("event1"), new FlowEvent("event2"));
+    }
+}
@@ -163,4 +163,42 @@ public class AdditionalDataTest {
         Map<String, Number> dataOfType = additionalData.getDataOfType(Number.class);
         assertThat(dataOfType).hasSize(4).containsKeys("int", "long", "double", "float");
     }
+
+    @Test
+    public void fingerprintMatchesForEqualDataRegardlessOfOrder() throws Exception {
+        additionalData.addData("one", "1");
+        additionalData.addData("two", "2");
+        AdditionalData other = new AdditionalData();
+        other.addData("two", "2");
+        other.addData("one", "1");
+
+        assertThat(additionalData.getFingerprint()).isEqualTo(other.getFingerprint());
+        assertThat(additionalData).isEqualTo(other);
+    }
+
+    @Test
+    public void fingerprintIsUpdatedOnModification() throws Exception {
+        additionalData.addData("one", "1");
+        long fingerprint = additionalData.getFingerprint();
+
+        additionalData.addData("one", "2");
+        assertThat(additionalData.getFingerprint()).isNotEqualTo(fingerprint);
+
+        additionalData.getKeys().remove("one");
+        assertThat(additionalData.getFingerprint()).isEqualTo(new AdditionalData().getFingerprint());
+    }
+
+    @Test
+    public void equalsIsCorrectWhenOnlyOneFingerprintIsCached() throws Exception {
+        additionalData.addData("one", "1");
+        AdditionalData other = new AdditionalData();
+        other.addData("one", "1");
+        additionalData.getFingerprint();
+
+        assertThat(additionalData).isEqualTo(other);
+        other.addData("one", "2");
+        assertThat(additionalData).isNotEqualTo(other);
+        other.getFingerprint();
+        assertThat(additionalData).isNotEqualTo(other);
+    }
 }
@@ -0,0 +1,100 @@
+package com.aevi.sdk.flow.model.config;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class FlowExecutionPlanTest {
+
+    private FlowConfig flowConfig;
+
+    @Before
+    public void setup() {
+        FlowConfig innerFlow = new FlowConfig("inner", "sale", 1, 2, null, null, stages(
+                new FlowStage("pre_transaction", AppExecutionType.MULTIPLE, Arrays.asList(
+                        new FlowApp("loyalty", true, null),
+                        new FlowApp("upsell", false, FlowAppConditions.OUTCOME_PARTIALLY_FULFILLED))),
+                new FlowStage("transaction_processing", AppExecutionType.SINGLE, Collections.singletonList(new FlowApp("pay")))), false, false);
+        FlowStage split = new FlowStage("split", AppExecutionType.SINGLE, Collections.singletonList(new FlowApp("splitter")));
+        split.setInnerFlow(innerFlow);
+        flowConfig = new FlowConfig("outer", "split", 3, 2, null, null, stages(
+                new FlowStage("pre_flow", AppExecutionType.NONE, Collections.singletonList(new FlowApp("ignored"))),
+                split,
+                new FlowStage("post_flow", AppExecutionType.MULTIPLE, Arrays.asList(new FlowApp("receipts"), new FlowApp("loyalty")))),
+                                    false, false);
+    }
+
+    @Test
+    public void shouldLayOutStagesInExecutionOrderWithInnerFlowBoundaries() {
+        FlowExecutionPlan plan = flowConfig.getExecutionPlan();
+
+        assertThat(plan.getStageCount()).isEqualTo(5);
+        assertThat(plan.getStageName(0)).isEqualTo("PRE_FLOW");
+        assertThat(plan.getStageIndex("split")).isEqualTo(1);
+        assertThat(plan.hasInnerFlow(1)).isTrue();
+        assertThat(plan.getInnerFlowName(1)).isEqualTo("inner");
+        assertThat(plan.getInnerFlowEnd(1)).isEqualTo(4);
+        assertThat(plan.getDepth(2)).isEqualTo(1);
+        assertThat(plan.getStageName(4)).isEqualTo("POST_FLOW");
+        assertThat(plan.getInnerFlowEnd(4)).isEqualTo(5);
+        assertThat(plan.getStageIndex("unknown")).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldSplitMandatoryAndConditionalApps() {
+        FlowExecutionPlan plan = flowConfig.getExecutionPlan();
+        int preTransaction = plan.getStageIndex("PRE_TRANSACTION");
+
+        assertThat(plan.getMandatoryApps(preTransaction)).extracting("id").containsExactly("loyalty");
+        assertThat(plan.getConditionalApps(preTransaction)).extracting("id").containsExactly("upsell");
+        assertThat(plan.getEligibleApps(preTransaction, Collections.<String>emptySet())).extracting("id").containsExactly("loyalty");
+        assertThat(plan.getEligibleApps(preTransaction, Collections.singleton(FlowAppConditions.OUTCOME_PARTIALLY_FULFILLED)))
+                .extracting("id").containsExactly("loyalty", "upsell");
+    }
+
+    @Test
+    public void shouldListRunnableAppsOnceExcludingStagesThatDoNotCallApps() {
+        assertThat(flowConfig.getExecutionPlan().getRunnableAppIds()).containsExactly("splitter", "loyalty", "upsell", "pay", "receipts");
+    }
+
+    @Test
+    public void shouldKeepPlanPerConfig() {
+        FlowConfig sameFlow = FlowConfig.fromJson(flowConfig.toJson());
+
+        assertThat(flowConfig.getExecutionPlan()).isSameAs(flowConfig.getExecutionPlan());
+        assertThat(sameFlow.getExecutionPlan()).isNotSameAs(flowConfig.getExecutionPlan());
+    }
+
+    @Test
+    public void shouldNotShareModifiedPlanWithConfigOfSameNameAndVersion() {
+        FlowConfig sameFlow = FlowConfig.fromJson(flowConfig.toJson());
+        flowConfig.getExecutionPlan();
+
+        sameFlow.setApps("post_flow", Collections.singletonList(new FlowApp("printer")));
+
+        assertThat(sameFlow.getExecutionPlan().getRunnableAppIds()).contains("printer");
+        assertThat(flowConfig.getExecutionPlan().getRunnableAppIds()).doesNotContain("printer");
+        assertThat(FlowConfig.fromJson(flowConfig.toJson()).getExecutionPlan().getRunnableAppIds()).doesNotContain("printer");
+    }
+
+    @Test
+    public void shouldInvalidatePlanWhenAppsChange() {
+        FlowExecutionPlan before = flowConfig.getExecutionPlan();
+
+        flowConfig.setApps("post_flow", Collections.singletonList(new FlowApp("printer")));
+
+        FlowExecutionPlan after = flowConfig.getExecutionPlan();
+        assertThat(after).isNotSameAs(before);
+        assertThat(after.getRunnableAppIds()).containsExactly("splitter", "loyalty", "upsell", "pay", "printer");
+    }
+
+    private static List<FlowStage> stages(FlowStage... stages) {
+        return new ArrayList<>(Arrays.asList(stages));
+    }
+}
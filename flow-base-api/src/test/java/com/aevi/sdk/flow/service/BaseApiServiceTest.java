@@ -9,7 +9,10 @@ import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.FlowException;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.model.Request;
+import com.aevi.sdk.flow.util.InMemoryPayloadSideChannel;
+import com.aevi.sdk.flow.util.PayloadSideChannels;
 import io.reactivex.subjects.BehaviorSubject;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -18,6 +21,7 @@ import org.mockito.Mock;
 import java.util.List;
 
 import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_ERROR;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.PAYLOAD_SIDE_CHANNEL;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -45,6 +49,12 @@ public class BaseApiServiceTest {
         apiService.onNewClient(channelServer, "com.test");
     }
 
+    @After
+    public void tearDown() throws Exception {
+        PayloadSideChannels.setSideChannel(null);
+        PayloadSideChannels.setThreshold(PayloadSideChannels.DEFAULT_THRESHOLD);
+    }
+
     @Test
     public void shouldSendAckOnRequestMessage() throws Exception {
         fakeIncomingMessage(incomingAppMessage);
@@ -73,6 +83,65 @@ public class BaseApiServiceTest {
         verifyCommsEnded(false);
     }
 
+    @Test
+    public void shouldSendLargeResponseViaSideChannelIfSupportedByClient() throws Exception {
+        InMemoryPayloadSideChannel sideChannel = new CrossProcessSideChannel();
+        PayloadSideChannels.setSideChannel(sideChannel);
+        PayloadSideChannels.setThreshold(10);
+        apiService.responseToSend = "{\"large\":\"response\"}";
+        InternalData senderInternalData = new InternalData("1.0.0");
+        senderInternalData.addAdditionalData(PAYLOAD_SIDE_CHANNEL, InMemoryPayloadSideChannel.NAME);
+
+        fakeIncomingMessage(new AppMessage(AppMessageTypes.REQUEST_MESSAGE, request.toJson(), senderInternalData));
+
+        assertThat(sideChannel.getPendingCount()).isEqualTo(1);
+        verifyMessageSent(AppMessageTypes.RESPONSE_MESSAGE, apiService.responseToSend);
+    }
+
+    @Test
+    public void shouldSendLargeResponseInlineIfSideChannelNotSupportedByClient() throws Exception {
+        InMemoryPayloadSideChannel sideChannel = new CrossProcessSideChannel();
+        PayloadSideChannels.setSideChannel(sideChannel);
+        PayloadSideChannels.setThreshold(10);
+        apiService.responseToSend = "{\"large\":\"response\"}";
+
+        fakeIncomingMessage(incomingAppMessage);
+
+        assertThat(sideChannel.getPendingCount()).isEqualTo(0);
+        verifyMessageSent(AppMessageTypes.RESPONSE_MESSAGE, apiService.responseToSend);
+    }
+
+    @Test
+    public void shouldSendLargeResponseInlineIfSideChannelIsNotCrossProcess() throws Exception {
+        InMemoryPayloadSideChannel sideChannel = new InMemoryPayloadSideChannel();
+        PayloadSideChannels.setSideChannel(sideChannel);
+        PayloadSideChannels.setThreshold(10);
+        apiService.responseToSend = "{\"large\":\"response\"}";
+        InternalData senderInternalData = new InternalData("1.0.0");
+        senderInternalData.addAdditionalData(PAYLOAD_SIDE_CHANNEL, InMemoryPayloadSideChannel.NAME);
+
+        fakeIncomingMessage(new AppMessage(AppMessageTypes.REQUEST_MESSAGE, request.toJson(), senderInternalData));
+
+        assertThat(sideChannel.getPendingCount()).isEqualTo(0);
+        verifyMessageSent(AppMessageTypes.RESPONSE_MESSAGE, apiService.responseToSend);
+    }
+
+    @Test
+    public void shouldSendLargeErrorViaSideChannelIfSupportedByClient() throws Exception {
+        InMemoryPayloadSideChannel sideChannel = new CrossProcessSideChannel();
+        PayloadSideChannels.setSideChannel(sideChannel);
+        PayloadSideChannels.setThreshold(10);
+        apiService.throwExceptionInProcessRequest = true;
+        InternalData senderInternalData = new InternalData("1.0.0");
+        senderInternalData.addAdditionalData(PAYLOAD_SIDE_CHANNEL, InMemoryPayloadSideChannel.NAME);
+
+        fakeIncomingMessage(new AppMessage(AppMessageTypes.REQUEST_MESSAGE, request.toJson(), senderInternalData));
+
+        assertThat(sideChannel.getPendingCount()).isEqualTo(1);
+        verifyMessageSent(AppMessageTypes.FAILURE_MESSAGE,
+                          new FlowException(FLOW_SERVICE_ERROR, "Flow service failed with exception: Skimaroo").toJson());
+    }
+
     private void verifyCommsEnded(boolean ended) {
         if (ended) {
             verify(channelServer).sendEndStream();
@@ -100,6 +169,7 @@ public class BaseApiServiceTest {
         boolean throwExceptionInProcessRequest;
         Request requestReceived;
         boolean finishRequestReceived;
+        String responseToSend;
 
         TestApiService(ChannelServer channelServer) {
             super("1.0.0");
@@ -113,7 +183,19 @@ public class BaseApiServiceTest {
             if (throwExceptionInProcessRequest) {
                 throw new IllegalStateException("Skimaroo");
             }
+            if (responseToSend != null) {
+                clientCommunicator.sendResponse(responseToSend);
+            }
         }
 
     }
+
+    static class CrossProcessSideChannel extends InMemoryPayloadSideChannel {
+
+        @Override
+        public boolean isCrossProcess() {
+            // pretends to work across processes, as the test runs both sides in the same process
+            return true;
+        }
+    }
 }
@@ -4,9 +4,13 @@ import com.aevi.android.rxmessenger.ChannelServer;
 import com.aevi.sdk.flow.constants.AppMessageTypes;
 import com.aevi.sdk.flow.model.*;
 import com.aevi.sdk.pos.flow.PaymentFlowServiceApi;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
 import io.reactivex.subjects.BehaviorSubject;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
@@ -23,6 +27,9 @@ public class BaseListenerServiceTest {
     Response response;
     AppMessage incomingAppMessage;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Mock
     ChannelServer channelServer;
 
@@ -34,6 +41,7 @@ public class BaseListenerServiceTest {
     public void setUp() throws Exception {
         initMocks(this);
         listenerService = new TestListenerService(channelServer);
+        listenerService.setJournalScheduler(Schedulers.trampoline());
         response = new Response(new Request("banana"), true, "Believe!");
         InternalData internalData = new InternalData(PaymentFlowServiceApi.getApiVersion());
         internalData.setSenderPackageName(FLOW_PROCESSING_SERVICE);
@@ -106,6 +114,50 @@ public class BaseListenerServiceTest {
         assertThat(listenerService.errorMessage).isEqualTo("blarp");
     }
 
+    @Test
+    public void shouldJournalAndMarkResponseAsDelivered() throws Exception {
+        ResponseJournal responseJournal = new ResponseJournal(temporaryFolder.newFile(), 1024, 2, Schedulers.trampoline());
+        listenerService.setResponseJournal(responseJournal);
+        fakeIncomingMessage(incomingAppMessage);
+        setupNewFPSClient();
+
+        assertThat(listenerService.getJournaledResponse(response.getId())).isEqualTo(response);
+        assertThat(responseJournal.getUndelivered()).isEmpty();
+        verifyCommsEnded(true);
+    }
+
+    @Test
+    public void shouldRedeliverUndeliveredJournaledResponses() throws Exception {
+        ResponseJournal responseJournal = new ResponseJournal(temporaryFolder.newFile(), 1024, 2, Schedulers.trampoline());
+        responseJournal.append(response.getId(), response.toJson());
+
+        listenerService.setResponseJournal(responseJournal);
+
+        assertThat(listenerService.responseReceived).isEqualTo(response);
+        assertThat(responseJournal.getUndelivered()).isEmpty();
+    }
+
+    @Test
+    public void shouldOpenJournalInBackgroundAndProcessResponsesOnceOpened() throws Exception {
+        TestScheduler journalScheduler = new TestScheduler();
+        listenerService.setJournalScheduler(journalScheduler);
+        ResponseJournal responseJournal = new ResponseJournal(temporaryFolder.newFile(), 1024, 2, Schedulers.trampoline());
+        listenerService.setResponseJournal(responseJournal);
+        fakeIncomingMessage(incomingAppMessage);
+        setupNewFPSClient();
+
+        assertThat(listenerService.getResponseJournal()).isNull();
+        assertThat(listenerService.responseCalled).isFalse();
+        verifyCommsEnded(false);
+
+        journalScheduler.triggerActions();
+
+        assertThat(listenerService.responseReceived).isEqualTo(response);
+        assertThat(responseJournal.getResponse(response.getId())).isNotNull();
+        assertThat(responseJournal.getUndelivered()).isEmpty();
+        verifyCommsEnded(true);
+    }
+
     private void fakeIncomingMessage(AppMessage appMessage) {
         lastMessage = appMessage.toJson();
         incomingMessagePublisher.onNext(appMessage.toJson());
@@ -0,0 +1,31 @@
+package com.aevi.sdk.flow.service;
+
+import com.aevi.sdk.flow.constants.AppMessageTypes;
+import com.aevi.sdk.flow.model.AppMessage;
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ClientCommunicatorTest {
+
+    @Test
+    public void shouldReadMessageTypeWithoutDecodingMessage() throws Exception {
+        String message = new AppMessage(AppMessageTypes.REQUEST_MESSAGE, "{\"id\":\"1234\"}").toJson();
+
+        assertThat(ClientCommunicator.getMessageType(message)).isEqualTo(AppMessageTypes.REQUEST_MESSAGE);
+    }
+
+    @Test
+    public void shouldReadMessageTypeAfterOtherProperties() throws Exception {
+        String message = "{\"messageData\":\"{\\\"nested\\\":{\\\"messageType\\\":\\\"no\\\"}}\",\"other\":[1,{\"a\":null}],\"messageType\":\"request\"}";
+
+        assertThat(ClientCommunicator.getMessageType(message)).isEqualTo("request");
+    }
+
+    @Test
+    public void shouldNotReadTypeOfMalformedMessage() throws Exception {
+        assertThat(ClientCommunicator.getMessageType("rubbish")).isNull();
+        assertThat(ClientCommunicator.getMessageType("{\"messageData\":\"{}\"}")).isNull();
+        assertThat(ClientCommunicator.getMessageType("{\"messageType\":{}}")).isNull();
+    }
+}
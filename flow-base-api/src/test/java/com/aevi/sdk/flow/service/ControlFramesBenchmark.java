@@ -0,0 +1,45 @@
+package com.aevi.sdk.flow.service;
+
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.model.InternalData;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static com.aevi.sdk.flow.constants.AppMessageTypes.REQUEST_ACK_MESSAGE;
+
+/**
+ * Compares encoding an ack for every client with using the frame cached by {@link ControlFrames}, for a burst of acks.
+ *
+ * Not run as part of the build, remove the {@link Ignore} annotation to run it locally.
+ */
+@Ignore("Benchmark, run manually")
+public class ControlFramesBenchmark {
+
+    private static final int ACKS = 20000;
+
+    private static volatile String sink;
+
+    @Test
+    public void compareWithEncodingEachAck() throws Exception {
+        InternalData internalData = new InternalData("1.0.0");
+        internalData.setSenderPackageName("com.aevi.sdk.test");
+        internalData.addAdditionalData("eventBatching", "true");
+        ControlFrames controlFrames = new ControlFrames(internalData);
+
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ACKS; i++) {
+                sink = new AppMessage(REQUEST_ACK_MESSAGE, internalData).toJson();
+            }
+            long encoded = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ACKS; i++) {
+                sink = controlFrames.getAck();
+            }
+            long cached = System.nanoTime() - start;
+
+            System.out.println(String.format("Encoded %.0f ns/ack, cached %.1f ns/ack", encoded / (double) ACKS, cached / (double) ACKS));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.aevi.sdk.flow.service;
+
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.model.InternalData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.aevi.sdk.flow.constants.AppMessageTypes.REQUEST_ACK_MESSAGE;
+import static com.aevi.sdk.flow.constants.AppMessageTypes.RESPONSE_MESSAGE;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ControlFramesTest {
+
+    private InternalData internalData;
+    private ControlFrames controlFrames;
+
+    @Before
+    public void setUp() throws Exception {
+        internalData = new InternalData("1.0.0");
+        controlFrames = new ControlFrames(internalData);
+    }
+
+    @Test
+    public void shouldEncodeControlMessagesOnce() throws Exception {
+        String ack = controlFrames.getAck();
+
+        assertThat(controlFrames.getAck()).isSameAs(ack);
+        AppMessage ackMessage = AppMessage.fromJson(ack);
+        assertThat(ackMessage.getMessageType()).isEqualTo(REQUEST_ACK_MESSAGE);
+        assertThat(ackMessage.getInternalData().getSenderApiVersion()).isEqualTo("1.0.0");
+        assertThat(AppMessage.fromJson(controlFrames.getEmptyResponse()).getMessageType()).isEqualTo(RESPONSE_MESSAGE);
+    }
+
+    @Test
+    public void shouldReEncodeWhenInternalDataChanges() throws Exception {
+        String ack = controlFrames.getAck();
+
+        internalData.addAdditionalData("key", "value");
+        String updatedAck = controlFrames.getAck();
+
+        assertThat(updatedAck).isNotEqualTo(ack);
+        assertThat(AppMessage.fromJson(updatedAck).getInternalData().getAdditionalDataValue("key", null)).isEqualTo("value");
+
+        internalData.setSenderPackageName("com.test");
+        assertThat(AppMessage.fromJson(controlFrames.getAck()).getInternalData().getSenderPackageName()).isEqualTo("com.test");
+    }
+}
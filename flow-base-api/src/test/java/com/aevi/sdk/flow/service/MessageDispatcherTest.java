@@ -0,0 +1,107 @@
+package com.aevi.sdk.flow.service;
+
+import com.aevi.android.rxmessenger.ChannelServer;
+import com.aevi.sdk.flow.constants.AppMessageTypes;
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.model.FlowException;
+import com.aevi.sdk.flow.model.InternalData;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_BUSY;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class MessageDispatcherTest {
+
+    private ChannelServer channelServer;
+    private PublishSubject<String> incomingMessages = PublishSubject.create();
+    private MessageDispatcher messageDispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        channelServer = mock(ChannelServer.class);
+        when(channelServer.subscribeToMessages()).thenReturn(incomingMessages);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (messageDispatcher != null) {
+            messageDispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldDecodeOnDeliveringThreadWhenDirect() throws Exception {
+        messageDispatcher = MessageDispatcher.direct();
+        ClientCommunicator clientCommunicator = new ClientCommunicator(channelServer, new InternalData("1.0.0"), messageDispatcher);
+        Thread[] decodeThread = new Thread[1];
+        clientCommunicator.subscribeToMessages().subscribe(appMessage -> decodeThread[0] = Thread.currentThread());
+
+        incomingMessages.onNext(new AppMessage(AppMessageTypes.REQUEST_MESSAGE).toJson());
+
+        assertThat(decodeThread[0]).isSameAs(Thread.currentThread());
+    }
+
+    @Test
+    public void shouldDecodeOnWorkerThread() throws Exception {
+        messageDispatcher = MessageDispatcher.worker(1, 10, MessageDispatcher.CallbackThread.WORKER);
+        ClientCommunicator clientCommunicator = new ClientCommunicator(channelServer, new InternalData("1.0.0"), messageDispatcher);
+        TestObserver<AppMessage> testObserver = clientCommunicator.subscribeToMessages().test();
+
+        incomingMessages.onNext(new AppMessage(AppMessageTypes.REQUEST_MESSAGE).toJson());
+
+        testObserver.awaitCount(1);
+        testObserver.assertValueCount(1);
+        assertThat(testObserver.lastThread().getName()).startsWith("flow-dispatch-");
+    }
+
+    @Test
+    public void shouldRejectRequestsWhenQueueIsFull() throws Exception {
+        CountDownLatch blockWorker = fillQueue();
+
+        incomingMessages.onNext(new AppMessage(AppMessageTypes.REQUEST_MESSAGE).toJson()); // rejected
+        blockWorker.countDown();
+
+        ArgumentCaptor<String> sentCaptor = ArgumentCaptor.forClass(String.class);
+        verify(channelServer).send(sentCaptor.capture());
+        AppMessage sent = AppMessage.fromJson(sentCaptor.getValue());
+        assertThat(sent.getMessageType()).isEqualTo(AppMessageTypes.FAILURE_MESSAGE);
+        assertThat(FlowException.fromJson(sent.getMessageData()).getErrorCode()).isEqualTo(FLOW_SERVICE_BUSY);
+    }
+
+    @Test
+    public void shouldDropEventsWithoutEndingStageWhenQueueIsFull() throws Exception {
+        CountDownLatch blockWorker = fillQueue();
+
+        incomingMessages.onNext(new AppMessage(AppMessageTypes.FLOW_SERVICE_EVENT, "{}").toJson()); // dropped
+        blockWorker.countDown();
+
+        verify(channelServer, never()).send(anyString());
+    }
+
+    private CountDownLatch fillQueue() throws InterruptedException {
+        messageDispatcher = MessageDispatcher.worker(1, 1, MessageDispatcher.CallbackThread.WORKER);
+        ClientCommunicator clientCommunicator = new ClientCommunicator(channelServer, new InternalData("1.0.0"), messageDispatcher);
+        CountDownLatch blockWorker = new CountDownLatch(1);
+        CountDownLatch workerBusy = new CountDownLatch(1);
+        clientCommunicator.subscribeToMessages().subscribe(appMessage -> {
+            workerBusy.countDown();
+            blockWorker.await(5, TimeUnit.SECONDS);
+        });
+
+        String message = new AppMessage(AppMessageTypes.REQUEST_MESSAGE).toJson();
+        incomingMessages.onNext(message); // taken by worker
+        assertThat(workerBusy.await(5, TimeUnit.SECONDS)).isTrue();
+        incomingMessages.onNext(message); // queued
+        return blockWorker;
+    }
+}
@@ -0,0 +1,169 @@
+package com.aevi.sdk.flow.service;
+
+import io.reactivex.schedulers.Schedulers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ResponseJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+    private ResponseJournal responseJournal;
+
+    @Before
+    public void setUp() throws Exception {
+        file = temporaryFolder.newFile("journal");
+        responseJournal = new ResponseJournal(file, 1024, 2, Schedulers.trampoline());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        responseJournal.close();
+    }
+
+    @Test
+    public void shouldLookUpResponseByRequestId() throws Exception {
+        responseJournal.append("one", "{\"id\":\"one\"}");
+        responseJournal.append("two", "{\"id\":\"two\"}");
+
+        assertThat(responseJournal.getResponse("two")).isEqualTo("{\"id\":\"two\"}");
+        assertThat(responseJournal.getResponse("three")).isNull();
+    }
+
+    @Test
+    public void shouldReturnUndeliveredInOrder() throws Exception {
+        responseJournal.append("one", "1");
+        responseJournal.append("two", "2");
+        responseJournal.append("three", "3");
+        responseJournal.markDelivered("two");
+
+        List<ResponseJournal.Entry> undelivered = responseJournal.getUndelivered();
+
+        assertThat(undelivered).hasSize(2);
+        assertThat(undelivered.get(0).getRequestId()).isEqualTo("one");
+        assertThat(undelivered.get(1).getRequestId()).isEqualTo("three");
+    }
+
+    @Test
+    public void shouldRecoverStateAfterReopening() throws Exception {
+        responseJournal.append("one", "1");
+        responseJournal.append("two", "2");
+        responseJournal.markDelivered("one");
+        responseJournal.close();
+
+        responseJournal = new ResponseJournal(file, 1024, 2, Schedulers.trampoline());
+
+        assertThat(responseJournal.size()).isEqualTo(2);
+        assertThat(responseJournal.getResponse("one")).isEqualTo("1");
+        assertThat(responseJournal.getUndelivered()).hasSize(1);
+        assertThat(responseJournal.getUndelivered().get(0).getRequestId()).isEqualTo("two");
+    }
+
+    @Test
+    public void shouldTruncateAtCorruptRecord() throws Exception {
+        responseJournal.append("one", "1");
+        responseJournal.append("two", "2");
+        responseJournal.close();
+        corruptLastByteOf("two", "2");
+
+        responseJournal = new ResponseJournal(file, 1024, 2, Schedulers.trampoline());
+
+        assertThat(responseJournal.size()).isEqualTo(1);
+        assertThat(responseJournal.getResponse("two")).isNull();
+        responseJournal.append("three", "3");
+        assertThat(responseJournal.getResponse("three")).isEqualTo("3");
+    }
+
+    @Test
+    public void shouldCompactDeliveredResponsesWhenFull() throws Exception {
+        String data = new String(new char[100]).replace('\0', 'x');
+        for (int i = 0; i < 20; i++) {
+            responseJournal.append("request" + i, data);
+            responseJournal.markDelivered("request" + i);
+        }
+
+        assertThat(responseJournal.getCapacity()).isEqualTo(1024);
+        assertThat(responseJournal.size()).isLessThan(20);
+        assertThat(responseJournal.getResponse("request19")).isEqualTo(data);
+        assertThat(responseJournal.getResponse("request0")).isNull();
+    }
+
+    @Test
+    public void shouldGrowWhenUndeliveredResponsesDoNotFit() throws Exception {
+        String data = new String(new char[100]).replace('\0', 'x');
+        for (int i = 0; i < 20; i++) {
+            responseJournal.append("request" + i, data);
+        }
+
+        assertThat(responseJournal.getCapacity()).isGreaterThan(1024);
+        assertThat(responseJournal.getUndelivered()).hasSize(20);
+    }
+
+    @Test
+    public void shouldSupersedePreviousResponseForSameRequest() throws Exception {
+        responseJournal.append("one", "1");
+        responseJournal.markDelivered("one");
+        responseJournal.append("one", "1b");
+
+        assertThat(responseJournal.size()).isEqualTo(1);
+        assertThat(responseJournal.getResponse("one")).isEqualTo("1b");
+        assertThat(responseJournal.getUndelivered()).hasSize(1);
+    }
+
+    @Test
+    public void shouldKeepUndeliveredResponsesWhenCompacting() throws Exception {
+        responseJournal.append("one", "1");
+        responseJournal.append("two", "2");
+        responseJournal.append("three", "3");
+        responseJournal.append("four", "4");
+        responseJournal.markDelivered("one");
+        responseJournal.markDelivered("two");
+        responseJournal.markDelivered("four");
+
+        responseJournal.compact();
+        responseJournal.close();
+        responseJournal = new ResponseJournal(file, 1024, 1, Schedulers.trampoline());
+
+        assertThat(responseJournal.getResponse("one")).isNull();
+        assertThat(responseJournal.getResponse("four")).isEqualTo("4");
+        assertThat(responseJournal.getUndelivered()).hasSize(1);
+        assertThat(responseJournal.getUndelivered().get(0).getRequestId()).isEqualTo("three");
+        assertThat(new File(file.getPath() + ".compact")).doesNotExist();
+    }
+
+    @Test
+    public void shouldIgnoreIncompleteCompactionOnOpen() throws Exception {
+        responseJournal.append("one", "1");
+        responseJournal.close();
+        File compactionFile = new File(file.getPath() + ".compact");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(compactionFile, "rw")) {
+            randomAccessFile.writeInt(12345);
+        }
+
+        responseJournal = new ResponseJournal(file, 1024, 2, Schedulers.trampoline());
+
+        assertThat(compactionFile).doesNotExist();
+        assertThat(responseJournal.getUndelivered()).hasSize(1);
+        assertThat(responseJournal.getResponse("one")).isEqualTo("1");
+    }
+
+    private void corruptLastByteOf(String requestId, String data) throws Exception {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            int firstRecordLength = randomAccessFile.readInt();
+            int secondRecordLength = 11 + requestId.length() + data.length();
+            randomAccessFile.seek(firstRecordLength + secondRecordLength - 1);
+            randomAccessFile.write('z');
+        }
+    }
+}
@@ -2,12 +2,22 @@ package com.aevi.sdk.flow.stage;
 
 import androidx.annotation.NonNull;
 import com.aevi.sdk.flow.constants.AppMessageTypes;
+import com.aevi.sdk.flow.constants.InternalDataKeys;
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.AuditEntry;
+import com.aevi.sdk.flow.model.FlowEvent;
+import com.aevi.sdk.flow.model.FlowEventBatch;
+import com.aevi.sdk.flow.model.InternalData;
+import com.aevi.sdk.flow.util.FlowDeadlines;
+import io.reactivex.schedulers.TestScheduler;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.aevi.sdk.flow.model.AuditEntry.AuditSeverity.INFO;
 import static com.aevi.sdk.flow.model.AuditEntry.AuditSeverity.WARNING;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Matchers.isA;
@@ -17,6 +27,7 @@ public class BaseStageModelTest {
 
     private AndroidComponentDelegate androidComponentDelegate;
     private TestModel testModel;
+    private TestScheduler testScheduler = new TestScheduler();
 
     @Before
     public void setUp() throws Exception {
@@ -25,13 +36,57 @@ public class BaseStageModelTest {
     }
 
     @Test
-    public void shouldSendAuditEntryModelCorrectly() throws Exception {
-        testModel.addAuditEntry(WARNING, "test");
+    public void shouldSendAuditEntriesIndividuallyIfBatchingNotSupported() throws Exception {
+        for (int i = 0; i < 7; i++) {
+            testModel.addAuditEntry(WARNING, "test %d", i);
+        }
+
+        verify(androidComponentDelegate, times(5)).sendMessage(isA(AppMessage.class));
+    }
+
+    @Test
+    public void shouldSendAuditEntriesWithResponse() throws Exception {
+        setupAuditEntryBatching();
+        testModel.addAuditEntry(WARNING, "test %s", "one");
+        testModel.addAuditEntry(INFO, "test");
+
+        verify(androidComponentDelegate, never()).sendMessage(isA(AppMessage.class));
+
+        testModel.sendEmptyResponse();
 
-        ArgumentCaptor<AppMessage> auditEntryArgumentCaptor = ArgumentCaptor.forClass(AppMessage.class);
-        verify(androidComponentDelegate).sendMessage(auditEntryArgumentCaptor.capture());
+        AppMessage appMessage = captureSentMessage();
+        assertThat(appMessage.getMessageType()).isEqualTo(AppMessageTypes.RESPONSE_MESSAGE);
+        List<AuditEntry> auditEntries = appMessage.getAuditEntries();
+        assertThat(auditEntries).hasSize(2);
+        assertThat(auditEntries.get(0).getAuditSeverity()).isEqualTo(WARNING);
+        assertThat(auditEntries.get(0).getAuditMessage()).isEqualTo("test one");
+        assertThat(auditEntries.get(1).getAuditSeverity()).isEqualTo(INFO);
+    }
+
+    @Test
+    public void shouldDiscardOldestAuditEntriesWhenFull() throws Exception {
+        setupAuditEntryBatching();
+        for (int i = 0; i < 25; i++) {
+            testModel.addAuditEntry(WARNING, "test %d", i);
+        }
+
+        testModel.sendEmptyResponse();
+
+        List<AuditEntry> auditEntries = captureSentMessage().getAuditEntries();
+        assertThat(auditEntries).hasSize(20);
+        assertThat(auditEntries.get(0).getAuditMessage()).isEqualTo("test 5");
+        assertThat(auditEntries.get(19).getAuditMessage()).isEqualTo("test 24");
+    }
+
+    @Test
+    public void shouldSendAuditEntryModelCorrectlyAfterResponse() throws Exception {
+        setupAuditEntryBatching();
+        testModel.sendEmptyResponse();
+        reset(androidComponentDelegate);
 
-        AppMessage appMessage = auditEntryArgumentCaptor.getValue();
+        testModel.addAuditEntry(WARNING, "test");
+
+        AppMessage appMessage = captureSentMessage();
         assertThat(appMessage.getMessageType()).isEqualTo(AppMessageTypes.AUDIT_ENTRY);
         AuditEntry auditEntry = AuditEntry.fromJson(appMessage.getMessageData());
         assertThat(auditEntry.getAuditSeverity()).isEqualTo(WARNING);
@@ -39,20 +94,170 @@ public class BaseStageModelTest {
     }
 
     @Test
-    public void shouldOnlyAllowFiveAuditEntries() throws Exception {
+    public void shouldFlushAuditEntriesIndividuallyWhenStageTerminates() throws Exception {
+        ArgumentCaptor<Runnable> terminationListenerCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(androidComponentDelegate).setTerminationListener(terminationListenerCaptor.capture());
+        setupAuditEntryBatching();
+        testModel.addAuditEntry(WARNING, "test");
+        verify(androidComponentDelegate, never()).sendMessage(isA(AppMessage.class));
+
+        terminationListenerCaptor.getValue().run();
+
+        AppMessage appMessage = captureSentMessage();
+        assertThat(appMessage.getMessageType()).isEqualTo(AppMessageTypes.AUDIT_ENTRY);
+        assertThat(AuditEntry.fromJson(appMessage.getMessageData()).getAuditMessage()).isEqualTo("test");
+    }
+
+    @Test
+    public void shouldFormatAuditEntryWhenSent() throws Exception {
+        setupAuditEntryBatching();
+        StringBuilder parameter = new StringBuilder("one");
+        testModel.addAuditEntry(WARNING, "test %s", parameter);
+        testModel.addAuditEntry(WARNING, "test %d", "invalid");
+        parameter.append(" two");
+
+        testModel.sendEmptyResponse();
+
+        List<AuditEntry> auditEntries = captureSentMessage().getAuditEntries();
+        assertThat(auditEntries.get(0).getAuditMessage()).isEqualTo("test one two");
+        assertThat(auditEntries.get(1).getAuditMessage()).isEqualTo("test %d");
+    }
+
+    @Test
+    public void shouldLimitAuditEntriesAfterResponse() throws Exception {
+        setupAuditEntryBatching();
+        for (int i = 0; i < 15; i++) {
+            testModel.addAuditEntry(WARNING, "test %d", i);
+        }
+        testModel.sendEmptyResponse();
+        reset(androidComponentDelegate);
+
         for (int i = 0; i < 10; i++) {
-            testModel.addAuditEntry(WARNING, "test");
+            testModel.addAuditEntry(WARNING, "test %d", i);
         }
 
         verify(androidComponentDelegate, times(5)).sendMessage(isA(AppMessage.class));
     }
 
+    private void setupAuditEntryBatching() {
+        InternalData senderInternalData = new InternalData("1.0.0");
+        senderInternalData.addAdditionalData(InternalDataKeys.AUDIT_ENTRY_BATCHING, "true");
+        when(androidComponentDelegate.getSenderInternalData()).thenReturn(senderInternalData);
+    }
+
+    @Test
+    public void shouldSendEventsIndividuallyIfBatchingNotSupported() throws Exception {
+        testModel.enableEventBatching(100, 10, new String[0], testScheduler);
+
+        testModel.sendEvent(new FlowEvent("one"));
+        testModel.sendEvent(new FlowEvent("two"));
+
+        verify(androidComponentDelegate, times(2)).sendMessage(isA(AppMessage.class));
+    }
+
+    @Test
+    public void shouldBatchEventsUntilFlushInterval() throws Exception {
+        setupBatching();
+
+        testModel.sendEvent(new FlowEvent("one"));
+        testModel.sendEvent(new FlowEvent("two"));
+        verify(androidComponentDelegate, never()).sendMessage(isA(AppMessage.class));
+
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        AppMessage appMessage = captureSentMessage();
+        assertThat(appMessage.getMessageType()).isEqualTo(AppMessageTypes.FLOW_EVENT_BATCH);
+        assertThat(FlowEventBatch.fromJson(appMessage.getMessageData()).getEvents())
+                .containsExactly(new FlowEvent("one"), new FlowEvent("two"));
+    }
+
+    @Test
+    public void shouldFlushBatchWhenFull() throws Exception {
+        setupBatching();
+
+        for (int i = 0; i < 10; i++) {
+            testModel.sendEvent(new FlowEvent("event" + i));
+        }
+
+        assertThat(FlowEventBatch.fromJson(captureSentMessage().getMessageData()).size()).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldCoalesceSupersededEvents() throws Exception {
+        setupBatching();
+
+        testModel.sendEvent(new FlowEvent("progress", "10%"));
+        testModel.sendEvent(new FlowEvent("other"));
+        testModel.sendEvent(new FlowEvent("progress", "50%"));
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        assertThat(FlowEventBatch.fromJson(captureSentMessage().getMessageData()).getEvents())
+                .containsExactly(new FlowEvent("other"), new FlowEvent("progress", "50%"));
+    }
+
+    @Test
+    public void shouldFlushPendingEventsBeforeResponse() throws Exception {
+        setupBatching();
+
+        testModel.sendEvent(new FlowEvent("one"));
+        testModel.sendEmptyResponse();
+
+        ArgumentCaptor<AppMessage> appMessageArgumentCaptor = ArgumentCaptor.forClass(AppMessage.class);
+        verify(androidComponentDelegate, times(2)).sendMessage(appMessageArgumentCaptor.capture());
+        assertThat(appMessageArgumentCaptor.getAllValues().get(0).getMessageType()).isEqualTo(AppMessageTypes.FLOW_EVENT);
+        assertThat(appMessageArgumentCaptor.getAllValues().get(1).getMessageType()).isEqualTo(AppMessageTypes.RESPONSE_MESSAGE);
+    }
+
+    @Test
+    public void shouldContinueBatchingAfterFailedFlush() throws Exception {
+        setupBatching();
+        doThrow(new IllegalStateException("Skimaroo")).doNothing().when(androidComponentDelegate).sendMessage(isA(AppMessage.class));
+
+        testModel.sendEvent(new FlowEvent("one"));
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        testModel.sendEvent(new FlowEvent("two"));
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        ArgumentCaptor<AppMessage> appMessageArgumentCaptor = ArgumentCaptor.forClass(AppMessage.class);
+        verify(androidComponentDelegate, times(2)).sendMessage(appMessageArgumentCaptor.capture());
+        assertThat(FlowEvent.fromJson(appMessageArgumentCaptor.getAllValues().get(1).getMessageData())).isEqualTo(new FlowEvent("two"));
+    }
+
+    private void setupBatching() {
+        InternalData senderInternalData = new InternalData("1.0.0");
+        senderInternalData.addAdditionalData(InternalDataKeys.EVENT_BATCHING, "true");
+        when(androidComponentDelegate.getSenderInternalData()).thenReturn(senderInternalData);
+        testModel.enableEventBatching(100, 10, new String[]{"progress"}, testScheduler);
+    }
+
+    @Test
+    public void shouldReportRemainingTimeUntilDeadline() throws Exception {
+        assertThat(testModel.hasDeadline()).isFalse();
+        assertThat(testModel.getRemainingTimeMillis()).isEqualTo(Long.MAX_VALUE);
+
+        InternalData senderInternalData = new InternalData("1.0.0");
+        FlowDeadlines.writeTimeoutTo(senderInternalData, 5000);
+        when(androidComponentDelegate.getSenderInternalData()).thenReturn(senderInternalData);
+
+        assertThat(testModel.hasDeadline()).isTrue();
+        assertThat(testModel.getRemainingTimeMillis()).isBetween(4000L, 5000L);
+
+        FlowDeadlines.writeTo(senderInternalData, System.currentTimeMillis() - 1000);
+        assertThat(testModel.getRemainingTimeMillis()).isZero();
+    }
+
     @Test(expected = IllegalStateException.class)
     public void shouldOnlyAllowResponseSentOnce() throws Exception {
         testModel.sendEmptyResponse();
         testModel.sendEmptyResponse();
     }
 
+    private AppMessage captureSentMessage() {
+        ArgumentCaptor<AppMessage> appMessageArgumentCaptor = ArgumentCaptor.forClass(AppMessage.class);
+        verify(androidComponentDelegate).sendMessage(appMessageArgumentCaptor.capture());
+        return appMessageArgumentCaptor.getValue();
+    }
+
     static class TestModel extends BaseStageModel {
 
         TestModel(AndroidComponentDelegate androidComponentDelegate) {
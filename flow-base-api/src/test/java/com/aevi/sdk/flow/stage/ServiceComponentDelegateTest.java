@@ -2,6 +2,7 @@ package com.aevi.sdk.flow.stage;
 
 import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.FlowEvent;
+import com.aevi.sdk.flow.model.FlowEventBatch;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.ClientCommunicator;
 import io.reactivex.observers.TestObserver;
@@ -9,7 +10,10 @@ import io.reactivex.subjects.PublishSubject;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static com.aevi.sdk.flow.constants.AppMessageTypes.FLOW_SERVICE_EVENT;
+import static com.aevi.sdk.flow.constants.AppMessageTypes.FLOW_SERVICE_EVENT_BATCH;
 import static com.aevi.sdk.flow.constants.FlowServiceEventTypes.*;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -21,6 +25,7 @@ public class ServiceComponentDelegateTest {
     private PublishSubject<AppMessage> messageSubject = PublishSubject.create();
     private TestObserver<FlowEvent> messageObserver;
     private boolean sentToActivity;
+    private String sentToActivityJson;
     private InternalData senderInternalData;
 
     @Before
@@ -30,8 +35,9 @@ public class ServiceComponentDelegateTest {
         when(clientCommunicator.subscribeToMessages()).thenReturn(messageSubject);
         serviceComponentDelegate = new ServiceComponentDelegate(clientCommunicator, senderInternalData) {
             @Override
-            public void sendEventToActivity(FlowEvent event) {
+            void sendEventToActivity(FlowEvent event, String eventJson) {
                 sentToActivity = true;
+                sentToActivityJson = eventJson;
             }
         };
         messageObserver = serviceComponentDelegate.getFlowServiceEvents().test();
@@ -58,6 +64,26 @@ public class ServiceComponentDelegateTest {
         assertThat(sentToActivity).isTrue();
     }
 
+    @Test
+    public void shouldForwardReceivedEventJsonToActivity() throws Exception {
+        String eventJson = new FlowEvent(RESUME_USER_INTERFACE).toJson();
+        messageSubject.onNext(new AppMessage(FLOW_SERVICE_EVENT, eventJson));
+
+        assertThat(sentToActivityJson).isSameAs(eventJson);
+    }
+
+    @Test
+    public void shouldAckBatchOnceAndPublishEachEvent() throws Exception {
+        FlowEventBatch batch = new FlowEventBatch(Arrays.asList(new FlowEvent(RESUME_USER_INTERFACE), new FlowEvent("progress"),
+                                                                new FlowEvent(RESPONSE_ACCEPTED)));
+        messageSubject.onNext(new AppMessage(FLOW_SERVICE_EVENT_BATCH, batch.toJson()));
+
+        verify(clientCommunicator, times(1)).sendAck();
+        messageObserver.assertValues(new FlowEvent(RESUME_USER_INTERFACE), new FlowEvent("progress"), new FlowEvent(RESPONSE_ACCEPTED));
+        messageObserver.assertComplete();
+        assertThat(sentToActivity).isTrue();
+    }
+
     @Test
     public void shouldForwardResponseOutcomeAndCloseStream() throws Exception {
         messageSubject.onNext(new AppMessage(FLOW_SERVICE_EVENT, new FlowEvent(RESPONSE_ACCEPTED).toJson()));
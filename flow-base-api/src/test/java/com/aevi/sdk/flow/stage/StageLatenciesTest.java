@@ -0,0 +1,36 @@
+package com.aevi.sdk.flow.stage;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class StageLatenciesTest {
+
+    private StageLatencies stageLatencies = new StageLatencies();
+
+    @Test
+    public void shouldUseConfiguredTimeoutUntilEnoughSamples() throws Exception {
+        stageLatencies.record("TEST_STAGE", 2000);
+
+        assertThat(stageLatencies.getHistogram("TEST_STAGE").getCount()).isEqualTo(1);
+        assertThat(stageLatencies.getRecommendedTimeoutMillis("TEST_STAGE", 120000)).isEqualTo(120000);
+        assertThat(stageLatencies.getRecommendedTimeoutMillis("OTHER_STAGE", 120000)).isEqualTo(120000);
+    }
+
+    @Test
+    public void shouldRecommendTimeoutNoHigherThanConfigured() throws Exception {
+        for (int i = 0; i < StageLatencies.MIN_SAMPLES; i++) {
+            stageLatencies.record("TEST_STAGE", 2000);
+        }
+
+        assertThat(stageLatencies.getRecommendedTimeoutMillis("TEST_STAGE", 120000)).isEqualTo(3000);
+        assertThat(stageLatencies.getRecommendedTimeoutMillis("TEST_STAGE", 2500)).isEqualTo(2500);
+    }
+
+    @Test
+    public void shouldKeepLatenciesPerInstance() throws Exception {
+        stageLatencies.record("TEST_STAGE", 2000);
+
+        assertThat(new StageLatencies().getHistogram("TEST_STAGE").getCount()).isZero();
+    }
+}
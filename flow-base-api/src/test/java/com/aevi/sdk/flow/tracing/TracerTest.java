@@ -0,0 +1,106 @@
+package com.aevi.sdk.flow.tracing;
+
+import com.aevi.sdk.flow.model.InternalData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class TracerTest {
+
+    private RingBufferSpanExporter exporter;
+
+    @Before
+    public void setUp() throws Exception {
+        exporter = new RingBufferSpanExporter(3);
+        Tracer.setExporter(exporter);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Tracer.setExporter(null);
+        Tracer.setSampleRate(0.0);
+    }
+
+    @Test
+    public void shouldNotExportWhenNotSampled() throws Exception {
+        Tracer.setSampleRate(0.0);
+
+        Span span = Tracer.startRootSpan("test");
+        span.end();
+
+        assertThat(span.getContext().isSampled()).isFalse();
+        assertThat(exporter.getSpans()).isEmpty();
+    }
+
+    @Test
+    public void shouldNotGenerateIdsWhenNotSampled() throws Exception {
+        Tracer.setSampleRate(0.0);
+
+        Span root = Tracer.startRootSpan("root");
+        Span child = Tracer.startSpan("child", TraceContext.fromTraceParent(root.getContext().toTraceParent()));
+
+        assertThat(root.getContext()).isSameAs(Tracer.startRootSpan("other").getContext());
+        assertThat(child.getContext()).isEqualTo(root.getContext());
+        assertThat(child.getContext().isSampled()).isFalse();
+    }
+
+    @Test
+    public void shouldExportWhenSampled() throws Exception {
+        Tracer.setSampleRate(1.0);
+
+        Span span = Tracer.startRootSpan("test");
+        span.end();
+        span.end();
+
+        assertThat(exporter.getSpans()).containsExactly(span);
+    }
+
+    @Test
+    public void shouldPropagateContextViaInternalData() throws Exception {
+        Tracer.setSampleRate(1.0);
+        Span root = Tracer.startRootSpan("root");
+        InternalData internalData = new InternalData("1.0.0");
+        root.getContext().writeTo(internalData);
+
+        Tracer.setSampleRate(0.0); // child must use the decision of the root
+        Span child = Tracer.startSpan("child", TraceContext.fromInternalData(internalData));
+
+        assertThat(child.getContext().getTraceId()).isEqualTo(root.getContext().getTraceId());
+        assertThat(child.getContext().getSpanId()).isNotEqualTo(root.getContext().getSpanId());
+        assertThat(child.getParentSpanId()).isEqualTo(root.getContext().getSpanId());
+        assertThat(child.getContext().isSampled()).isTrue();
+    }
+
+    @Test
+    public void shouldParseTraceParent() throws Exception {
+        TraceContext context = TraceContext.fromTraceParent("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01");
+
+        assertThat(context.getTraceId()).isEqualTo("0af7651916cd43dd8448eb211c80319c");
+        assertThat(context.getSpanId()).isEqualTo("b7ad6b7169203331");
+        assertThat(context.isSampled()).isTrue();
+        assertThat(context.toTraceParent()).isEqualTo("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01");
+    }
+
+    @Test
+    public void shouldIgnoreMalformedTraceParent() throws Exception {
+        assertThat(TraceContext.fromTraceParent("rubbish")).isNull();
+        assertThat(TraceContext.fromInternalData(new InternalData("1.0.0"))).isNull();
+    }
+
+    @Test
+    public void ringBufferShouldKeepMostRecentSpans() throws Exception {
+        Tracer.setSampleRate(1.0);
+        Span[] spans = new Span[5];
+        for (int i = 0; i < spans.length; i++) {
+            spans[i] = Tracer.startRootSpan("span" + i);
+            spans[i].end();
+        }
+
+        List<Span> exported = exporter.getSpans();
+        assertThat(exported).containsExactly(spans[2], spans[3], spans[4]);
+    }
+}
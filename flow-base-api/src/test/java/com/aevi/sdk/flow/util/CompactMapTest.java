@@ -0,0 +1,124 @@
+package com.aevi.sdk.flow.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class CompactMapTest {
+
+    @Test
+    public void shouldPutGetAndRemove() throws Exception {
+        CompactMap<String, String> compactMap = new CompactMap<>();
+
+        assertThat(compactMap.put("one", "1")).isNull();
+        assertThat(compactMap.put("two", "2")).isNull();
+        assertThat(compactMap.put("one", "uno")).isEqualTo("1");
+
+        assertThat(compactMap).hasSize(2);
+        assertThat(compactMap.get("one")).isEqualTo("uno");
+        assertThat(compactMap.remove("one")).isEqualTo("uno");
+        assertThat(compactMap.containsKey("one")).isFalse();
+        assertThat(compactMap.remove("three")).isNull();
+    }
+
+    @Test
+    public void shouldUpgradePastThreshold() throws Exception {
+        CompactMap<String, Integer> compactMap = new CompactMap<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < CompactMap.UPGRADE_THRESHOLD * 2; i++) {
+            compactMap.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+
+        assertThat(compactMap).isEqualTo(expected);
+        assertThat(compactMap.hashCode()).isEqualTo(expected.hashCode());
+        compactMap.remove("key0");
+        assertThat(compactMap).hasSize(CompactMap.UPGRADE_THRESHOLD * 2 - 1);
+    }
+
+    @Test
+    public void shouldNotMissEntriesWhenReadDuringUpgrade() throws Exception {
+        AtomicInteger misses = new AtomicInteger();
+        for (int run = 0; run < 500; run++) {
+            CompactMap<String, Integer> compactMap = new CompactMap<>();
+            for (int i = 0; i < CompactMap.UPGRADE_THRESHOLD; i++) {
+                compactMap.put("key" + i, i);
+            }
+            AtomicBoolean upgraded = new AtomicBoolean();
+            CountDownLatch started = new CountDownLatch(1);
+            Thread reader = new Thread(() -> {
+                started.countDown();
+                while (!upgraded.get()) {
+                    if (compactMap.get("key0") == null || compactMap.size() < CompactMap.UPGRADE_THRESHOLD) {
+                        misses.incrementAndGet();
+                    }
+                }
+            });
+            reader.start();
+            started.await();
+
+            compactMap.put("upgrade", -1);
+            upgraded.set(true);
+            reader.join();
+        }
+
+        assertThat(misses.get()).isZero();
+    }
+
+    @Test
+    public void shouldNotAffectCopyWhenModified() throws Exception {
+        CompactMap<String, String> original = new CompactMap<>();
+        original.put("one", "1");
+        CompactMap<String, String> copy = new CompactMap<>(original);
+
+        original.put("two", "2");
+        copy.remove("one");
+
+        assertThat(original).hasSize(2);
+        assertThat(copy).isEmpty();
+    }
+
+    @Test
+    public void shouldIterateOverSnapshotAndSupportRemoval() throws Exception {
+        CompactMap<String, String> compactMap = new CompactMap<>();
+        compactMap.put("one", "1");
+        compactMap.put("two", "2");
+
+        Iterator<Map.Entry<String, String>> iterator = compactMap.entrySet().iterator();
+        iterator.next().setValue("changed");
+        compactMap.put("three", "3");
+
+        assertThat(iterator.next().getKey()).isEqualTo("two");
+        iterator.remove();
+        assertThat(iterator.hasNext()).isFalse();
+        assertThat(compactMap).containsEntry("one", "changed").containsEntry("three", "3").hasSize(2);
+    }
+
+    @Test
+    public void shouldCountModificationsViaViewsOnceUpgraded() throws Exception {
+        CompactMap<String, String> compactMap = new CompactMap<>();
+        for (int i = 0; i <= CompactMap.UPGRADE_THRESHOLD; i++) {
+            compactMap.put("key" + i, "value");
+        }
+        int modCount = compactMap.getModCount();
+
+        Iterator<Map.Entry<String, String>> iterator = compactMap.entrySet().iterator();
+        iterator.next().setValue("changed");
+        iterator.remove();
+
+        assertThat(compactMap.getModCount()).isEqualTo(modCount + 2);
+        assertThat(compactMap).hasSize(CompactMap.UPGRADE_THRESHOLD);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void shouldNotAllowNullValues() throws Exception {
+        new CompactMap<String, String>().put("key", null);
+    }
+}
@@ -0,0 +1,55 @@
+package com.aevi.sdk.flow.util;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class FormattersTest {
+
+    @Test
+    public void shouldReturnNewDateFormatOnEachCall() throws Exception {
+        SimpleDateFormat first = Formatters.getDateFormat("yyyy-MM-dd HH:mm", Locale.UK);
+        first.setTimeZone(TimeZone.getTimeZone("GMT+05:00"));
+
+        SimpleDateFormat second = Formatters.getDateFormat("yyyy-MM-dd HH:mm", Locale.UK);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getTimeZone()).isEqualTo(TimeZone.getDefault());
+        assertThat(second.toPattern()).isEqualTo("yyyy-MM-dd HH:mm");
+    }
+
+    @Test
+    public void shouldNotBeAffectedByModifiedDateFormat() throws Exception {
+        Formatters.getDateFormat("yyyy-MM", Locale.getDefault()).applyPattern("MM");
+
+        assertThat(Formatters.formatYearMonth("yyyy-MM", 2020, 6)).isEqualTo("2020-06");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidPattern() throws Exception {
+        Formatters.getDateFormat("bad pattern q", Locale.UK);
+    }
+
+    @Test
+    public void shouldFormatYearMonth() throws Exception {
+        assertThat(Formatters.formatYearMonth("MM/yyyy", 2020, 6)).isEqualTo("06/2020");
+    }
+
+    @Test
+    public void shouldFormatAmountWithCurrencyFractionDigits() throws Exception {
+        String gbp = Currency.getInstance("GBP").getSymbol();
+        String jpy = Currency.getInstance("JPY").getSymbol();
+        assertThat(Formatters.formatAmount("GBP", 1050)).isEqualTo(gbp + "10.50");
+        assertThat(Formatters.formatAmount("GBP", 5)).isEqualTo(gbp + "0.05");
+        assertThat(Formatters.formatAmount("GBP", -1200)).isEqualTo(gbp + "-12.00");
+        assertThat(Formatters.formatAmount("JPY", 1050)).isEqualTo(jpy + "1050");
+        assertThat(Formatters.formatAmount("BHD", 12345)).endsWith("12.345");
+        assertThat(Formatters.formatAmount("XYZ", 100)).isEqualTo("XYZ1.00");
+        assertThat(Formatters.formatAmount(null, 100)).isEqualTo("0.00");
+    }
+}
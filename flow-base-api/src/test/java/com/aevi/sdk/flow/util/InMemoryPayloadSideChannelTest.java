@@ -0,0 +1,63 @@
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.AppMessage;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class InMemoryPayloadSideChannelTest {
+
+    private long now = 1000;
+
+    private final InMemoryPayloadSideChannel sideChannel = new InMemoryPayloadSideChannel(100) {
+        @Override
+        long currentTimeMillis() {
+            return now;
+        }
+    };
+
+    @After
+    public void tearDown() throws Exception {
+        PayloadSideChannels.setSideChannel(null);
+    }
+
+    @Test
+    public void canReadPayloadMoreThanOnce() throws Exception {
+        String handle = sideChannel.write("payload");
+
+        assertThat(sideChannel.read(handle)).isEqualTo("payload");
+        assertThat(sideChannel.read(handle)).isEqualTo("payload");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotReadExpiredPayload() throws Exception {
+        String handle = sideChannel.write("payload");
+        now += 100;
+
+        sideChannel.read(handle);
+    }
+
+    @Test
+    public void shouldReleaseExpiredPayloadsOnWrite() throws Exception {
+        sideChannel.write("unread");
+        now += 50;
+        sideChannel.write("recent");
+        now += 60;
+
+        sideChannel.write("new");
+
+        assertThat(sideChannel.getPendingCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void canDecodeSameMessageTwice() throws Exception {
+        PayloadSideChannels.setSideChannel(sideChannel);
+        AppMessage appMessage = new AppMessage("type", "{\"large\":\"data\"}");
+        appMessage.writeMessageDataTo(sideChannel, 10);
+        String json = appMessage.toJson();
+
+        assertThat(AppMessage.fromJson(json).getMessageData()).isEqualTo("{\"large\":\"data\"}");
+        assertThat(AppMessage.fromJson(json).getMessageData()).isEqualTo("{\"large\":\"data\"}");
+    }
+}
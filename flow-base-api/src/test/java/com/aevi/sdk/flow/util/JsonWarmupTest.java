@@ -0,0 +1,70 @@
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.model.Request;
+import com.aevi.sdk.flow.model.config.FlowConfig;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class JsonWarmupTest {
+
+    @Test
+    public void shouldWarmUpModelsInBackground() throws Exception {
+        JsonWarmup.warmUp(AppMessage.class, Request.class).test().await().assertComplete();
+
+        assertThat(JsonWarmup.isWarmedUp(AppMessage.class)).isTrue();
+        assertThat(JsonWarmup.isWarmedUp(Request.class)).isTrue();
+    }
+
+    @Test
+    public void shouldNotFailIfModelCanNotBeConverted() throws Exception {
+        JsonWarmup.warmUp(FlowConfig.class, NotAModel.class).test().await().assertComplete();
+
+        assertThat(JsonWarmup.isWarmedUp(NotAModel.class)).isFalse();
+    }
+
+    @Test
+    public void shouldWarmUpNestedModelTypes() throws Exception {
+        JsonWarmup.warmUp(Outer.class).test().await().assertComplete();
+
+        assertThat(JsonWarmup.isWarmedUp(Outer.class)).isTrue();
+        assertThat(JsonWarmup.isWarmedUp(Inner.class)).isTrue();
+        assertThat(JsonWarmup.isWarmedUp(Item.class)).isTrue();
+    }
+
+    @Test
+    public void shouldFindNestedModelTypesBeforeRootType() {
+        assertThat(JsonWarmup.findModelClasses(Outer.class)).containsOnly(Outer.class, Inner.class, Item.class, Entry.class);
+        assertThat(JsonWarmup.findModelClasses(Outer.class).iterator().next()).isNotEqualTo(Outer.class);
+    }
+
+    static class Outer {
+        static Outer INSTANCE;
+        Inner inner;
+        List<Item> items;
+        String name;
+    }
+
+    static class Inner {
+        Map<String, Entry[]> entries;
+    }
+
+    static class Item {
+        long value;
+    }
+
+    static class Entry {
+        transient Outer ignored;
+    }
+
+    static class NotAModel {
+
+        NotAModel() {
+            throw new IllegalStateException("Can not be created");
+        }
+    }
+}
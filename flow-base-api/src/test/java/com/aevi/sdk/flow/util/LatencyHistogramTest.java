@@ -0,0 +1,48 @@
+package com.aevi.sdk.flow.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class LatencyHistogramTest {
+
+    private LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+    @Test
+    public void shouldReportZeroWhenEmpty() throws Exception {
+        assertThat(latencyHistogram.getCount()).isZero();
+        assertThat(latencyHistogram.getPercentileMillis(99)).isZero();
+    }
+
+    @Test
+    public void shouldReportPercentilesWithinBucketAccuracy() throws Exception {
+        for (int i = 1; i <= 1000; i++) {
+            latencyHistogram.record(i);
+        }
+
+        assertThat(latencyHistogram.getCount()).isEqualTo(1000);
+        assertThat(latencyHistogram.getMaxMillis()).isEqualTo(1000);
+        assertThat(latencyHistogram.getPercentileMillis(50)).isBetween(500L, 625L);
+        assertThat(latencyHistogram.getPercentileMillis(99)).isBetween(990L, 1000L);
+        assertThat(latencyHistogram.getPercentileMillis(100)).isEqualTo(1000);
+    }
+
+    @Test
+    public void shouldReportMaxForLatenciesBeyondTrackedRange() throws Exception {
+        latencyHistogram.record(-5);
+        latencyHistogram.record(2 * 60 * 60 * 1000);
+
+        assertThat(latencyHistogram.getPercentileMillis(50)).isZero();
+        assertThat(latencyHistogram.getPercentileMillis(100)).isEqualTo(2 * 60 * 60 * 1000);
+    }
+
+    @Test
+    public void shouldClearOnReset() throws Exception {
+        latencyHistogram.record(100);
+
+        latencyHistogram.reset();
+
+        assertThat(latencyHistogram.getCount()).isZero();
+        assertThat(latencyHistogram.getMaxMillis()).isZero();
+    }
+}
@@ -0,0 +1,80 @@
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.AppMessage;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static com.aevi.sdk.flow.constants.AppMessageTypes.RESPONSE_MESSAGE;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class PayloadCompressionTest {
+
+    @Test
+    public void shouldCompressAndDecompressPayload() throws Exception {
+        String payload = createPayload(200);
+
+        String compressed = PayloadCompression.compress(payload);
+
+        assertThat(compressed.length()).isLessThan(payload.length());
+        assertThat(PayloadCompression.decompress(compressed)).isEqualTo(payload);
+    }
+
+    @Test
+    public void shouldReusePooledCodecsAcrossCalls() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            String payload = createPayload(i * 10);
+            assertThat(PayloadCompression.decompress(PayloadCompression.compress(payload))).isEqualTo(payload);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidCompressedPayload() throws Exception {
+        PayloadCompression.decompress("bm90IGRlZmxhdGVk");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectPayloadExceedingMaxSize() throws Exception {
+        String compressed = PayloadCompression.compress(createPayload(200));
+
+        PayloadCompression.decompress(compressed, 1024);
+    }
+
+    @Test
+    public void shouldOnlyCompressMessageDataAboveThreshold() throws Exception {
+        AppMessage appMessage = new AppMessage(RESPONSE_MESSAGE, createPayload(10));
+
+        assertThat(appMessage.compressMessageData(10000)).isFalse();
+        assertThat(appMessage.getMessageDataEncoding()).isNull();
+    }
+
+    @Test
+    public void shouldDecompressMessageDataTransparently() throws Exception {
+        String payload = createPayload(200);
+        AppMessage appMessage = new AppMessage(RESPONSE_MESSAGE, payload);
+        long compressedBefore = PayloadCompression.getStats().getCompressedCount();
+
+        assertThat(appMessage.compressMessageData(1024)).isTrue();
+        String json = appMessage.toJson();
+
+        assertThat(json.length()).isLessThan(payload.length());
+        AppMessage received = AppMessage.fromJson(json);
+        assertThat(received.getMessageDataEncoding()).isEqualTo(PayloadCompression.DEFLATE);
+        assertThat(received.getMessageData()).isEqualTo(payload);
+        assertThat(PayloadCompression.getStats().getCompressedCount()).isGreaterThan(compressedBefore);
+        assertThat(PayloadCompression.getStats().getCompressionRatio()).isLessThan(1);
+    }
+
+    private static String createPayload(int items) {
+        StringBuilder builder = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":\"item").append(i).append("\",\"label\":\"Basket item\",\"amount\":").append(i * 100).append('}');
+        }
+        return builder.append("]}").toString();
+    }
+}
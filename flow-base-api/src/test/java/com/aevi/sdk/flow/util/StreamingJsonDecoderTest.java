@@ -0,0 +1,154 @@
+package com.aevi.sdk.flow.util;
+
+import com.aevi.sdk.flow.model.ResponseQuery;
+import com.aevi.sdk.flow.model.ResponseQueryBuilder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class StreamingJsonDecoderTest {
+
+    @Test
+    public void shouldDecodeAllFieldsWhenNoneExcluded() {
+        StreamingJsonDecoder<TestModel> decoder = new StreamingJsonDecoder<>(TestModel.class, Collections.<String>emptyList());
+
+        TestModel model = decoder.decode("{\"id\":\"one\",\"name\":\"test\",\"nested\":{\"id\":\"two\"}}");
+
+        assertThat(model.id).isEqualTo("one");
+        assertThat(model.name).isEqualTo("test");
+        assertThat(model.nested.id).isEqualTo("two");
+    }
+
+    @Test
+    public void shouldSkipExcludedTopLevelAndNestedFields() {
+        StreamingJsonDecoder<TestModel> decoder = new StreamingJsonDecoder<>(TestModel.class, Arrays.asList("name", "nested.values"));
+
+        TestModel model = decoder.decode("{\"id\":\"one\",\"name\":\"test\",\"nested\":{\"id\":\"two\",\"values\":{\"a\":[1,2,{\"b\":null}]}}}");
+
+        assertThat(model.id).isEqualTo("one");
+        assertThat(model.name).isNull();
+        assertThat(model.nested.id).isEqualTo("two");
+        assertThat(model.nested.values).isNull();
+    }
+
+    @Test
+    public void shouldApplyExclusionsToArrayElements() {
+        StreamingJsonDecoder<TestModel> decoder = new StreamingJsonDecoder<>(TestModel.class, Collections.singletonList("children.name"));
+
+        String stripped = decoder.strip("{\"children\":[{\"id\":\"a\",\"name\":\"x\"},{\"id\":\"b\",\"name\":\"y\"}],\"count\":1.50}");
+
+        assertThat(stripped).isEqualTo("{\"children\":[{\"id\":\"a\"},{\"id\":\"b\"}],\"count\":1.50}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMalformedPayload() {
+        new StreamingJsonDecoder<>(TestModel.class, Collections.singletonList("name")).decode("{\"id\":\"one\",\"name\":");
+    }
+
+    @Test
+    public void shouldCopyRetainedPartsAsTheyAre() {
+        StreamingJsonDecoder<TestModel> decoder = new StreamingJsonDecoder<>(TestModel.class, Collections.singletonList("nested"));
+
+        String stripped = decoder.strip(" { \"id\" : \"a \\\" b\" , \"nested\" : { \"id\" : [ 1 , true ] } , \"count\" : 1e3 } ");
+
+        assertThat(stripped).isEqualTo(" { \"id\" : \"a \\\" b\" , \"count\" : 1e3 } ");
+    }
+
+    @Test
+    public void shouldCutLeadingExcludedFields() {
+        StreamingJsonDecoder<TestModel> decoder = new StreamingJsonDecoder<>(TestModel.class, Arrays.asList("id", "name"));
+
+        String stripped = decoder.strip("{\"id\":\"a\", \"name\":\"x\", \"count\":1}");
+
+        assertThat(stripped).isEqualTo("{\"count\":1}");
+    }
+
+    @Test
+    public void shouldMatchExcludedFieldsOnFullPath() {
+        StreamingJsonDecoder<TestModel> decoder = new StreamingJsonDecoder<>(TestModel.class, Collections.singletonList("nested.name"));
+
+        TestModel model = decoder.decode("{\"name\":\"one\",\"values\":{\"name\":\"two\"},\"nested\":{\"id\":\"a\",\"name\":\"three\"}}");
+
+        assertThat(model.name).isEqualTo("one");
+        assertThat(model.values).containsEntry("name", "two");
+        assertThat(model.nested.id).isEqualTo("a");
+        assertThat(model.nested.name).isNull();
+    }
+
+    @Test
+    public void shouldNotCopyPayloadWithoutExcludedFields() {
+        StreamingJsonDecoder<TestModel> decoder = new StreamingJsonDecoder<>(TestModel.class, Collections.singletonList("nested.name"));
+        String json = "{\"name\":\"one\",\"nested\":{\"id\":\"a\"}}";
+
+        assertThat(decoder.strip(json)).isSameAs(json);
+    }
+
+    @Test
+    public void shouldDecodeInOrderOffEmittingThread() {
+        StreamingJsonDecoder<TestModel> decoder = new StreamingJsonDecoder<>(TestModel.class, Collections.singletonList("name"));
+        List<String> payloads = new ArrayList<>();
+        List<String> expectedIds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            payloads.add("{\"id\":\"" + i + "\",\"name\":\"test\"}");
+            expectedIds.add(String.valueOf(i));
+        }
+        Thread emittingThread = Thread.currentThread();
+
+        List<String> ids = Observable.fromIterable(payloads)
+                .compose(decoder.decodeAll())
+                .doOnNext(model -> assertThat(Thread.currentThread()).isNotSameAs(emittingThread))
+                .map(model -> model.id)
+                .toList()
+                .blockingGet();
+
+        assertThat(ids).isEqualTo(expectedIds);
+    }
+
+    @Test
+    public void shouldDecodeOnGivenScheduler() {
+        StreamingJsonDecoder<TestModel> decoder = new StreamingJsonDecoder<>(TestModel.class, Collections.<String>emptyList());
+        TestScheduler scheduler = new TestScheduler();
+
+        TestObserver<TestModel> observer = Observable.just("{\"id\":\"0\"}", "{\"id\":\"1\"}", "{\"id\":\"2\"}")
+                .compose(decoder.decodeAll(scheduler, 2))
+                .test();
+
+        observer.assertNoValues();
+        scheduler.triggerActions();
+        observer.assertValueCount(3).assertComplete();
+        assertThat(observer.values().get(2).id).isEqualTo("2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidMaxConcurrency() {
+        new StreamingJsonDecoder<>(TestModel.class, Collections.<String>emptyList()).decodeAll(new TestScheduler(), 0);
+    }
+
+    @Test
+    public void shouldKeepExcludedFieldsOutOfQueryJson() {
+        ResponseQuery responseQuery = new ResponseQueryBuilder().withExcludedFields("request", "outcomeMessage").build();
+
+        assertThat(responseQuery.getExcludedFields()).containsOnly("request", "outcomeMessage");
+        assertThat(responseQuery.toJson()).doesNotContain("outcomeMessage");
+        assertThat(ResponseQuery.fromJson(responseQuery.toJson()).getExcludedFields()).isEmpty();
+    }
+
+    static class TestModel {
+        String id;
+        String name;
+        TestModel nested;
+        Map<String, Object> values;
+        List<TestModel> children;
+    }
+}
@@ -0,0 +1,62 @@
+package com.aevi.sdk.flow.util;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares {@link TimeOrderedIdGenerator} with {@link UUID#randomUUID()}, single-threaded and with several threads generating at once.
+ *
+ * Not run as part of the build, remove the {@link Ignore} annotation to run it locally.
+ */
+@Ignore("Benchmark, run manually")
+public class TimeOrderedIdGeneratorBenchmark {
+
+    private static final int WARMUP_IDS = 200000;
+    private static final int MEASURED_IDS = 500000;
+    private static final int THREADS = 4;
+
+    private static volatile String sink;
+
+    @Test
+    public void compareWithRandomUuid() throws Exception {
+        IdGenerator timeOrdered = new TimeOrderedIdGenerator();
+        IdGenerator random = () -> UUID.randomUUID().toString();
+
+        for (int threads : new int[]{1, THREADS}) {
+            run(random, threads, WARMUP_IDS);
+            run(timeOrdered, threads, WARMUP_IDS);
+            System.out.println(String.format("%d thread(s): UUID.randomUUID() %.0f ns/id, TimeOrderedIdGenerator %.0f ns/id", threads,
+                                             run(random, threads, MEASURED_IDS), run(timeOrdered, threads, MEASURED_IDS)));
+        }
+    }
+
+    // Returns the wall time per id across all threads
+    private static double run(IdGenerator idGenerator, int threads, int idsPerThread) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                String id = null;
+                for (int j = 0; j < idsPerThread; j++) {
+                    id = idGenerator.generateId();
+                }
+                sink = id;
+            });
+            workers[i].start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (System.nanoTime() - startTime) / (double) (threads * idsPerThread);
+    }
+}
@@ -0,0 +1,69 @@
+package com.aevi.sdk.flow.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class TimeOrderedIdGeneratorTest {
+
+    private long fixedTime = 1546300800000L;
+
+    private final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator() {
+        @Override
+        long currentTimeMillis() {
+            return fixedTime;
+        }
+    };
+
+    @After
+    public void tearDown() throws Exception {
+        IdGenerators.setIdGenerator(null);
+    }
+
+    @Test
+    public void shouldGenerateValidVersion7Uuids() throws Exception {
+        UUID uuid = UUID.fromString(generator.generateId());
+
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+        assertThat(uuid.getMostSignificantBits() >>> 16).isEqualTo(fixedTime);
+    }
+
+    @Test
+    public void shouldGenerateUniqueIncreasingIdsWithinSameMillisecond() throws Exception {
+        Set<String> ids = new HashSet<>();
+        String previous = "";
+        for (int i = 0; i < 10000; i++) {
+            String id = generator.generateId();
+            assertThat(id.compareTo(previous)).isGreaterThan(0);
+            ids.add(id);
+            previous = id;
+        }
+        assertThat(ids).hasSize(10000);
+    }
+
+    @Test
+    public void shouldStayOrderedIfClockGoesBackwards() throws Exception {
+        String first = generator.generateId();
+        fixedTime -= 1000;
+
+        assertThat(generator.generateId().compareTo(first)).isGreaterThan(0);
+    }
+
+    @Test
+    public void shouldAllowGeneratorToBeReplaced() throws Exception {
+        IdGenerators.setIdGenerator(new IdGenerator() {
+            @Override
+            public String generateId() {
+                return "fixed";
+            }
+        });
+
+        assertThat(IdGenerators.generateId()).isEqualTo("fixed");
+    }
+}
@@ -43,6 +43,7 @@ public class FlowResponse implements Sendable {
     private Customer customer;
     private String amountsPaidPaymentMethod;
     private Payment updatedPayment;
+    private PaymentDelta paymentDelta;
 
     private AdditionalData paymentReferences;
 
@@ -263,6 +264,40 @@ public class FlowResponse implements Sendable {
         this.updatedPayment = updatedPayment;
     }
 
+    /**
+     * Get the changes made to the payment, if they were sent as a delta instead of the full updated payment.
+     *
+     * @return The payment delta, or null if not set
+     */
+    @Nullable
+    public PaymentDelta getPaymentDelta() {
+        return paymentDelta;
+    }
+
+    /**
+     * Set the changes made to the payment, as an alternative to {@link #setUpdatedPayment(Payment)}.
+     *
+     * @param paymentDelta The payment delta
+     */
+    public void setPaymentDelta(PaymentDelta paymentDelta) {
+        this.paymentDelta = paymentDelta;
+    }
+
+    /**
+     * Get the updated payment, either as set via {@link #setUpdatedPayment(Payment)} or by applying the {@link #getPaymentDelta()} to the
+     * original payment.
+     *
+     * @param originalPayment The payment that was sent to the flow service
+     * @return The updated payment, or null if the payment was not updated
+     */
+    @Nullable
+    public Payment getUpdatedPayment(Payment originalPayment) {
+        if (updatedPayment != null) {
+            return updatedPayment;
+        }
+        return paymentDelta != null ? paymentDelta.applyTo(originalPayment) : null;
+    }
+
     /**
      * Check whether this response has any augmented data.
      *
@@ -270,7 +305,8 @@ public class FlowResponse implements Sendable {
      */
     public boolean hasAugmentedData() {
         return requestAdditionalData != null || updatedRequestAmounts != null || amountsPaid != null || paymentReferences != null ||
-                additionalBasket != null || modifiedBasket != null || customer != null || updatedPayment != null;
+                additionalBasket != null || modifiedBasket != null || customer != null || updatedPayment != null ||
+                paymentDelta != null;
     }
 
     /**
@@ -360,6 +396,7 @@ public class FlowResponse implements Sendable {
                 Objects.equals(customer, that.customer) &&
                 Objects.equals(amountsPaidPaymentMethod, that.amountsPaidPaymentMethod) &&
                 Objects.equals(updatedPayment, that.updatedPayment) &&
+                Objects.equals(paymentDelta, that.paymentDelta) &&
                 Objects.equals(paymentReferences, that.paymentReferences);
     }
 
@@ -369,7 +406,7 @@ public class FlowResponse implements Sendable {
         return Objects
                 .hash(id, updatedRequestAmounts, requestAdditionalData, amountsPaid, additionalBasket, modifiedBasket, customer,
                       amountsPaidPaymentMethod,
-                      updatedPayment, paymentReferences, cancelTransaction);
+                      updatedPayment, paymentDelta, paymentReferences, cancelTransaction);
     }
 
     @Override
@@ -0,0 +1,352 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.pos.flow.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.aevi.sdk.flow.model.AdditionalData;
+import com.aevi.sdk.flow.model.Customer;
+import com.aevi.sdk.flow.model.Token;
+import com.aevi.util.json.JsonConverter;
+import com.aevi.util.json.Jsonable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Represents the changes made to a {@link Payment} by a flow service, as an alternative to sending back the full updated payment.
+ *
+ * The delta consists of basket item additions, removals, quantity changes and replacements, offsets to the base and additional amounts and
+ * upserts and removals of additional data keys. The size of the delta therefore scales with the changes made, rather than the size of the
+ * payment and its basket.
+ *
+ * A delta is created via {@link #between(Payment, Payment)} against a {@link #snapshot(Payment)} of the payment as it was received, and only
+ * returned if applying it to the original payment via {@link #applyTo(Payment)} gives a payment equivalent to the updated one. This is
+ * established while diffing, without applying the delta. Any other changes, such as to the payment method or the order of the existing basket
+ * items, require the full updated payment to be sent.
+ */
+public class PaymentDelta implements Jsonable {
+
+    private long baseAmountOffset;
+    private Map<String, Long> additionalAmountOffsets;
+    private List<String> removedAdditionalAmounts;
+
+    private List<BasketItem> addedBasketItems;
+    private List<String> removedBasketItemIds;
+    private Map<String, Integer> basketItemQuantities;
+    private List<BasketItem> replacedBasketItems;
+
+    private AdditionalData dataUpserts;
+    private List<String> removedDataKeys;
+
+    // Default constructor for deserialisation
+    PaymentDelta() {
+    }
+
+    /**
+     * Take a snapshot of a payment as it was received, to later create a delta against via {@link #between(Payment, Payment)}.
+     *
+     * As a {@link PaymentBuilder} created from the payment shares its amounts, basket and data, the snapshot holds its own copies of these. The
+     * basket items and data values themselves are shared, rather than copying the full payment via JSON. The customer and card token, which are
+     * rarely set at this point, are copied via JSON.
+     *
+     * @param payment The payment as it was received
+     * @return The snapshot, with the same id as the payment
+     */
+    @NonNull
+    public static Payment snapshot(@NonNull Payment payment) {
+        Basket basket = payment.getBasket();
+        Customer customer = payment.getCustomer();
+        return new Payment(payment.getId(), payment.getSource(), payment.getFlowType(), payment.getFlowName(), new Amounts(payment.getAmounts()),
+                           basket != null ? Basket.copyOf(basket) : null, customer != null ? Customer.fromJson(customer.toJson()) : null,
+                           payment.isSplitEnabled(), copyOf(payment.getCardToken()), new AdditionalData(payment.getAdditionalData()),
+                           payment.getDeviceId(), payment.getPaymentMethod());
+    }
+
+    private static Token copyOf(Token token) {
+        if (token == null) {
+            return null;
+        }
+        Token copy = new Token(token.getValue(), token.getSource(), token.getAlgorithm());
+        copy.setSourceAppId(token.getSourceAppId());
+        return copy;
+    }
+
+    /**
+     * Create a delta representing the changes between the original and updated payment.
+     *
+     * @param original The payment as it was received, which must not share any mutable state with the updated payment - see
+     *                 {@link #snapshot(Payment)}
+     * @param updated  The updated payment
+     * @return The delta, or null if the changes can not be represented as a delta
+     */
+    @Nullable
+    public static PaymentDelta between(@NonNull Payment original, @NonNull Payment updated) {
+        if (!hasSameFixedFields(original, updated) || !hasSameFixedFields(original.getAmounts(), updated.getAmounts())) {
+            return null;
+        }
+        PaymentDelta delta = new PaymentDelta();
+        delta.diffAmounts(original.getAmounts(), updated.getAmounts());
+        if (!delta.diffBasket(original.getBasket(), updated.getBasket())) {
+            return null;
+        }
+        delta.diffData(original.getAdditionalData(), updated.getAdditionalData());
+        return delta;
+    }
+
+    private static boolean hasSameFixedFields(Payment original, Payment updated) {
+        return original.isSplitEnabled() == updated.isSplitEnabled() &&
+                Objects.equals(original.getFlowType(), updated.getFlowType()) &&
+                Objects.equals(original.getFlowName(), updated.getFlowName()) &&
+                Objects.equals(original.getPaymentMethod(), updated.getPaymentMethod()) &&
+                Objects.equals(original.getCustomer(), updated.getCustomer()) &&
+                Objects.equals(original.getCardToken(), updated.getCardToken()) &&
+                Objects.equals(original.getSource(), updated.getSource()) &&
+                Objects.equals(original.getDeviceId(), updated.getDeviceId());
+    }
+
+    private static boolean hasSameFixedFields(Amounts original, Amounts updated) {
+        return Objects.equals(original.getCurrency(), updated.getCurrency()) &&
+                Double.compare(original.getCurrencyExchangeRate(), updated.getCurrencyExchangeRate()) == 0 &&
+                Objects.equals(original.getOriginalCurrency(), updated.getOriginalCurrency());
+    }
+
+    private void diffAmounts(Amounts original, Amounts updated) {
+        baseAmountOffset = updated.getBaseAmountValue() - original.getBaseAmountValue();
+        Map<String, Long> originalAdditionals = original.getAdditionalAmounts();
+        Map<String, Long> updatedAdditionals = updated.getAdditionalAmounts();
+        for (Map.Entry<String, Long> entry : updatedAdditionals.entrySet()) {
+            Long originalValue = originalAdditionals.get(entry.getKey());
+            long offset = entry.getValue() - (originalValue != null ? originalValue : 0);
+            if (offset != 0 || originalValue == null) {
+                if (additionalAmountOffsets == null) {
+                    additionalAmountOffsets = new HashMap<>();
+                }
+                additionalAmountOffsets.put(entry.getKey(), offset);
+            }
+        }
+        for (String key : originalAdditionals.keySet()) {
+            if (!updatedAdditionals.containsKey(key)) {
+                removedAdditionalAmounts = add(removedAdditionalAmounts, key);
+            }
+        }
+    }
+
+    private boolean diffBasket(Basket original, Basket updated) {
+        if (original == null || updated == null) {
+            return original == updated;
+        }
+        if (!original.getId().equals(updated.getId()) || !Objects.equals(original.getBasketName(), updated.getBasketName()) ||
+                !Objects.equals(original.getAdditionalBasketData(), updated.getAdditionalBasketData())) {
+            return false;
+        }
+        // applying the delta puts the added items first, followed by the remaining items in their original order
+        List<BasketItem> originalItems = original.getBasketItems();
+        int lastOriginalIndex = -1;
+        for (BasketItem updatedItem : updated.getBasketItems()) {
+            BasketItem originalItem = original.getItemById(updatedItem.getId());
+            if (originalItem == null) {
+                if (lastOriginalIndex >= 0) {
+                    return false;
+                }
+                addedBasketItems = add(addedBasketItems, updatedItem);
+                continue;
+            }
+            int originalIndex = originalItems.indexOf(originalItem);
+            if (originalIndex <= lastOriginalIndex) {
+                return false;
+            }
+            lastOriginalIndex = originalIndex;
+            if (!originalItem.equals(updatedItem)) {
+                if (new BasketItemBuilder(originalItem).withQuantity(updatedItem.getQuantity()).build().equals(updatedItem)) {
+                    if (basketItemQuantities == null) {
+                        basketItemQuantities = new HashMap<>();
+                    }
+                    basketItemQuantities.put(updatedItem.getId(), updatedItem.getQuantity());
+                } else {
+                    replacedBasketItems = add(replacedBasketItems, updatedItem);
+                }
+            }
+        }
+        for (BasketItem originalItem : original.getBasketItems()) {
+            if (updated.getItemById(originalItem.getId()) == null) {
+                removedBasketItemIds = add(removedBasketItemIds, originalItem.getId());
+            }
+        }
+        return true;
+    }
+
+    private void diffData(AdditionalData original, AdditionalData updated) {
+        for (String key : updated.getKeys()) {
+            if (!original.hasData(key) || !Objects.deepEquals(original.getValue(key), updated.getValue(key))) {
+                if (dataUpserts == null) {
+                    dataUpserts = new AdditionalData();
+                }
+                dataUpserts.addData(key, updated.getValue(key));
+            }
+        }
+        for (String key : original.getKeys()) {
+            if (!updated.hasData(key)) {
+                removedDataKeys = add(removedDataKeys, key);
+            }
+        }
+    }
+
+    private static <T> List<T> add(List<T> list, T value) {
+        if (list == null) {
+            list = new ArrayList<>();
+        }
+        list.add(value);
+        return list;
+    }
+
+    /**
+     * Check whether this delta contains any changes.
+     *
+     * @return True if there are no changes, false otherwise
+     */
+    public boolean isEmpty() {
+        return baseAmountOffset == 0 && additionalAmountOffsets == null && removedAdditionalAmounts == null && addedBasketItems == null &&
+                removedBasketItemIds == null && basketItemQuantities == null && replacedBasketItems == null && dataUpserts == null &&
+                removedDataKeys == null;
+    }
+
+    /**
+     * Apply this delta to the original payment.
+     *
+     * The original payment is not modified.
+     *
+     * @param original The payment the delta was created against
+     * @return The updated payment
+     * @throws IllegalArgumentException If the delta results in an invalid payment
+     */
+    @NonNull
+    public Payment applyTo(@NonNull Payment original) {
+        return new PaymentBuilder(original)
+                .withAmounts(applyToAmounts(original.getAmounts()))
+                .withBasket(applyToBasket(original.getBasket()))
+                .withAdditionalData(applyToData(original.getAdditionalData()))
+                .build();
+    }
+
+    private Amounts applyToAmounts(Amounts original) {
+        Map<String, Long> additionalAmounts = new HashMap<>(original.getAdditionalAmounts());
+        if (additionalAmountOffsets != null) {
+            for (Map.Entry<String, Long> entry : additionalAmountOffsets.entrySet()) {
+                Long originalValue = additionalAmounts.get(entry.getKey());
+                additionalAmounts.put(entry.getKey(), (originalValue != null ? originalValue : 0) + entry.getValue());
+            }
+        }
+        if (removedAdditionalAmounts != null) {
+            for (String key : removedAdditionalAmounts) {
+                additionalAmounts.remove(key);
+            }
+        }
+        return new Amounts(original.getBaseAmountValue() + baseAmountOffset, original.getCurrency(), additionalAmounts);
+    }
+
+    private Basket applyToBasket(Basket original) {
+        if (original == null) {
+            return null;
+        }
+        List<BasketItem> items = new ArrayList<>();
+        if (addedBasketItems != null) {
+            items.addAll(addedBasketItems);
+        }
+        for (BasketItem item : original.getBasketItems()) {
+            if (removedBasketItemIds != null && removedBasketItemIds.contains(item.getId())) {
+                continue;
+            }
+            BasketItem replacement = findItem(replacedBasketItems, item.getId());
+            if (replacement != null) {
+                items.add(replacement);
+            } else if (basketItemQuantities != null && basketItemQuantities.containsKey(item.getId())) {
+                items.add(new BasketItemBuilder(item).withQuantity(basketItemQuantities.get(item.getId())).build());
+            } else {
+                items.add(item);
+            }
+        }
+        Basket basket = Basket.copyOf(original);
+        basket.clearItems();
+        for (int i = items.size() - 1; i >= 0; i--) {
+            basket.addItems(items.get(i));
+        }
+        return basket;
+    }
+
+    private static BasketItem findItem(List<BasketItem> items, String id) {
+        if (items != null) {
+            for (BasketItem item : items) {
+                if (item.getId().equals(id)) {
+                    return item;
+                }
+            }
+        }
+        return null;
+    }
+
+    private AdditionalData applyToData(AdditionalData original) {
+        AdditionalData additionalData = new AdditionalData(original);
+        if (dataUpserts != null) {
+            additionalData.addData(dataUpserts, true);
+        }
+        if (removedDataKeys != null) {
+            for (String key : removedDataKeys) {
+                additionalData.removeData(key);
+            }
+        }
+        return additionalData;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PaymentDelta that = (PaymentDelta) o;
+        return baseAmountOffset == that.baseAmountOffset &&
+                Objects.equals(additionalAmountOffsets, that.additionalAmountOffsets) &&
+                Objects.equals(removedAdditionalAmounts, that.removedAdditionalAmounts) &&
+                Objects.equals(addedBasketItems, that.addedBasketItems) &&
+                Objects.equals(removedBasketItemIds, that.removedBasketItemIds) &&
+                Objects.equals(basketItemQuantities, that.basketItemQuantities) &&
+                Objects.equals(replacedBasketItems, that.replacedBasketItems) &&
+                Objects.equals(dataUpserts, that.dataUpserts) &&
+                Objects.equals(removedDataKeys, that.removedDataKeys);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(baseAmountOffset, additionalAmountOffsets, removedAdditionalAmounts, addedBasketItems, removedBasketItemIds,
+                            basketItemQuantities, replacedBasketItems, dataUpserts, removedDataKeys);
+    }
+
+    @Override
+    public String toJson() {
+        return JsonConverter.serialize(this);
+    }
+
+    public static PaymentDelta fromJson(String json) {
+        return JsonConverter.deserialize(json, PaymentDelta.class);
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.pos.flow.model;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the allocation of basket items across splits, for split applications that allow payees to pay for specific items.
+ *
+ * The item quantities of the source basket are partitioned into items that have been paid for in previous split transactions, items that remain
+ * to be paid, and items allocated to the next split transaction. Items are indexed by id, so that transferring quantities between the
+ * remaining and next split partitions is a constant time operation, and the totals of each partition are updated as items are transferred
+ * rather than recalculated.
+ *
+ * In addition to transferring individual items, the remaining items can be allocated by seat via {@link #transferSeatToNextSplit(String)},
+ * or the remaining amount can be split evenly via {@link #getEvenSplitAmounts(int)}.
+ *
+ * The partitions can be retrieved as baskets via {@link #getPaidBasket()}, {@link #getRemainingBasket(boolean)} and {@link #getNextSplitBasket()},
+ * the latter of which is what should be added to the split transaction.
+ *
+ * This class is not thread-safe.
+ */
+public class SplitAllocation {
+
+    /**
+     * The basket item data key used to identify the seat an item belongs to, for use with {@link #transferSeatToNextSplit(String)}.
+     */
+    public static final String ITEM_DATA_SEAT = "seat";
+
+    private final Basket sourceBasket;
+    private final BasketItem[] items;
+    private final Map<String, Integer> indexById;
+    private final Map<String, List<Integer>> indexBySeat;
+    private final int[] paid;
+    private final int[] remaining;
+    private final int[] nextSplit;
+    private long paidTotal;
+    private long remainingTotal;
+    private long nextSplitTotal;
+
+    /**
+     * Create an allocation for the basket in the source payment of the split request.
+     *
+     * Items in baskets of previous transactions that processed the requested amounts are treated as paid.
+     *
+     * @param splitRequest The split request
+     * @return The allocation
+     * @throws UnsupportedOperationException If there is no basket in the source payment
+     */
+    @NonNull
+    public static SplitAllocation fromSplitRequest(@NonNull SplitRequest splitRequest) {
+        Basket sourceBasket = splitRequest.getSourcePayment().getBasket();
+        if (sourceBasket == null) {
+            throw new UnsupportedOperationException("The source payment does not have any associated basket");
+        }
+        SplitAllocation splitAllocation = new SplitAllocation(sourceBasket);
+        for (Transaction transaction : splitRequest.getTransactions()) {
+            if (transaction.hasProcessedRequestedAmounts()) {
+                for (Basket basket : transaction.getBaskets()) {
+                    splitAllocation.markPaid(basket);
+                }
+            }
+        }
+        return splitAllocation;
+    }
+
+    /**
+     * Create an allocation where all items of the basket remain to be paid.
+     *
+     * @param sourceBasket The basket to allocate the items of
+     */
+    public SplitAllocation(@NonNull Basket sourceBasket) {
+        this.sourceBasket = sourceBasket;
+        List<BasketItem> basketItems = sourceBasket.getBasketItems();
+        int size = basketItems.size();
+        items = new BasketItem[size];
+        indexById = new HashMap<>(size * 2);
+        indexBySeat = new HashMap<>();
+        paid = new int[size];
+        remaining = new int[size];
+        nextSplit = new int[size];
+        for (int i = 0; i < size; i++) {
+            BasketItem item = basketItems.get(i);
+            items[i] = item;
+            indexById.put(item.getId(), i);
+            remaining[i] = item.getQuantity();
+            remainingTotal += item.getTotalAmount();
+            String seat = item.hasItemData() ? item.getItemData().getValue(ITEM_DATA_SEAT, String.class, (String) null) : null;
+            if (seat != null) {
+                List<Integer> seatItems = indexBySeat.get(seat);
+                if (seatItems == null) {
+                    seatItems = new ArrayList<>();
+                    indexBySeat.put(seat, seatItems);
+                }
+                seatItems.add(i);
+            }
+        }
+    }
+
+    private void markPaid(Basket basket) {
+        for (BasketItem basketItem : basket.getBasketItems()) {
+            Integer index = indexById.get(basketItem.getId());
+            if (index != null) {
+                int quantity = Math.min(basketItem.getQuantity(), remaining[index]);
+                remaining[index] -= quantity;
+                paid[index] += quantity;
+                long amount = quantity * items[index].getIndividualAmount();
+                remainingTotal -= amount;
+                paidTotal += amount;
+            }
+        }
+    }
+
+    /**
+     * Get the basket the items are allocated from.
+     *
+     * @return The source basket
+     */
+    @NonNull
+    public Basket getSourceBasket() {
+        return sourceBasket;
+    }
+
+    /**
+     * Transfer a quantity of an item from the remaining items to the next split.
+     *
+     * If the quantity exceeds what remains, only the remaining quantity is transferred.
+     *
+     * @param itemId   The id of the item
+     * @param quantity The quantity to transfer
+     * @return The quantity transferred
+     * @throws IllegalArgumentException If there is no item with the id in the source basket, or the quantity is negative
+     */
+    public int transferToNextSplit(String itemId, int quantity) {
+        int index = indexOf(itemId, quantity);
+        int transferred = Math.min(quantity, remaining[index]);
+        remaining[index] -= transferred;
+        nextSplit[index] += transferred;
+        long amount = transferred * items[index].getIndividualAmount();
+        remainingTotal -= amount;
+        nextSplitTotal += amount;
+        return transferred;
+    }
+
+    /**
+     * Transfer a quantity of an item from the next split back to the remaining items.
+     *
+     * If the quantity exceeds what is allocated to the next split, only the allocated quantity is transferred.
+     *
+     * @param itemId   The id of the item
+     * @param quantity The quantity to transfer
+     * @return The quantity transferred
+     * @throws IllegalArgumentException If there is no item with the id in the source basket, or the quantity is negative
+     */
+    public int transferToRemaining(String itemId, int quantity) {
+        int index = indexOf(itemId, quantity);
+        int transferred = Math.min(quantity, nextSplit[index]);
+        nextSplit[index] -= transferred;
+        remaining[index] += transferred;
+        long amount = transferred * items[index].getIndividualAmount();
+        nextSplitTotal -= amount;
+        remainingTotal += amount;
+        return transferred;
+    }
+
+    /**
+     * Transfer all remaining items for a seat to the next split.
+     *
+     * The seat of an item is read from its item data, via the {@link #ITEM_DATA_SEAT} key.
+     *
+     * @param seat The seat
+     * @return The number of items transferred
+     */
+    public int transferSeatToNextSplit(String seat) {
+        List<Integer> seatItems = indexBySeat.get(seat);
+        if (seatItems == null) {
+            return 0;
+        }
+        int transferred = 0;
+        for (int index : seatItems) {
+            transferred += transferToNextSplit(items[index].getId(), remaining[index]);
+        }
+        return transferred;
+    }
+
+    /**
+     * Transfer all items allocated to the next split back to the remaining items.
+     */
+    public void transferAllToRemaining() {
+        for (int i = 0; i < items.length; i++) {
+            remaining[i] += nextSplit[i];
+            nextSplit[i] = 0;
+        }
+        remainingTotal += nextSplitTotal;
+        nextSplitTotal = 0;
+    }
+
+    private int indexOf(String itemId, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        Integer index = indexById.get(itemId);
+        if (index == null) {
+            throw new IllegalArgumentException("No item with id " + itemId + " in the source basket");
+        }
+        return index;
+    }
+
+    /**
+     * Get the quantity of an item that remains to be paid, excluding what is allocated to the next split.
+     *
+     * @param itemId The id of the item
+     * @return The remaining quantity, or zero if there is no such item
+     */
+    public int getRemainingQuantity(String itemId) {
+        Integer index = indexById.get(itemId);
+        return index != null ? remaining[index] : 0;
+    }
+
+    /**
+     * Get the quantity of an item allocated to the next split.
+     *
+     * @param itemId The id of the item
+     * @return The quantity allocated to the next split, or zero if there is no such item
+     */
+    public int getNextSplitQuantity(String itemId) {
+        Integer index = indexById.get(itemId);
+        return index != null ? nextSplit[index] : 0;
+    }
+
+    /**
+     * Get the quantity of an item that has been paid for in previous split transactions.
+     *
+     * @param itemId The id of the item
+     * @return The paid quantity, or zero if there is no such item
+     */
+    public int getPaidQuantity(String itemId) {
+        Integer index = indexById.get(itemId);
+        return index != null ? paid[index] : 0;
+    }
+
+    /**
+     * @return The total value of the items paid for in previous split transactions
+     */
+    public long getPaidTotal() {
+        return paidTotal;
+    }
+
+    /**
+     * @return The total value of the items remaining to be paid, excluding what is allocated to the next split
+     */
+    public long getRemainingTotal() {
+        return remainingTotal;
+    }
+
+    /**
+     * @return The total value of the items allocated to the next split
+     */
+    public long getNextSplitTotal() {
+        return nextSplitTotal;
+    }
+
+    /**
+     * Get the amounts each payee should pay to split the remaining items evenly, including anything allocated to the next split.
+     *
+     * Any remainder that can not be split evenly is added to the first payees, one sub-unit each, so that the amounts always add up to the total.
+     *
+     * @param numberOfPayees The number of payees to split between
+     * @return The amount for each payee
+     * @throws IllegalArgumentException If the number of payees is not positive
+     */
+    @NonNull
+    public long[] getEvenSplitAmounts(int numberOfPayees) {
+        if (numberOfPayees <= 0) {
+            throw new IllegalArgumentException("Number of payees must be positive");
+        }
+        long total = remainingTotal + nextSplitTotal;
+        long[] amounts = new long[numberOfPayees];
+        long share = total / numberOfPayees;
+        long remainder = total % numberOfPayees;
+        for (int i = 0; i < numberOfPayees; i++) {
+            amounts[i] = share + (i < remainder ? 1 : 0);
+        }
+        return amounts;
+    }
+
+    /**
+     * Check whether there are no items left to pay, including what is allocated to the next split.
+     *
+     * @return True if all items have been paid for, false otherwise
+     */
+    public boolean isFullyPaid() {
+        for (int i = 0; i < items.length; i++) {
+            if (remaining[i] > 0 || nextSplit[i] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the items paid for in previous split transactions as a basket.
+     *
+     * @return A new basket of the paid items
+     */
+    @NonNull
+    public Basket getPaidBasket() {
+        return toBasket("paidItems", paid, false);
+    }
+
+    /**
+     * Get the items remaining to be paid as a basket, excluding what is allocated to the next split.
+     *
+     * @param retainZeroQuantityItems True to include items with no remaining quantity, so that the full basket can be shown
+     * @return A new basket of the remaining items
+     */
+    @NonNull
+    public Basket getRemainingBasket(boolean retainZeroQuantityItems) {
+        return toBasket("remainingItems", remaining, retainZeroQuantityItems);
+    }
+
+    /**
+     * Get the items allocated to the next split as a basket, to be added to the split transaction.
+     *
+     * @return A new basket of the items allocated to the next split
+     */
+    @NonNull
+    public Basket getNextSplitBasket() {
+        return toBasket("splitItems", nextSplit, false);
+    }
+
+    private Basket toBasket(String basketName, int[] quantities, boolean retainZeroQuantityItems) {
+        List<BasketItem> basketItems = new ArrayList<>();
+        for (int i = 0; i < items.length; i++) {
+            if (quantities[i] > 0 || retainZeroQuantityItems) {
+                BasketItem item = items[i];
+                basketItems.add(quantities[i] == item.getQuantity() ? item : new BasketItemBuilder(item).withQuantity(quantities[i]).build());
+            }
+        }
+        return new Basket(basketName, basketItems);
+    }
+}
@@ -20,12 +20,12 @@ import androidx.annotation.Nullable;
 
 import com.aevi.sdk.flow.model.BaseModel;
 import com.aevi.sdk.flow.model.DeviceAudience;
+import com.aevi.sdk.flow.util.IdGenerators;
 import com.aevi.util.json.JsonConverter;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.UUID;
 
 public class SplitRequest extends BaseModel {
 
@@ -47,7 +47,7 @@ public class SplitRequest extends BaseModel {
      * @param transactions             The list of transactions
      */
     public SplitRequest(Payment sourcePayment, Amounts accumulatedRequestTotals, List<Transaction> transactions) {
-        super(UUID.randomUUID().toString());
+        super(IdGenerators.generateId());
         this.sourcePayment = sourcePayment;
         this.accumulatedRequestTotals = accumulatedRequestTotals;
         this.transactions = transactions;
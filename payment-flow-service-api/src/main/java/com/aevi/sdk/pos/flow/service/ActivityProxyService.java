@@ -21,12 +21,12 @@ import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import android.util.Log;
 import com.aevi.sdk.flow.constants.FlowStages;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.BaseApiService;
 import com.aevi.sdk.flow.service.ClientCommunicator;
 import com.aevi.sdk.flow.stage.ServiceComponentDelegate;
+import com.aevi.sdk.flow.util.FlowLog;
 import com.aevi.sdk.pos.flow.PaymentFlowServiceApi;
 
 import java.util.List;
@@ -64,14 +64,14 @@ public class ActivityProxyService extends BaseApiService {
                                           boolean isResume) {
         String flowStage = getInternalData(senderInternalData, FLOW_STAGE);
         if (flowStage.equals(FlowStages.STATUS_UPDATE)) {
-            Log.e(TAG, "Status update stage must be handled in a service context only - ignoring stage for: " + getPackageName());
+            FlowLog.e(TAG, "Status update stage must be handled in a service context only - ignoring stage for: " + getPackageName());
             clientCommunicator.finishWithNoResponse();
             return;
         }
         Intent activityIntent = getActivityIntent(flowStage);
         activityIntent.putExtra(KEY_IS_RESUMED, isResume);
         if (!isActivityDefined(activityIntent)) {
-            Log.e(TAG, "No activity defined to handle: " + activityIntent.getAction()
+            FlowLog.e(TAG, "No activity defined to handle: " + activityIntent.getAction()
                     + " in app: " + getPackageName() + "! Finishing with no response");
             clientCommunicator.finishWithNoResponse();
             return;
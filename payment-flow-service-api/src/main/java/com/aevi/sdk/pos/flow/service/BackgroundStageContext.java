@@ -0,0 +1,92 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.pos.flow.service;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.aevi.sdk.flow.model.InternalData;
+import com.aevi.sdk.flow.tracing.TraceContext;
+import com.aevi.sdk.flow.util.FlowDeadlines;
+
+import static com.aevi.sdk.flow.constants.InternalDataKeys.FLOW_INITIATOR;
+
+/**
+ * The context of a single stage invocation in a {@link BaseBackgroundFlowService}.
+ */
+public final class BackgroundStageContext {
+
+    private final String stage;
+    private final InternalData senderInternalData;
+    private final long deadlineMillis;
+
+    BackgroundStageContext(String stage, @Nullable InternalData senderInternalData) {
+        this.stage = stage;
+        this.senderInternalData = senderInternalData;
+        this.deadlineMillis = FlowDeadlines.fromInternalData(senderInternalData);
+    }
+
+    /**
+     * @return The flow stage being processed
+     */
+    @NonNull
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * Get the package name of the client application that initiated the flow.
+     *
+     * @return A package name or "UNKNOWN" if not known for some reason
+     */
+    @NonNull
+    public String getFlowInitiatorPackage() {
+        return senderInternalData != null ? senderInternalData.getAdditionalDataValue(FLOW_INITIATOR, "UNKNOWN") : "UNKNOWN";
+    }
+
+    /**
+     * @return The internal data of the processing service, or null if it was not provided
+     */
+    @Nullable
+    public InternalData getSenderInternalData() {
+        return senderInternalData;
+    }
+
+    /**
+     * Get the trace context propagated by the processing service, for starting child spans for the processing of the stage.
+     *
+     * @return The trace context, or null if none was propagated
+     */
+    @Nullable
+    public TraceContext getTraceContext() {
+        return TraceContext.fromInternalData(senderInternalData);
+    }
+
+    /**
+     * @return The deadline for the response in milliseconds since epoch, or {@link FlowDeadlines#NO_DEADLINE} if none was propagated
+     */
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Get the time left until the response for this stage must have been sent.
+     *
+     * @return The remaining time in milliseconds, which is 0 once the deadline has passed, or {@link Long#MAX_VALUE} if there is no deadline
+     */
+    public long getRemainingTimeMillis() {
+        return FlowDeadlines.getRemainingTimeMillis(deadlineMillis);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.pos.flow.service;
+
+import androidx.annotation.NonNull;
+
+import com.aevi.sdk.pos.flow.model.FlowResponse;
+
+import io.reactivex.Single;
+
+/**
+ * Handles a stage in a {@link BaseBackgroundFlowService}, by computing the response for the stage from its request.
+ *
+ * Handlers should not keep any state between invocations, as the same handler may be invoked for several flows at the same time.
+ *
+ * @param <T> The request type of the stage
+ */
+public interface BackgroundStageHandler<T> {
+
+    /**
+     * Compute the response for a stage.
+     *
+     * Return a response without any augmented data to indicate that no changes are required. An error emitted by the returned single is sent
+     * to the processing service as a flow service error.
+     *
+     * @param request The stage request
+     * @param context The context of the stage invocation
+     * @return A single emitting the response
+     */
+    @NonNull
+    Single<FlowResponse> process(@NonNull T request, @NonNull BackgroundStageContext context);
+}
@@ -0,0 +1,404 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.pos.flow.service;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.aevi.sdk.flow.model.AdditionalData;
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.model.FlowEvent;
+import com.aevi.sdk.flow.model.FlowEventBatch;
+import com.aevi.sdk.flow.model.InternalData;
+import com.aevi.sdk.flow.service.BaseApiService;
+import com.aevi.sdk.flow.service.ClientCommunicator;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.pos.flow.PaymentFlowServiceApi;
+import com.aevi.sdk.pos.flow.model.FlowResponse;
+import com.aevi.sdk.pos.flow.model.Payment;
+import com.aevi.sdk.pos.flow.model.SplitRequest;
+import com.aevi.sdk.pos.flow.model.TransactionRequest;
+import com.aevi.sdk.pos.flow.model.TransactionSummary;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Function;
+import io.reactivex.observers.DisposableObserver;
+import io.reactivex.observers.DisposableSingleObserver;
+import io.reactivex.schedulers.Schedulers;
+
+import static com.aevi.sdk.flow.constants.AppMessageTypes.FLOW_SERVICE_EVENT;
+import static com.aevi.sdk.flow.constants.AppMessageTypes.FLOW_SERVICE_EVENT_BATCH;
+import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_ERROR;
+import static com.aevi.sdk.flow.constants.ErrorConstants.STAGE_NOT_SUPPORTED;
+import static com.aevi.sdk.flow.constants.FlowServiceEventTypes.*;
+import static com.aevi.sdk.flow.constants.FlowStages.*;
+import static com.aevi.sdk.flow.constants.InternalDataKeys.FLOW_STAGE;
+
+/**
+ * Base class for payment flow services that never show any user interface, and handle their stages by computing a {@link FlowResponse} from the
+ * stage request.
+ *
+ * The stages handled by the service are declared up front, typically from the constructor, via the {@code handle} methods such as
+ * {@link #handlePreTransaction(BackgroundStageHandler, String...)}, together with the data keys the service adds for each stage. Each stage
+ * invocation is then passed to the handler without creating a stage model, so none of the activity plumbing of {@link BasePaymentFlowService} is
+ * set up, and flow service events are not delivered to the handlers. Instead, the handler of an invocation is cancelled if the processing service
+ * asks the flow service to finish immediately, in which case no response is sent, or if the merchant cancels the flow, in which case a response
+ * cancelling the transaction is sent.
+ *
+ * A handler that has not completed in time is cancelled and an empty response is sent, so that the flow can carry on. The time a handler has is
+ * limited by the timeout set via {@link #setStageTimeout(long, TimeUnit)}, and by the deadline propagated by the processing service, if any, less a
+ * margin of {@link #DEADLINE_MARGIN_MS} to allow for the response to reach the processing service in time.
+ *
+ * All invocations share the same resources. Handlers are invoked on the thread the request was received on (see
+ * {@link #setMessageDispatcher(com.aevi.sdk.flow.service.MessageDispatcher)}). Responses are sent from a single thread owned by the service, which
+ * is shut down when the service is destroyed. Responses that complete whilst that thread is busy are queued and sent together in one batch, so
+ * that a burst of completing invocations only wakes the response thread once.
+ */
+public abstract class BaseBackgroundFlowService extends BaseApiService {
+
+    private static final String TAG = BaseBackgroundFlowService.class.getSimpleName();
+
+    /**
+     * The time, in milliseconds, by which handlers are timed out ahead of the deadline propagated by the processing service.
+     */
+    public static final long DEADLINE_MARGIN_MS = 500;
+
+    private final Map<String, Registration<?>> registrations = new ConcurrentHashMap<>();
+    private final Set<String> supportedDataKeys = Collections.synchronizedSet(new LinkedHashSet<String>());
+    private final CompositeDisposable inFlight = new CompositeDisposable();
+    private final CompositeDisposable eventSubscriptions = new CompositeDisposable();
+    private volatile long stageTimeoutMillis = Long.MAX_VALUE;
+    private final ExecutorService responseExecutor = Executors.newSingleThreadExecutor();
+    private final Queue<Runnable> pendingResponses = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean responseBatchScheduled = new AtomicBoolean();
+    private Scheduler responseScheduler = Schedulers.from(responseExecutor);
+    private Scheduler timeoutScheduler = Schedulers.computation();
+
+    public BaseBackgroundFlowService() {
+        super(PaymentFlowServiceApi.getApiVersion());
+    }
+
+    void setSchedulers(Scheduler responseScheduler, Scheduler timeoutScheduler) {
+        this.responseScheduler = responseScheduler;
+        this.timeoutScheduler = timeoutScheduler;
+    }
+
+    /**
+     * Set the maximum time handlers have to complete, after which an empty response is sent for the stage.
+     *
+     * If the processing service propagates an earlier deadline, that deadline is applied instead.
+     *
+     * @param timeout The timeout
+     * @param unit    The unit of the timeout
+     */
+    protected final void setStageTimeout(long timeout, @NonNull TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("The stage timeout must be positive");
+        }
+        this.stageTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Handle the pre-flow stage.
+     *
+     * @param handler  The handler for the stage
+     * @param dataKeys The keys of any data the handler adds to the request or payment references
+     */
+    protected final void handlePreFlow(@NonNull BackgroundStageHandler<Payment> handler, String... dataKeys) {
+        register(PRE_FLOW, Payment::fromJson, handler, dataKeys);
+    }
+
+    /**
+     * Handle the split stage.
+     *
+     * @param handler  The handler for the stage
+     * @param dataKeys The keys of any data the handler adds to the request or payment references
+     */
+    protected final void handleSplit(@NonNull BackgroundStageHandler<SplitRequest> handler, String... dataKeys) {
+        register(SPLIT, SplitRequest::fromJson, handler, dataKeys);
+    }
+
+    /**
+     * Handle the pre-transaction stage.
+     *
+     * @param handler  The handler for the stage
+     * @param dataKeys The keys of any data the handler adds to the request or payment references
+     */
+    protected final void handlePreTransaction(@NonNull BackgroundStageHandler<TransactionRequest> handler, String... dataKeys) {
+        register(PRE_TRANSACTION, TransactionRequest::fromJson, handler, dataKeys);
+    }
+
+    /**
+     * Handle the post-card-reading stage.
+     *
+     * @param handler  The handler for the stage
+     * @param dataKeys The keys of any data the handler adds to the request or payment references
+     */
+    protected final void handlePostCardReading(@NonNull BackgroundStageHandler<TransactionRequest> handler, String... dataKeys) {
+        register(POST_CARD_READING, TransactionRequest::fromJson, handler, dataKeys);
+    }
+
+    /**
+     * Handle the post-transaction stage.
+     *
+     * @param handler  The handler for the stage
+     * @param dataKeys The keys of any data the handler adds to the request or payment references
+     */
+    protected final void handlePostTransaction(@NonNull BackgroundStageHandler<TransactionSummary> handler, String... dataKeys) {
+        register(POST_TRANSACTION, TransactionSummary::fromJson, handler, dataKeys);
+    }
+
+    private <T> void register(String stage, Function<String, T> decoder, BackgroundStageHandler<T> handler, String[] dataKeys) {
+        registrations.put(stage, new Registration<>(decoder, handler));
+        Collections.addAll(supportedDataKeys, dataKeys);
+    }
+
+    /**
+     * Get the stages this service has declared handlers for.
+     *
+     * @return The flow stages
+     */
+    @NonNull
+    public Set<String> getHandledStages() {
+        return Collections.unmodifiableSet(registrations.keySet());
+    }
+
+    /**
+     * Get the data keys declared for all handled stages, for use with
+     * {@link com.aevi.sdk.pos.flow.model.PaymentFlowServiceInfoBuilder#withSupportedDataKeys(String...)}.
+     *
+     * @return The data keys
+     */
+    @NonNull
+    public String[] getSupportedDataKeys() {
+        synchronized (supportedDataKeys) {
+            return supportedDataKeys.toArray(new String[0]);
+        }
+    }
+
+    @Override
+    protected final void processRequest(@NonNull ClientCommunicator clientCommunicator, @NonNull String request,
+                                        @Nullable InternalData senderInternalData) {
+        String stage = getInternalData(senderInternalData, FLOW_STAGE);
+        Registration<?> registration = registrations.get(stage);
+        if (registration == null) {
+            clientCommunicator.sendResponseAsErrorAndEnd(STAGE_NOT_SUPPORTED,
+                                                         String.format("[%s] Stage handling not implemented by this flow service.", stage));
+            return;
+        }
+
+        BackgroundStageContext context = new BackgroundStageContext(stage, senderInternalData);
+        Single<FlowResponse> response = registration.process(request, context);
+        long timeoutMillis = getTimeoutMillis(context);
+        if (timeoutMillis != Long.MAX_VALUE) {
+            response = response.timeout(timeoutMillis, TimeUnit.MILLISECONDS, timeoutScheduler, Single.fromCallable(() -> {
+                FlowLog.w(TAG, "Handler for stage %s did not complete in time - skipping stage", stage);
+                return new FlowResponse();
+            }));
+        }
+        DisposableSingleObserver<FlowResponse> observer = new DisposableSingleObserver<FlowResponse>() {
+            @Override
+            public void onSuccess(FlowResponse flowResponse) {
+                // only respond if the invocation has not been cancelled in the meantime
+                if (inFlight.delete(this)) {
+                    respond(clientCommunicator, stage, flowResponse);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                if (inFlight.delete(this)) {
+                    respondWithError(clientCommunicator, stage, throwable);
+                }
+            }
+        };
+        inFlight.add(observer);
+        subscribeToFlowServiceEvents(clientCommunicator, stage, observer);
+        response.subscribe(observer);
+    }
+
+    private long getTimeoutMillis(BackgroundStageContext context) {
+        long remainingTimeMillis = context.getRemainingTimeMillis();
+        if (remainingTimeMillis == Long.MAX_VALUE) {
+            return stageTimeoutMillis;
+        }
+        return Math.min(stageTimeoutMillis, Math.max(0, remainingTimeMillis - DEADLINE_MARGIN_MS));
+    }
+
+    private void subscribeToFlowServiceEvents(ClientCommunicator clientCommunicator, String stage, Disposable invocation) {
+        // there is a connection per stage invocation, so this is only subscribed to once per connection
+        DisposableObserver<AppMessage> subscription = new DisposableObserver<AppMessage>() {
+            @Override
+            public void onNext(AppMessage appMessage) {
+                switch (appMessage.getMessageType()) {
+                    case FLOW_SERVICE_EVENT:
+                        clientCommunicator.sendAck();
+                        handleFlowServiceEvent(clientCommunicator, stage, invocation, this, FlowEvent.fromJson(appMessage.getMessageData()));
+                        break;
+                    case FLOW_SERVICE_EVENT_BATCH:
+                        clientCommunicator.sendAck();
+                        for (FlowEvent flowEvent : FlowEventBatch.fromJson(appMessage.getMessageData()).getEvents()) {
+                            handleFlowServiceEvent(clientCommunicator, stage, invocation, this, flowEvent);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                eventSubscriptions.delete(this);
+                FlowLog.e(TAG, "Exception whilst listening for flow service events", throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                eventSubscriptions.delete(this);
+            }
+        };
+        eventSubscriptions.add(subscription);
+        clientCommunicator.subscribeToMessages().subscribe(subscription);
+    }
+
+    private void handleFlowServiceEvent(ClientCommunicator clientCommunicator, String stage, Disposable invocation, Disposable subscription,
+                                        FlowEvent flowEvent) {
+        FlowLog.i(TAG, "Received flow service event %s for stage %s", flowEvent.getType(), stage);
+        switch (flowEvent.getType()) {
+            case FINISH_IMMEDIATELY:
+                // no response is accepted any more, so the handler is only cancelled
+                inFlight.remove(invocation);
+                eventSubscriptions.remove(subscription);
+                break;
+            case CANCEL_OR_RESUME_USER_INTERFACE:
+                // there is no user interface to resume, so the flow is cancelled as the merchant asked for
+                if (inFlight.remove(invocation)) {
+                    FlowResponse flowResponse = new FlowResponse();
+                    flowResponse.setCancelTransaction(true);
+                    respond(clientCommunicator, stage, flowResponse);
+                }
+                break;
+            case RESPONSE_ACCEPTED:
+            case RESPONSE_REJECTED:
+                eventSubscriptions.remove(subscription);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void respond(ClientCommunicator clientCommunicator, String stage, FlowResponse flowResponse) {
+        try {
+            flowResponse.validate();
+        } catch (RuntimeException e) {
+            respondWithError(clientCommunicator, stage, e);
+            return;
+        }
+        checkDataKeys(stage, flowResponse.getRequestAdditionalData());
+        checkDataKeys(stage, flowResponse.getPaymentReferences());
+        // responses without any changes do not need to be serialised
+        String responseJson = flowResponse.hasAugmentedData() || flowResponse.shouldCancelTransaction() ? flowResponse.toJson() : null;
+        sendOnResponseThread(() -> {
+            if (responseJson != null) {
+                clientCommunicator.sendResponse(responseJson);
+            } else {
+                clientCommunicator.finishWithNoResponse();
+            }
+        });
+    }
+
+    private void respondWithError(ClientCommunicator clientCommunicator, String stage, Throwable throwable) {
+        FlowLog.e(TAG, "Handler for stage " + stage + " failed", throwable);
+        sendOnResponseThread(() -> clientCommunicator.sendResponseAsErrorAndEnd(
+                FLOW_SERVICE_ERROR, String.format("Flow service failed with exception: %s", throwable.getMessage())));
+    }
+
+    private void checkDataKeys(String stage, @Nullable AdditionalData data) {
+        if (data == null || supportedDataKeys.isEmpty()) {
+            return;
+        }
+        for (String key : data.getKeys()) {
+            if (!supportedDataKeys.contains(key)) {
+                FlowLog.w(TAG, "Handler for stage %s added undeclared data key: %s", stage, key);
+            }
+        }
+    }
+
+    private void sendOnResponseThread(Runnable response) {
+        pendingResponses.add(response);
+        if (responseBatchScheduled.compareAndSet(false, true)) {
+            responseScheduler.scheduleDirect(this::sendPendingResponses);
+        }
+    }
+
+    private void sendPendingResponses() {
+        // cleared before draining, so that a response queued after the queue was found empty schedules a new batch
+        responseBatchScheduled.set(false);
+        Runnable response;
+        while ((response = pendingResponses.poll()) != null) {
+            try {
+                response.run();
+            } catch (RuntimeException e) {
+                FlowLog.e(TAG, "Failed to send response", e);
+            }
+        }
+    }
+
+    /**
+     * @return The number of stage invocations whose handlers have not completed yet
+     */
+    public int getActiveInvocationCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void onDestroy() {
+        inFlight.clear();
+        eventSubscriptions.clear();
+        // responses already queued are still sent before the thread terminates
+        responseExecutor.shutdown();
+        super.onDestroy();
+    }
+
+    private static final class Registration<T> {
+
+        private final Function<String, T> decoder;
+        private final BackgroundStageHandler<T> handler;
+
+        Registration(Function<String, T> decoder, BackgroundStageHandler<T> handler) {
+            this.decoder = decoder;
+            this.handler = handler;
+        }
+
+        Single<FlowResponse> process(String request, BackgroundStageContext context) {
+            return Single.defer(() -> handler.process(decoder.apply(request), context));
+        }
+    }
+}
@@ -2,7 +2,7 @@ package com.aevi.sdk.pos.flow.service;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import android.util.Log;
+import com.aevi.sdk.flow.model.AppMessage;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.model.Request;
 import com.aevi.sdk.flow.model.Response;
@@ -11,6 +11,8 @@ import com.aevi.sdk.flow.service.ClientCommunicator;
 import com.aevi.sdk.flow.stage.GenericStageModel;
 import com.aevi.sdk.flow.stage.PostGenericStageModel;
 import com.aevi.sdk.flow.stage.StatusUpdateModel;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.flow.util.JsonWarmup;
 import com.aevi.sdk.pos.flow.PaymentFlowServiceApi;
 import com.aevi.sdk.pos.flow.model.*;
 import com.aevi.sdk.pos.flow.stage.*;
@@ -26,14 +28,47 @@ import static com.aevi.sdk.flow.constants.InternalDataKeys.FLOW_STAGE;
  */
 public abstract class BasePaymentFlowService extends BaseApiService {
 
+    private StageRequestScheduler stageRequestScheduler;
+
     public BasePaymentFlowService() {
         super(PaymentFlowServiceApi.getApiVersion());
     }
 
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Build the JSON adapters for the stage models in the background, so that the first request is not delayed by it
+        JsonWarmup.warmUp(AppMessage.class, InternalData.class, Payment.class, SplitRequest.class, TransactionRequest.class,
+                          TransactionSummary.class, PaymentResponse.class, FlowResponse.class, Request.class, Response.class).subscribe();
+    }
+
+    /**
+     * Set a scheduler to limit and prioritise the stage requests processed concurrently by this service.
+     *
+     * By default, no scheduler is used and every request is mapped to its stage callback as soon as it is received. Setting a scheduler is
+     * recommended for services that may be called for several flows at the same time, such as when multi-device support is enabled. See
+     * {@link StageRequestScheduler} for the threads the stage callbacks are called on when a scheduler is used.
+     *
+     * @param stageRequestScheduler The scheduler, or null to process requests immediately
+     */
+    public void setStageRequestScheduler(@Nullable StageRequestScheduler stageRequestScheduler) {
+        this.stageRequestScheduler = stageRequestScheduler;
+    }
+
     @Override
     protected final void processRequest(@NonNull ClientCommunicator clientCommunicator, @NonNull String request,
                                         @Nullable InternalData senderInternalData) {
-        mapStageToCallback(clientCommunicator, request, senderInternalData);
+        String flowStage = getInternalData(senderInternalData, FLOW_STAGE);
+        if (flowStage == null) {
+            returnStageNotImplemented(clientCommunicator, null);
+            return;
+        }
+        StageRequestScheduler scheduler = stageRequestScheduler;
+        if (scheduler != null) {
+            scheduler.schedule(flowStage, clientCommunicator, () -> mapStageToCallback(clientCommunicator, request, senderInternalData));
+        } else {
+            mapStageToCallback(clientCommunicator, request, senderInternalData);
+        }
     }
 
     /**
@@ -47,8 +82,7 @@ public abstract class BasePaymentFlowService extends BaseApiService {
         try {
             String flowStage = getInternalData(senderInternalData, FLOW_STAGE);
             if (flowStage != null) {
-                Log.d(BasePaymentFlowService.class.getSimpleName(),
-                      String.format("Mapping request for flow stage: %s", flowStage));
+                FlowLog.d(BasePaymentFlowService.class.getSimpleName(), "Mapping request for flow stage: %s", flowStage);
                 switch (flowStage) {
                     case PRE_FLOW:
                         onPreFlow(PreFlowModel.fromService(clientCommunicator, Payment.fromJson(request), senderInternalData));
@@ -0,0 +1,351 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.pos.flow.service;
+
+import androidx.annotation.NonNull;
+
+import com.aevi.sdk.flow.model.config.FpsSettings;
+import com.aevi.sdk.flow.service.ClientCommunicator;
+import com.aevi.sdk.flow.util.FlowLog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_BUSY;
+import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_ERROR;
+import static com.aevi.sdk.flow.constants.FlowStages.*;
+
+/**
+ * Schedules stage requests for a {@link BasePaymentFlowService} that may receive requests for multiple flows concurrently, such as when
+ * multi-device support is enabled in the processing service.
+ *
+ * At most the configured number of requests are processed at the same time. A request is considered processed once its final response (or failure)
+ * has been sent to the client, or once its stage timeout has passed. Further requests are queued and started in order of their stage priority, where a
+ * lower value means a higher priority. Requests that have been queued for longer than their stage timeout are rejected, as the processing service will
+ * no longer accept a response for them.
+ *
+ * A request that can be processed straight away is started on the thread that {@link #schedule(String, ClientCommunicator, Runnable)} is called
+ * on, which is the thread messages are dispatched on by the service (see
+ * {@link com.aevi.sdk.flow.service.BaseApiService#setMessageDispatcher(com.aevi.sdk.flow.service.MessageDispatcher)}). By default, a queued request
+ * is started on the thread that completed the request it takes the place of, which is the thread the final response of that request was sent
+ * from, or a computation thread if that request timed out. A different executor for queued requests can be provided on construction.
+ *
+ * The default stage timeouts match the default response timeouts in {@link FpsSettings}. If these are changed in the processing service settings,
+ * the timeouts here should be updated via {@link #setStageTimeoutSeconds(String, int)} accordingly.
+ */
+public class StageRequestScheduler {
+
+    private static final String TAG = StageRequestScheduler.class.getSimpleName();
+
+    public static final int PRIORITY_HIGHEST = 0;
+    public static final int PRIORITY_HIGH = 1;
+    public static final int PRIORITY_NORMAL = 2;
+    public static final int PRIORITY_LOW = 3;
+
+    private final int maxConcurrentRequests;
+    private final Executor queuedRequestExecutor;
+    private final Scheduler timeoutScheduler;
+    private final Map<String, Integer> stagePriorities = new HashMap<>();
+    private final Map<String, Integer> stageTimeouts = new HashMap<>();
+    private final PriorityQueue<ScheduledRequest> queue = new PriorityQueue<>();
+
+    private int activeRequests;
+    private long sequence;
+    private long startedCount;
+    private long rejectedCount;
+    private long timedOutCount;
+    private long totalQueueWaitMillis;
+    private long maxQueueWaitMillis;
+
+    /**
+     * Create a scheduler that starts queued requests on the thread that completed the previous request.
+     *
+     * @param maxConcurrentRequests The maximum number of requests processed at the same time
+     */
+    public StageRequestScheduler(int maxConcurrentRequests) {
+        this(maxConcurrentRequests, Runnable::run, Schedulers.computation());
+    }
+
+    /**
+     * Create a scheduler that starts queued requests via the given executor, such as one that posts to the main thread for services that need
+     * to handle all stages there.
+     *
+     * @param maxConcurrentRequests The maximum number of requests processed at the same time
+     * @param queuedRequestExecutor The executor to start queued requests on
+     */
+    public StageRequestScheduler(int maxConcurrentRequests, @NonNull Executor queuedRequestExecutor) {
+        this(maxConcurrentRequests, queuedRequestExecutor, Schedulers.computation());
+    }
+
+    StageRequestScheduler(int maxConcurrentRequests, Executor queuedRequestExecutor, Scheduler timeoutScheduler) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be at least 1");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.queuedRequestExecutor = queuedRequestExecutor;
+        this.timeoutScheduler = timeoutScheduler;
+        setupDefaults();
+    }
+
+    private void setupDefaults() {
+        setStagePriority(STATUS_UPDATE, PRIORITY_HIGHEST);
+        setStagePriority(TRANSACTION_PROCESSING, PRIORITY_HIGH);
+        setStagePriority(PAYMENT_CARD_READING, PRIORITY_HIGH);
+        setStagePriority(POST_TRANSACTION, PRIORITY_LOW);
+        setStagePriority(POST_FLOW, PRIORITY_LOW);
+        setStagePriority(POST_GENERIC, PRIORITY_LOW);
+
+        setStageTimeoutSeconds(STATUS_UPDATE, FpsSettings.STATUS_UPDATE_TIMEOUT_SECONDS_DEFAULT);
+        setStageTimeoutSeconds(TRANSACTION_PROCESSING, FpsSettings.PAYMENT_RESPONSE_TIMEOUT_SECONDS_DEFAULT);
+        setStageTimeoutSeconds(SPLIT, FpsSettings.SPLIT_RESPONSE_TIMEOUT_SECONDS_DEFAULT);
+    }
+
+    /**
+     * Set the priority of requests for a stage. Stages without a priority set default to {@link #PRIORITY_NORMAL}.
+     *
+     * @param stage    The flow stage
+     * @param priority The priority, where lower values are processed first
+     */
+    public synchronized void setStagePriority(@NonNull String stage, int priority) {
+        stagePriorities.put(stage, priority);
+    }
+
+    /**
+     * Get the priority of requests for a stage.
+     *
+     * @param stage The flow stage
+     * @return The priority
+     */
+    public synchronized int getStagePriority(@NonNull String stage) {
+        Integer priority = stagePriorities.get(stage);
+        return priority != null ? priority : PRIORITY_NORMAL;
+    }
+
+    /**
+     * Set the timeout for requests for a stage. Stages without a timeout set default to {@link FpsSettings#FLOW_RESPONSE_TIMEOUT_SECONDS_DEFAULT}.
+     *
+     * @param stage          The flow stage
+     * @param timeoutSeconds The timeout in seconds
+     */
+    public synchronized void setStageTimeoutSeconds(@NonNull String stage, int timeoutSeconds) {
+        stageTimeouts.put(stage, timeoutSeconds);
+    }
+
+    /**
+     * Get the timeout for requests for a stage.
+     *
+     * @param stage The flow stage
+     * @return The timeout in seconds
+     */
+    public synchronized int getStageTimeoutSeconds(@NonNull String stage) {
+        Integer timeout = stageTimeouts.get(stage);
+        return timeout != null ? timeout : FpsSettings.FLOW_RESPONSE_TIMEOUT_SECONDS_DEFAULT;
+    }
+
+    /**
+     * Schedule a request for processing.
+     *
+     * The request is processed immediately on the calling thread if the concurrency limit has not been reached, otherwise it is queued and
+     * later started on the queued request executor.
+     *
+     * @param stage              The flow stage of the request
+     * @param clientCommunicator The communicator for the client that sent the request
+     * @param request            The processing of the request
+     */
+    public void schedule(@NonNull String stage, @NonNull ClientCommunicator clientCommunicator, @NonNull Runnable request) {
+        if (stage == null) {
+            throw new IllegalArgumentException("A stage is required to schedule a request");
+        }
+        ScheduledRequest scheduledRequest;
+        synchronized (this) {
+            scheduledRequest = new ScheduledRequest(stage, getStagePriority(stage), getStageTimeoutSeconds(stage), sequence++,
+                                                    timeoutScheduler.now(TimeUnit.MILLISECONDS), clientCommunicator, request);
+            if (activeRequests >= maxConcurrentRequests) {
+                FlowLog.d(TAG, "Queueing request for stage: %s", stage);
+                queue.add(scheduledRequest);
+                return;
+            }
+            activeRequests++;
+            recordStart(scheduledRequest);
+        }
+        start(scheduledRequest, false);
+    }
+
+    private void start(ScheduledRequest scheduledRequest, boolean fromQueue) {
+        scheduledRequest.clientCommunicator.setOnCompleteListener(() -> onRequestComplete(scheduledRequest, false));
+        scheduledRequest.timeout = timeoutScheduler.scheduleDirect(() -> onRequestComplete(scheduledRequest, true),
+                                                                   scheduledRequest.timeoutSeconds, TimeUnit.SECONDS);
+        try {
+            scheduledRequest.request.run();
+        } catch (RuntimeException e) {
+            if (!fromQueue) {
+                onRequestComplete(scheduledRequest, false);
+                throw e; // handled by the base service
+            }
+            FlowLog.e(TAG, "Failed to process queued request", e);
+            scheduledRequest.clientCommunicator.sendResponseAsErrorAndEnd(
+                    FLOW_SERVICE_ERROR, String.format("Flow service failed with exception: %s", e.getMessage()));
+        }
+    }
+
+    private void onRequestComplete(ScheduledRequest scheduledRequest, boolean timedOut) {
+        ScheduledRequest next;
+        List<ScheduledRequest> expired = new ArrayList<>();
+        synchronized (this) {
+            if (scheduledRequest.complete) {
+                return;
+            }
+            scheduledRequest.complete = true;
+            if (timedOut) {
+                FlowLog.w(TAG, "Request for stage %s timed out - releasing slot", scheduledRequest.stage);
+                timedOutCount++;
+            } else if (scheduledRequest.timeout != null) {
+                scheduledRequest.timeout.dispose();
+            }
+            next = pollNextRequest(expired);
+            if (next == null) {
+                activeRequests--;
+            } else {
+                recordStart(next);
+            }
+        }
+        for (ScheduledRequest expiredRequest : expired) {
+            queuedRequestExecutor.execute(() -> expiredRequest.clientCommunicator.sendResponseAsErrorAndEnd(
+                    FLOW_SERVICE_BUSY, String.format("[%s] Request timed out waiting to be processed", expiredRequest.stage)));
+        }
+        if (next != null) {
+            queuedRequestExecutor.execute(() -> start(next, true));
+        }
+    }
+
+    private ScheduledRequest pollNextRequest(List<ScheduledRequest> expired) {
+        ScheduledRequest next;
+        while ((next = queue.poll()) != null) {
+            if (getQueueWaitMillis(next) < TimeUnit.SECONDS.toMillis(next.timeoutSeconds)) {
+                return next;
+            }
+            rejectedCount++;
+            expired.add(next);
+        }
+        return null;
+    }
+
+    private void recordStart(ScheduledRequest scheduledRequest) {
+        long waitMillis = getQueueWaitMillis(scheduledRequest);
+        startedCount++;
+        totalQueueWaitMillis += waitMillis;
+        maxQueueWaitMillis = Math.max(maxQueueWaitMillis, waitMillis);
+    }
+
+    private long getQueueWaitMillis(ScheduledRequest scheduledRequest) {
+        return timeoutScheduler.now(TimeUnit.MILLISECONDS) - scheduledRequest.queuedAtMillis;
+    }
+
+    /**
+     * Get the number of requests currently being processed.
+     *
+     * @return The number of active requests
+     */
+    public synchronized int getActiveRequestCount() {
+        return activeRequests;
+    }
+
+    /**
+     * Get the number of requests currently waiting to be processed.
+     *
+     * @return The number of queued requests
+     */
+    public synchronized int getQueuedRequestCount() {
+        return queue.size();
+    }
+
+    /**
+     * Get the number of requests that were rejected as they had been queued for longer than their stage timeout.
+     *
+     * @return The number of rejected requests
+     */
+    public synchronized long getRejectedRequestCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Get the number of requests that did not complete within their stage timeout.
+     *
+     * @return The number of timed out requests
+     */
+    public synchronized long getTimedOutRequestCount() {
+        return timedOutCount;
+    }
+
+    /**
+     * Get the average time requests waited in the queue before being started, including requests that did not have to wait.
+     *
+     * @return The average queue wait time in milliseconds
+     */
+    public synchronized long getAverageQueueWaitMillis() {
+        return startedCount > 0 ? totalQueueWaitMillis / startedCount : 0;
+    }
+
+    /**
+     * Get the longest time a request waited in the queue before being started.
+     *
+     * @return The max queue wait time in milliseconds
+     */
+    public synchronized long getMaxQueueWaitMillis() {
+        return maxQueueWaitMillis;
+    }
+
+    private static class ScheduledRequest implements Comparable<ScheduledRequest> {
+
+        final String stage;
+        final int priority;
+        final int timeoutSeconds;
+        final long sequence;
+        final long queuedAtMillis;
+        final ClientCommunicator clientCommunicator;
+        final Runnable request;
+        volatile Disposable timeout;
+        boolean complete;
+
+        ScheduledRequest(String stage, int priority, int timeoutSeconds, long sequence, long queuedAtMillis, ClientCommunicator clientCommunicator,
+                         Runnable request) {
+            this.stage = stage;
+            this.priority = priority;
+            this.timeoutSeconds = timeoutSeconds;
+            this.sequence = sequence;
+            this.queuedAtMillis = queuedAtMillis;
+            this.clientCommunicator = clientCommunicator;
+            this.request = request;
+        }
+
+        @Override
+        public int compareTo(@NonNull ScheduledRequest other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
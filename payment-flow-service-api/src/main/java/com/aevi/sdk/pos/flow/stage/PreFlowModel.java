@@ -17,12 +17,14 @@ package com.aevi.sdk.pos.flow.stage;
 import android.app.Activity;
 import android.content.Context;
 import androidx.annotation.NonNull;
+import com.aevi.sdk.flow.constants.InternalDataKeys;
 import com.aevi.sdk.flow.model.InternalData;
 import com.aevi.sdk.flow.service.ClientCommunicator;
 import com.aevi.sdk.flow.stage.BaseStageModel;
 import com.aevi.sdk.pos.flow.model.FlowResponse;
 import com.aevi.sdk.pos.flow.model.Payment;
 import com.aevi.sdk.pos.flow.model.PaymentBuilder;
+import com.aevi.sdk.pos.flow.model.PaymentDelta;
 import com.aevi.sdk.pos.flow.service.ActivityProxyService;
 import com.aevi.sdk.pos.flow.service.BasePaymentFlowService;
 
@@ -37,22 +39,33 @@ import com.aevi.sdk.pos.flow.service.BasePaymentFlowService;
  * call {@link #sendResponse()} to send off the payment data.
  *
  * To cancel the payment flow, call {@link #cancelFlow()}, or to skip/bypass this stage, call {@link #skip()}.
+ *
+ * If supported by the flow processing service, only the changes made to the payment are sent back as a {@link PaymentDelta}, and no payment
+ * data at all is sent back if the payment was not changed.
  */
 public class PreFlowModel extends BaseStageModel {
 
     private final Payment payment;
     private final PaymentBuilder paymentBuilder;
+    private final Payment originalPayment;
 
-    private PreFlowModel(Activity activity, Payment payment) {
+    private PreFlowModel(Activity activity, String paymentJson) {
         super(activity);
-        this.payment = payment;
+        this.payment = Payment.fromJson(paymentJson);
         this.paymentBuilder = new PaymentBuilder(payment);
+        this.originalPayment = isDeltaSupported() ? PaymentDelta.snapshot(payment) : null;
     }
 
     private PreFlowModel(ClientCommunicator clientCommunicator, Payment payment, InternalData senderInternalData) {
         super(clientCommunicator, senderInternalData);
         this.payment = payment;
         this.paymentBuilder = new PaymentBuilder(payment);
+        // the payment and builder share mutable objects, so the delta is computed against a snapshot
+        this.originalPayment = isDeltaSupported() ? PaymentDelta.snapshot(payment) : null;
+    }
+
+    private boolean isDeltaSupported() {
+        return isSupportedBySender(InternalDataKeys.FLOW_RESPONSE_DELTA);
     }
 
     /**
@@ -66,7 +79,7 @@ public class PreFlowModel extends BaseStageModel {
      */
     @NonNull
     public static PreFlowModel fromActivity(Activity activity) {
-        return new PreFlowModel(activity, Payment.fromJson(getActivityRequestJson(activity)));
+        return new PreFlowModel(activity, getActivityRequestJson(activity));
     }
 
     /**
@@ -108,11 +121,24 @@ public class PreFlowModel extends BaseStageModel {
     /**
      * Send off any updated {@link Payment} as created from the {@link #getPaymentBuilder()}.
      *
+     * If deltas are supported by the flow processing service and the payment has not been changed, an empty response is sent as for
+     * {@link #skip()}.
+     *
      * Note that this does NOT finish any activity or stop any service. That is down to the activity/service to manage internally.
      */
     public void sendResponse() {
         FlowResponse flowResponse = new FlowResponse();
-        flowResponse.setUpdatedPayment(paymentBuilder.build());
+        Payment updatedPayment = paymentBuilder.build();
+        PaymentDelta paymentDelta = originalPayment != null ? PaymentDelta.between(originalPayment, updatedPayment) : null;
+        if (paymentDelta != null && paymentDelta.isEmpty()) {
+            sendEmptyResponse();
+            return;
+        }
+        if (paymentDelta != null) {
+            flowResponse.setPaymentDelta(paymentDelta);
+        } else {
+            flowResponse.setUpdatedPayment(updatedPayment);
+        }
         doSendResponse(flowResponse.toJson());
     }
 
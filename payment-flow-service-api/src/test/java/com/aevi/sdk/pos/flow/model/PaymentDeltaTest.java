@@ -0,0 +1,139 @@
+package com.aevi.sdk.pos.flow.model;
+
+import com.aevi.sdk.flow.model.AdditionalData;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class PaymentDeltaTest {
+
+    private Payment original;
+
+    @Before
+    public void setUp() throws Exception {
+        Basket basket = new Basket("basket",
+                                   new BasketItemBuilder().withId("one").withLabel("One").withAmount(100).withQuantity(1).build(),
+                                   new BasketItemBuilder().withId("two").withLabel("Two").withAmount(200).withQuantity(2).build());
+        AdditionalData additionalData = new AdditionalData();
+        additionalData.addData("keep", "value");
+        additionalData.addData("remove", "value");
+        original = new PaymentBuilder()
+                .withPaymentFlow("sale")
+                .withAmounts(new Amounts(500, "GBP"))
+                .withBasket(basket)
+                .withAdditionalData(additionalData)
+                .build();
+    }
+
+    @Test
+    public void shouldRepresentBasketAmountAndDataChanges() throws Exception {
+        Basket basket = copyOf(original.getBasket());
+        basket.addItems(new BasketItemBuilder().withId("three").withLabel("Three").withAmount(300).withQuantity(1).build());
+        basket.removeItem("one");
+        basket.setItemQuantity("two", 3);
+        AdditionalData additionalData = new AdditionalData(original.getAdditionalData());
+        additionalData.removeData("remove");
+        additionalData.addData("new", "added");
+        Amounts amounts = new Amounts(900, "GBP");
+        amounts.addAdditionalAmount("tip", 50);
+        Payment updated = new PaymentBuilder(original).withBasket(basket).withAmounts(amounts).withAdditionalData(additionalData).build();
+
+        PaymentDelta paymentDelta = PaymentDelta.between(copyOf(original), updated);
+
+        assertThat(paymentDelta).isNotNull();
+        Payment applied = PaymentDelta.fromJson(paymentDelta.toJson()).applyTo(copyOf(original));
+        assertThat(applied.equivalent(updated)).isTrue();
+    }
+
+    @Test
+    public void shouldBeSmallerThanFullPaymentForSmallChanges() throws Exception {
+        Basket basket = copyOf(original.getBasket());
+        basket.setItemQuantity("one", 2);
+        Payment updated = new PaymentBuilder(original).withBasket(basket).withAmounts(new Amounts(600, "GBP")).build();
+
+        PaymentDelta paymentDelta = PaymentDelta.between(copyOf(original), updated);
+
+        assertThat(paymentDelta).isNotNull();
+        assertThat(paymentDelta.toJson().length()).isLessThan(updated.toJson().length() / 2);
+    }
+
+    @Test
+    public void shouldBeEmptyIfNothingChanged() throws Exception {
+        PaymentDelta paymentDelta = PaymentDelta.between(copyOf(original), new PaymentBuilder(original).build());
+
+        assertThat(paymentDelta).isNotNull();
+        assertThat(paymentDelta.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldNotRepresentOtherChanges() throws Exception {
+        Payment updated = new PaymentBuilder(original).withPaymentMethod("cash").build();
+
+        assertThat(PaymentDelta.between(copyOf(original), updated)).isNull();
+    }
+
+    @Test
+    public void shouldNotRepresentCurrencyChange() throws Exception {
+        Payment updated = new PaymentBuilder(original).withBasket(null).withAmounts(new Amounts(500, "EUR")).build();
+
+        assertThat(PaymentDelta.between(copyOf(original), updated)).isNull();
+    }
+
+    @Test
+    public void shouldNotRepresentReorderedBasketItems() throws Exception {
+        Basket basket = copyOf(original.getBasket());
+        BasketItem first = basket.removeItem("one");
+        basket.getBasketItems().add(first);
+        Payment updated = new PaymentBuilder(original).withBasket(basket).build();
+
+        assertThat(PaymentDelta.between(copyOf(original), updated)).isNull();
+    }
+
+    @Test
+    public void shouldNotRepresentItemsAddedAfterExistingItems() throws Exception {
+        Basket basket = copyOf(original.getBasket());
+        basket.getBasketItems().add(new BasketItemBuilder().withId("three").withLabel("Three").withAmount(0).withQuantity(1).build());
+        Payment updated = new PaymentBuilder(original).withBasket(basket).build();
+
+        assertThat(PaymentDelta.between(copyOf(original), updated)).isNull();
+    }
+
+    @Test
+    public void shouldDiffAgainstSnapshotWhenPaymentIsChangedInPlace() throws Exception {
+        Payment received = copyOf(original);
+        Payment snapshot = PaymentDelta.snapshot(received);
+        received.getBasket().addItems(new BasketItemBuilder().withId("three").withLabel("Three").withAmount(300).withQuantity(1).build());
+        received.getAdditionalData().addData("new", "added");
+        Payment updated = new PaymentBuilder(received).withAmounts(new Amounts(800, "GBP")).build();
+
+        PaymentDelta paymentDelta = PaymentDelta.between(snapshot, updated);
+
+        assertThat(snapshot.getId()).isEqualTo(received.getId());
+        assertThat(paymentDelta).isNotNull();
+        assertThat(paymentDelta.isEmpty()).isFalse();
+        assertThat(paymentDelta.applyTo(copyOf(original)).equivalent(updated)).isTrue();
+    }
+
+    @Test
+    public void shouldResolveUpdatedPaymentFromFlowResponse() throws Exception {
+        Payment updated = new PaymentBuilder(original).withAmounts(new Amounts(500, "GBP")).withBasket(copyOf(original.getBasket())).build();
+        updated.getAdditionalData().addData("new", "value");
+        FlowResponse flowResponse = new FlowResponse();
+        flowResponse.setPaymentDelta(PaymentDelta.between(copyOf(original), updated));
+
+        FlowResponse received = FlowResponse.fromJson(flowResponse.toJson());
+
+        assertThat(received.hasAugmentedData()).isTrue();
+        assertThat(received.getUpdatedPayment(copyOf(original)).equivalent(updated)).isTrue();
+    }
+
+    private static Payment copyOf(Payment payment) {
+        return Payment.fromJson(payment.toJson());
+    }
+
+    private static Basket copyOf(Basket basket) {
+        return Payment.fromJson(new PaymentBuilder().withPaymentFlow("sale").withAmounts(new Amounts(basket.getTotalBasketValue(), "GBP"))
+                                        .withBasket(basket).build().toJson()).getBasket();
+    }
+}
@@ -0,0 +1,115 @@
+package com.aevi.sdk.pos.flow.model;
+
+import com.aevi.sdk.flow.model.AdditionalData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class SplitAllocationTest {
+
+    private Basket basket;
+
+    @Before
+    public void setUp() throws Exception {
+        basket = new Basket("table",
+                            createItem("coffee", 300, 4, "1"),
+                            createItem("cake", 450, 2, "2"),
+                            createItem("water", 100, 1, null));
+    }
+
+    @Test
+    public void shouldTransferItemsAndUpdateTotals() throws Exception {
+        SplitAllocation splitAllocation = new SplitAllocation(basket);
+
+        assertThat(splitAllocation.transferToNextSplit("coffee", 3)).isEqualTo(3);
+        assertThat(splitAllocation.transferToNextSplit("water", 5)).isEqualTo(1);
+
+        assertThat(splitAllocation.getNextSplitTotal()).isEqualTo(1000);
+        assertThat(splitAllocation.getRemainingTotal()).isEqualTo(1200);
+        assertThat(splitAllocation.getRemainingQuantity("coffee")).isEqualTo(1);
+        Basket nextSplitBasket = splitAllocation.getNextSplitBasket();
+        assertThat(nextSplitBasket.getTotalBasketValue()).isEqualTo(1000);
+        assertThat(nextSplitBasket.getItemById("coffee").getQuantity()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldTransferBackToRemaining() throws Exception {
+        SplitAllocation splitAllocation = new SplitAllocation(basket);
+        splitAllocation.transferToNextSplit("cake", 2);
+        splitAllocation.transferToNextSplit("coffee", 1);
+
+        splitAllocation.transferToRemaining("cake", 1);
+        assertThat(splitAllocation.getNextSplitTotal()).isEqualTo(750);
+
+        splitAllocation.transferAllToRemaining();
+        assertThat(splitAllocation.getNextSplitTotal()).isEqualTo(0);
+        assertThat(splitAllocation.getRemainingTotal()).isEqualTo(2200);
+        assertThat(splitAllocation.getNextSplitBasket().getBasketItems()).isEmpty();
+    }
+
+    @Test
+    public void shouldRetainZeroQuantityRemainingItems() throws Exception {
+        SplitAllocation splitAllocation = new SplitAllocation(basket);
+        splitAllocation.transferToNextSplit("water", 1);
+
+        assertThat(splitAllocation.getRemainingBasket(true).getBasketItems()).hasSize(3);
+        assertThat(splitAllocation.getRemainingBasket(true).getItemById("water").getQuantity()).isEqualTo(0);
+        assertThat(splitAllocation.getRemainingBasket(false).getBasketItems()).hasSize(2);
+    }
+
+    @Test
+    public void shouldTransferBySeat() throws Exception {
+        SplitAllocation splitAllocation = new SplitAllocation(basket);
+
+        assertThat(splitAllocation.transferSeatToNextSplit("2")).isEqualTo(2);
+        assertThat(splitAllocation.transferSeatToNextSplit("9")).isEqualTo(0);
+
+        assertThat(splitAllocation.getNextSplitTotal()).isEqualTo(900);
+    }
+
+    @Test
+    public void shouldSplitEvenlyWithRemainderOnFirstPayees() throws Exception {
+        SplitAllocation splitAllocation = new SplitAllocation(basket);
+
+        long[] amounts = splitAllocation.getEvenSplitAmounts(3);
+
+        assertThat(amounts).containsExactly(734, 733, 733);
+    }
+
+    @Test
+    public void shouldTreatItemsOfProcessedTransactionsAsPaid() throws Exception {
+        Payment payment = new PaymentBuilder().withPaymentFlow("sale").withAmounts(new Amounts(basket.getTotalBasketValue(), "GBP"))
+                .withBasket(basket).withSplitEnabled(true).build();
+        Basket paidBasket = new Basket("paid", createItem("coffee", 300, 2, "1"));
+        Transaction transaction = new Transaction(new Amounts(600, "GBP"), Collections.singletonList(paidBasket), null, new AdditionalData());
+        transaction.addTransactionResponse(new TransactionResponseBuilder("123").approve(new Amounts(600, "GBP")).build());
+        ArrayList<Transaction> transactions = new ArrayList<>();
+        transactions.add(transaction);
+
+        SplitAllocation splitAllocation = SplitAllocation.fromSplitRequest(new SplitRequest(payment, payment.getAmounts(), transactions));
+
+        assertThat(splitAllocation.getPaidQuantity("coffee")).isEqualTo(2);
+        assertThat(splitAllocation.getPaidTotal()).isEqualTo(600);
+        assertThat(splitAllocation.getRemainingTotal()).isEqualTo(1600);
+        assertThat(splitAllocation.isFullyPaid()).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAllowUnknownItem() throws Exception {
+        new SplitAllocation(basket).transferToNextSplit("tea", 1);
+    }
+
+    private static BasketItem createItem(String id, long amount, int quantity, String seat) {
+        BasketItemBuilder basketItemBuilder = new BasketItemBuilder().withId(id).withLabel(id).withAmount(amount).withQuantity(quantity);
+        if (seat != null) {
+            AdditionalData itemData = new AdditionalData();
+            itemData.addData(SplitAllocation.ITEM_DATA_SEAT, seat);
+            basketItemBuilder.withItemData(itemData);
+        }
+        return basketItemBuilder.build();
+    }
+}
@@ -0,0 +1,200 @@
+package com.aevi.sdk.pos.flow.service;
+
+import com.aevi.sdk.flow.constants.AppMessageTypes;
+import com.aevi.sdk.flow.constants.FlowServiceEventTypes;
+import com.aevi.sdk.flow.constants.InternalDataKeys;
+import com.aevi.sdk.flow.model.AdditionalData;
+import com.aevi.sdk.flow.model.AppMessage;
+import com.aevi.sdk.flow.model.FlowEvent;
+import com.aevi.sdk.flow.model.InternalData;
+import com.aevi.sdk.flow.service.ClientCommunicator;
+import com.aevi.sdk.flow.util.FlowDeadlines;
+import com.aevi.sdk.pos.flow.model.Amounts;
+import com.aevi.sdk.pos.flow.model.Card;
+import com.aevi.sdk.pos.flow.model.FlowResponse;
+import com.aevi.sdk.pos.flow.model.TransactionRequest;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.aevi.sdk.flow.constants.ErrorConstants.FLOW_SERVICE_ERROR;
+import static com.aevi.sdk.flow.constants.ErrorConstants.STAGE_NOT_SUPPORTED;
+import static com.aevi.sdk.flow.constants.FlowStages.POST_TRANSACTION;
+import static com.aevi.sdk.flow.constants.FlowStages.PRE_TRANSACTION;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BaseBackgroundFlowServiceTest {
+
+    private TestScheduler responseScheduler = new TestScheduler();
+    private TestScheduler timeoutScheduler = new TestScheduler();
+    private TestBackgroundFlowService flowService;
+    private ClientCommunicator clientCommunicator;
+    private PublishSubject<AppMessage> clientMessages = PublishSubject.create();
+    private String requestJson;
+
+    @Before
+    public void setUp() throws Exception {
+        flowService = new TestBackgroundFlowService();
+        flowService.setSchedulers(responseScheduler, timeoutScheduler);
+        clientCommunicator = mock(ClientCommunicator.class);
+        when(clientCommunicator.subscribeToMessages()).thenReturn(clientMessages);
+        requestJson = new TransactionRequest("myId", "txnId", "sale", PRE_TRANSACTION, new Amounts(100, "GBP"), new ArrayList<>(), null,
+                                             new AdditionalData(), Card.getEmptyCard(), null).toJson();
+    }
+
+    @Test
+    public void shouldDeclareHandledStagesAndDataKeys() throws Exception {
+        assertThat(flowService.getHandledStages()).containsOnly(PRE_TRANSACTION);
+        assertThat(flowService.getSupportedDataKeys()).containsExactly("loyaltyId");
+    }
+
+    @Test
+    public void shouldSendErrorForUnhandledStage() throws Exception {
+        flowService.processRequest(clientCommunicator, requestJson, stageData(POST_TRANSACTION));
+
+        verify(clientCommunicator).sendResponseAsErrorAndEnd(eq(STAGE_NOT_SUPPORTED), anyString());
+    }
+
+    @Test
+    public void shouldSendResponsesOnResponseScheduler() throws Exception {
+        FlowResponse flowResponse = new FlowResponse();
+        flowResponse.addAdditionalRequestData("loyaltyId", "1234");
+        flowService.response = Single.just(flowResponse);
+
+        flowService.processRequest(clientCommunicator, requestJson, stageData(PRE_TRANSACTION));
+        flowService.response = Single.just(new FlowResponse());
+        flowService.processRequest(clientCommunicator, requestJson, stageData(PRE_TRANSACTION));
+        verify(clientCommunicator, never()).sendResponse(anyString());
+        verify(clientCommunicator, never()).finishWithNoResponse();
+
+        responseScheduler.triggerActions();
+
+        assertThat(flowService.received.getAmounts().getBaseAmountValue()).isEqualTo(100);
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(clientCommunicator).sendResponse(captor.capture());
+        assertThat(FlowResponse.fromJson(captor.getValue()).getRequestAdditionalData().getValue("loyaltyId")).isEqualTo("1234");
+        verify(clientCommunicator).finishWithNoResponse();
+    }
+
+    @Test
+    public void shouldSendResponsesCompletedTogetherInOneBatch() throws Exception {
+        List<Runnable> batches = new ArrayList<>();
+        flowService.setSchedulers(Schedulers.from(batches::add), timeoutScheduler);
+        flowService.response = Single.just(new FlowResponse());
+
+        flowService.processRequest(clientCommunicator, requestJson, stageData(PRE_TRANSACTION));
+        flowService.processRequest(clientCommunicator, requestJson, stageData(PRE_TRANSACTION));
+        assertThat(batches).hasSize(1);
+
+        batches.remove(0).run();
+        verify(clientCommunicator, times(2)).finishWithNoResponse();
+
+        flowService.processRequest(clientCommunicator, requestJson, stageData(PRE_TRANSACTION));
+        assertThat(batches).hasSize(1);
+    }
+
+    @Test
+    public void shouldSendErrorIfHandlerFails() throws Exception {
+        flowService.response = Single.error(new IllegalStateException("Skimaroo"));
+
+        flowService.processRequest(clientCommunicator, requestJson, stageData(PRE_TRANSACTION));
+        responseScheduler.triggerActions();
+
+        verify(clientCommunicator).sendResponseAsErrorAndEnd(FLOW_SERVICE_ERROR, "Flow service failed with exception: Skimaroo");
+    }
+
+    @Test
+    public void shouldSendEmptyResponseAheadOfDeadline() throws Exception {
+        flowService.response = Single.never();
+        InternalData senderInternalData = stageData(PRE_TRANSACTION);
+        FlowDeadlines.writeTimeoutTo(senderInternalData, 5000);
+
+        flowService.processRequest(clientCommunicator, requestJson, senderInternalData);
+        assertThat(flowService.getActiveInvocationCount()).isEqualTo(1);
+
+        timeoutScheduler.advanceTimeBy(5000 - BaseBackgroundFlowService.DEADLINE_MARGIN_MS, TimeUnit.MILLISECONDS);
+        responseScheduler.triggerActions();
+
+        verify(clientCommunicator).finishWithNoResponse();
+        assertThat(flowService.getActiveInvocationCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldSendEmptyResponseWhenStageTimeoutExpires() throws Exception {
+        flowService.response = Single.never();
+        flowService.setStageTimeout(2, TimeUnit.SECONDS);
+
+        flowService.processRequest(clientCommunicator, requestJson, stageData(PRE_TRANSACTION));
+        timeoutScheduler.advanceTimeBy(1999, TimeUnit.MILLISECONDS);
+        responseScheduler.triggerActions();
+        verify(clientCommunicator, never()).finishWithNoResponse();
+
+        timeoutScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        responseScheduler.triggerActions();
+        verify(clientCommunicator).finishWithNoResponse();
+    }
+
+    @Test
+    public void shouldCancelHandlerWithoutResponseWhenAskedToFinishImmediately() throws Exception {
+        PublishSubject<FlowResponse> response = PublishSubject.create();
+        flowService.response = response.singleOrError();
+
+        flowService.processRequest(clientCommunicator, requestJson, stageData(PRE_TRANSACTION));
+        clientMessages.onNext(flowServiceEvent(FlowServiceEventTypes.FINISH_IMMEDIATELY));
+
+        assertThat(response.hasObservers()).isFalse();
+        assertThat(flowService.getActiveInvocationCount()).isEqualTo(0);
+        responseScheduler.triggerActions();
+        verify(clientCommunicator).sendAck();
+        verify(clientCommunicator, never()).finishWithNoResponse();
+        verify(clientCommunicator, never()).sendResponse(anyString());
+    }
+
+    @Test
+    public void shouldCancelTransactionWhenMerchantCancels() throws Exception {
+        flowService.response = Single.never();
+
+        flowService.processRequest(clientCommunicator, requestJson, stageData(PRE_TRANSACTION));
+        clientMessages.onNext(flowServiceEvent(FlowServiceEventTypes.CANCEL_OR_RESUME_USER_INTERFACE));
+        responseScheduler.triggerActions();
+
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(clientCommunicator).sendResponse(captor.capture());
+        assertThat(FlowResponse.fromJson(captor.getValue()).shouldCancelTransaction()).isTrue();
+        assertThat(flowService.getActiveInvocationCount()).isEqualTo(0);
+    }
+
+    private static AppMessage flowServiceEvent(String type) {
+        return new AppMessage(AppMessageTypes.FLOW_SERVICE_EVENT, new FlowEvent(type).toJson());
+    }
+
+    private InternalData stageData(String stage) {
+        InternalData internalData = new InternalData("1.0.0");
+        internalData.addAdditionalData(InternalDataKeys.FLOW_STAGE, stage);
+        return internalData;
+    }
+
+    static class TestBackgroundFlowService extends BaseBackgroundFlowService {
+
+        Single<FlowResponse> response = Single.just(new FlowResponse());
+        TransactionRequest received;
+
+        TestBackgroundFlowService() {
+            handlePreTransaction((request, context) -> {
+                received = request;
+                return response;
+            }, "loyaltyId");
+        }
+    }
+}
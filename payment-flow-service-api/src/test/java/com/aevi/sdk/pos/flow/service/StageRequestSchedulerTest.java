@@ -0,0 +1,104 @@
+package com.aevi.sdk.pos.flow.service;
+
+import com.aevi.sdk.flow.service.ClientCommunicator;
+import io.reactivex.schedulers.TestScheduler;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.aevi.sdk.flow.constants.FlowStages.*;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class StageRequestSchedulerTest {
+
+    private TestScheduler testScheduler = new TestScheduler();
+    private StageRequestScheduler stageRequestScheduler;
+    private List<String> started = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        stageRequestScheduler = new StageRequestScheduler(1, Runnable::run, testScheduler);
+    }
+
+    @Test
+    public void shouldStartRequestImmediatelyIfBelowLimit() throws Exception {
+        schedule(POST_FLOW);
+
+        assertThat(started).containsExactly(POST_FLOW);
+        assertThat(stageRequestScheduler.getActiveRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldQueueRequestsAboveLimitAndStartOnCompletion() throws Exception {
+        ClientCommunicator first = schedule(PRE_FLOW);
+        schedule(PRE_TRANSACTION);
+
+        assertThat(started).containsExactly(PRE_FLOW);
+        assertThat(stageRequestScheduler.getQueuedRequestCount()).isEqualTo(1);
+
+        complete(first);
+
+        assertThat(started).containsExactly(PRE_FLOW, PRE_TRANSACTION);
+        assertThat(stageRequestScheduler.getQueuedRequestCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldStartQueuedRequestsInPriorityOrder() throws Exception {
+        ClientCommunicator first = schedule(PRE_FLOW);
+        schedule(POST_FLOW);
+        schedule(STATUS_UPDATE);
+
+        complete(first);
+        assertThat(started).containsExactly(PRE_FLOW, STATUS_UPDATE);
+    }
+
+    @Test
+    public void shouldReleaseSlotOnTimeout() throws Exception {
+        schedule(STATUS_UPDATE);
+        schedule(POST_FLOW);
+
+        testScheduler.advanceTimeBy(stageRequestScheduler.getStageTimeoutSeconds(STATUS_UPDATE), TimeUnit.SECONDS);
+
+        assertThat(started).containsExactly(STATUS_UPDATE, POST_FLOW);
+        assertThat(stageRequestScheduler.getTimedOutRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldOnlyReleaseSlotOnce() throws Exception {
+        ClientCommunicator first = schedule(PRE_FLOW);
+        complete(first);
+        complete(first);
+        testScheduler.advanceTimeBy(1, TimeUnit.HOURS);
+
+        assertThat(stageRequestScheduler.getActiveRequestCount()).isEqualTo(0);
+        assertThat(stageRequestScheduler.getTimedOutRequestCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRecordQueueWaitTimes() throws Exception {
+        ClientCommunicator first = schedule(PRE_FLOW);
+        schedule(PRE_TRANSACTION);
+        testScheduler.advanceTimeBy(20, TimeUnit.MILLISECONDS);
+        complete(first);
+
+        assertThat(stageRequestScheduler.getMaxQueueWaitMillis()).isEqualTo(20);
+        assertThat(stageRequestScheduler.getAverageQueueWaitMillis()).isEqualTo(10);
+    }
+
+    private ClientCommunicator schedule(String stage) {
+        ClientCommunicator clientCommunicator = mock(ClientCommunicator.class);
+        stageRequestScheduler.schedule(stage, clientCommunicator, () -> started.add(stage));
+        return clientCommunicator;
+    }
+
+    private void complete(ClientCommunicator clientCommunicator) {
+        ArgumentCaptor<Runnable> listenerCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(clientCommunicator).setOnCompleteListener(listenerCaptor.capture());
+        listenerCaptor.getValue().run();
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.aevi.sdk.pos.flow;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.aevi.sdk.flow.constants.ErrorConstants;
+import com.aevi.sdk.flow.model.FlowEvent;
+import com.aevi.sdk.flow.model.FlowException;
+import com.aevi.sdk.flow.model.Request;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.flow.util.IdGenerators;
+import com.aevi.util.json.JsonConverter;
+import com.aevi.util.json.Jsonable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A durable queue of non-interactive requests and events, which are sent to the processing service in the order they were queued once it is
+ * reachable.
+ *
+ * Only requests that are processed in the background (see {@link Request#setProcessInBackground(boolean)}) and events can be queued, as there is
+ * no guarantee of when they are delivered. Requests are de-duplicated by their id, including against requests that have recently been delivered.
+ *
+ * If sending fails because the processing service is not installed or busy, or because it could not be reached, it is retried with an
+ * exponential backoff between the initial and maximum delay. Any other error is not expected to go away by retrying, so the request or event is
+ * logged and dropped, so that it does not block the queue.
+ *
+ * If a file is provided, the queue is persisted to it as an append-only log and any undelivered requests are read back and sent when the queue is
+ * created. Writes to the file are made in order on a background thread, so queueing does not block the calling thread.
+ *
+ * This class is thread-safe.
+ */
+public class OutboundRequestQueue {
+
+    private static final String TAG = OutboundRequestQueue.class.getSimpleName();
+
+    public static final int DEFAULT_MAX_PENDING = 1000;
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 1000;
+    public static final long DEFAULT_MAX_BACKOFF_MS = 60000;
+
+    static final int MAX_DELIVERED_IDS = 500;
+    private static final int MIN_LOG_SIZE_FOR_COMPACTION = 100;
+    private static final Set<String> TRANSIENT_ERROR_CODES = new HashSet<>(Arrays.asList(
+            ErrorConstants.PROCESSING_SERVICE_NOT_INSTALLED,
+            ErrorConstants.PROCESSING_SERVICE_BUSY,
+            ErrorConstants.FLOW_SERVICE_BUSY));
+
+    private final File file;
+    private final PaymentClient paymentClient;
+    private final Scheduler scheduler;
+    private final Scheduler.Worker persistWorker;
+    private final int maxPending;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    private final Set<String> deliveredIds = new LinkedHashSet<>();
+    // only used on the persist worker once the queue has been loaded
+    private Writer writer;
+    private int persistedCount;
+    private boolean sending;
+    private int failedAttempts;
+    private Disposable retry;
+
+    /**
+     * Create a queue that sends via the given client, with the default limits and backoff.
+     *
+     * As this reads from the file, it should not be called on the main thread.
+     *
+     * @param file          The file to persist the queue to, or null to only keep it in memory
+     * @param paymentClient The client to send requests and events with
+     */
+    public OutboundRequestQueue(@Nullable File file, @NonNull PaymentClient paymentClient) {
+        this(file, paymentClient, DEFAULT_MAX_PENDING, DEFAULT_INITIAL_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS, Schedulers.io());
+    }
+
+    /**
+     * Create a queue that sends via the given client.
+     *
+     * As this reads from the file, it should not be called on the main thread.
+     *
+     * @param file             The file to persist the queue to, or null to only keep it in memory
+     * @param paymentClient    The client to send requests and events with
+     * @param maxPending       The maximum number of undelivered requests and events to hold
+     * @param initialBackoffMs The delay before the first retry, in milliseconds
+     * @param maxBackoffMs     The maximum delay between retries, in milliseconds
+     */
+    public OutboundRequestQueue(@Nullable File file, @NonNull PaymentClient paymentClient, int maxPending, long initialBackoffMs,
+                                long maxBackoffMs) {
+        this(file, paymentClient, maxPending, initialBackoffMs, maxBackoffMs, Schedulers.io());
+    }
+
+    OutboundRequestQueue(File file, PaymentClient paymentClient, int maxPending, long initialBackoffMs, long maxBackoffMs, Scheduler scheduler) {
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("The maximum number of pending requests must be positive");
+        }
+        if (initialBackoffMs <= 0 || maxBackoffMs < initialBackoffMs) {
+            throw new IllegalArgumentException("Invalid backoff, the initial delay must be positive and no more than the maximum delay");
+        }
+        this.file = file;
+        this.paymentClient = paymentClient;
+        this.maxPending = maxPending;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.scheduler = scheduler;
+        this.persistWorker = scheduler.createWorker();
+        if (file != null && file.exists()) {
+            load(file);
+        }
+        drain();
+    }
+
+    private void load(File file) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                persistedCount++;
+                Entry entry;
+                try {
+                    entry = Entry.fromJson(line);
+                } catch (Exception e) {
+                    // most likely a line that was only partially written, which is safe to skip
+                    FlowLog.w(TAG, "Skipping unreadable entry in outbound queue");
+                    continue;
+                }
+                if (entry.delivered) {
+                    pending.remove(entry.id);
+                    markDelivered(entry.id);
+                } else if (!deliveredIds.contains(entry.id)) {
+                    pending.put(entry.id, entry);
+                }
+            }
+        } catch (IOException e) {
+            FlowLog.e(TAG, "Failed to read outbound queue", e);
+        }
+    }
+
+    /**
+     * Queue a request to be sent to the processing service.
+     *
+     * @param request The request, which must be set to be processed in the background
+     * @return True if the request was queued, or false if a request with the same id is already queued or has recently been delivered, or the
+     * queue is full
+     * @throws IllegalArgumentException if the request is not set to be processed in the background
+     */
+    public boolean enqueue(@NonNull Request request) {
+        if (!request.shouldProcessInBackground()) {
+            throw new IllegalArgumentException("Only requests that are processed in the background can be queued");
+        }
+        return add(new Entry(request.getId(), Entry.TYPE_REQUEST, request.toJson()));
+    }
+
+    /**
+     * Queue an event to be sent to the processing service.
+     *
+     * @param flowEvent The event
+     * @return True if the event was queued, or false if the queue is full
+     */
+    public boolean enqueueEvent(@NonNull FlowEvent flowEvent) {
+        return add(new Entry(IdGenerators.generateId(), Entry.TYPE_EVENT, flowEvent.toJson()));
+    }
+
+    private boolean add(Entry entry) {
+        synchronized (this) {
+            if (pending.containsKey(entry.id) || deliveredIds.contains(entry.id)) {
+                FlowLog.d(TAG, "Ignoring duplicate request %s", entry.id);
+                return false;
+            }
+            if (pending.size() >= maxPending) {
+                FlowLog.w(TAG, "Outbound queue is full, rejecting request %s", entry.id);
+                return false;
+            }
+            pending.put(entry.id, entry);
+        }
+        persist(entry);
+        drain();
+        return true;
+    }
+
+    /**
+     * @return The number of requests and events waiting to be delivered
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Retry sending immediately, instead of waiting for the current backoff to expire.
+     *
+     * This is useful if the application knows that the processing service has become available again.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (retry != null) {
+                retry.dispose();
+                retry = null;
+                sending = false;
+            }
+            failedAttempts = 0;
+        }
+        drain();
+    }
+
+    private void drain() {
+        Entry head;
+        synchronized (this) {
+            if (sending || pending.isEmpty()) {
+                return;
+            }
+            sending = true;
+            head = pending.values().iterator().next();
+        }
+        send(head)
+                .subscribeOn(scheduler)
+                .subscribe(() -> onDelivered(head), throwable -> onFailed(head, throwable));
+    }
+
+    private Completable send(Entry entry) {
+        return Completable.defer(() -> {
+            Request request = null;
+            FlowEvent flowEvent = null;
+            try {
+                if (Entry.TYPE_EVENT.equals(entry.type)) {
+                    flowEvent = FlowEvent.fromJson(entry.data);
+                } else {
+                    request = Request.fromJson(entry.data);
+                }
+            } catch (Exception e) {
+                // never going to be sent, so make sure it is dropped rather than retried
+                return Completable.error(new FlowException(ErrorConstants.INVALID_REQUEST, "Unreadable outbound queue entry: " + e.getMessage()));
+            }
+            return flowEvent != null ? paymentClient.sendEvent(flowEvent) : paymentClient.initiateRequest(request);
+        });
+    }
+
+    private void onDelivered(Entry entry) {
+        synchronized (this) {
+            complete(entry);
+            failedAttempts = 0;
+            sending = false;
+        }
+        drain();
+    }
+
+    private void onFailed(Entry entry, Throwable throwable) {
+        String errorCode = throwable instanceof FlowException ? ((FlowException) throwable).getErrorCode() : null;
+        if (ErrorConstants.DUPLICATE_REQUEST_ID.equals(errorCode)) {
+            // the processing service already has this request, most likely from an attempt where the acknowledgement was lost
+            onDelivered(entry);
+            return;
+        }
+        if (!isTransient(throwable)) {
+            FlowLog.e(TAG, "Dropping request " + entry.id + " that failed with a non-transient error", throwable);
+            onDelivered(entry);
+            return;
+        }
+        synchronized (this) {
+            failedAttempts++;
+            long delay = getBackoffMs(failedAttempts);
+            FlowLog.d(TAG, "Failed to send request %s, retrying in %d ms", entry.id, delay);
+            retry = Completable.timer(delay, TimeUnit.MILLISECONDS, scheduler).subscribe(this::onRetry);
+        }
+    }
+
+    /**
+     * Errors from the processing service are only retried if they are known to be temporary, whereas anything that is not a flow exception has
+     * been raised by the messenger connection itself and is always worth retrying.
+     */
+    private static boolean isTransient(Throwable throwable) {
+        if (throwable instanceof FlowException) {
+            return TRANSIENT_ERROR_CODES.contains(((FlowException) throwable).getErrorCode());
+        }
+        return true;
+    }
+
+    private void onRetry() {
+        synchronized (this) {
+            retry = null;
+            sending = false;
+        }
+        drain();
+    }
+
+    long getBackoffMs(int attempt) {
+        int shift = Math.min(attempt - 1, 30);
+        return Math.min(maxBackoffMs, initialBackoffMs << shift);
+    }
+
+    private void complete(Entry entry) {
+        if (pending.remove(entry.id) == null) {
+            return;
+        }
+        markDelivered(entry.id);
+        persist(new Entry(entry.id));
+    }
+
+    private void markDelivered(String id) {
+        deliveredIds.add(id);
+        if (deliveredIds.size() > MAX_DELIVERED_IDS) {
+            Iterator<String> oldest = deliveredIds.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    private void persist(Entry entry) {
+        if (file == null) {
+            return;
+        }
+        persistWorker.schedule(() -> write(entry));
+    }
+
+    private void write(Entry entry) {
+        // delivered requests are only removed from the file once it has grown well beyond what is needed to restore the queue
+        int liveCount;
+        synchronized (this) {
+            liveCount = pending.size() + deliveredIds.size();
+        }
+        if (persistedCount >= MIN_LOG_SIZE_FOR_COMPACTION && persistedCount >= liveCount * 2) {
+            rewrite();
+            return;
+        }
+        try {
+            if (writer == null) {
+                writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+            }
+            writer.write(entry.toJson());
+            writer.write('\n');
+            writer.flush();
+            persistedCount++;
+        } catch (IOException e) {
+            FlowLog.e(TAG, "Failed to persist outbound queue entry", e);
+        }
+    }
+
+    private void rewrite() {
+        closeWriter();
+        List<String> delivered;
+        List<Entry> undelivered;
+        synchronized (this) {
+            delivered = new ArrayList<>(deliveredIds);
+            undelivered = new ArrayList<>(pending.values());
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        int count = 0;
+        try (Writer tempWriter = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+            for (String id : delivered) {
+                tempWriter.write(new Entry(id).toJson());
+                tempWriter.write('\n');
+                count++;
+            }
+            for (Entry entry : undelivered) {
+                tempWriter.write(entry.toJson());
+                tempWriter.write('\n');
+                count++;
+            }
+        } catch (IOException e) {
+            FlowLog.e(TAG, "Failed to rewrite outbound queue", e);
+            return;
+        }
+        if (!tempFile.renameTo(file)) {
+            FlowLog.e(TAG, "Failed to replace outbound queue");
+            return;
+        }
+        persistedCount = count;
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                FlowLog.e(TAG, "Failed to close outbound queue", e);
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * A line in the queue log, which either holds a queued request or event, or records that one has been delivered.
+     */
+    static class Entry implements Jsonable {
+
+        static final String TYPE_REQUEST = "request";
+        static final String TYPE_EVENT = "event";
+
+        private final String id;
+        private final String type;
+        private final String data;
+        private final boolean delivered;
+
+        Entry(String id, String type, String data) {
+            this.id = id;
+            this.type = type;
+            this.data = data;
+            this.delivered = false;
+        }
+
+        Entry(String id) {
+            this.id = id;
+            this.type = null;
+            this.data = null;
+            this.delivered = true;
+        }
+
+        @Override
+        public String toJson() {
+            return JsonConverter.serialize(this);
+        }
+
+        static Entry fromJson(String json) {
+            Entry entry = JsonConverter.deserialize(json, Entry.class);
+            if (entry == null || entry.id == null || (!entry.delivered && entry.data == null)) {
+                throw new IllegalArgumentException("Invalid outbound queue entry");
+            }
+            return entry;
+        }
+    }
+}
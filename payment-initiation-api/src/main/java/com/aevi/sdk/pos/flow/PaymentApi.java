@@ -17,13 +17,29 @@ package com.aevi.sdk.pos.flow;
 import android.content.Context;
 import androidx.annotation.NonNull;
 import com.aevi.sdk.flow.BaseApiClient;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.flow.util.JsonWarmup;
 import com.aevi.sdk.pos.flow.initiation.BuildConfig;
+import com.aevi.sdk.pos.flow.model.Payment;
+import com.aevi.sdk.pos.flow.model.PaymentResponse;
+import com.aevi.sdk.pos.flow.model.config.PaymentSettings;
+
+import io.reactivex.Completable;
+
+import java.io.File;
 
 /**
  * Main entry point to obtain references to the payment related clients.
  */
 public final class PaymentApi {
 
+    private static final String PAYMENT_RESPONSE_STORE_FILE = "payment-responses.jsonl";
+    private static final String OUTBOUND_REQUEST_QUEUE_FILE = "outbound-requests.jsonl";
+
+    private static volatile SharedPaymentClient sharedPaymentClient;
+    private static volatile PaymentResponseStore paymentResponseStore;
+    private static volatile OutboundRequestQueue outboundRequestQueue;
+
     private PaymentApi() {
     }
 
@@ -72,4 +88,118 @@ public final class PaymentApi {
     public static PaymentClient getPaymentClient(Context context) {
         return new PaymentClientImpl(context);
     }
+
+    /**
+     * Get the shared instance of a {@link PaymentClient} for this application.
+     *
+     * Unlike {@link #getPaymentClient(Context)}, this returns immediately without doing any work on the calling thread. The client is initialised on
+     * a background thread when first used, and any calls made before it is ready are deferred until it is. Call {@link #prewarm(Context)} early on,
+     * such as from {@code Application.onCreate()}, to have the client ready by the time it is first needed.
+     *
+     * @param context The Android context
+     * @return The shared instance of {@link PaymentClient}
+     */
+    @NonNull
+    public static PaymentClient getSharedPaymentClient(Context context) {
+        return getOrCreateSharedPaymentClient(context);
+    }
+
+    /**
+     * Start initialising the shared {@link PaymentClient} in the background, and warm up the JSON conversion of the payment models.
+     *
+     * The returned completable is already running and does not need to be subscribed to, unless you want to know when the client is ready.
+     *
+     * @param context The Android context
+     * @return A completable that completes when the shared client is ready
+     */
+    @NonNull
+    public static Completable prewarm(Context context) {
+        JsonWarmup.warmUp(Payment.class, PaymentResponse.class, PaymentSettings.class).subscribe();
+        Completable ready = getOrCreateSharedPaymentClient(context).warmUp().cache();
+        ready.subscribe(() -> {
+        }, throwable -> FlowLog.e(PaymentApi.class.getSimpleName(), "Failed to initialise payment client", throwable));
+        return ready;
+    }
+
+    /**
+     * Get the time it took from the shared {@link PaymentClient} being created until the first payment initiated via it was accepted.
+     *
+     * This is useful to measure how long the application start up delays the first payment.
+     *
+     * @return The time in milliseconds, or -1 if no payment has been accepted via the shared client yet
+     */
+    public static long getTimeToFirstPaymentMillis() {
+        SharedPaymentClient client = sharedPaymentClient;
+        return client != null ? client.getTimeToFirstPaymentMillis() : SharedPaymentClient.NOT_MEASURED;
+    }
+
+    /**
+     * Get the local store of payment responses for this application.
+     *
+     * The store is populated by any {@link com.aevi.sdk.pos.flow.service.BasePaymentResponseListenerService} that has enabled it, and can be
+     * queried without any IPC to the processing service. See {@link PaymentResponseStore} for details.
+     *
+     * Any persisted responses are read back from disk on a background thread, so this can be called, and responses added to the store, from
+     * the main thread. Reading from the store blocks until the persisted responses have been read back.
+     *
+     * @param context The Android context
+     * @return The shared {@link PaymentResponseStore}
+     */
+    @NonNull
+    public static PaymentResponseStore getPaymentResponseStore(Context context) {
+        PaymentResponseStore store = paymentResponseStore;
+        if (store == null) {
+            synchronized (PaymentApi.class) {
+                store = paymentResponseStore;
+                if (store == null) {
+                    store = new PaymentResponseStore(new File(context.getFilesDir(), PAYMENT_RESPONSE_STORE_FILE),
+                                                     PaymentResponseStore.DEFAULT_MAX_RESPONSES);
+                    paymentResponseStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Get the durable queue of background requests and events for this application.
+     *
+     * Requests and events added to the queue are sent via the shared {@link PaymentClient} once the processing service is reachable, which makes
+     * them survive the processing service being restarted or busy, as well as this application being restarted. See {@link OutboundRequestQueue}
+     * for details.
+     *
+     * The first call to this method reads any persisted requests from disk, and should therefore not be made on the main thread.
+     *
+     * @param context The Android context
+     * @return The shared {@link OutboundRequestQueue}
+     */
+    @NonNull
+    public static OutboundRequestQueue getOutboundRequestQueue(Context context) {
+        OutboundRequestQueue queue = outboundRequestQueue;
+        if (queue == null) {
+            synchronized (PaymentApi.class) {
+                queue = outboundRequestQueue;
+                if (queue == null) {
+                    queue = new OutboundRequestQueue(new File(context.getFilesDir(), OUTBOUND_REQUEST_QUEUE_FILE),
+                                                     getOrCreateSharedPaymentClient(context));
+                    outboundRequestQueue = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
+    private static SharedPaymentClient getOrCreateSharedPaymentClient(Context context) {
+        SharedPaymentClient client = sharedPaymentClient;
+        if (client == null) {
+            synchronized (PaymentApi.class) {
+                client = sharedPaymentClient;
+                if (client == null) {
+                    client = new SharedPaymentClient(context);
+                    sharedPaymentClient = client;
+                }
+            }
+        }
+        return client;
+    }
 }
@@ -17,6 +17,8 @@ package com.aevi.sdk.pos.flow;
 
 import androidx.annotation.NonNull;
 
+import com.aevi.sdk.flow.DeviceRegistry;
+import com.aevi.sdk.flow.SystemEventStream;
 import com.aevi.sdk.flow.constants.ErrorConstants;
 import com.aevi.sdk.flow.model.Device;
 import com.aevi.sdk.flow.model.FlowEvent;
@@ -153,4 +155,38 @@ public interface PaymentClient {
      */
     @NonNull
     Observable<FlowEvent> subscribeToSystemEvents();
+
+    /**
+     * Get a shared stream of system events.
+     *
+     * Unlike {@link #subscribeToSystemEvents()}, all subscribers to the shared stream share a single connection to the processing service, which is
+     * only open whilst there are subscribers. It supports filtering by event type, replays recent events to late subscribers and can buffer events for
+     * slow subscribers.
+     *
+     * This is the recommended way to observe system events from multiple components in an application. Use with
+     * {@link PaymentApi#getSharedPaymentClient(android.content.Context)} to share the stream across the whole application.
+     *
+     * The default implementation creates a new stream on each call. The clients provided by this SDK override it to return the same stream.
+     *
+     * @return The shared system event stream
+     */
+    @NonNull
+    default SystemEventStream getSystemEventStream() {
+        return new SystemEventStream(subscribeToSystemEvents(), SystemEventStream.DEFAULT_REPLAY_SIZE);
+    }
+
+    /**
+     * Get the device registry, which keeps a local copy of the connected devices.
+     *
+     * The devices are loaded via {@link #getDevices()} when first needed, and then kept up to date via the {@link #getSystemEventStream()}, so that
+     * reading the devices or looking up a device by id does not require communication with the processing service each time.
+     *
+     * The default implementation creates a new registry on each call. The clients provided by this SDK override it to return the same registry.
+     *
+     * @return The device registry
+     */
+    @NonNull
+    default DeviceRegistry getDeviceRegistry() {
+        return new DeviceRegistry(Single.defer(this::getDevices), getSystemEventStream());
+    }
 }
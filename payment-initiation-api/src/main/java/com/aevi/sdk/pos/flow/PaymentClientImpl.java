@@ -17,13 +17,16 @@ package com.aevi.sdk.pos.flow;
 
 import android.content.Context;
 import androidx.annotation.NonNull;
-import android.util.Log;
+import androidx.annotation.Nullable;
 
 import com.aevi.android.rxmessenger.ChannelClient;
 import com.aevi.sdk.flow.BaseApiClient;
 import com.aevi.sdk.flow.constants.AppMessageTypes;
 import com.aevi.sdk.flow.constants.ResponseMechanisms;
 import com.aevi.sdk.flow.model.*;
+import com.aevi.sdk.flow.tracing.Span;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.flow.util.StreamingJsonDecoder;
 import com.aevi.sdk.pos.flow.initiation.BuildConfig;
 import com.aevi.sdk.pos.flow.model.Payment;
 import com.aevi.sdk.pos.flow.model.PaymentResponse;
@@ -48,7 +51,7 @@ public class PaymentClientImpl extends BaseApiClient implements PaymentClient {
     protected PaymentClientImpl(Context context) {
         super(BuildConfig.VERSION, context);
         startFps(context);
-        Log.i(TAG, "PaymentClient initialised from " + context.getPackageName());
+        FlowLog.i(TAG, "PaymentClient initialised from %s", context.getPackageName());
     }
 
     @NonNull
@@ -74,13 +77,15 @@ public class PaymentClientImpl extends BaseApiClient implements PaymentClient {
             return Completable.error(NO_FPS_EXCEPTION);
         }
         final ChannelClient transactionMessenger = getMessengerClient(FLOW_PROCESSING_SERVICE_COMPONENT);
-        AppMessage appMessage = createAppMessageForPayment(payment, ResponseMechanisms.RESPONSE_SERVICE);
+        final Span span = startRequestSpan(AppMessageTypes.PAYMENT_MESSAGE + ":" + payment.getFlowType(), payment.getId());
+        AppMessage appMessage = createAppMessageForPayment(payment, ResponseMechanisms.RESPONSE_SERVICE, span);
 
         return transactionMessenger
                 .sendMessage(appMessage.toJson())
                 .singleOrError()
                 .ignoreElement()
                 .doFinally(transactionMessenger::closeConnection)
+                .doFinally(span::end)
                 .onErrorResumeNext(throwable -> Completable.error(createFlowException(throwable)));
     }
 
@@ -97,7 +102,7 @@ public class PaymentClientImpl extends BaseApiClient implements PaymentClient {
         AppMessage appMessage = new AppMessage(AppMessageTypes.RESPONSES_REQUEST, paymentResponseQuery.toJson(), getInternalData());
         return paymentInfoMessenger
                 .sendMessage(appMessage.toJson())
-                .map(PaymentResponse::fromJson)
+                .compose(new StreamingJsonDecoder<>(PaymentResponse.class, paymentResponseQuery.getExcludedFields()).decodeAll())
                 .doFinally(paymentInfoMessenger::closeConnection)
                 .onErrorResumeNext((Function<Throwable, ObservableSource<? extends PaymentResponse>>) throwable -> Observable
                         .error(createFlowException(throwable)));
@@ -108,7 +113,8 @@ public class PaymentClientImpl extends BaseApiClient implements PaymentClient {
             return Single.error(NO_FPS_EXCEPTION);
         }
         final ChannelClient transactionMessenger = getMessengerClient(FLOW_PROCESSING_SERVICE_COMPONENT);
-        AppMessage appMessage = createAppMessageForPayment(payment, ResponseMechanisms.MESSENGER_CONNECTION);
+        final Span span = startRequestSpan(AppMessageTypes.PAYMENT_MESSAGE + ":" + payment.getFlowType(), payment.getId());
+        AppMessage appMessage = createAppMessageForPayment(payment, ResponseMechanisms.MESSENGER_CONNECTION, span);
         return transactionMessenger
                 .sendMessage(appMessage.toJson())
                 .singleOrError()
@@ -117,15 +123,21 @@ public class PaymentClientImpl extends BaseApiClient implements PaymentClient {
                     return response.getResponseData().getValue(AppMessageTypes.PAYMENT_MESSAGE, PaymentResponse.class);
                 })
                 .doFinally(transactionMessenger::closeConnection)
+                .doFinally(span::end)
                 .onErrorResumeNext(throwable -> Single.error(createFlowException(throwable)));
     }
 
     protected AppMessage createAppMessageForPayment(Payment payment, String responseMechanism) {
+        return createAppMessageForPayment(payment, responseMechanism, null);
+    }
+
+    protected AppMessage createAppMessageForPayment(Payment payment, String responseMechanism, @Nullable Span span) {
         AdditionalData paymentData = new AdditionalData();
         paymentData.addData(AppMessageTypes.PAYMENT_MESSAGE, payment);
         Request request = new Request(payment.getFlowName(), paymentData);
         request.setDeviceId(payment.getDeviceId());
-        AppMessage appMessage = new AppMessage(AppMessageTypes.PAYMENT_MESSAGE, request.toJson(), getInternalData());
+        AppMessage appMessage = new AppMessage(AppMessageTypes.PAYMENT_MESSAGE, request.toJson(),
+                                                span != null ? getInternalData(span) : getInternalData());
         appMessage.setResponseMechanism(responseMechanism);
         return appMessage;
     }
@@ -0,0 +1,538 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.pos.flow;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.aevi.sdk.flow.model.ResponseQuery;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.pos.flow.model.Amounts;
+import com.aevi.sdk.pos.flow.model.Payment;
+import com.aevi.sdk.pos.flow.model.PaymentResponse;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A local store of payment responses, which can be queried with the same {@link ResponseQuery} as
+ * {@link PaymentClient#queryPaymentResponses(ResponseQuery)}, without any IPC.
+ *
+ * Responses are indexed by request id, creation date, flow type, flow name, outcome and currency, so that queries such as those needed for
+ * reporting or end of day totals only touch the matching responses. Use {@link #query(ResponseQuery, PaymentResponse.Outcome, String)} to
+ * additionally filter by outcome and currency.
+ *
+ * Responses are added via {@link #add(PaymentResponse)}, which {@link com.aevi.sdk.pos.flow.service.BasePaymentResponseListenerService} does
+ * once enabled, or by merging results from the processing service via {@link #queryWithFallback(ResponseQuery, PaymentClient)}.
+ *
+ * If a file is provided, responses are persisted to it and read back when the store is created. Both happen on a background thread, so the
+ * store can be created and responses added or cleared from the main thread without blocking. Responses added before the persisted responses
+ * have been read back are merged in once they have, taking precedence over persisted responses for the same request. Note that methods that
+ * read the store, such as {@link #get(String)}, {@link #size()} and the query methods, block until the persisted responses have been read
+ * back, so should not be called from the main thread straight after the store has been created. Once the store holds more than the maximum
+ * number of responses, the oldest responses are evicted.
+ *
+ * This class is thread-safe.
+ */
+public class PaymentResponseStore {
+
+    private static final String TAG = PaymentResponseStore.class.getSimpleName();
+
+    public static final int DEFAULT_MAX_RESPONSES = 5000;
+
+    private static final Comparator<PaymentResponse> MOST_RECENT_FIRST = new Comparator<PaymentResponse>() {
+        @Override
+        public int compare(PaymentResponse first, PaymentResponse second) {
+            return Long.compare(second.getCreationDateTimeMs(), first.getCreationDateTimeMs());
+        }
+    };
+
+    private final File file;
+    private final int maxResponses;
+    private final Scheduler.Worker persistWorker;
+    private final CountDownLatch loaded = new CountDownLatch(1);
+
+    private final Map<String, PaymentResponse> responses = new HashMap<>();
+    private final NavigableMap<Long, Set<String>> dateIndex = new TreeMap<>();
+    private final Map<String, Set<String>> flowTypeIndex = new HashMap<>();
+    private final Map<String, Set<String>> flowNameIndex = new HashMap<>();
+    private final Map<PaymentResponse.Outcome, Set<String>> outcomeIndex = new HashMap<>();
+    private final Map<String, Set<String>> currencyIndex = new HashMap<>();
+    private List<PaymentResponse> pendingAdds;
+    private boolean clearedBeforeLoad;
+    private Writer writer;
+    private int persistedCount;
+
+    /**
+     * Create an in-memory store.
+     *
+     * @param maxResponses The maximum number of responses to keep
+     */
+    public PaymentResponseStore(int maxResponses) {
+        this(null, maxResponses);
+    }
+
+    /**
+     * Create a store that persists responses to the given file, reading back any responses already in it.
+     *
+     * The file is read on a background thread.
+     *
+     * @param file         The file to persist responses to, or null to only keep responses in memory
+     * @param maxResponses The maximum number of responses to keep
+     */
+    public PaymentResponseStore(@Nullable File file, int maxResponses) {
+        this(file, maxResponses, Schedulers.io());
+    }
+
+    PaymentResponseStore(File file, int maxResponses, Scheduler scheduler) {
+        if (maxResponses <= 0) {
+            throw new IllegalArgumentException("The maximum number of responses must be positive");
+        }
+        this.file = file;
+        this.maxResponses = maxResponses;
+        if (file != null) {
+            // responses added whilst loading are held back, so that they are not replaced by older persisted responses for the same request
+            pendingAdds = new ArrayList<>();
+            // a single worker runs its tasks in order, so writes to the file are never reordered, and always follow the load
+            persistWorker = scheduler.createWorker();
+            persistWorker.schedule(() -> {
+                List<PaymentResponse> persisted = file.exists() ? load(file) : Collections.emptyList();
+                synchronized (this) {
+                    merge(persisted);
+                }
+                loaded.countDown();
+            });
+        } else {
+            persistWorker = null;
+            loaded.countDown();
+        }
+    }
+
+    private void awaitLoaded() {
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<PaymentResponse> load(File file) {
+        List<PaymentResponse> persisted = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                persistedCount++;
+                try {
+                    persisted.add(PaymentResponse.fromJson(line));
+                } catch (Exception e) {
+                    // most likely a line that was only partially written, which is safe to skip
+                    FlowLog.w(TAG, "Skipping unreadable payment response in store");
+                }
+            }
+        } catch (IOException e) {
+            FlowLog.e(TAG, "Failed to read payment response store", e);
+        }
+        return persisted;
+    }
+
+    private void merge(List<PaymentResponse> persisted) {
+        if (!clearedBeforeLoad) {
+            for (PaymentResponse paymentResponse : persisted) {
+                index(paymentResponse);
+            }
+        }
+        for (PaymentResponse paymentResponse : pendingAdds) {
+            index(paymentResponse);
+        }
+        pendingAdds = null;
+        evictOldest();
+    }
+
+    /**
+     * Add a response to the store, replacing any previous response for the same request.
+     *
+     * This never blocks on the persisted responses being read back. The response is written to the file, if any, on a background thread.
+     *
+     * @param paymentResponse The payment response
+     */
+    public void add(@NonNull PaymentResponse paymentResponse) {
+        synchronized (this) {
+            if (pendingAdds != null) {
+                pendingAdds.add(paymentResponse);
+            } else {
+                index(paymentResponse);
+                evictOldest();
+            }
+        }
+        persist(paymentResponse);
+    }
+
+    /**
+     * Add responses to the store, replacing any previous responses for the same requests.
+     *
+     * As for {@link #add(PaymentResponse)}, this never blocks on the persisted responses being read back.
+     *
+     * @param paymentResponses The payment responses
+     */
+    public void addAll(@NonNull Collection<PaymentResponse> paymentResponses) {
+        for (PaymentResponse paymentResponse : paymentResponses) {
+            add(paymentResponse);
+        }
+    }
+
+    /**
+     * Get the response for a request.
+     *
+     * @param requestId The id of the payment request
+     * @return The response, or null if the store holds no response for the request
+     */
+    @Nullable
+    public PaymentResponse get(@NonNull String requestId) {
+        awaitLoaded();
+        synchronized (this) {
+            return responses.get(requestId);
+        }
+    }
+
+    /**
+     * @return The number of responses in the store
+     */
+    public int size() {
+        awaitLoaded();
+        synchronized (this) {
+            return responses.size();
+        }
+    }
+
+    /**
+     * Query the store.
+     *
+     * See {@link #query(ResponseQuery, PaymentResponse.Outcome, String)}.
+     *
+     * @param responseQuery The query
+     * @return The matching responses, most recent first
+     */
+    @NonNull
+    public List<PaymentResponse> query(@NonNull ResponseQuery responseQuery) {
+        return query(responseQuery, null, null);
+    }
+
+    /**
+     * Query the store, optionally also filtering by outcome and currency.
+     *
+     * The request id, flow name, flow type and date range of the query are applied as for queries to the processing service, and at most
+     * {@link ResponseQuery#getMaxResults()} responses are returned.
+     *
+     * @param responseQuery The query
+     * @param outcome       The outcome to filter by, or null for any outcome
+     * @param currency      The currency of the processed amounts to filter by, or null for any currency
+     * @return The matching responses, most recent first
+     */
+    @NonNull
+    public List<PaymentResponse> query(@NonNull ResponseQuery responseQuery, @Nullable PaymentResponse.Outcome outcome,
+                                       @Nullable String currency) {
+        awaitLoaded();
+        synchronized (this) {
+            return doQuery(responseQuery, outcome, currency);
+        }
+    }
+
+    private List<PaymentResponse> doQuery(ResponseQuery responseQuery, PaymentResponse.Outcome outcome, String currency) {
+        if (responseQuery.getRequestId() != null) {
+            PaymentResponse paymentResponse = responses.get(responseQuery.getRequestId());
+            if (paymentResponse != null && matches(paymentResponse, responseQuery, outcome, currency)) {
+                return Collections.singletonList(paymentResponse);
+            }
+            return Collections.emptyList();
+        }
+
+        // the most selective index is used to find candidates, which are then checked against the remaining criteria
+        Set<String> candidates = null;
+        candidates = narrow(candidates, responseQuery.getFlowType() != null ? lookup(flowTypeIndex, responseQuery.getFlowType()) : null);
+        candidates = narrow(candidates, responseQuery.getFlowName() != null ? lookup(flowNameIndex, responseQuery.getFlowName()) : null);
+        candidates = narrow(candidates, outcome != null ? lookup(outcomeIndex, outcome) : null);
+        candidates = narrow(candidates, currency != null ? lookup(currencyIndex, currency) : null);
+
+        int maxResults = responseQuery.getMaxResults() > 0 ? responseQuery.getMaxResults() : Integer.MAX_VALUE;
+        if (candidates != null) {
+            return queryCandidates(candidates, responseQuery, outcome, currency, maxResults);
+        }
+        NavigableMap<Long, Set<String>> dates = dateIndex.descendingMap();
+        if (responseQuery.hasDateRange()) {
+            dates = dateIndex.subMap(responseQuery.getStartDate(), true, responseQuery.getEndDate(), true).descendingMap();
+        }
+        List<PaymentResponse> results = new ArrayList<>();
+        for (Set<String> requestIds : dates.values()) {
+            for (String requestId : requestIds) {
+                PaymentResponse paymentResponse = responses.get(requestId);
+                if (matches(paymentResponse, responseQuery, outcome, currency)) {
+                    results.add(paymentResponse);
+                    if (results.size() >= maxResults) {
+                        return results;
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private List<PaymentResponse> queryCandidates(Set<String> candidates, ResponseQuery responseQuery, PaymentResponse.Outcome outcome,
+                                                  String currency, int maxResults) {
+        List<PaymentResponse> results = new ArrayList<>();
+        for (String requestId : candidates) {
+            PaymentResponse paymentResponse = responses.get(requestId);
+            if (matches(paymentResponse, responseQuery, outcome, currency)) {
+                results.add(paymentResponse);
+            }
+        }
+        // the sort is stable and candidates are held in the order they were added, so responses created in the same millisecond are
+        // returned in the same order as when walking the date index
+        Collections.sort(results, MOST_RECENT_FIRST);
+        return results.size() > maxResults ? new ArrayList<>(results.subList(0, maxResults)) : results;
+    }
+
+    /**
+     * Query the store, and fall back to the processing service if the store does not hold enough matching responses.
+     *
+     * Locally matching responses are emitted first. If there are fewer than {@link ResponseQuery#getMaxResults()} of them, the query is
+     * sent to the processing service and any responses not already emitted are added to the store and emitted, up to the maximum.
+     *
+     * @param responseQuery The query
+     * @param paymentClient The payment client to query the processing service with
+     * @return A stream of the matching responses
+     */
+    @NonNull
+    public Observable<PaymentResponse> queryWithFallback(@NonNull ResponseQuery responseQuery, @NonNull PaymentClient paymentClient) {
+        return Observable.defer(() -> {
+            List<PaymentResponse> local = query(responseQuery);
+            int maxResults = responseQuery.getMaxResults();
+            if (maxResults > 0 && local.size() >= maxResults) {
+                return Observable.fromIterable(local);
+            }
+            Set<String> seen = new HashSet<>();
+            for (PaymentResponse paymentResponse : local) {
+                seen.add(paymentResponse.getId());
+            }
+            Observable<PaymentResponse> remote = paymentClient.queryPaymentResponses(responseQuery)
+                    .filter(paymentResponse -> seen.add(paymentResponse.getId()))
+                    .doOnNext(this::add);
+            if (maxResults > 0) {
+                remote = remote.take(maxResults - local.size());
+            }
+            return Observable.fromIterable(local).concatWith(remote);
+        });
+    }
+
+    /**
+     * Remove all responses from the store, including any persisted responses.
+     *
+     * This never blocks on the persisted responses being read back.
+     */
+    public void clear() {
+        synchronized (this) {
+            if (pendingAdds != null) {
+                pendingAdds.clear();
+                clearedBeforeLoad = true;
+            }
+            responses.clear();
+            dateIndex.clear();
+            flowTypeIndex.clear();
+            flowNameIndex.clear();
+            outcomeIndex.clear();
+            currencyIndex.clear();
+        }
+        if (persistWorker != null) {
+            persistWorker.schedule(this::rewrite);
+        }
+    }
+
+    private boolean matches(PaymentResponse paymentResponse, ResponseQuery responseQuery, PaymentResponse.Outcome outcome, String currency) {
+        Payment payment = paymentResponse.getOriginatingPayment();
+        if (responseQuery.getFlowType() != null && (payment == null || !responseQuery.getFlowType().equals(payment.getFlowType()))) {
+            return false;
+        }
+        if (responseQuery.getFlowName() != null && (payment == null || !responseQuery.getFlowName().equals(payment.getFlowName()))) {
+            return false;
+        }
+        if (responseQuery.hasDateRange() && (paymentResponse.getCreationDateTimeMs() < responseQuery.getStartDate() ||
+                paymentResponse.getCreationDateTimeMs() > responseQuery.getEndDate())) {
+            return false;
+        }
+        if (outcome != null && outcome != paymentResponse.getOutcome()) {
+            return false;
+        }
+        return currency == null || currency.equals(getCurrency(paymentResponse));
+    }
+
+    private static Set<String> narrow(Set<String> candidates, Set<String> matching) {
+        if (matching == null) {
+            return candidates;
+        }
+        if (candidates == null || matching.size() < candidates.size()) {
+            return matching;
+        }
+        return candidates;
+    }
+
+    private static <K> Set<String> lookup(Map<K, Set<String>> index, K key) {
+        Set<String> requestIds = index.get(key);
+        return requestIds != null ? requestIds : Collections.emptySet();
+    }
+
+    private void index(PaymentResponse paymentResponse) {
+        String requestId = paymentResponse.getId();
+        PaymentResponse previous = responses.put(requestId, paymentResponse);
+        if (previous != null) {
+            unindex(previous);
+        }
+        add(dateIndex, paymentResponse.getCreationDateTimeMs(), requestId);
+        Payment payment = paymentResponse.getOriginatingPayment();
+        if (payment != null) {
+            add(flowTypeIndex, payment.getFlowType(), requestId);
+            add(flowNameIndex, payment.getFlowName(), requestId);
+        }
+        add(outcomeIndex, paymentResponse.getOutcome(), requestId);
+        add(currencyIndex, getCurrency(paymentResponse), requestId);
+    }
+
+    private void unindex(PaymentResponse paymentResponse) {
+        String requestId = paymentResponse.getId();
+        remove(dateIndex, paymentResponse.getCreationDateTimeMs(), requestId);
+        Payment payment = paymentResponse.getOriginatingPayment();
+        if (payment != null) {
+            remove(flowTypeIndex, payment.getFlowType(), requestId);
+            remove(flowNameIndex, payment.getFlowName(), requestId);
+        }
+        remove(outcomeIndex, paymentResponse.getOutcome(), requestId);
+        remove(currencyIndex, getCurrency(paymentResponse), requestId);
+    }
+
+    private static <K> void add(Map<K, Set<String>> index, K key, String requestId) {
+        if (key != null) {
+            Set<String> requestIds = index.get(key);
+            if (requestIds == null) {
+                requestIds = new LinkedHashSet<>();
+                index.put(key, requestIds);
+            }
+            requestIds.add(requestId);
+        }
+    }
+
+    private static <K> void remove(Map<K, Set<String>> index, K key, String requestId) {
+        if (key != null) {
+            Set<String> requestIds = index.get(key);
+            if (requestIds != null) {
+                requestIds.remove(requestId);
+                if (requestIds.isEmpty()) {
+                    index.remove(key);
+                }
+            }
+        }
+    }
+
+    private static String getCurrency(PaymentResponse paymentResponse) {
+        Amounts amounts = paymentResponse.getTotalAmountsProcessed();
+        return amounts != null ? amounts.getCurrency() : null;
+    }
+
+    private void evictOldest() {
+        while (responses.size() > maxResponses) {
+            String oldestRequestId = dateIndex.firstEntry().getValue().iterator().next();
+            unindex(responses.remove(oldestRequestId));
+        }
+    }
+
+    private void persist(PaymentResponse paymentResponse) {
+        if (persistWorker != null) {
+            persistWorker.schedule(() -> write(paymentResponse));
+        }
+    }
+
+    private synchronized void write(PaymentResponse paymentResponse) {
+        // superseded and evicted responses are only removed from the file once it has grown to twice the store size
+        if (persistedCount >= maxResponses * 2) {
+            rewrite();
+            return;
+        }
+        try {
+            if (writer == null) {
+                writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+            }
+            writer.write(paymentResponse.toJson());
+            writer.write('\n');
+            writer.flush();
+            persistedCount++;
+        } catch (IOException e) {
+            FlowLog.e(TAG, "Failed to persist payment response", e);
+        }
+    }
+
+    private synchronized void rewrite() {
+        closeWriter();
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (Writer tempWriter = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+            for (Set<String> requestIds : dateIndex.values()) {
+                for (String requestId : requestIds) {
+                    tempWriter.write(responses.get(requestId).toJson());
+                    tempWriter.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            FlowLog.e(TAG, "Failed to rewrite payment response store", e);
+            return;
+        }
+        if (!tempFile.renameTo(file)) {
+            FlowLog.e(TAG, "Failed to replace payment response store");
+            return;
+        }
+        persistedCount = responses.size();
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                FlowLog.e(TAG, "Failed to close payment response store", e);
+            }
+            writer = null;
+        }
+    }
+}
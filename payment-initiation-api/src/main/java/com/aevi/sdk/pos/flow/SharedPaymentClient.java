@@ -0,0 +1,183 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package com.aevi.sdk.pos.flow;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+
+import com.aevi.sdk.flow.DeviceRegistry;
+import com.aevi.sdk.flow.SystemEventStream;
+import com.aevi.sdk.flow.model.Device;
+import com.aevi.sdk.flow.model.FlowEvent;
+import com.aevi.sdk.flow.model.Request;
+import com.aevi.sdk.flow.model.Response;
+import com.aevi.sdk.flow.model.ResponseQuery;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.pos.flow.model.Payment;
+import com.aevi.sdk.pos.flow.model.PaymentResponse;
+import com.aevi.sdk.pos.flow.model.config.PaymentSettings;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Payment client that is shared across the application and initialised lazily in the background.
+ *
+ * Creating the underlying client reads the AppFlow settings and starts the processing service, which is done on an io thread the first time the client
+ * is used (or pre-warmed). Any calls made before that has completed are deferred until the client is ready.
+ *
+ * This is an internal class not intended to be used directly by external applications. No guarantees are made of backwards compatibility and the
+ * class may be removed without any warning.
+ */
+class SharedPaymentClient implements PaymentClient {
+
+    private static final String TAG = SharedPaymentClient.class.getSimpleName();
+    static final long NOT_MEASURED = -1;
+
+    private final Callable<PaymentClient> clientFactory;
+    private final Single<PaymentClient> paymentClient;
+    private final long createdAtNanos;
+    private volatile Single<PaymentClient> initialisedClient;
+    private SystemEventStream systemEventStream;
+    private DeviceRegistry deviceRegistry;
+    private final AtomicLong timeToFirstPaymentMillis = new AtomicLong(NOT_MEASURED);
+
+    SharedPaymentClient(Context context) {
+        this(() -> new PaymentClientImpl(context.getApplicationContext()));
+    }
+
+    SharedPaymentClient(Callable<PaymentClient> clientFactory) {
+        this.clientFactory = clientFactory;
+        this.paymentClient = Single.defer(this::getInitialisedClient);
+        this.createdAtNanos = System.nanoTime();
+    }
+
+    private Single<PaymentClient> getInitialisedClient() {
+        Single<PaymentClient> client = initialisedClient;
+        if (client == null) {
+            synchronized (this) {
+                client = initialisedClient;
+                if (client == null) {
+                    client = Single.fromCallable(clientFactory)
+                            .subscribeOn(Schedulers.io())
+                            .doOnError(throwable -> initialisedClient = null) // allow initialisation to be retried
+                            .cache();
+                    initialisedClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Start initialising the underlying client, if it has not already been started.
+     *
+     * @return A completable that completes once the client is ready
+     */
+    Completable warmUp() {
+        return paymentClient.ignoreElement();
+    }
+
+    /**
+     * Get the time from when this shared client was created until the first payment was accepted by the processing service.
+     *
+     * @return The time in milliseconds, or {@link #NOT_MEASURED} if no payment has been accepted yet
+     */
+    long getTimeToFirstPaymentMillis() {
+        return timeToFirstPaymentMillis.get();
+    }
+
+    private void onPaymentAccepted() {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdAtNanos);
+        if (timeToFirstPaymentMillis.compareAndSet(NOT_MEASURED, millis)) {
+            FlowLog.i(TAG, "Time to first payment: %d ms", millis);
+        }
+    }
+
+    @NonNull
+    @Override
+    public Single<PaymentSettings> getPaymentSettings() {
+        return paymentClient.flatMap(PaymentClient::getPaymentSettings);
+    }
+
+    @NonNull
+    @Override
+    public Completable initiateRequest(Request request) {
+        return paymentClient.flatMapCompletable(client -> client.initiateRequest(request));
+    }
+
+    @NonNull
+    @Override
+    public Completable initiatePayment(Payment payment) {
+        return paymentClient.flatMapCompletable(client -> client.initiatePayment(payment))
+                .doOnComplete(this::onPaymentAccepted);
+    }
+
+    @NonNull
+    @Override
+    public Completable sendEvent(FlowEvent flowEvent) {
+        return paymentClient.flatMapCompletable(client -> client.sendEvent(flowEvent));
+    }
+
+    @NonNull
+    @Override
+    public Observable<PaymentResponse> queryPaymentResponses(@NonNull ResponseQuery responseQuery) {
+        return paymentClient.flatMapObservable(client -> client.queryPaymentResponses(responseQuery));
+    }
+
+    @NonNull
+    @Override
+    public Observable<Response> queryResponses(@NonNull ResponseQuery responseQuery) {
+        return paymentClient.flatMapObservable(client -> client.queryResponses(responseQuery));
+    }
+
+    @NonNull
+    @Override
+    public Single<List<Device>> getDevices() {
+        return paymentClient.flatMap(PaymentClient::getDevices);
+    }
+
+    @NonNull
+    @Override
+    public Observable<FlowEvent> subscribeToSystemEvents() {
+        return paymentClient.flatMapObservable(PaymentClient::subscribeToSystemEvents);
+    }
+
+    @NonNull
+    @Override
+    public synchronized SystemEventStream getSystemEventStream() {
+        if (systemEventStream == null) {
+            systemEventStream = new SystemEventStream(subscribeToSystemEvents(), SystemEventStream.DEFAULT_REPLAY_SIZE);
+        }
+        return systemEventStream;
+    }
+
+    @NonNull
+    @Override
+    public synchronized DeviceRegistry getDeviceRegistry() {
+        if (deviceRegistry == null) {
+            deviceRegistry = new DeviceRegistry(getDevices(), getSystemEventStream());
+        }
+        return deviceRegistry;
+    }
+}
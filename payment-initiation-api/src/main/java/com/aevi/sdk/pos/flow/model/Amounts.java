@@ -15,6 +15,7 @@
 package com.aevi.sdk.pos.flow.model;
 
 import androidx.annotation.NonNull;
+import com.aevi.sdk.flow.util.CompactMap;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.Jsonable;
 
@@ -33,7 +34,7 @@ import static com.aevi.sdk.flow.util.Preconditions.checkArgument;
 public class Amounts implements Jsonable {
 
     private final long baseAmount;
-    private final Map<String, Long> additionalAmounts;
+    private final AdditionalAmounts additionalAmounts;
     private final String currency;
 
     private double currencyExchangeRate;
@@ -42,7 +43,7 @@ public class Amounts implements Jsonable {
     // Default constructor for deserialisation
     Amounts() {
         baseAmount = 0;
-        additionalAmounts = new HashMap<>();
+        additionalAmounts = new AdditionalAmounts();
         currency = "XXX";
     }
 
@@ -55,7 +56,7 @@ public class Amounts implements Jsonable {
      * @param currency   The ISO-4217 currency code
      */
     public Amounts(long baseAmount, String currency) {
-        this(baseAmount, currency, new HashMap<>());
+        this(baseAmount, currency, new CompactMap<>());
     }
 
     /**
@@ -80,7 +81,7 @@ public class Amounts implements Jsonable {
         checkArgument(currency != null && currency.length() == 3, "Currency must be set correctly");
         this.baseAmount = baseAmount;
         this.currency = currency;
-        this.additionalAmounts = additionalAmounts != null ? additionalAmounts : new HashMap<>();
+        this.additionalAmounts = additionalAmounts != null ? new AdditionalAmounts(additionalAmounts) : new AdditionalAmounts();
     }
 
     /**
@@ -392,4 +393,27 @@ public class Amounts implements Jsonable {
     public String toJson() {
         return JsonConverter.serialize(this);
     }
+
+    /**
+     * The additional amounts, which ignore null amounts, including those in JSON, rather than rejecting them as a {@link CompactMap} does.
+     *
+     * Putting a null amount removes any existing amount for the identifier.
+     */
+    private static final class AdditionalAmounts extends CompactMap<String, Long> {
+
+        AdditionalAmounts() {
+        }
+
+        AdditionalAmounts(Map<String, Long> copyFrom) {
+            super(copyFrom);
+        }
+
+        @Override
+        public Long put(String key, Long value) {
+            if (value == null) {
+                return key != null ? remove(key) : null;
+            }
+            return super.put(key, value);
+        }
+    }
 }
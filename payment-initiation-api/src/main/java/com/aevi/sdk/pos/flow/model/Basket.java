@@ -16,9 +16,11 @@ package com.aevi.sdk.pos.flow.model;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import android.util.Log;
 import com.aevi.sdk.flow.model.AdditionalData;
 import com.aevi.sdk.flow.model.BaseModel;
+import com.aevi.sdk.flow.util.Fingerprints;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.flow.util.IdGenerators;
 import com.aevi.util.json.JsonConverter;
 
 import java.util.*;
@@ -73,7 +75,7 @@ public class Basket extends BaseModel {
      * @param basketItems The list of basket items to initialise the basket with
      */
     public Basket(String basketName, List<BasketItem> basketItems) {
-        this(UUID.randomUUID().toString(), basketName, basketItems);
+        this(IdGenerators.generateId(), basketName, basketItems);
     }
 
     /**
@@ -442,9 +444,9 @@ public class Basket extends BaseModel {
      * Helper function to log all the items in the basket to Android logcat.
      */
     public void logBasketEntries() {
-        Log.i("Basket", "Items in basket: " + basketName);
+        FlowLog.i("Basket", "Items in basket: %s", basketName);
         for (BasketItem displayItem : displayItems) {
-            Log.i("BasketItem", displayItem.toString());
+            FlowLog.i("BasketItem", "%s", displayItem);
         }
     }
 
@@ -482,6 +484,53 @@ public class Basket extends BaseModel {
         return Objects.hash(super.hashCode(), basketName, displayItems, additionalBasketData);
     }
 
+    /**
+     * Get a 64-bit structural fingerprint of the contents of this basket, excluding the basket id.
+     *
+     * Equivalent baskets always have the same fingerprint, so this can be used to cheaply rule out equivalence, or as a key for de-duplication and
+     * caching. The fingerprint is computed on each call, from the cached fingerprints of the basket items and data where available.
+     *
+     * @return The fingerprint
+     */
+    public long getFingerprint() {
+        long fingerprint = Fingerprints.of(basketName);
+        fingerprint = Fingerprints.combine(fingerprint, displayItems.size());
+        for (BasketItem displayItem : displayItems) {
+            fingerprint = Fingerprints.combine(fingerprint, displayItem.getFingerprint());
+        }
+        return Fingerprints.combine(fingerprint, additionalBasketData != null ? additionalBasketData.getFingerprint() : 0);
+    }
+
+    static long getFingerprint(List<Basket> baskets) {
+        if (baskets == null) {
+            return Fingerprints.ofList(null);
+        }
+        long fingerprint = baskets.size();
+        for (Basket basket : baskets) {
+            fingerprint = Fingerprints.combine(fingerprint, Fingerprints.of(basket.getId()));
+            fingerprint = Fingerprints.combine(fingerprint, basket.getFingerprint());
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Copy the provided basket, keeping its id, basket data and rounding strategy.
+     *
+     * Unlike a copy via JSON, the basket items are shared with the provided basket, which is safe as basket changes always replace the items.
+     *
+     * @param basket The basket to copy
+     * @return The copy
+     */
+    static Basket copyOf(Basket basket) {
+        Basket copy = new Basket(basket.getId(), basket.basketName, basket.displayItems);
+        if (basket.additionalBasketData != null) {
+            copy.additionalBasketData.addData(basket.additionalBasketData, true);
+        }
+        copy.roundingStrategy = basket.roundingStrategy;
+        copy.primaryBasket = basket.primaryBasket;
+        return copy;
+    }
+
     /**
      * Clone the provided basket and return a new identical instance.
      *
@@ -17,6 +17,7 @@ package com.aevi.sdk.pos.flow.model;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.aevi.sdk.flow.model.AdditionalData;
+import com.aevi.sdk.flow.util.Fingerprints;
 import com.aevi.util.json.JsonConverter;
 
 import java.util.*;
@@ -44,6 +45,9 @@ public class BasketItem {
     private final Map<String, String> references;
     private final AdditionalData itemData;
 
+    // Fingerprint of the immutable fields, where 0 means not yet computed
+    private transient volatile long fieldsFingerprint;
+
     // Default constructor for deserialisation
     BasketItem() {
         this("", "", null, 0, 0, 0, null, null, null, null);
@@ -333,6 +337,12 @@ public class BasketItem {
             return false;
         }
         BasketItem that = (BasketItem) o;
+        // only the cached fingerprints of the immutable fields are compared, as computing the full fingerprints costs more than comparing
+        long fieldsFingerprint = this.fieldsFingerprint;
+        long otherFieldsFingerprint = that.fieldsFingerprint;
+        if (fieldsFingerprint != 0 && otherFieldsFingerprint != 0 && fieldsFingerprint != otherFieldsFingerprint) {
+            return false;
+        }
         return amount == that.amount &&
                 baseAmount == that.baseAmount &&
                 quantity == that.quantity &&
@@ -347,7 +357,31 @@ public class BasketItem {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, label, category, amount, baseAmount, quantity, measurement, modifiers, references, itemData);
+        long fingerprint = getFingerprint();
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+
+    /**
+     * Get a 64-bit structural fingerprint of this item.
+     *
+     * Equal items always have the same fingerprint, so this can be used to cheaply rule out equality, or as a key for de-duplication and caching.
+     *
+     * @return The fingerprint
+     */
+    public long getFingerprint() {
+        long fingerprint = fieldsFingerprint;
+        if (fingerprint == 0) {
+            fingerprint = Fingerprints.combine(Fingerprints.of(id), Fingerprints.of(label));
+            fingerprint = Fingerprints.combine(fingerprint, Fingerprints.of(category));
+            fingerprint = Fingerprints.combine(fingerprint, amount);
+            fingerprint = Fingerprints.combine(fingerprint, baseAmount == 0 ? 0 : Float.floatToIntBits(baseAmount));
+            fingerprint = Fingerprints.combine(fingerprint, quantity);
+            fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofObject(measurement));
+            fieldsFingerprint = fingerprint;
+        }
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofList(modifiers));
+        fingerprint = Fingerprints.combine(fingerprint, references == null || references.isEmpty() ? 0 : Fingerprints.ofMap(references));
+        return Fingerprints.combine(fingerprint, itemData != null ? itemData.getFingerprint() : 0);
     }
 
     /**
@@ -16,6 +16,7 @@ package com.aevi.sdk.pos.flow.model;
 
 import androidx.annotation.NonNull;
 import com.aevi.sdk.flow.model.AdditionalData;
+import com.aevi.sdk.flow.util.IdGenerators;
 
 import java.util.*;
 
@@ -77,7 +78,7 @@ public class BasketItemBuilder {
      */
     @NonNull
     public BasketItemBuilder generateRandomId() {
-        this.id = UUID.randomUUID().toString();
+        this.id = IdGenerators.generateId();
         return this;
     }
 
@@ -18,13 +18,10 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.aevi.sdk.flow.model.AdditionalData;
 import com.aevi.sdk.flow.model.Token;
+import com.aevi.sdk.flow.util.Formatters;
 import com.aevi.util.json.JsonConverter;
 import com.aevi.util.json.Jsonable;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Locale;
-
 /**
  * The card details representing the card presented during a transaction.
  *
@@ -33,6 +30,8 @@ import java.util.Locale;
 public class Card implements Jsonable {
 
     private static final int MAX_PAN_DIGITS_ALLOWED = 10;
+    private static final int EXPIRY_NOT_PARSED = 0;
+    private static final int EXPIRY_INVALID = -1;
 
     private final String maskedPan;
     private final String cardholderName;
@@ -40,6 +39,9 @@ public class Card implements Jsonable {
     private final Token cardToken;
     private final AdditionalData additionalData;
 
+    // Expiry parsed on first use as (year * 100 + month), as the model may be deserialised without calling the constructor
+    private transient int parsedExpiry = EXPIRY_NOT_PARSED;
+
     public static Card getEmptyCard() {
         return new Card(null, null, null, null, null);
     }
@@ -96,6 +98,26 @@ public class Card implements Jsonable {
         return expiryDate;
     }
 
+    /**
+     * Get the year of the expiry date of the card presented.
+     *
+     * @return The full expiry year, such as 2020, or -1 if the expiry date is not set or invalid
+     */
+    public int getExpiryYear() {
+        int expiry = getParsedExpiry();
+        return expiry == EXPIRY_INVALID ? -1 : expiry / 100;
+    }
+
+    /**
+     * Get the month of the expiry date of the card presented.
+     *
+     * @return The expiry month from 1 to 12, or -1 if the expiry date is not set or invalid
+     */
+    public int getExpiryMonth() {
+        int expiry = getParsedExpiry();
+        return expiry == EXPIRY_INVALID ? -1 : expiry % 100;
+    }
+
     /**
      * Get the expiry date formatted as per the provided pattern.
      *
@@ -106,18 +128,41 @@ public class Card implements Jsonable {
      */
     @Nullable
     public String getFormattedExpiryDate(String pattern) {
-        if (expiryDate == null || pattern == null) {
+        int expiry = getParsedExpiry();
+        if (expiry == EXPIRY_INVALID || pattern == null) {
             return null;
         }
-        SimpleDateFormat inputFormat = new SimpleDateFormat("yyMM", Locale.getDefault());
-        SimpleDateFormat outputFormat = new SimpleDateFormat(pattern, Locale.getDefault());
         try {
-            return outputFormat.format(inputFormat.parse(expiryDate));
-        } catch (ParseException e) {
+            return Formatters.formatYearMonth(pattern, expiry / 100, expiry % 100);
+        } catch (IllegalArgumentException e) {
             return null;
         }
     }
 
+    private int getParsedExpiry() {
+        if (parsedExpiry == EXPIRY_NOT_PARSED) {
+            parsedExpiry = parseExpiry(expiryDate);
+        }
+        return parsedExpiry;
+    }
+
+    private static int parseExpiry(String expiryDate) {
+        if (expiryDate == null || expiryDate.length() != 4) {
+            return EXPIRY_INVALID;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (!Character.isDigit(expiryDate.charAt(i))) {
+                return EXPIRY_INVALID;
+            }
+        }
+        int year = 2000 + Integer.parseInt(expiryDate.substring(0, 2));
+        int month = Integer.parseInt(expiryDate.substring(2, 4));
+        if (month < 1 || month > 12) {
+            return EXPIRY_INVALID;
+        }
+        return year * 100 + month;
+    }
+
     /**
      * Get the card token genereated for the presented card.
      *
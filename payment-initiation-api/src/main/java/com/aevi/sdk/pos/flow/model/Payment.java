@@ -16,16 +16,16 @@ package com.aevi.sdk.pos.flow.model;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import android.util.Log;
 
 import com.aevi.sdk.flow.model.AdditionalData;
 import com.aevi.sdk.flow.model.BaseModel;
 import com.aevi.sdk.flow.model.Customer;
 import com.aevi.sdk.flow.model.Token;
+import com.aevi.sdk.flow.util.FlowLog;
+import com.aevi.sdk.flow.util.IdGenerators;
 import com.aevi.util.json.JsonConverter;
 
 import java.util.Objects;
-import java.util.UUID;
 
 import static com.aevi.sdk.flow.util.Preconditions.checkArgument;
 
@@ -71,8 +71,8 @@ public class Payment extends BaseModel {
      */
     Payment(String flowType, String flowName, Amounts amounts, Basket basket, Customer customer, boolean splitEnabled, Token cardToken,
             AdditionalData additionalData, String source, String deviceId, String paymentMethod) {
-        super(UUID.randomUUID().toString());
-        Log.i(Payment.class.getSimpleName(), "Created Payment with (internal) id: " + getId());
+        super(IdGenerators.generateId());
+        FlowLog.i(Payment.class.getSimpleName(), "Created Payment with (internal) id: %s", getId());
         this.flowType = flowType;
         this.flowName = flowName;
         this.isExternalId = false;
@@ -96,7 +96,7 @@ public class Payment extends BaseModel {
     Payment(String id, String requestSource, String flowType, String flowName, Amounts amounts, Basket basket, Customer customer,
             boolean splitEnabled, Token cardToken, AdditionalData additionalData, String deviceId, String paymentMethod) {
         super(id);
-        Log.i(Payment.class.getSimpleName(), "Created Payment with (external) id: " + id);
+        FlowLog.i(Payment.class.getSimpleName(), "Created Payment with (external) id: %s", id);
         this.source = requestSource;
         this.isExternalId = true;
         this.flowType = flowType;
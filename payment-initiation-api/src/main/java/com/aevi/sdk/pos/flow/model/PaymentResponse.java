@@ -17,6 +17,7 @@ package com.aevi.sdk.pos.flow.model;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.aevi.sdk.flow.model.BaseModel;
+import com.aevi.sdk.flow.util.Fingerprints;
 import com.aevi.util.json.JsonConverter;
 
 import java.util.List;
@@ -331,4 +332,30 @@ public class PaymentResponse extends BaseModel {
                 .hash(super.hashCode(), originatingPayment, outcome, failureReason, failureMessage, allTransactionsApproved, totalAmountsRequested,
                       totalAmountsProcessed, transactions, creationDateTimeMs, executedPreFlowApp, executedPostFlowApp);
     }
+
+    /**
+     * Get a 64-bit structural fingerprint of this response, excluding the response id.
+     *
+     * Equivalent responses always have the same fingerprint, so this can be used to cheaply rule out equivalence, or as a key for de-duplication
+     * of responses and caching.
+     *
+     * The fingerprint is computed on each call, as the contents of the model can be modified via its getters, so callers comparing the same
+     * model repeatedly should keep the value.
+     *
+     * @return The fingerprint
+     */
+    public long getFingerprint() {
+        // the payment id is enough, as responses with different payments are never equivalent, and avoids hashing the whole payment
+        long fingerprint = Fingerprints.of(originatingPayment != null ? originatingPayment.getId() : null);
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofObject(outcome));
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofObject(failureReason));
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.of(failureMessage));
+        fingerprint = Fingerprints.combine(fingerprint, allTransactionsApproved ? 1 : 0);
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofObject(totalAmountsRequested));
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofObject(totalAmountsProcessed));
+        fingerprint = Fingerprints.combine(fingerprint, Transaction.getFingerprint(transactions));
+        fingerprint = Fingerprints.combine(fingerprint, creationDateTimeMs);
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofObject(executedPreFlowApp));
+        return Fingerprints.combine(fingerprint, Fingerprints.ofObject(executedPostFlowApp));
+    }
 }
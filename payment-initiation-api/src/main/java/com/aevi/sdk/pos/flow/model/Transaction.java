@@ -20,12 +20,13 @@ import androidx.annotation.Nullable;
 import com.aevi.sdk.flow.model.AdditionalData;
 import com.aevi.sdk.flow.model.BaseModel;
 import com.aevi.sdk.flow.model.Customer;
+import com.aevi.sdk.flow.util.Fingerprints;
+import com.aevi.sdk.flow.util.IdGenerators;
 import com.aevi.util.json.JsonConverter;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.UUID;
 
 import static com.aevi.sdk.flow.constants.FlowStages.PAYMENT_CARD_READING;
 import static com.aevi.sdk.flow.constants.FlowStages.TRANSACTION_PROCESSING;
@@ -60,7 +61,7 @@ public class Transaction extends BaseModel {
     }
 
     public Transaction(Amounts requestedAmounts, List<Basket> baskets, Customer customer, AdditionalData additionalData) {
-        this(UUID.randomUUID().toString(), requestedAmounts, baskets, customer, additionalData, new ArrayList<>(),
+        this(IdGenerators.generateId(), requestedAmounts, baskets, customer, additionalData, new ArrayList<>(),
              new ArrayList<>());
     }
 
@@ -382,4 +383,36 @@ public class Transaction extends BaseModel {
     public int hashCode() {
         return Objects.hash(super.hashCode(), requestedAmounts, baskets, customer, additionalData, transactionResponses, executedFlowApps);
     }
+
+    /**
+     * Get a 64-bit structural fingerprint of this transaction, excluding the transaction id.
+     *
+     * Equivalent transactions always have the same fingerprint, so this can be used to cheaply rule out equivalence, or as a key for
+     * de-duplication and caching.
+     *
+     * The fingerprint is computed on each call, as the contents of the model can be modified via its getters, so callers comparing the same
+     * model repeatedly should keep the value.
+     *
+     * @return The fingerprint
+     */
+    public long getFingerprint() {
+        long fingerprint = Fingerprints.ofObject(requestedAmounts);
+        fingerprint = Fingerprints.combine(fingerprint, Basket.getFingerprint(baskets));
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofObject(customer));
+        fingerprint = Fingerprints.combine(fingerprint, additionalData != null ? additionalData.getFingerprint() : 0);
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofList(transactionResponses));
+        return Fingerprints.combine(fingerprint, Fingerprints.ofList(executedFlowApps));
+    }
+
+    static long getFingerprint(List<Transaction> transactions) {
+        if (transactions == null) {
+            return Fingerprints.ofList(null);
+        }
+        long fingerprint = transactions.size();
+        for (Transaction transaction : transactions) {
+            fingerprint = Fingerprints.combine(fingerprint, Fingerprints.of(transaction.getId()));
+            fingerprint = Fingerprints.combine(fingerprint, transaction.getFingerprint());
+        }
+        return fingerprint;
+    }
 }
\ No newline at end of file
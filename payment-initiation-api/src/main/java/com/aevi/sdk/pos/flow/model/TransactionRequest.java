@@ -20,6 +20,7 @@ import com.aevi.sdk.flow.model.AdditionalData;
 import com.aevi.sdk.flow.model.BaseModel;
 import com.aevi.sdk.flow.model.Customer;
 import com.aevi.sdk.flow.model.DeviceAudience;
+import com.aevi.sdk.flow.util.Fingerprints;
 import com.aevi.util.json.JsonConverter;
 
 import java.util.ArrayList;
@@ -344,4 +345,28 @@ public class TransactionRequest extends BaseModel {
         return Objects.hash(super.hashCode(), transactionId, flowType, amounts, baskets, customer, flowStage, additionalData, card, deviceAudience,
                             targetPaymentAppComponent);
     }
+
+    /**
+     * Get a 64-bit structural fingerprint of this request, excluding the request id.
+     *
+     * Equivalent requests always have the same fingerprint, so this can be used to cheaply rule out equivalence, or as a key for de-duplication
+     * and caching.
+     *
+     * The fingerprint is computed on each call, as the contents of the model can be modified via its getters, so callers comparing the same
+     * model repeatedly should keep the value.
+     *
+     * @return The fingerprint
+     */
+    public long getFingerprint() {
+        long fingerprint = Fingerprints.of(transactionId);
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.of(flowType));
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofObject(amounts));
+        fingerprint = Fingerprints.combine(fingerprint, Basket.getFingerprint(baskets));
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofObject(customer));
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.of(flowStage));
+        fingerprint = Fingerprints.combine(fingerprint, additionalData != null ? additionalData.getFingerprint() : 0);
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofObject(card));
+        fingerprint = Fingerprints.combine(fingerprint, Fingerprints.ofObject(deviceAudience));
+        return Fingerprints.combine(fingerprint, Fingerprints.of(targetPaymentAppComponent));
+    }
 }
@@ -122,14 +122,10 @@ public class PaymentSettings implements Jsonable {
         }
 
         Set<PaymentFlowServiceInfo> paymentFlowServices = new HashSet<>();
-        for (FlowStage flowStage : flowConfig.getStages(true)) {
-            if (flowStage.getAppExecutionType() != AppExecutionType.NONE && !flowStage.getFlowApps().isEmpty()) {
-                for (FlowApp flowApp : flowStage.getFlowApps()) {
-                    PaymentFlowServiceInfo flowServiceFromId = allServices.getFlowServiceFromId(flowApp.getId());
-                    if (flowServiceFromId != null) {
-                        paymentFlowServices.add(flowServiceFromId);
-                    }
-                }
+        for (String appId : flowConfig.getExecutionPlan().getRunnableAppIds()) {
+            PaymentFlowServiceInfo flowServiceFromId = allServices.getFlowServiceFromId(appId);
+            if (flowServiceFromId != null) {
+                paymentFlowServices.add(flowServiceFromId);
             }
         }
         if (!paymentFlowServices.isEmpty()) {
@@ -16,9 +16,10 @@ package com.aevi.sdk.pos.flow.model.events;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.aevi.sdk.flow.util.IdGenerators;
+
 import java.util.Arrays;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Represents a request that will be shown to a user for the confirmation of something
@@ -52,7 +53,7 @@ public class ConfirmationRequest {
     private ConfirmationInput confirmationInput;
 
     public ConfirmationRequest(@NonNull String type) {
-        this.id = UUID.randomUUID().toString();
+        this.id = IdGenerators.generateId();
         this.type = type;
     }
 
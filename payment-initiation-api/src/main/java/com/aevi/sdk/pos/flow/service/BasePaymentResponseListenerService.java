@@ -13,7 +13,12 @@
  */
 package com.aevi.sdk.pos.flow.service;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.aevi.sdk.flow.service.BaseListenerService;
+import com.aevi.sdk.pos.flow.PaymentApi;
+import com.aevi.sdk.pos.flow.PaymentResponseStore;
 import com.aevi.sdk.pos.flow.initiation.BuildConfig;
 import com.aevi.sdk.pos.flow.model.PaymentResponse;
 
@@ -23,7 +28,35 @@ import com.aevi.sdk.pos.flow.model.PaymentResponse;
  */
 public abstract class BasePaymentResponseListenerService extends BaseListenerService<PaymentResponse> {
 
+    private PaymentResponseStore paymentResponseStore;
+
     protected BasePaymentResponseListenerService() {
         super(PaymentResponse.class, BuildConfig.VERSION);
     }
+
+    /**
+     * Add all received payment responses to the {@link PaymentResponseStore} of this application, so that they can be queried locally.
+     *
+     * See {@link PaymentApi#getPaymentResponseStore(android.content.Context)}. This should be called from {@code onCreate()} of the service, and
+     * does not read from disk on the calling thread.
+     */
+    protected void enablePaymentResponseStore() {
+        setPaymentResponseStore(PaymentApi.getPaymentResponseStore(this));
+    }
+
+    /**
+     * Set the store to add received payment responses to, or null to not store them.
+     *
+     * @param paymentResponseStore The payment response store
+     */
+    public void setPaymentResponseStore(@Nullable PaymentResponseStore paymentResponseStore) {
+        this.paymentResponseStore = paymentResponseStore;
+    }
+
+    @Override
+    protected void onResponseReceived(@NonNull PaymentResponse paymentResponse) {
+        if (paymentResponseStore != null) {
+            paymentResponseStore.add(paymentResponse);
+        }
+    }
 }
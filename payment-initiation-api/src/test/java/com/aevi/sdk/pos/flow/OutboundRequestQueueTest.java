@@ -0,0 +1,176 @@
+package com.aevi.sdk.pos.flow;
+
+import com.aevi.sdk.flow.constants.ErrorConstants;
+import com.aevi.sdk.flow.model.FlowEvent;
+import com.aevi.sdk.flow.model.FlowException;
+import com.aevi.sdk.flow.model.Request;
+import io.reactivex.Completable;
+import io.reactivex.schedulers.TestScheduler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class OutboundRequestQueueTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private PaymentClient paymentClient;
+    private TestScheduler testScheduler = new TestScheduler();
+
+    @Before
+    public void setUp() throws Exception {
+        paymentClient = mock(PaymentClient.class);
+        when(paymentClient.initiateRequest(any(Request.class))).thenReturn(Completable.complete());
+        when(paymentClient.sendEvent(any(FlowEvent.class))).thenReturn(Completable.complete());
+    }
+
+    @Test
+    public void shouldSendInOrder() throws Exception {
+        OutboundRequestQueue queue = createQueue(null);
+        Request first = createRequest();
+        Request second = createRequest();
+
+        queue.enqueue(first);
+        queue.enqueueEvent(new FlowEvent("event"));
+        queue.enqueue(second);
+        testScheduler.triggerActions();
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(paymentClient, times(2)).initiateRequest(requestCaptor.capture());
+        assertThat(requestCaptor.getAllValues().get(0).getId()).isEqualTo(first.getId());
+        assertThat(requestCaptor.getAllValues().get(1).getId()).isEqualTo(second.getId());
+        verify(paymentClient).sendEvent(new FlowEvent("event"));
+        assertThat(queue.getPendingCount()).isZero();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectForegroundRequests() throws Exception {
+        createQueue(null).enqueue(new Request("test"));
+    }
+
+    @Test
+    public void shouldDeduplicateByRequestId() throws Exception {
+        OutboundRequestQueue queue = createQueue(null);
+        Request request = createRequest();
+
+        assertThat(queue.enqueue(request)).isTrue();
+        assertThat(queue.enqueue(request)).isFalse();
+        testScheduler.triggerActions();
+        assertThat(queue.enqueue(request)).isFalse();
+
+        verify(paymentClient, times(1)).initiateRequest(any(Request.class));
+    }
+
+    @Test
+    public void shouldRetryWithBoundedExponentialBackoff() throws Exception {
+        when(paymentClient.initiateRequest(any(Request.class)))
+                .thenReturn(Completable.error(new FlowException(ErrorConstants.PROCESSING_SERVICE_NOT_INSTALLED, "not installed")));
+        OutboundRequestQueue queue = createQueue(null);
+
+        queue.enqueue(createRequest());
+        testScheduler.triggerActions();
+        verify(paymentClient, times(1)).initiateRequest(any(Request.class));
+
+        testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        verify(paymentClient, times(2)).initiateRequest(any(Request.class));
+
+        testScheduler.advanceTimeBy(199, TimeUnit.MILLISECONDS);
+        verify(paymentClient, times(2)).initiateRequest(any(Request.class));
+        testScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        verify(paymentClient, times(3)).initiateRequest(any(Request.class));
+
+        assertThat(queue.getBackoffMs(10)).isEqualTo(1000);
+        assertThat(queue.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldDropRejectedRequests() throws Exception {
+        when(paymentClient.initiateRequest(any(Request.class)))
+                .thenReturn(Completable.error(new FlowException(ErrorConstants.INVALID_REQUEST, "invalid")))
+                .thenReturn(Completable.complete());
+        OutboundRequestQueue queue = createQueue(null);
+
+        queue.enqueue(createRequest());
+        queue.enqueue(createRequest());
+        testScheduler.triggerActions();
+
+        verify(paymentClient, times(2)).initiateRequest(any(Request.class));
+        assertThat(queue.getPendingCount()).isZero();
+    }
+
+    @Test
+    public void shouldDropRequestsFailingWithNonTransientErrors() throws Exception {
+        when(paymentClient.initiateRequest(any(Request.class)))
+                .thenReturn(Completable.error(new FlowException(ErrorConstants.CONFIG_ERROR, "config")))
+                .thenReturn(Completable.error(new FlowException(ErrorConstants.UNEXPECTED_ERROR, "unexpected")))
+                .thenReturn(Completable.complete());
+        OutboundRequestQueue queue = createQueue(null);
+
+        queue.enqueue(createRequest());
+        queue.enqueue(createRequest());
+        queue.enqueue(createRequest());
+        testScheduler.triggerActions();
+
+        verify(paymentClient, times(3)).initiateRequest(any(Request.class));
+        assertThat(queue.getPendingCount()).isZero();
+    }
+
+    @Test
+    public void shouldPersistOnScheduler() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "queue.jsonl");
+        when(paymentClient.initiateRequest(any(Request.class))).thenReturn(Completable.never());
+        OutboundRequestQueue queue = createQueue(file);
+
+        queue.enqueue(createRequest());
+        assertThat(file).doesNotExist();
+
+        testScheduler.triggerActions();
+        assertThat(file).exists();
+        assertThat(createQueue(file).getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReplayUndeliveredRequestsFromFile() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "queue.jsonl");
+        when(paymentClient.initiateRequest(any(Request.class)))
+                .thenReturn(Completable.complete())
+                .thenReturn(Completable.error(new RuntimeException("connection lost")));
+        OutboundRequestQueue queue = createQueue(file);
+        Request delivered = createRequest();
+        Request undelivered = createRequest();
+        queue.enqueue(delivered);
+        queue.enqueue(undelivered);
+        testScheduler.triggerActions();
+
+        reset(paymentClient);
+        when(paymentClient.initiateRequest(any(Request.class))).thenReturn(Completable.complete());
+        OutboundRequestQueue restored = createQueue(file);
+        assertThat(restored.getPendingCount()).isEqualTo(1);
+        assertThat(restored.enqueue(delivered)).isFalse();
+        testScheduler.triggerActions();
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(paymentClient).initiateRequest(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().getId()).isEqualTo(undelivered.getId());
+    }
+
+    private OutboundRequestQueue createQueue(File file) {
+        return new OutboundRequestQueue(file, paymentClient, 10, 100, 1000, testScheduler);
+    }
+
+    private static Request createRequest() {
+        Request request = new Request("test");
+        request.setProcessInBackground(true);
+        return request;
+    }
+}
@@ -0,0 +1,214 @@
+package com.aevi.sdk.pos.flow;
+
+import com.aevi.sdk.flow.model.ResponseQuery;
+import com.aevi.sdk.flow.model.ResponseQueryBuilder;
+import com.aevi.sdk.pos.flow.model.Amounts;
+import com.aevi.sdk.pos.flow.model.Payment;
+import com.aevi.sdk.pos.flow.model.PaymentBuilder;
+import com.aevi.sdk.pos.flow.model.PaymentResponse;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.aevi.sdk.pos.flow.model.PaymentResponse.Outcome.FULFILLED;
+import static com.aevi.sdk.pos.flow.model.PaymentResponse.Outcome.FAILED;
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class PaymentResponseStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private PaymentResponseStore paymentResponseStore;
+
+    @Before
+    public void setUp() throws Exception {
+        paymentResponseStore = new PaymentResponseStore(10);
+    }
+
+    @Test
+    public void shouldQueryByFlowTypeMostRecentFirst() throws Exception {
+        paymentResponseStore.add(createResponse("sale", 1000, FULFILLED, "GBP"));
+        paymentResponseStore.add(createResponse("refund", 2000, FULFILLED, "GBP"));
+        paymentResponseStore.add(createResponse("sale", 3000, FAILED, "GBP"));
+
+        List<PaymentResponse> results = paymentResponseStore.query(new ResponseQueryBuilder().withFlowType("sale").build());
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getCreationDateTimeMs()).isEqualTo(3000);
+        assertThat(results.get(1).getCreationDateTimeMs()).isEqualTo(1000);
+    }
+
+    @Test
+    public void shouldQueryByDateRangeOutcomeAndCurrency() throws Exception {
+        paymentResponseStore.add(createResponse("sale", 1000, FULFILLED, "GBP"));
+        paymentResponseStore.add(createResponse("sale", 2000, FULFILLED, "EUR"));
+        paymentResponseStore.add(createResponse("sale", 3000, FAILED, "GBP"));
+        PaymentResponse expected = createResponse("sale", 4000, FULFILLED, "GBP");
+        paymentResponseStore.add(expected);
+        paymentResponseStore.add(createResponse("sale", 9000, FULFILLED, "GBP"));
+
+        ResponseQuery responseQuery = new ResponseQueryBuilder().withDateRange(1500, 5000).build();
+        List<PaymentResponse> results = paymentResponseStore.query(responseQuery, FULFILLED, "GBP");
+
+        assertThat(results).containsExactly(expected);
+    }
+
+    @Test
+    public void shouldQueryByRequestId() throws Exception {
+        PaymentResponse expected = createResponse("sale", 1000, FULFILLED, "GBP");
+        paymentResponseStore.add(expected);
+        paymentResponseStore.add(createResponse("sale", 2000, FULFILLED, "GBP"));
+
+        List<PaymentResponse> results = paymentResponseStore.query(new ResponseQueryBuilder().withRequestId(expected.getId()).build());
+
+        assertThat(results).containsExactly(expected);
+    }
+
+    @Test
+    public void shouldLimitToMaxResults() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            paymentResponseStore.add(createResponse("sale", 1000 + i, FULFILLED, "GBP"));
+        }
+
+        assertThat(paymentResponseStore.query(new ResponseQueryBuilder().withMaxResults(3).build())).hasSize(3);
+    }
+
+    @Test
+    public void shouldEvictOldestResponses() throws Exception {
+        for (int i = 0; i < 12; i++) {
+            paymentResponseStore.add(createResponse("sale", 1000 + i, FULFILLED, "GBP"));
+        }
+
+        List<PaymentResponse> results = paymentResponseStore.query(new ResponseQueryBuilder().build());
+        assertThat(paymentResponseStore.size()).isEqualTo(10);
+        assertThat(results.get(results.size() - 1).getCreationDateTimeMs()).isEqualTo(1002);
+    }
+
+    @Test
+    public void shouldReadBackPersistedResponses() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "responses");
+        paymentResponseStore = new PaymentResponseStore(file, 10, Schedulers.trampoline());
+        PaymentResponse expected = createResponse("sale", 1000, FULFILLED, "GBP");
+        paymentResponseStore.add(expected);
+
+        PaymentResponseStore reopened = new PaymentResponseStore(file, 10, Schedulers.trampoline());
+
+        assertThat(reopened.size()).isEqualTo(1);
+        assertThat(reopened.query(new ResponseQueryBuilder().withFlowType("sale").build(), FULFILLED, "GBP")).hasSize(1);
+    }
+
+    @Test
+    public void shouldPersistOnScheduler() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "responses");
+        TestScheduler testScheduler = new TestScheduler();
+        paymentResponseStore = new PaymentResponseStore(file, 10, testScheduler);
+        testScheduler.triggerActions();
+
+        paymentResponseStore.add(createResponse("sale", 1000, FULFILLED, "GBP"));
+
+        assertThat(paymentResponseStore.size()).isEqualTo(1);
+        assertThat(file).doesNotExist();
+        testScheduler.triggerActions();
+        assertThat(new PaymentResponseStore(file, 10, Schedulers.trampoline()).size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldMergeResponsesAddedWhilstLoading() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "responses");
+        PaymentResponse persisted = createResponse("sale", 1000, FULFILLED, "GBP");
+        PaymentResponse other = createResponse("sale", 2000, FULFILLED, "GBP");
+        new PaymentResponseStore(file, 10, Schedulers.trampoline()).addAll(Arrays.asList(persisted, other));
+        TestScheduler testScheduler = new TestScheduler();
+        paymentResponseStore = new PaymentResponseStore(file, 10, testScheduler);
+
+        paymentResponseStore.add(new TestPaymentResponse(persisted.getOriginatingPayment(), 3000, FAILED));
+        testScheduler.triggerActions();
+
+        assertThat(paymentResponseStore.size()).isEqualTo(2);
+        assertThat(paymentResponseStore.get(persisted.getId()).getOutcome()).isEqualTo(FAILED);
+        assertThat(paymentResponseStore.get(other.getId()).getOutcome()).isEqualTo(FULFILLED);
+    }
+
+    @Test
+    public void shouldDiscardPersistedResponsesIfClearedWhilstLoading() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "responses");
+        new PaymentResponseStore(file, 10, Schedulers.trampoline()).add(createResponse("sale", 1000, FULFILLED, "GBP"));
+        TestScheduler testScheduler = new TestScheduler();
+        paymentResponseStore = new PaymentResponseStore(file, 10, testScheduler);
+
+        paymentResponseStore.clear();
+        testScheduler.triggerActions();
+
+        assertThat(paymentResponseStore.size()).isEqualTo(0);
+        assertThat(new PaymentResponseStore(file, 10, Schedulers.trampoline()).size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldQueryCandidatesWithinDateRangeMostRecentFirst() throws Exception {
+        PaymentResponse first = createResponse("sale", 1000, FULFILLED, "GBP");
+        PaymentResponse second = createResponse("sale", 1000, FULFILLED, "GBP");
+        PaymentResponse third = createResponse("sale", 2000, FULFILLED, "GBP");
+        paymentResponseStore.add(third);
+        paymentResponseStore.add(createResponse("refund", 1500, FULFILLED, "GBP"));
+        paymentResponseStore.add(first);
+        paymentResponseStore.add(second);
+        paymentResponseStore.add(createResponse("sale", 3000, FULFILLED, "GBP"));
+
+        List<PaymentResponse> results = paymentResponseStore.query(new ResponseQueryBuilder().withFlowType("sale").withDateRange(1000, 2000)
+                                                                           .build());
+
+        assertThat(results).containsExactly(third, first, second);
+    }
+
+    @Test
+    public void shouldFallBackToProcessingServiceAndStoreResults() throws Exception {
+        PaymentResponse local = createResponse("sale", 1000, FULFILLED, "GBP");
+        PaymentResponse remote = createResponse("sale", 500, FULFILLED, "GBP");
+        paymentResponseStore.add(local);
+        PaymentClient paymentClient = mock(PaymentClient.class);
+        when(paymentClient.queryPaymentResponses(any(ResponseQuery.class))).thenReturn(Observable.just(local, remote));
+
+        paymentResponseStore.queryWithFallback(new ResponseQueryBuilder().build(), paymentClient)
+                .test()
+                .assertValues(local, remote);
+
+        assertThat(paymentResponseStore.get(remote.getId())).isEqualTo(remote);
+    }
+
+    @Test
+    public void shouldNotQueryProcessingServiceIfEnoughLocalResults() throws Exception {
+        paymentResponseStore.add(createResponse("sale", 1000, FULFILLED, "GBP"));
+        PaymentClient paymentClient = mock(PaymentClient.class);
+
+        paymentResponseStore.queryWithFallback(new ResponseQueryBuilder().withMaxResults(1).build(), paymentClient)
+                .test()
+                .assertValueCount(1);
+
+        verify(paymentClient, never()).queryPaymentResponses(any(ResponseQuery.class));
+    }
+
+    private static PaymentResponse createResponse(String flowType, long creationTime, PaymentResponse.Outcome outcome, String currency) {
+        Payment payment = new PaymentBuilder().withPaymentFlow(flowType).withAmounts(new Amounts(1000, currency)).build();
+        return new TestPaymentResponse(payment, creationTime, outcome);
+    }
+
+    static class TestPaymentResponse extends PaymentResponse {
+
+        TestPaymentResponse(Payment payment, long creationTime, Outcome outcome) {
+            super(payment);
+            this.creationDateTimeMs = creationTime;
+            this.outcome = outcome;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.aevi.sdk.pos.flow;
+
+import com.aevi.sdk.pos.flow.model.Payment;
+import io.reactivex.Completable;
+import io.reactivex.observers.TestObserver;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class SharedPaymentClientTest {
+
+    private PaymentClient paymentClient;
+    private AtomicInteger clientsCreated = new AtomicInteger();
+    private SharedPaymentClient sharedPaymentClient;
+
+    @Before
+    public void setUp() throws Exception {
+        paymentClient = mock(PaymentClient.class);
+        when(paymentClient.initiatePayment(any(Payment.class))).thenReturn(Completable.complete());
+        sharedPaymentClient = new SharedPaymentClient(() -> {
+            clientsCreated.incrementAndGet();
+            return paymentClient;
+        });
+    }
+
+    @Test
+    public void shouldNotCreateClientUntilUsed() throws Exception {
+        Completable payment = sharedPaymentClient.initiatePayment(mock(Payment.class));
+        assertThat(clientsCreated.get()).isEqualTo(0);
+
+        payment.test().await().assertComplete();
+
+        assertThat(clientsCreated.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldDeferCallsMadeWhilstInitialising() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SharedPaymentClient slowClient = new SharedPaymentClient(() -> {
+            clientsCreated.incrementAndGet();
+            creating.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return paymentClient;
+        });
+
+        TestObserver<Void> first = slowClient.initiatePayment(mock(Payment.class)).test();
+        assertThat(creating.await(5, TimeUnit.SECONDS)).isTrue();
+        TestObserver<Void> second = slowClient.initiatePayment(mock(Payment.class)).test();
+        verify(paymentClient, never()).initiatePayment(any(Payment.class));
+
+        release.countDown();
+
+        first.await().assertComplete();
+        second.await().assertComplete();
+        assertThat(clientsCreated.get()).isEqualTo(1);
+        verify(paymentClient, times(2)).initiatePayment(any(Payment.class));
+    }
+
+    @Test
+    public void shouldCreateClientOnlyOnce() throws Exception {
+        sharedPaymentClient.warmUp().test().await().assertComplete();
+        sharedPaymentClient.initiatePayment(mock(Payment.class)).test().await().assertComplete();
+        sharedPaymentClient.initiatePayment(mock(Payment.class)).test().await().assertComplete();
+
+        assertThat(clientsCreated.get()).isEqualTo(1);
+        verify(paymentClient, times(2)).initiatePayment(any(Payment.class));
+    }
+
+    @Test
+    public void shouldRetryCreationAfterFailure() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        SharedPaymentClient failingOnce = new SharedPaymentClient(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Not yet");
+            }
+            return paymentClient;
+        });
+
+        failingOnce.warmUp().test().await().assertError(IllegalStateException.class);
+        failingOnce.warmUp().test().await().assertComplete();
+    }
+
+    @Test
+    public void shouldOnlyRecordTimeToFirstAcceptedPayment() throws Exception {
+        when(paymentClient.initiatePayment(any(Payment.class)))
+                .thenReturn(Completable.error(new IllegalStateException("Rejected")))
+                .thenReturn(Completable.complete());
+
+        sharedPaymentClient.initiatePayment(mock(Payment.class)).test().await().assertError(IllegalStateException.class);
+        assertThat(sharedPaymentClient.getTimeToFirstPaymentMillis()).isEqualTo(SharedPaymentClient.NOT_MEASURED);
+
+        sharedPaymentClient.initiatePayment(mock(Payment.class)).test().await().assertComplete();
+        long timeToFirstPayment = sharedPaymentClient.getTimeToFirstPaymentMillis();
+        assertThat(timeToFirstPayment).isGreaterThanOrEqualTo(0);
+
+        sharedPaymentClient.initiatePayment(mock(Payment.class)).test().await().assertComplete();
+        assertThat(sharedPaymentClient.getTimeToFirstPaymentMillis()).isEqualTo(timeToFirstPayment);
+    }
+}
@@ -1,7 +1,11 @@
 package com.aevi.sdk.pos.flow.model;
 
+import com.aevi.util.json.JsonConverter;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class AmountsTest {
@@ -17,6 +21,27 @@ public class AmountsTest {
         assertThat(amounts.getTotalAmount()).isEqualTo(new Amount(4500L, "GBP"));
     }
 
+    @Test
+    public void checkNullAdditionalAmountsAreIgnored() {
+        Map<String, Long> additionalAmounts = new HashMap<>();
+        additionalAmounts.put("tip", 100L);
+        additionalAmounts.put("cashback", null);
+        Amounts amounts = new Amounts(1000L, "GBP", additionalAmounts);
+        amounts.getAdditionalAmounts().put("tip", null);
+
+        assertThat(amounts.getAdditionalAmounts()).isEmpty();
+        assertThat(amounts.getTotalAmountValue()).isEqualTo(1000L);
+    }
+
+    @Test
+    public void checkNullAdditionalAmountsAreIgnoredInJson() {
+        Amounts amounts = JsonConverter.deserialize("{\"baseAmount\":1000,\"currency\":\"GBP\",\"additionalAmounts\":{\"tip\":null,\"cashback\":200}}", Amounts.class);
+
+        assertThat(amounts.hasAdditionalAmount("tip")).isFalse();
+        assertThat(amounts.getTotalAmountValue()).isEqualTo(1200L);
+        assertThat(JsonConverter.deserialize(amounts.toJson(), Amounts.class)).isEqualTo(amounts);
+    }
+
     @Test
     public void checkCurrencyIsCorrect() {
         Amounts amounts = new Amounts(1000L, "GBP");
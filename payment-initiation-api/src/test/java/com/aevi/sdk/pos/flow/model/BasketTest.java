@@ -267,4 +267,27 @@ public class BasketTest {
         sourceBasket.setRoundingStrategy(RoundingStrategy.UP);
         assertThat(sourceBasket.getTotalBasketValue()).isEqualTo(1757);
     }
+
+    @Test
+    public void fingerprintReflectsBasketContents() throws Exception {
+        sourceBasket.addItems(defaultItemOne, defaultItemTwo);
+        Basket other = new Basket("test", sourceBasket.getBasketItems());
+
+        assertThat(other.getFingerprint()).isEqualTo(sourceBasket.getFingerprint());
+        assertThat(other.equivalent(sourceBasket)).isTrue();
+
+        other.incrementItemQuantity(defaultItemOne.getId(), 1);
+        assertThat(other.getFingerprint()).isNotEqualTo(sourceBasket.getFingerprint());
+        assertThat(other.equivalent(sourceBasket)).isFalse();
+    }
+
+    @Test
+    public void fingerprintReflectsItemDataChanges() throws Exception {
+        BasketItem item = new BasketItemBuilder().withLabel("item").withAmount(100).withItemData("key", "one").build();
+        sourceBasket.addItems(item);
+        long fingerprint = sourceBasket.getFingerprint();
+
+        item.getItemData().addData("key", "two");
+        assertThat(sourceBasket.getFingerprint()).isNotEqualTo(fingerprint);
+    }
 }
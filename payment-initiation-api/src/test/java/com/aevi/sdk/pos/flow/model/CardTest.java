@@ -23,4 +23,19 @@ public class CardTest {
         Card card = new Card("123456789XXXXXX", "Mr T", "2010", null, null);
         assertThat(card.getFormattedExpiryDate("MM/yyyy")).isEqualTo("10/2020");
     }
+
+    @Test
+    public void shouldParseExpiryYearAndMonth() throws Exception {
+        Card card = new Card(null, null, "2106", null, null);
+        assertThat(card.getExpiryYear()).isEqualTo(2021);
+        assertThat(card.getExpiryMonth()).isEqualTo(6);
+    }
+
+    @Test
+    public void shouldHandleInvalidExpiryDate() throws Exception {
+        Card card = new Card(null, null, "2113", null, null);
+        assertThat(card.getExpiryYear()).isEqualTo(-1);
+        assertThat(card.getFormattedExpiryDate("MM/yyyy")).isNull();
+        assertThat(new Card(null, null, "2010", null, null).getFormattedExpiryDate("bad pattern q")).isNull();
+    }
 }
@@ -14,8 +14,7 @@
 
 package com.aevi.sdk.pos.flow.sample;
 
-import java.math.BigDecimal;
-import java.util.Currency;
+import com.aevi.sdk.flow.util.Formatters;
 
 public class AmountFormatter {
 
@@ -23,20 +22,6 @@ public class AmountFormatter {
      * Format amount to a readable format, taking currency sub-unit fractions into account
      */
     public static String formatAmount(String currencyCode, long amountValue) {
-        if (currencyCode != null) {
-            String symbol;
-            int subUnitFractions;
-            try {
-                Currency currency = Currency.getInstance(currencyCode);
-                symbol = currency.getSymbol();
-                subUnitFractions = currency.getDefaultFractionDigits();
-            } catch (Throwable t) {
-                symbol = currencyCode;
-                subUnitFractions = 2;
-            }
-            return symbol + BigDecimal.valueOf(amountValue).movePointLeft(subUnitFractions).toString();
-        } else {
-            return "0.00";
-        }
+        return Formatters.formatAmount(currencyCode, amountValue);
     }
 }